@@ -0,0 +1,252 @@
+package net.craswell.security.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import net.craswell.security.annotationProcessors.ConfidentialityProcessor;
+
+/**
+ * Measures the compile-time cost of the confidentiality processor.
+ * 
+ * The benchmark compiles a synthetic model of classes annotated with @RequiresConfidentiality
+ * in-process, once without annotation processing and once with the processor only, and reports
+ * the time spent by each. Arguments: the number of classes (2000 by default), the number of
+ * measured iterations (5 by default), then any processor options (-Akey=value).
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class ProcessorBenchmark {
+  /**
+   * The number of iterations run before measuring.
+   */
+  private static final int WARMUP_ITERATIONS = 2;
+
+  /**
+   * The package of the synthetic model.
+   */
+  private static final String MODEL_PACKAGE = "benchmark.model";
+
+  /**
+   * Prevents instantiation.
+   */
+  private ProcessorBenchmark() {
+  }
+
+  /**
+   * Runs the benchmark.
+   * 
+   * @param args The number of classes, the number of iterations and the processor options.
+   * 
+   * @throws IOException Thrown when the output directories cannot be created or removed.
+   */
+  public static void main(String[] args) throws IOException {
+    int classCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    List<String> processorOptions = args.length > 2
+        ? Arrays.asList(args).subList(2, args.length)
+        : new ArrayList<String>();
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    if (compiler == null) {
+      throw new IllegalStateException("The benchmark must be run on a JDK.");
+    }
+
+    List<JavaFileObject> model = constructModel(classCount);
+
+    System.out.println(String.format(
+        "Compiling %1$d templates, options %2$s.",
+        classCount,
+        processorOptions));
+
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      compile(compiler, model, processorOptions, false);
+      compile(compiler, model, processorOptions, true);
+    }
+
+    long[] baselineTimes = new long[iterations];
+    long[] processorTimes = new long[iterations];
+
+    for (int i = 0; i < iterations; i++) {
+      baselineTimes[i] = compile(compiler, model, processorOptions, false);
+      processorTimes[i] = compile(compiler, model, processorOptions, true);
+
+      System.out.println(String.format(
+          "Iteration %1$d: without processing %2$d ms, processor only %3$d ms.",
+          i + 1,
+          baselineTimes[i],
+          processorTimes[i]));
+    }
+
+    long baselineMinimum = Arrays.stream(baselineTimes).min().orElse(0);
+    long processorMinimum = Arrays.stream(processorTimes).min().orElse(0);
+
+    System.out.println(String.format(
+        "Best: without processing %1$d ms, processor only %2$d ms (%3$.3f ms per template).",
+        baselineMinimum,
+        processorMinimum,
+        (double) processorMinimum / classCount));
+  }
+
+  /**
+   * Compiles the synthetic model.
+   * 
+   * @param compiler The compiler.
+   * @param model The sources of the synthetic model.
+   * @param processorOptions The processor options.
+   * @param process True to run the processor only; false to compile without processing.
+   * 
+   * @return The elapsed time in milliseconds.
+   * 
+   * @throws IOException Thrown when the output directories cannot be created or removed.
+   */
+  private static long compile(
+      JavaCompiler compiler,
+      List<JavaFileObject> model,
+      List<String> processorOptions,
+      boolean process) throws IOException {
+    Path outputDirectory = Files.createTempDirectory("processor-benchmark");
+
+    try {
+      Path sourceOutputDirectory = Files.createDirectory(outputDirectory.resolve("generated"));
+      Path classOutputDirectory = Files.createDirectory(outputDirectory.resolve("classes"));
+
+      List<String> options = new ArrayList<String>(Arrays.asList(
+          "-classpath", System.getProperty("java.class.path"),
+          "-s", sourceOutputDirectory.toString(),
+          "-d", classOutputDirectory.toString(),
+          process ? "-proc:only" : "-proc:none"));
+
+      options.addAll(processorOptions);
+
+      DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+      try (StandardJavaFileManager fileManager =
+          compiler.getStandardFileManager(diagnostics, null, null)) {
+        JavaCompiler.CompilationTask task = compiler.getTask(
+            null,
+            fileManager,
+            diagnostics,
+            options,
+            null,
+            model);
+
+        if (process) {
+          task.setProcessors(Arrays.asList(new ConfidentialityProcessor()));
+        }
+
+        long start = System.nanoTime();
+        boolean succeeded = task.call();
+        long elapsed = System.nanoTime() - start;
+
+        if (!succeeded) {
+          throw new IllegalStateException(String.format(
+              "The synthetic model failed to compile: %1$s",
+              diagnostics.getDiagnostics()));
+        }
+
+        return elapsed / 1000000L;
+      }
+    } finally {
+      deleteRecursively(outputDirectory);
+    }
+  }
+
+  /**
+   * Constructs the sources of a synthetic model.
+   * 
+   * @param classCount The number of template classes.
+   * 
+   * @return The sources.
+   */
+  private static List<JavaFileObject> constructModel(int classCount) {
+    List<JavaFileObject> model = new ArrayList<JavaFileObject>(classCount);
+
+    for (int i = 0; i < classCount; i++) {
+      String className = String.format("Template%1$05d", i);
+      StringBuilder source = new StringBuilder()
+          .append("package ").append(MODEL_PACKAGE).append(";\n")
+          .append("import net.craswell.security.annotations.Confidential;\n")
+          .append("import net.craswell.security.annotations.RequiresConfidentiality;\n")
+          .append("@RequiresConfidentiality\n")
+          .append("public class ").append(className).append(" {\n")
+          .append("  private Long id;\n")
+          .append("  private String name;\n")
+          .append("  @Confidential private String secret;\n")
+          .append("  @Confidential(searchable = true) private String email;\n")
+          .append("  @Confidential(cache = false) private long salary;\n")
+          .append("  @Confidential private Integer age;\n")
+          .append("  @Confidential private java.math.BigDecimal balance;\n")
+          .append("  @Confidential private java.time.LocalDate birthDate;\n")
+          .append("  @Confidential(storage = Confidential.Storage.BINARY) private byte[] photo;\n")
+          .append("}\n");
+
+      model.add(new SourceFile(MODEL_PACKAGE.replace('.', '/') + "/" + className, source));
+    }
+
+    return model;
+  }
+
+  /**
+   * Deletes a directory and its contents.
+   * 
+   * @param directory The directory.
+   * 
+   * @throws IOException Thrown when the directory cannot be listed.
+   */
+  private static void deleteRecursively(Path directory) throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder())
+          .map(Path::toFile)
+          .forEach(File::delete);
+    }
+  }
+
+  /**
+   * A source file held in memory.
+   */
+  private static final class SourceFile
+      extends SimpleJavaFileObject {
+    /**
+     * The source code.
+     */
+    private final CharSequence source;
+
+    /**
+     * Initializes a new instance of the SourceFile class.
+     * 
+     * @param path The path of the source file, without extension.
+     * @param source The source code.
+     */
+    private SourceFile(String path, CharSequence source) {
+      super(URI.create("string:///" + path + Kind.SOURCE.extension), Kind.SOURCE);
+      this.source = source;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see javax.tools.SimpleJavaFileObject#getCharContent(boolean)
+     */
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return this.source;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package net.craswell.security.benchmark;
+
+import net.craswell.common.encryption.PassphraseProvider;
+
+/**
+ * Provides the constant passphrase used by the benchmarks.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class BenchmarkPassphraseProvider
+    implements PassphraseProvider {
+  /**
+   * The passphrase.
+   */
+  private static final String PASSPHRASE = "benchmark passphrase";
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.common.encryption.PassphraseProvider#getPassphrase()
+   */
+  @Override
+  public String getPassphrase() {
+    return PASSPHRASE;
+  }
+}
@@ -0,0 +1,148 @@
+package net.craswell.security.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.craswell.security.benchmark.model.generated.ScalarSampleSecured;
+
+/**
+ * Measures the generated accessors of fixed size confidential fields.
+ * 
+ * Decrypting getters assign the secured value first, which discards the cached value. Setters
+ * alternate between two values so that every call encrypts.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScalarAccessorBenchmark {
+  /**
+   * The secured instance.
+   */
+  private ScalarSampleSecured sample;
+
+  /**
+   * The numbers assigned by the setter benchmark.
+   */
+  private long[] numbers;
+
+  /**
+   * The amounts assigned by the setter benchmark.
+   */
+  private BigDecimal[] amounts;
+
+  /**
+   * The secured value of the first number.
+   */
+  private String numberSecured;
+
+  /**
+   * The secured value of the first amount.
+   */
+  private String amountSecured;
+
+  /**
+   * The number of setter invocations.
+   */
+  private int invocations;
+
+  /**
+   * Creates the secured instance and its values.
+   * 
+   * @throws Exception Thrown when the values cannot be encrypted.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    this.numbers = new long[] {4242424242L, 2424242424L};
+    this.amounts = new BigDecimal[] {new BigDecimal("12345.67"), new BigDecimal("76543.21")};
+
+    this.sample = new ScalarSampleSecured();
+    this.sample.setPassphraseProvider(new BenchmarkPassphraseProvider());
+
+    this.sample.setNumber(this.numbers[0]);
+    this.sample.setAmount(this.amounts[0]);
+
+    this.numberSecured = this.sample.getNumberSecured();
+    this.amountSecured = this.sample.getAmountSecured();
+  }
+
+  /**
+   * @return The decrypted number.
+   * 
+   * @throws Exception Thrown when the number cannot be decrypted.
+   */
+  @Benchmark
+  public long getNumberDecrypting() throws Exception {
+    this.sample.setNumberSecured(this.numberSecured);
+    return this.sample.getNumber();
+  }
+
+  /**
+   * @return The cached number.
+   * 
+   * @throws Exception Thrown when the number cannot be decrypted.
+   */
+  @Benchmark
+  public long getNumberCached() throws Exception {
+    return this.sample.getNumber();
+  }
+
+  /**
+   * @return The secured number.
+   * 
+   * @throws Exception Thrown when the number cannot be encrypted.
+   */
+  @Benchmark
+  public String setNumber() throws Exception {
+    this.sample.setNumber(this.numbers[this.invocations++ & 1]);
+    return this.sample.getNumberSecured();
+  }
+
+  /**
+   * @return The decrypted amount.
+   * 
+   * @throws Exception Thrown when the amount cannot be decrypted.
+   */
+  @Benchmark
+  public BigDecimal getAmountDecrypting() throws Exception {
+    this.sample.setAmountSecured(this.amountSecured);
+    return this.sample.getAmount();
+  }
+
+  /**
+   * @return The cached amount.
+   * 
+   * @throws Exception Thrown when the amount cannot be decrypted.
+   */
+  @Benchmark
+  public BigDecimal getAmountCached() throws Exception {
+    return this.sample.getAmount();
+  }
+
+  /**
+   * @return The secured amount.
+   * 
+   * @throws Exception Thrown when the amount cannot be encrypted.
+   */
+  @Benchmark
+  public String setAmount() throws Exception {
+    this.sample.setAmount(this.amounts[this.invocations++ & 1]);
+    return this.sample.getAmountSecured();
+  }
+}
@@ -0,0 +1,219 @@
+package net.craswell.security.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.craswell.security.benchmark.model.generated.SizedSampleSecured;
+
+/**
+ * Measures the generated accessors of confidential fields holding values of varying sizes.
+ * 
+ * The size is the number of characters of strings, the number of bytes of arrays and the number
+ * of elements of serialized lists. Decrypting getters assign the secured value first, which
+ * discards the cached value. Setters alternate between two values so that every call encrypts.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SizedAccessorBenchmark {
+  /**
+   * The size of the values.
+   */
+  @Param({"16", "1024", "65536"})
+  private int size;
+
+  /**
+   * The secured instance.
+   */
+  private SizedSampleSecured sample;
+
+  /**
+   * The strings assigned by the setter benchmark.
+   */
+  private String[] texts;
+
+  /**
+   * The byte arrays assigned by the setter benchmark.
+   */
+  private byte[][] byteArrays;
+
+  /**
+   * The lists assigned by the setter benchmark.
+   */
+  private ArrayList<ArrayList<String>> itemLists;
+
+  /**
+   * The secured value of the first string.
+   */
+  private String textSecured;
+
+  /**
+   * The secured value of the first byte array.
+   */
+  private String bytesSecured;
+
+  /**
+   * The secured value of the first list.
+   */
+  private String itemsSecured;
+
+  /**
+   * The number of setter invocations.
+   */
+  private int invocations;
+
+  /**
+   * Creates the secured instance and its values.
+   * 
+   * @throws Exception Thrown when the values cannot be encrypted.
+   */
+  @Setup
+  public void setUp() throws Exception {
+    this.texts = new String[2];
+    this.byteArrays = new byte[2][];
+    this.itemLists = new ArrayList<ArrayList<String>>();
+
+    for (int i = 0; i < 2; i++) {
+      char[] characters = new char[this.size];
+      Arrays.fill(characters, (char) ('a' + i));
+      this.texts[i] = new String(characters);
+
+      this.byteArrays[i] = new byte[this.size];
+      Arrays.fill(this.byteArrays[i], (byte) i);
+
+      ArrayList<String> items = new ArrayList<String>(this.size);
+
+      for (int j = 0; j < this.size; j++) {
+        items.add(Integer.toString(i * this.size + j));
+      }
+
+      this.itemLists.add(items);
+    }
+
+    this.sample = new SizedSampleSecured();
+    this.sample.setPassphraseProvider(new BenchmarkPassphraseProvider());
+
+    this.sample.setText(this.texts[0]);
+    this.sample.setBytes(this.byteArrays[0]);
+    this.sample.setItems(this.itemLists.get(0));
+
+    this.textSecured = this.sample.getTextSecured();
+    this.bytesSecured = this.sample.getBytesSecured();
+    this.itemsSecured = this.sample.getItemsSecured();
+  }
+
+  /**
+   * @return The decrypted string.
+   * 
+   * @throws Exception Thrown when the string cannot be decrypted.
+   */
+  @Benchmark
+  public String getTextDecrypting() throws Exception {
+    this.sample.setTextSecured(this.textSecured);
+    return this.sample.getText();
+  }
+
+  /**
+   * @return The cached string.
+   * 
+   * @throws Exception Thrown when the string cannot be decrypted.
+   */
+  @Benchmark
+  public String getTextCached() throws Exception {
+    return this.sample.getText();
+  }
+
+  /**
+   * @return The secured string.
+   * 
+   * @throws Exception Thrown when the string cannot be encrypted.
+   */
+  @Benchmark
+  public String setText() throws Exception {
+    this.sample.setText(this.texts[this.invocations++ & 1]);
+    return this.sample.getTextSecured();
+  }
+
+  /**
+   * @return The decrypted byte array.
+   * 
+   * @throws Exception Thrown when the byte array cannot be decrypted.
+   */
+  @Benchmark
+  public byte[] getBytesDecrypting() throws Exception {
+    this.sample.setBytesSecured(this.bytesSecured);
+    return this.sample.getBytes();
+  }
+
+  /**
+   * @return The cached byte array.
+   * 
+   * @throws Exception Thrown when the byte array cannot be decrypted.
+   */
+  @Benchmark
+  public byte[] getBytesCached() throws Exception {
+    return this.sample.getBytes();
+  }
+
+  /**
+   * @return The secured byte array.
+   * 
+   * @throws Exception Thrown when the byte array cannot be encrypted.
+   */
+  @Benchmark
+  public String setBytes() throws Exception {
+    this.sample.setBytes(this.byteArrays[this.invocations++ & 1]);
+    return this.sample.getBytesSecured();
+  }
+
+  /**
+   * @return The decrypted list.
+   * 
+   * @throws Exception Thrown when the list cannot be decrypted.
+   */
+  @Benchmark
+  public ArrayList<String> getItemsDecrypting() throws Exception {
+    this.sample.setItemsSecured(this.itemsSecured);
+    return this.sample.getItems();
+  }
+
+  /**
+   * @return The cached list.
+   * 
+   * @throws Exception Thrown when the list cannot be decrypted.
+   */
+  @Benchmark
+  public ArrayList<String> getItemsCached() throws Exception {
+    return this.sample.getItems();
+  }
+
+  /**
+   * @return The secured list.
+   * 
+   * @throws Exception Thrown when the list cannot be encrypted.
+   */
+  @Benchmark
+  public String setItems() throws Exception {
+    this.sample.setItems(this.itemLists.get(this.invocations++ & 1));
+    return this.sample.getItemsSecured();
+  }
+}
@@ -0,0 +1,27 @@
+package net.craswell.security.benchmark.model;
+
+import java.math.BigDecimal;
+
+import net.craswell.security.annotations.Confidential;
+import net.craswell.security.annotations.RequiresConfidentiality;
+
+/**
+ * Template of the secured class benchmarked for fixed size confidential values.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+@RequiresConfidentiality
+public class ScalarSample {
+  /**
+   * A confidential primitive.
+   */
+  @Confidential
+  private long number;
+
+  /**
+   * A confidential decimal.
+   */
+  @Confidential
+  private BigDecimal amount;
+}
@@ -0,0 +1,33 @@
+package net.craswell.security.benchmark.model;
+
+import java.util.ArrayList;
+
+import net.craswell.security.annotations.Confidential;
+import net.craswell.security.annotations.RequiresConfidentiality;
+
+/**
+ * Template of the secured class benchmarked for confidential values of varying sizes.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+@RequiresConfidentiality
+public class SizedSample {
+  /**
+   * A confidential string.
+   */
+  @Confidential
+  private String text;
+
+  /**
+   * A confidential byte array.
+   */
+  @Confidential
+  private byte[] bytes;
+
+  /**
+   * A confidential object stored with Java serialization.
+   */
+  @Confidential
+  private ArrayList<String> items;
+}
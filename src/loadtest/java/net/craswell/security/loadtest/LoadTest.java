@@ -0,0 +1,477 @@
+package net.craswell.security.loadtest;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+
+import net.craswell.common.encryption.PassphraseProvider;
+import net.craswell.security.loadtest.model.generated.LoadTestCustomerSecured;
+
+/**
+ * Measures the generated secured entities in a persistence pipeline.
+ * 
+ * For each thread count, the load test creates an in-memory H2 database, persists the entities
+ * through Hibernate with JDBC batching, one transaction per batch, then reloads them read-only by
+ * identifier range and decrypts every confidential field. Each phase reports its throughput, the
+ * percentiles of its transaction durations, the memory allocated by its worker threads and the
+ * garbage collection time. A smaller run at the highest thread count warms the JVM up first.
+ * 
+ * Arguments: the number of entities (1000000 by default), the comma separated thread counts
+ * (1,2,4,8 by default) and the number of entities per transaction (100 by default).
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class LoadTest {
+  /**
+   * The maximum number of entities of the warm-up run.
+   */
+  private static final int WARMUP_ENTITIES = 50000;
+
+  /**
+   * The mapping of the secured entity.
+   */
+  private static final String MAPPING_RESOURCE = "net/craswell/security/loadtest/orm.xml";
+
+  /**
+   * The query loading a range of entities.
+   */
+  private static final String RANGE_QUERY =
+      "from LoadTestCustomerSecured c where c.id >= :firstId and c.id < :lastId";
+
+  /**
+   * Provides the passphrase of the entities.
+   */
+  private static final PassphraseProvider PASSPHRASE_PROVIDER = () -> "load test passphrase";
+
+  /**
+   * Prevents instantiation.
+   */
+  private LoadTest() {
+  }
+
+  /**
+   * Runs the load test.
+   * 
+   * @param args The number of entities, the thread counts and the number of entities per
+   *        transaction.
+   * 
+   * @throws Exception Thrown when an entity cannot be persisted or reloaded.
+   */
+  public static void main(String[] args) throws Exception {
+    int entityCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int[] threadCounts = args.length > 1
+        ? Arrays.stream(args[1].split(",")).mapToInt(Integer::parseInt).toArray()
+        : new int[] {1, 2, 4, 8};
+    int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+    System.out.println(String.format(
+        "Persisting and reloading %1$,d entities, %2$d per transaction, with %3$s threads.",
+        entityCount,
+        batchSize,
+        Arrays.toString(threadCounts)));
+
+    run(
+        Math.min(entityCount, WARMUP_ENTITIES),
+        Arrays.stream(threadCounts).max().orElse(1),
+        batchSize,
+        false);
+
+    for (int threadCount : threadCounts) {
+      run(entityCount, threadCount, batchSize, true);
+    }
+  }
+
+  /**
+   * Persists and reloads the entities with a new database.
+   * 
+   * @param entityCount The number of entities.
+   * @param threadCount The number of worker threads.
+   * @param batchSize The number of entities per transaction.
+   * @param report True to print the measurements; false to only warm up.
+   * 
+   * @throws Exception Thrown when an entity cannot be persisted or reloaded.
+   */
+  private static void run(
+      int entityCount,
+      int threadCount,
+      int batchSize,
+      boolean report) throws Exception {
+    try (SessionFactory sessionFactory = constructSessionFactory(threadCount, batchSize)) {
+      PhaseResult writeResult = measure(
+          "write",
+          sessionFactory,
+          entityCount,
+          threadCount,
+          batchSize,
+          LoadTest::persist);
+
+      PhaseResult readResult = measure(
+          "read",
+          sessionFactory,
+          entityCount,
+          threadCount,
+          batchSize,
+          LoadTest::reload);
+
+      if (report) {
+        System.out.println(writeResult);
+        System.out.println(readResult);
+      }
+    }
+  }
+
+  /**
+   * Creates the session factory of a new in-memory database.
+   * 
+   * @param threadCount The number of worker threads, each holding a pooled connection.
+   * @param batchSize The JDBC batch size.
+   * 
+   * @return The session factory.
+   */
+  private static SessionFactory constructSessionFactory(
+      int threadCount,
+      int batchSize) {
+    StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+        .applySetting(AvailableSettings.DRIVER, "org.h2.Driver")
+        .applySetting(
+            AvailableSettings.URL,
+            String.format("jdbc:h2:mem:loadtest%1$d", System.nanoTime()))
+        .applySetting(AvailableSettings.USER, "sa")
+        .applySetting(AvailableSettings.PASS, "")
+        .applySetting(AvailableSettings.DIALECT, "org.hibernate.dialect.H2Dialect")
+        .applySetting(AvailableSettings.HBM2DDL_AUTO, "create")
+        .applySetting(AvailableSettings.POOL_SIZE, Integer.toString(threadCount))
+        .applySetting(AvailableSettings.STATEMENT_BATCH_SIZE, Integer.toString(batchSize))
+        .applySetting(AvailableSettings.ORDER_INSERTS, "true")
+        .build();
+
+    try {
+      return new MetadataSources(registry)
+          .addResource(MAPPING_RESOURCE)
+          .buildMetadata()
+          .buildSessionFactory();
+    } catch (RuntimeException e) {
+      StandardServiceRegistryBuilder.destroy(registry);
+      throw e;
+    }
+  }
+
+  /**
+   * Runs a phase on worker threads, each processing a contiguous range of identifiers one
+   * transaction at a time, and measures it.
+   * 
+   * @param phase The phase name.
+   * @param sessionFactory The session factory.
+   * @param entityCount The number of entities.
+   * @param threadCount The number of worker threads.
+   * @param batchSize The number of entities per transaction.
+   * @param work The work done in each transaction.
+   * 
+   * @return The measurements of the phase.
+   * 
+   * @throws Exception Thrown when the work fails.
+   */
+  private static PhaseResult measure(
+      String phase,
+      SessionFactory sessionFactory,
+      int entityCount,
+      int threadCount,
+      int batchSize,
+      TransactionWork work) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+    try {
+      List<Future<WorkerResult>> workers = new ArrayList<Future<WorkerResult>>(threadCount);
+      long gcTimeMillis = -getGcTimeMillis();
+      long gcCount = -getGcCount();
+      long startTime = System.nanoTime();
+
+      for (int i = 0; i < threadCount; i++) {
+        long firstId = (long) entityCount * i / threadCount;
+        long lastId = (long) entityCount * (i + 1) / threadCount;
+
+        workers.add(executor.submit(
+            () -> runWorker(sessionFactory, firstId, lastId, batchSize, work)));
+      }
+
+      List<WorkerResult> workerResults = new ArrayList<WorkerResult>(threadCount);
+
+      for (Future<WorkerResult> worker : workers) {
+        try {
+          workerResults.add(worker.get());
+        } catch (ExecutionException e) {
+          throw e.getCause() instanceof Exception
+              ? (Exception) e.getCause()
+              : e;
+        }
+      }
+
+      long elapsedNanos = System.nanoTime() - startTime;
+      gcTimeMillis += getGcTimeMillis();
+      gcCount += getGcCount();
+
+      long allocatedBytes = 0L;
+      int latencyCount = 0;
+
+      for (WorkerResult workerResult : workerResults) {
+        allocatedBytes = allocatedBytes < 0L || workerResult.allocatedBytes < 0L
+            ? -1L
+            : allocatedBytes + workerResult.allocatedBytes;
+        latencyCount += workerResult.latencies.length;
+      }
+
+      long[] latencies = new long[latencyCount];
+      int position = 0;
+
+      for (WorkerResult workerResult : workerResults) {
+        System.arraycopy(
+            workerResult.latencies,
+            0,
+            latencies,
+            position,
+            workerResult.latencies.length);
+        position += workerResult.latencies.length;
+      }
+
+      return new PhaseResult(
+          phase,
+          threadCount,
+          entityCount,
+          batchSize,
+          elapsedNanos,
+          latencies,
+          allocatedBytes,
+          gcTimeMillis,
+          gcCount);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Processes a range of identifiers one transaction at a time.
+   * 
+   * @param sessionFactory The session factory.
+   * @param firstId The first identifier.
+   * @param lastId The identifier following the last one.
+   * @param batchSize The number of entities per transaction.
+   * @param work The work done in each transaction.
+   * 
+   * @return The measurements of the worker.
+   * 
+   * @throws Exception Thrown when the work fails.
+   */
+  private static WorkerResult runWorker(
+      SessionFactory sessionFactory,
+      long firstId,
+      long lastId,
+      int batchSize,
+      TransactionWork work) throws Exception {
+    long[] latencies = new long[(int) ((lastId - firstId + batchSize - 1) / batchSize)];
+    long allocatedBefore = getAllocatedBytes();
+    int transactionCount = 0;
+
+    for (long batchFirstId = firstId; batchFirstId < lastId; batchFirstId += batchSize) {
+      long batchLastId = Math.min(batchFirstId + batchSize, lastId);
+      long startTime = System.nanoTime();
+
+      try (Session session = sessionFactory.openSession()) {
+        Transaction transaction = session.beginTransaction();
+
+        try {
+          work.run(session, batchFirstId, batchLastId);
+          transaction.commit();
+        } catch (Exception e) {
+          transaction.rollback();
+          throw e;
+        }
+      }
+
+      latencies[transactionCount++] = System.nanoTime() - startTime;
+    }
+
+    long allocatedAfter = getAllocatedBytes();
+
+    return new WorkerResult(
+        latencies,
+        allocatedBefore < 0L || allocatedAfter < 0L
+            ? -1L
+            : allocatedAfter - allocatedBefore);
+  }
+
+  /**
+   * Persists new entities, encrypting their confidential fields.
+   * 
+   * @param session The session.
+   * @param firstId The first identifier.
+   * @param lastId The identifier following the last one.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted.
+   */
+  private static void persist(
+      Session session,
+      long firstId,
+      long lastId) throws Exception {
+    for (long id = firstId; id < lastId; id++) {
+      LoadTestCustomerSecured customer = new LoadTestCustomerSecured();
+      customer.setPassphraseProvider(PASSPHRASE_PROVIDER);
+
+      customer.setId(id);
+      customer.setName("Customer " + id);
+      customer.setEmail("customer" + id + "@example.com");
+      customer.setBalance(BigDecimal.valueOf(id, 2));
+      customer.setBirthDate(LocalDate.ofEpochDay(id % 20000));
+
+      session.persist(customer);
+    }
+  }
+
+  /**
+   * Reloads entities read-only, decrypting their confidential fields.
+   * 
+   * @param session The session.
+   * @param firstId The first identifier.
+   * @param lastId The identifier following the last one.
+   * 
+   * @throws Exception Thrown when a value cannot be decrypted.
+   */
+  private static void reload(
+      Session session,
+      long firstId,
+      long lastId) throws Exception {
+    List<LoadTestCustomerSecured> customers = session
+        .createQuery(RANGE_QUERY, LoadTestCustomerSecured.class)
+        .setParameter("firstId", firstId)
+        .setParameter("lastId", lastId)
+        .setReadOnly(true)
+        .getResultList();
+
+    if (customers.size() != lastId - firstId) {
+      throw new IllegalStateException(String.format(
+          "Expected %1$d entities from %2$d, found %3$d.",
+          lastId - firstId,
+          firstId,
+          customers.size()));
+    }
+
+    for (LoadTestCustomerSecured customer : customers) {
+      customer.setPassphraseProvider(PASSPHRASE_PROVIDER);
+
+      if (customer.getName() == null
+          || customer.getEmail() == null
+          || customer.getBalance() == null
+          || customer.getBirthDate() == null) {
+        throw new IllegalStateException(String.format(
+            "The entity %1$d was not reloaded.",
+            customer.getId()));
+      }
+    }
+  }
+
+  /**
+   * @return The number of bytes allocated by the current thread, or -1 if the JVM does not measure
+   *         it.
+   */
+  private static long getAllocatedBytes() {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+
+    if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+      return -1L;
+    }
+
+    return ((com.sun.management.ThreadMXBean) threadBean)
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * @return The time spent collecting garbage since the JVM started, in milliseconds.
+   */
+  private static long getGcTimeMillis() {
+    long gcTimeMillis = 0L;
+
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      gcTimeMillis += Math.max(0L, collector.getCollectionTime());
+    }
+
+    return gcTimeMillis;
+  }
+
+  /**
+   * @return The number of garbage collections since the JVM started.
+   */
+  private static long getGcCount() {
+    long gcCount = 0L;
+
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      gcCount += Math.max(0L, collector.getCollectionCount());
+    }
+
+    return gcCount;
+  }
+
+  /**
+   * The work done in the transaction of a batch of entities.
+   */
+  @FunctionalInterface
+  private interface TransactionWork {
+    /**
+     * Does the work for a range of identifiers.
+     * 
+     * @param session The session.
+     * @param firstId The first identifier.
+     * @param lastId The identifier following the last one.
+     * 
+     * @throws Exception Thrown when the work fails.
+     */
+    void run(
+        Session session,
+        long firstId,
+        long lastId) throws Exception;
+  }
+
+  /**
+   * The measurements of a worker thread.
+   */
+  private static final class WorkerResult {
+    /**
+     * The duration of each transaction, in nanoseconds.
+     */
+    private final long[] latencies;
+
+    /**
+     * The number of bytes allocated, or -1 if the JVM does not measure it.
+     */
+    private final long allocatedBytes;
+
+    /**
+     * Initializes a new instance of the WorkerResult class.
+     * 
+     * @param latencies The duration of each transaction, in nanoseconds.
+     * @param allocatedBytes The number of bytes allocated, or -1 if the JVM does not measure it.
+     */
+    private WorkerResult(
+        long[] latencies,
+        long allocatedBytes) {
+      this.latencies = latencies;
+      this.allocatedBytes = allocatedBytes;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package net.craswell.security.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The measurements of one phase of the load test at one thread count.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class PhaseResult {
+  /**
+   * The number of bytes per mebibyte.
+   */
+  private static final double BYTES_PER_MEBIBYTE = 1024d * 1024d;
+
+  /**
+   * The phase name.
+   */
+  private final String phase;
+
+  /**
+   * The number of worker threads.
+   */
+  private final int threadCount;
+
+  /**
+   * The number of entities processed.
+   */
+  private final long entityCount;
+
+  /**
+   * The number of entities per transaction.
+   */
+  private final int batchSize;
+
+  /**
+   * The time elapsed, in nanoseconds.
+   */
+  private final long elapsedNanos;
+
+  /**
+   * The duration of each transaction, in nanoseconds, sorted.
+   */
+  private final long[] latencies;
+
+  /**
+   * The number of bytes allocated by the worker threads, or -1 if the JVM does not measure it.
+   */
+  private final long allocatedBytes;
+
+  /**
+   * The time spent collecting garbage, in milliseconds.
+   */
+  private final long gcTimeMillis;
+
+  /**
+   * The number of garbage collections.
+   */
+  private final long gcCount;
+
+  /**
+   * Initializes a new instance of the PhaseResult class.
+   * 
+   * @param phase The phase name.
+   * @param threadCount The number of worker threads.
+   * @param entityCount The number of entities processed.
+   * @param batchSize The number of entities per transaction.
+   * @param elapsedNanos The time elapsed, in nanoseconds.
+   * @param latencies The duration of each transaction, in nanoseconds.
+   * @param allocatedBytes The number of bytes allocated by the worker threads, or -1 if the JVM
+   *        does not measure it.
+   * @param gcTimeMillis The time spent collecting garbage, in milliseconds.
+   * @param gcCount The number of garbage collections.
+   */
+  public PhaseResult(
+      String phase,
+      int threadCount,
+      long entityCount,
+      int batchSize,
+      long elapsedNanos,
+      long[] latencies,
+      long allocatedBytes,
+      long gcTimeMillis,
+      long gcCount) {
+    this.phase = phase;
+    this.threadCount = threadCount;
+    this.entityCount = entityCount;
+    this.batchSize = batchSize;
+    this.elapsedNanos = elapsedNanos;
+    this.latencies = latencies.clone();
+    this.allocatedBytes = allocatedBytes;
+    this.gcTimeMillis = gcTimeMillis;
+    this.gcCount = gcCount;
+
+    Arrays.sort(this.latencies);
+  }
+
+  /**
+   * @return The number of entities processed per second.
+   */
+  public double getEntitiesPerSecond() {
+    return this.elapsedNanos == 0L
+        ? 0d
+        : (double) this.entityCount * TimeUnit.SECONDS.toNanos(1) / this.elapsedNanos;
+  }
+
+  /**
+   * Gets a percentile of the transaction durations.
+   * 
+   * @param percentile The percentile, between 0 and 100.
+   * 
+   * @return The duration, in nanoseconds.
+   */
+  public long getLatencyPercentile(double percentile) {
+    if (this.latencies.length == 0) {
+      return 0L;
+    }
+
+    int index = (int) Math.ceil(percentile / 100d * this.latencies.length) - 1;
+
+    return this.latencies[Math.max(0, Math.min(index, this.latencies.length - 1))];
+  }
+
+  /**
+   * @return The number of bytes allocated by the worker threads, or -1 if the JVM does not
+   *         measure it.
+   */
+  public long getAllocatedBytes() {
+    return this.allocatedBytes;
+  }
+
+  /**
+   * @return The time spent collecting garbage, in milliseconds.
+   */
+  public long getGcTimeMillis() {
+    return this.gcTimeMillis;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return String.format(
+        "%1$-5s threads %2$2d: %3$,d entities in %4$,d ms, %5$,.0f entities/s; "
+            + "ms per %6$d-entity transaction p50 %7$.2f p90 %8$.2f p99 %9$.2f p99.9 %10$.2f "
+            + "max %11$.2f; allocated %12$s; GC %13$,d ms in %14$d collections",
+        this.phase,
+        this.threadCount,
+        this.entityCount,
+        TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos),
+        this.getEntitiesPerSecond(),
+        this.batchSize,
+        toMillis(this.getLatencyPercentile(50d)),
+        toMillis(this.getLatencyPercentile(90d)),
+        toMillis(this.getLatencyPercentile(99d)),
+        toMillis(this.getLatencyPercentile(99.9d)),
+        toMillis(this.getLatencyPercentile(100d)),
+        this.allocatedBytes < 0L
+            ? "unknown"
+            : String.format(
+                "%1$,.0f MiB (%2$,d bytes per entity)",
+                this.allocatedBytes / BYTES_PER_MEBIBYTE,
+                this.entityCount == 0L ? 0L : this.allocatedBytes / this.entityCount),
+        this.gcTimeMillis,
+        this.gcCount);
+  }
+
+  /**
+   * Converts a duration to fractional milliseconds.
+   * 
+   * @param nanos The duration, in nanoseconds.
+   * 
+   * @return The duration, in milliseconds.
+   */
+  private static double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
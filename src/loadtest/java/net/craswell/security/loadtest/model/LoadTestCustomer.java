@@ -0,0 +1,47 @@
+package net.craswell.security.loadtest.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import net.craswell.security.annotations.Confidential;
+import net.craswell.security.annotations.RequiresConfidentiality;
+
+/**
+ * Template of the secured entity persisted and reloaded by the load test.
+ * 
+ * The entity is mapped by orm.xml, so that the template needs no persistence annotations.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+@RequiresConfidentiality
+public class LoadTestCustomer {
+  /**
+   * The identifier, assigned by the load test.
+   */
+  private long id;
+
+  /**
+   * A confidential name.
+   */
+  @Confidential
+  private String name;
+
+  /**
+   * A confidential email address, with a blind index.
+   */
+  @Confidential(searchable = true)
+  private String email;
+
+  /**
+   * A confidential decimal.
+   */
+  @Confidential
+  private BigDecimal balance;
+
+  /**
+   * A confidential date.
+   */
+  @Confidential
+  private LocalDate birthDate;
+}
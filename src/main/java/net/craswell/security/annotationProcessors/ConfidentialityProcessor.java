@@ -1,7 +1,16 @@
 package net.craswell.security.annotationProcessors;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.annotation.Generated;
 import javax.annotation.processing.AbstractProcessor;
@@ -10,6 +19,7 @@ import javax.annotation.processing.Messager;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.annotation.processing.RoundEnvironment;
 import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
 import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
@@ -17,11 +27,15 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.util.Elements;
 import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileObject;
 
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.JavaFile;
 
 import net.craswell.security.annotations.RequiresConfidentiality;
+import net.craswell.security.annotations.codegen.SecuredClassRegistryGenerator;
 import net.craswell.security.annotations.codegen.SecuredPojoGenerator;
+import net.craswell.security.annotations.codegen.SecuredPojoGeneratorOptions;
 
 /**
  * Processes elements found with supported attributes.
@@ -33,6 +47,19 @@ import net.craswell.security.annotations.codegen.SecuredPojoGenerator;
 @SupportedAnnotationTypes(value = {
     "net.craswell.security.annotations.Confidential",
     "net.craswell.security.annotations.RequiresConfidentiality"})
+@SupportedOptions(value = {
+    SecuredPojoGeneratorOptions.CACHE_OPTION,
+    SecuredPojoGeneratorOptions.STORAGE_OPTION,
+    SecuredPojoGeneratorOptions.CONVERTERS_OPTION,
+    SecuredPojoGeneratorOptions.VERBOSE_OPTION,
+    SecuredPojoGeneratorOptions.PARALLELISM_OPTION,
+    SecuredPojoGeneratorOptions.METRICS_OPTION,
+    SecuredPojoGeneratorOptions.WRITE_BEHIND_OPTION,
+    SecuredPojoGeneratorOptions.LOW_ALLOCATION_OPTION,
+    SecuredPojoGeneratorOptions.ENGINE_OPTION,
+    SecuredPojoGeneratorOptions.REGISTRY_OPTION,
+    SecuredPojoGeneratorOptions.THREAD_SAFE_OPTION,
+    SecuredPojoGeneratorOptions.PASSPHRASE_CACHE_OPTION})
 public class ConfidentialityProcessor
     extends AbstractProcessor {
   /**
@@ -55,6 +82,48 @@ public class ConfidentialityProcessor
    */
   private Elements elementUtils;
 
+  /**
+   * The qualified names of the template classes already generated by this processor.
+   */
+  private final Set<String> processedTypeNames = new HashSet<String>();
+
+  /**
+   * The Gradle option declaring that the processor is isolating.
+   */
+  private static final String GRADLE_ISOLATING_OPTION = "org.gradle.annotation.processing.isolating";
+
+  /**
+   * The Gradle option declaring that the processor is aggregating.
+   */
+  private static final String GRADLE_AGGREGATING_OPTION =
+      "org.gradle.annotation.processing.aggregating";
+
+  /**
+   * Generates the registry listing the generated secured classes.
+   */
+  private final SecuredClassRegistryGenerator registryGenerator =
+      new SecuredClassRegistryGenerator();
+
+  /**
+   * The template classes listed in the registry.
+   */
+  private final List<TypeElement> registryTemplates = new ArrayList<TypeElement>();
+
+  /**
+   * The names of the secured classes listed in the registry.
+   */
+  private final List<ClassName> registrySecuredClassNames = new ArrayList<ClassName>();
+
+  /**
+   * Indicates whether the registry has been written.
+   */
+  private boolean registryWritten = false;
+
+  /**
+   * Indicates whether the processor options are valid; no class is generated otherwise.
+   */
+  private boolean optionsValid = true;
+
   /*
    * (non-Javadoc)
    * 
@@ -68,6 +137,31 @@ public class ConfidentialityProcessor
     this.elementUtils = processingEnv.getElementUtils();
     this.filer = processingEnv.getFiler();
     this.messager = processingEnv.getMessager();
+
+    try {
+      this.securedPojoGenerator.setOptions(
+          SecuredPojoGeneratorOptions.fromProcessorOptions(processingEnv.getOptions()));
+    } catch (IllegalArgumentException e) {
+      this.messager.printMessage(Kind.ERROR, e.getMessage());
+      this.optionsValid = false;
+    }
+  }
+
+  /**
+   * Gets the supported options, including the Gradle incremental processing option: the processor
+   * is isolating, unless it generates a registry, which aggregates all the template classes.
+   * 
+   * @return The supported options.
+   */
+  @Override
+  public Set<String> getSupportedOptions() {
+    Set<String> supportedOptions = new HashSet<String>(super.getSupportedOptions());
+
+    supportedOptions.add(this.securedPojoGenerator.getOptions().getRegistryClassName() == null
+        ? GRADLE_ISOLATING_OPTION
+        : GRADLE_AGGREGATING_OPTION);
+
+    return Collections.unmodifiableSet(supportedOptions);
   }
 
   /*
@@ -80,6 +174,12 @@ public class ConfidentialityProcessor
   public boolean process(
       Set<? extends TypeElement> annotations,
       RoundEnvironment roundEnv) {
+    if (!this.optionsValid) {
+      return true;
+    }
+
+    List<TypeElement> templates = new ArrayList<TypeElement>();
+    List<String> destinationPackageNames = new ArrayList<String>();
 
     for (Element elem : roundEnv.getElementsAnnotatedWith(RequiresConfidentiality.class)) {
       if (elem.getAnnotation(Generated.class) != null) {
@@ -90,38 +190,239 @@ public class ConfidentialityProcessor
 
         TypeElement typeElement = (TypeElement) elem;
 
-        String noteMessage = String.format(
-            "Creating proxy class for %1$s => %1$sSecured.",
-            typeElement.getQualifiedName().toString());
+        if (!this.processedTypeNames.add(typeElement.getQualifiedName().toString())) {
+          continue;
+        }
+
+        if (!this.securedPojoGenerator.checkTemplate(typeElement, this.messager)) {
+          continue;
+        }
 
-        this.messager.printMessage(
-            Kind.NOTE,
-            noteMessage);
+        if (this.securedPojoGenerator.getOptions().isVerbose()) {
+          String noteMessage = String.format(
+              "Creating proxy class for %1$s => %1$sSecured.",
+              typeElement.getQualifiedName().toString());
 
-        JavaFile jf = null;
+          this.messager.printMessage(
+              Kind.NOTE,
+              noteMessage);
+        }
 
-        String destinationPackageName = String.format(
+        templates.add(typeElement);
+
+        destinationPackageNames.add(String.format(
             "%1$s.generated",
             this.elementUtils.getPackageOf(typeElement)
                 .getQualifiedName()
-                  .toString());
-
-        jf = this.securedPojoGenerator.constructPojoSourceFileFromTypeElement(
-            destinationPackageName,
-            typeElement);
-
-        if (jf != null) {
-          try {
-            jf.writeTo(this.filer);
-          } catch (IOException e) {
-            this.messager.printMessage(Kind.ERROR, "Exception occurred.");
-            this.messager.printMessage(Kind.ERROR, e.getMessage());
-            e.printStackTrace();
-          }
+                  .toString()));
+      }
+    }
+
+    List<GeneratedSource> generatedSources = this.constructSourceFiles(
+        templates,
+        destinationPackageNames);
+
+    for (int i = 0; i < templates.size(); i++) {
+      this.registryTemplates.add(templates.get(i));
+      this.registrySecuredClassNames.add(ClassName.get(
+          destinationPackageNames.get(i),
+          templates.get(i).getSimpleName().toString() + "Secured"));
+    }
+
+    // The registry is written once no round brings new templates, before the last round, so that
+    // it is compiled with the secured classes.
+    if (templates.isEmpty() && !roundEnv.processingOver()) {
+      GeneratedSource registrySource = this.constructRegistrySourceFile();
+
+      if (registrySource != null) {
+        generatedSources.add(registrySource);
+      }
+    }
+
+    for (GeneratedSource generatedSource : generatedSources) {
+      if (generatedSource != null) {
+        try {
+          this.writeSourceFile(generatedSource);
+        } catch (IOException e) {
+          this.messager.printMessage(Kind.ERROR, "Exception occurred.");
+          this.messager.printMessage(Kind.ERROR, e.getMessage());
+          e.printStackTrace();
         }
       }
     }
 
     return true;
   }
+
+  /**
+   * Constructs the registry source file listing the secured classes generated so far, unless no
+   * registry is configured or it has already been written.
+   * 
+   * @return The registry source, or null if none is to be written.
+   */
+  private GeneratedSource constructRegistrySourceFile() {
+    String registryClassName = this.securedPojoGenerator.getOptions().getRegistryClassName();
+
+    if (registryClassName == null || this.registryWritten) {
+      return null;
+    }
+
+    this.registryWritten = true;
+
+    JavaFile jf = this.registryGenerator.constructRegistrySourceFile(
+        registryClassName,
+        this.registrySecuredClassNames,
+        this.registryTemplates);
+
+    return new GeneratedSource(jf, jf.toString());
+  }
+
+  /**
+   * Writes a rendered source file through the filer.
+   * 
+   * @param generatedSource The generated source.
+   * 
+   * @throws IOException Thrown when the source file cannot be created or written.
+   */
+  private void writeSourceFile(GeneratedSource generatedSource) throws IOException {
+    JavaFile jf = generatedSource.getJavaFile();
+
+    String fileName = jf.packageName.isEmpty()
+        ? jf.typeSpec.name
+        : jf.packageName + "." + jf.typeSpec.name;
+
+    JavaFileObject sourceFile = this.filer.createSourceFile(
+        fileName,
+        jf.typeSpec.originatingElements.toArray(new Element[0]));
+
+    try (Writer writer = sourceFile.openWriter()) {
+      writer.write(generatedSource.getSource());
+    } catch (IOException e) {
+      sourceFile.delete();
+      throw e;
+    }
+  }
+
+  /**
+   * Constructs and renders the secured source files of template classes, in the order of the
+   * templates.
+   * 
+   * The compiler's symbols are not thread safe, so the source files are always constructed on the
+   * processor thread. When more than one thread is configured, they are then rendered
+   * concurrently, which only involves the generated specifications. Writing the files through the
+   * filer is left to the caller.
+   * 
+   * @param templates The template classes.
+   * @param destinationPackageNames The package of the secured class of each template.
+   * 
+   * @return The generated sources.
+   */
+  private List<GeneratedSource> constructSourceFiles(
+      List<TypeElement> templates,
+      List<String> destinationPackageNames) {
+    List<JavaFile> javaFiles = new ArrayList<JavaFile>(templates.size());
+
+    for (int i = 0; i < templates.size(); i++) {
+      javaFiles.add(this.securedPojoGenerator.constructPojoSourceFileFromTypeElement(
+          destinationPackageNames.get(i),
+          templates.get(i)));
+    }
+
+    List<GeneratedSource> generatedSources = new ArrayList<GeneratedSource>(javaFiles.size());
+    int parallelism = Math.min(
+        this.securedPojoGenerator.getOptions().getParallelism(),
+        javaFiles.size());
+
+    if (parallelism <= 1) {
+      for (JavaFile jf : javaFiles) {
+        generatedSources.add(renderSourceFile(jf));
+      }
+
+      return generatedSources;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    List<Future<GeneratedSource>> futures =
+        new ArrayList<Future<GeneratedSource>>(javaFiles.size());
+
+    try {
+      for (JavaFile jf : javaFiles) {
+        futures.add(executor.submit(() -> renderSourceFile(jf)));
+      }
+
+      for (Future<GeneratedSource> future : futures) {
+        generatedSources.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while rendering secured classes.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return generatedSources;
+  }
+
+  /**
+   * Renders a secured source file.
+   * 
+   * @param jf The secured source file, or null if the generator produced none.
+   * 
+   * @return The generated source, or null if the generator produced none.
+   */
+  private static GeneratedSource renderSourceFile(JavaFile jf) {
+    return jf != null
+        ? new GeneratedSource(jf, jf.toString())
+        : null;
+  }
+
+  /**
+   * A secured source file and its rendered source code.
+   */
+  private static final class GeneratedSource {
+    /**
+     * The secured source file.
+     */
+    private final JavaFile javaFile;
+
+    /**
+     * The rendered source code.
+     */
+    private final String source;
+
+    /**
+     * Initializes a new instance of the GeneratedSource class.
+     * 
+     * @param javaFile The secured source file.
+     * @param source The rendered source code.
+     */
+    private GeneratedSource(JavaFile javaFile, String source) {
+      this.javaFile = javaFile;
+      this.source = source;
+    }
+
+    /**
+     * @return The secured source file.
+     */
+    private JavaFile getJavaFile() {
+      return this.javaFile;
+    }
+
+    /**
+     * @return The rendered source code.
+     */
+    private String getSource() {
+      return this.source;
+    }
+  }
 }
@@ -14,4 +14,82 @@ import java.lang.annotation.Target;
 @Target(ElementType.FIELD)
 @Retention(RetentionPolicy.CLASS)
 public @interface Confidential {
+  /**
+   * Indicates whether the generated getter may keep a transient decrypted copy of the value after
+   * the first read. Set to false for fields whose plaintext must never linger on the heap.
+   * 
+   * @return True if the decrypted value may be cached; false otherwise.
+   */
+  boolean cache() default true;
+
+  /**
+   * The representation of the secured (encrypted) field.
+   * 
+   * @return The storage of the secured field.
+   */
+  Storage storage() default Storage.DEFAULT;
+
+  /**
+   * Indicates whether a blind index column is generated alongside the secured field, allowing
+   * equality lookups without decrypting every row. The index reveals which rows share a value.
+   * 
+   * @return True if a blind index is generated; false otherwise.
+   */
+  boolean searchable() default false;
+
+  /**
+   * Indicates whether the serialized value is compressed before it is encrypted, when it is at
+   * least compressionThreshold bytes long and shrinks when compressed. Values written without
+   * compression remain readable. The ciphertext length reveals how well the value compresses.
+   * 
+   * @return True if large values are compressed; false otherwise.
+   */
+  boolean compress() default false;
+
+  /**
+   * The serialized length, in bytes, from which the value is compressed when compress is set.
+   * 
+   * @return The compression threshold.
+   */
+  int compressionThreshold() default 512;
+
+  /**
+   * The name of the group of confidential fields whose values are packed into one envelope, stored
+   * in a single secured field and encrypted and decrypted as one value. The envelope is decrypted
+   * when any field of the group is first read, and its values are cached, so grouped fields cannot
+   * disable the cache. The group name must not collide with the name of another field or group.
+   * The empty string leaves the field on its own.
+   * 
+   * @return The group name, a Java identifier; or the empty string.
+   */
+  String group() default "";
+
+  /**
+   * Indicates whether a byte array field is encrypted in chunks into a Blob, so that large values
+   * are never encrypted or decrypted as a whole. InputStream and Blob fields are always streamed.
+   * Streamed fields are neither cached, searchable, compressed nor deferred to the seal method.
+   * 
+   * @return True if the value is streamed; false otherwise.
+   */
+  boolean streaming() default false;
+
+  /**
+   * The representations available for secured fields.
+   */
+  enum Storage {
+    /**
+     * Uses the storage selected by the confidential.storage processor option, or TEXT if unset.
+     */
+    DEFAULT,
+
+    /**
+     * Stores the ciphertext as a Base64 encoded String.
+     */
+    TEXT,
+
+    /**
+     * Stores the ciphertext as a byte array, mapped to a binary column.
+     */
+    BINARY
+  }
 }
\ No newline at end of file
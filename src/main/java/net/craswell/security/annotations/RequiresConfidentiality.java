@@ -14,4 +14,14 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 @Retention(RetentionPolicy.CLASS)
 public @interface RequiresConfidentiality {
+  /**
+   * The encryption engine bound into the secured class: aes-cbc, aes-gcm, or the qualified name of
+   * an EncryptionEngine class with a static getInstance() method. The built-in engines read each
+   * other's ciphertext, so existing values stay readable when a class changes between them. The
+   * empty string uses the engine selected by the confidential.engine processor option, or aes-cbc
+   * if unset.
+   * 
+   * @return The encryption engine.
+   */
+  String engine() default "";
 }
\ No newline at end of file
@@ -0,0 +1,332 @@
+package net.craswell.security.annotations.codegen;
+
+import java.util.Base64;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.persistence.AttributeConverter;
+import javax.persistence.PersistenceException;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+
+import net.craswell.common.BinarySerializerException;
+import net.craswell.security.encryption.EncryptionException;
+import net.craswell.security.persistence.ConfidentialConverters;
+
+/**
+ * Creates JPA attribute converters encrypting confidential fields as they are written to and read
+ * from the database.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class AttributeConverterGenerator {
+  /**
+   * The suffix appended to the name of a converter.
+   */
+  private static final String SUFFIX = "Converter";
+
+  /**
+   * Selects the code converting confidential values to and from bytes.
+   */
+  private final ValueCodecSelector valueCodecSelector;
+
+  /**
+   * Creates the code reporting encryption and decryption measurements.
+   */
+  private final CryptoMetricsCodeGenerator cryptoMetricsCodeGenerator;
+
+  /**
+   * Initializes a new instance of the AttributeConverterGenerator class.
+   * 
+   * @param valueCodecSelector Selects the code converting confidential values to and from bytes.
+   * @param cryptoMetricsCodeGenerator Creates the code reporting encryption and decryption
+   *        measurements.
+   */
+  public AttributeConverterGenerator(
+      ValueCodecSelector valueCodecSelector,
+      CryptoMetricsCodeGenerator cryptoMetricsCodeGenerator) {
+    this.valueCodecSelector = valueCodecSelector;
+    this.cryptoMetricsCodeGenerator = cryptoMetricsCodeGenerator;
+  }
+
+  /**
+   * Builds the name of the converter for a confidential field.
+   * 
+   * @param field The confidential field.
+   * 
+   * @return The converter name.
+   */
+  public String constructConverterName(VariableElement field) {
+    String fieldName = field.getSimpleName().toString();
+
+    return String.format(
+        "%1$s%2$s%3$s",
+        Character.toUpperCase(fieldName.charAt(0)),
+        fieldName.substring(1),
+        SUFFIX);
+  }
+
+  /**
+   * Constructs the converter for a confidential field, as a nested class of the secured class.
+   * 
+   * @param field The confidential field.
+   * @param binaryStorage Indicates whether the column holds bytes rather than Base64 text.
+   * @param encryptionEngineFieldName The name of the secured class's encryption engine field.
+   * @param entityClassName The secured class, reported to the metrics when they are enabled.
+   * @param metricsEnabled Indicates whether the converter reports to CryptoMetrics.
+   * 
+   * @return The converter type specification.
+   */
+  public TypeSpec constructConverterTypeSpec(
+      VariableElement field,
+      boolean binaryStorage,
+      String encryptionEngineFieldName,
+      ClassName entityClassName,
+      boolean metricsEnabled) {
+    String fieldName = field.getSimpleName().toString();
+    TypeMirror fieldType = field.asType();
+    TypeName attributeTypeName = TypeName.get(fieldType).box();
+    TypeName columnTypeName = binaryStorage
+        ? ArrayTypeName.of(TypeName.BYTE)
+        : TypeName.get(String.class);
+
+    return TypeSpec.classBuilder(this.constructConverterName(field))
+        .addJavadoc(
+            "Encrypts the $L attribute when it is written to and read from the database.\n",
+            fieldName)
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .addSuperinterface(ParameterizedTypeName.get(
+            ClassName.get(AttributeConverter.class),
+            attributeTypeName,
+            columnTypeName))
+        .addMethod(this.constructConvertToDatabaseColumnMethod(
+            field,
+            attributeTypeName,
+            columnTypeName,
+            binaryStorage,
+            encryptionEngineFieldName,
+            metricsEnabled ? entityClassName : null,
+            fieldName))
+        .addMethod(this.constructConvertToEntityAttributeMethod(
+            field,
+            attributeTypeName,
+            columnTypeName,
+            binaryStorage,
+            encryptionEngineFieldName,
+            metricsEnabled ? entityClassName : null,
+            fieldName))
+        .build();
+  }
+
+  /**
+   * Constructs the method encrypting an attribute into its column value.
+   * 
+   * @param field The confidential field.
+   * @param attributeTypeName The attribute type.
+   * @param columnTypeName The column type.
+   * @param binaryStorage Indicates whether the column holds bytes rather than Base64 text.
+   * @param encryptionEngineFieldName The name of the secured class's encryption engine field.
+   * @param entityClassName The secured class reported to the metrics, or null if metrics are
+   *        disabled.
+   * @param fieldName The confidential field name.
+   * 
+   * @return The method specification.
+   */
+  private MethodSpec constructConvertToDatabaseColumnMethod(
+      VariableElement field,
+      TypeName attributeTypeName,
+      TypeName columnTypeName,
+      boolean binaryStorage,
+      String encryptionEngineFieldName,
+      ClassName entityClassName,
+      String fieldName) {
+    String attributeName = "attribute";
+    String binaryObjectName = "binaryObject";
+    String columnValueName = "columnValue";
+
+    CodeBlock ciphertext = CodeBlock.of(
+        "$L.encrypt($L, $T.getKey())",
+        encryptionEngineFieldName,
+        binaryObjectName,
+        ConfidentialConverters.class);
+
+    CodeBlock exceptionsCaught = this.valueCodecSelector.usesJavaSerialization(field.asType())
+        ? CodeBlock.of("$T | $T", EncryptionException.class, BinarySerializerException.class)
+        : CodeBlock.of("$T", EncryptionException.class);
+
+    CodeBlock columnValue = binaryStorage
+        ? ciphertext
+        : CodeBlock.of("$T.getEncoder().encodeToString($L)", Base64.class, ciphertext);
+
+    CodeBlock.Builder bodyBuilder = CodeBlock.builder()
+        .beginControlFlow("if ($L == null)", attributeName)
+        .addStatement("return null")
+        .endControlFlow()
+        .add("\n");
+
+    if (entityClassName != null) {
+      bodyBuilder.add(this.cryptoMetricsCodeGenerator.constructMeasurementStartCode());
+    }
+
+    bodyBuilder
+        .beginControlFlow("try")
+        .addStatement(
+            "byte[] $L = $L",
+            binaryObjectName,
+            this.valueCodecSelector.constructEncodeExpression(field, attributeName));
+
+    if (entityClassName != null) {
+      bodyBuilder
+          .addStatement(
+              "$T $L = $L",
+              columnTypeName,
+              columnValueName,
+              columnValue)
+          .add(this.cryptoMetricsCodeGenerator.constructEncryptionRecordingCode(
+              entityClassName,
+              fieldName,
+              CodeBlock.of("$L.length", binaryObjectName),
+              this.constructColumnValueLengthExpression(columnValueName, binaryStorage)))
+          .addStatement("return $L", columnValueName);
+    } else {
+      bodyBuilder.addStatement("return $L", columnValue);
+    }
+
+    bodyBuilder.nextControlFlow("catch ($L e)", exceptionsCaught);
+
+    if (entityClassName != null) {
+      bodyBuilder.add(this.cryptoMetricsCodeGenerator.constructEncryptionFailureRecordingCode(
+          entityClassName,
+          fieldName,
+          "e"));
+    }
+
+    return MethodSpec.methodBuilder("convertToDatabaseColumn")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .returns(columnTypeName)
+        .addParameter(attributeTypeName, attributeName)
+        .addCode(bodyBuilder
+            .addStatement(
+                "throw new $T($S, e)",
+                PersistenceException.class,
+                "Unable to encrypt the attribute.")
+            .endControlFlow()
+            .build())
+        .build();
+  }
+
+  /**
+   * Constructs the method decrypting a column value into its attribute.
+   * 
+   * A NULL column is read as null, or as the default value of a primitive attribute, which could
+   * not be assigned null.
+   * 
+   * @param field The confidential field.
+   * @param attributeTypeName The attribute type.
+   * @param columnTypeName The column type.
+   * @param binaryStorage Indicates whether the column holds bytes rather than Base64 text.
+   * @param encryptionEngineFieldName The name of the secured class's encryption engine field.
+   * @param entityClassName The secured class reported to the metrics, or null if metrics are
+   *        disabled.
+   * @param fieldName The confidential field name.
+   * 
+   * @return The method specification.
+   */
+  private MethodSpec constructConvertToEntityAttributeMethod(
+      VariableElement field,
+      TypeName attributeTypeName,
+      TypeName columnTypeName,
+      boolean binaryStorage,
+      String encryptionEngineFieldName,
+      ClassName entityClassName,
+      String fieldName) {
+    String columnValueName = "dbData";
+    String binaryObjectName = "binaryObject";
+
+    CodeBlock.Builder bodyBuilder = CodeBlock.builder()
+        .beginControlFlow("if ($L == null)", columnValueName)
+        .addStatement(
+            "return $L",
+            this.valueCodecSelector.constructDefaultValueExpression(TypeName.get(field.asType())))
+        .endControlFlow()
+        .add("\n");
+
+    if (entityClassName != null) {
+      bodyBuilder.add(this.cryptoMetricsCodeGenerator.constructMeasurementStartCode());
+    }
+
+    bodyBuilder
+        .beginControlFlow("try")
+        .addStatement(
+            "byte[] $L = $L.decrypt(\n$L,\n$T.getKey())",
+            binaryObjectName,
+            encryptionEngineFieldName,
+            binaryStorage
+                ? CodeBlock.of("$L", columnValueName)
+                : CodeBlock.of("$T.getDecoder().decode($L)", Base64.class, columnValueName),
+            ConfidentialConverters.class);
+
+    if (entityClassName != null) {
+      bodyBuilder.add(this.cryptoMetricsCodeGenerator.constructDecryptionRecordingCode(
+          entityClassName,
+          fieldName,
+          this.constructColumnValueLengthExpression(columnValueName, binaryStorage),
+          CodeBlock.of("$L.length", binaryObjectName)));
+    }
+
+    bodyBuilder
+        .addStatement(
+            "return $L",
+            this.valueCodecSelector.constructDecodeExpression(field, binaryObjectName))
+        .nextControlFlow(
+            "catch ($T | $T e)",
+            EncryptionException.class,
+            BinarySerializerException.class);
+
+    if (entityClassName != null) {
+      bodyBuilder.add(this.cryptoMetricsCodeGenerator.constructDecryptionFailureRecordingCode(
+          entityClassName,
+          fieldName,
+          "e"));
+    }
+
+    return MethodSpec.methodBuilder("convertToEntityAttribute")
+        .addAnnotation(Override.class)
+        .addModifiers(Modifier.PUBLIC)
+        .returns(attributeTypeName)
+        .addParameter(columnTypeName, columnValueName)
+        .addCode(bodyBuilder
+            .addStatement(
+                "throw new $T($S, e)",
+                PersistenceException.class,
+                "Unable to decrypt the attribute.")
+            .endControlFlow()
+            .build())
+        .build();
+  }
+
+  /**
+   * Constructs the expression of the length of a column value.
+   * 
+   * @param columnValueName The name of the column value.
+   * @param binaryStorage Indicates whether the column holds bytes rather than Base64 text.
+   * 
+   * @return The length expression.
+   */
+  private CodeBlock constructColumnValueLengthExpression(
+      String columnValueName,
+      boolean binaryStorage) {
+    return binaryStorage
+        ? CodeBlock.of("$L.length", columnValueName)
+        : CodeBlock.of("$L.length()", columnValueName);
+  }
+}
@@ -0,0 +1,194 @@
+package net.craswell.security.annotations.codegen;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+
+import net.craswell.security.metrics.ConfidentialMetrics;
+import net.craswell.security.metrics.CryptoMetrics;
+
+/**
+ * Creates the code reporting encryption and decryption measurements of confidential fields to the
+ * registered CryptoMetrics.
+ * 
+ * Measurements are taken only when the registered metrics are enabled, so that the instrumentation
+ * reduces to a check of a constant once the default, disabled, implementation is inlined.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class CryptoMetricsCodeGenerator {
+  /**
+   * The name of the local variable holding the metrics implementation.
+   */
+  private static final String METRICS_NAME = "cryptoMetrics";
+
+  /**
+   * The name of the local variable holding the start time of the measured operation.
+   */
+  private static final String START_TIME_NAME = "cryptoStartTime";
+
+  /**
+   * Constructs the code retrieving the metrics implementation and starting the measurement.
+   * 
+   * @return The measurement start code.
+   */
+  public CodeBlock constructMeasurementStartCode() {
+    return CodeBlock.builder()
+        .addStatement(
+            "$T $L = $T.getMetrics()",
+            CryptoMetrics.class,
+            METRICS_NAME,
+            ConfidentialMetrics.class)
+        .addStatement(
+            "long $L = $L.isEnabled() ? System.nanoTime() : 0L",
+            START_TIME_NAME,
+            METRICS_NAME)
+        .build();
+  }
+
+  /**
+   * Constructs the code recording a decryption.
+   * 
+   * @param entityClassName The secured class.
+   * @param fieldName The confidential field name.
+   * @param ciphertextLength The expression of the stored secured value length.
+   * @param plaintextLength The expression of the decrypted serialized value length.
+   * 
+   * @return The decryption recording code.
+   */
+  public CodeBlock constructDecryptionRecordingCode(
+      ClassName entityClassName,
+      String fieldName,
+      CodeBlock ciphertextLength,
+      CodeBlock plaintextLength) {
+    return this.constructRecordingCode(
+        "recordDecryption",
+        entityClassName,
+        fieldName,
+        ciphertextLength,
+        plaintextLength);
+  }
+
+  /**
+   * Constructs the code recording an encryption.
+   * 
+   * @param entityClassName The secured class.
+   * @param fieldName The confidential field name.
+   * @param plaintextLength The expression of the serialized value length.
+   * @param ciphertextLength The expression of the stored secured value length.
+   * 
+   * @return The encryption recording code.
+   */
+  public CodeBlock constructEncryptionRecordingCode(
+      ClassName entityClassName,
+      String fieldName,
+      CodeBlock plaintextLength,
+      CodeBlock ciphertextLength) {
+    return this.constructRecordingCode(
+        "recordEncryption",
+        entityClassName,
+        fieldName,
+        plaintextLength,
+        ciphertextLength);
+  }
+
+  /**
+   * Constructs the code recording a failure to decrypt.
+   * 
+   * @param entityClassName The secured class.
+   * @param fieldName The confidential field name.
+   * @param exceptionName The name of the caught exception.
+   * 
+   * @return The failure recording code.
+   */
+  public CodeBlock constructDecryptionFailureRecordingCode(
+      ClassName entityClassName,
+      String fieldName,
+      String exceptionName) {
+    return this.constructFailureRecordingCode(
+        "recordDecryptionFailure",
+        entityClassName,
+        fieldName,
+        exceptionName);
+  }
+
+  /**
+   * Constructs the code recording a failure to encrypt.
+   * 
+   * @param entityClassName The secured class.
+   * @param fieldName The confidential field name.
+   * @param exceptionName The name of the caught exception.
+   * 
+   * @return The failure recording code.
+   */
+  public CodeBlock constructEncryptionFailureRecordingCode(
+      ClassName entityClassName,
+      String fieldName,
+      String exceptionName) {
+    return this.constructFailureRecordingCode(
+        "recordEncryptionFailure",
+        entityClassName,
+        fieldName,
+        exceptionName);
+  }
+
+  /**
+   * Constructs the code recording a measured operation.
+   * 
+   * @param methodName The metrics method name.
+   * @param entityClassName The secured class.
+   * @param fieldName The confidential field name.
+   * @param inputLength The expression of the operation input length.
+   * @param outputLength The expression of the operation output length.
+   * 
+   * @return The recording code.
+   */
+  private CodeBlock constructRecordingCode(
+      String methodName,
+      ClassName entityClassName,
+      String fieldName,
+      CodeBlock inputLength,
+      CodeBlock outputLength) {
+    return CodeBlock.builder()
+        .beginControlFlow("if ($L.isEnabled())", METRICS_NAME)
+        .addStatement(
+            "$L.$L(\n$T.class,\n$S,\nSystem.nanoTime() - $L,\n$L,\n$L)",
+            METRICS_NAME,
+            methodName,
+            entityClassName,
+            fieldName,
+            START_TIME_NAME,
+            inputLength,
+            outputLength)
+        .endControlFlow()
+        .build();
+  }
+
+  /**
+   * Constructs the code recording a failed operation.
+   * 
+   * @param methodName The metrics method name.
+   * @param entityClassName The secured class.
+   * @param fieldName The confidential field name.
+   * @param exceptionName The name of the caught exception.
+   * 
+   * @return The failure recording code.
+   */
+  private CodeBlock constructFailureRecordingCode(
+      String methodName,
+      ClassName entityClassName,
+      String fieldName,
+      String exceptionName) {
+    return CodeBlock.builder()
+        .beginControlFlow("if ($L.isEnabled())", METRICS_NAME)
+        .addStatement(
+            "$L.$L($T.class, $S, $L)",
+            METRICS_NAME,
+            methodName,
+            entityClassName,
+            fieldName,
+            exceptionName)
+        .endControlFlow()
+        .build();
+  }
+}
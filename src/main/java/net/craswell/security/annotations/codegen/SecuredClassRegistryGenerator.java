@@ -0,0 +1,118 @@
+package net.craswell.security.annotations.codegen;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+
+import net.craswell.security.metadata.SecuredClassMetadata;
+import net.craswell.security.metadata.SecuredClassRegistry;
+
+/**
+ * Creates the registry listing the secured classes generated in a compilation.
+ * 
+ * The registry references the metadata() method of each secured class directly, so that tools can
+ * enumerate confidential fields without scanning the classpath or using reflection.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class SecuredClassRegistryGenerator {
+  /**
+   * The name of the static field holding the registry instance.
+   */
+  private static final String INSTANCE_FIELD_NAME = "INSTANCE";
+
+  /**
+   * The name of the field holding the metadata of the secured classes.
+   */
+  private static final String SECURED_CLASSES_FIELD_NAME = "securedClasses";
+
+  /**
+   * Constructs the source file of a registry.
+   * 
+   * @param registryClassName The qualified name of the registry class.
+   * @param securedClassNames The qualified names of the secured classes.
+   * @param templates The template classes, attributed as the originating elements.
+   * 
+   * @return The registry source file.
+   */
+  public JavaFile constructRegistrySourceFile(
+      String registryClassName,
+      List<ClassName> securedClassNames,
+      List<TypeElement> templates) {
+    ClassName className = ClassName.bestGuess(registryClassName);
+    TypeName metadataListTypeName = ParameterizedTypeName.get(
+        ClassName.get(List.class),
+        ParameterizedTypeName.get(
+            ClassName.get(SecuredClassMetadata.class),
+            WildcardTypeName.subtypeOf(Object.class)));
+
+    CodeBlock.Builder metadataBuilder = CodeBlock.builder();
+
+    for (int i = 0; i < securedClassNames.size(); i++) {
+      metadataBuilder.add(
+          i == 0 ? "$T.metadata()" : ",\n$T.metadata()",
+          securedClassNames.get(i));
+    }
+
+    TypeSpec.Builder typeSpecBuilder = TypeSpec.classBuilder(className)
+        .addJavadoc("Lists the secured classes generated by the confidentiality processor.\n")
+        .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+        .addSuperinterface(SecuredClassRegistry.class)
+        .addField(FieldSpec.builder(
+            className,
+            INSTANCE_FIELD_NAME,
+            Modifier.PRIVATE,
+            Modifier.STATIC,
+            Modifier.FINAL)
+            .initializer("new $T()", className)
+            .build())
+        .addField(FieldSpec.builder(
+            metadataListTypeName,
+            SECURED_CLASSES_FIELD_NAME,
+            Modifier.PRIVATE,
+            Modifier.FINAL)
+            .initializer(
+                "$T.unmodifiableList($T.<$T<?>>asList(\n$>$>$L$<$<))",
+                Collections.class,
+                Arrays.class,
+                SecuredClassMetadata.class,
+                metadataBuilder.build())
+            .build())
+        .addMethod(MethodSpec.constructorBuilder()
+            .addModifiers(Modifier.PRIVATE)
+            .build())
+        .addMethod(MethodSpec.methodBuilder("getInstance")
+            .addJavadoc("@return The registry.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(className)
+            .addStatement("return $L", INSTANCE_FIELD_NAME)
+            .build())
+        .addMethod(MethodSpec.methodBuilder("getSecuredClasses")
+            .addAnnotation(Override.class)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(metadataListTypeName)
+            .addStatement("return this.$L", SECURED_CLASSES_FIELD_NAME)
+            .build());
+
+    for (TypeElement template : templates) {
+      typeSpecBuilder.addOriginatingElement(template);
+    }
+
+    return JavaFile.builder(className.packageName(), typeSpecBuilder.build())
+        .build();
+  }
+}
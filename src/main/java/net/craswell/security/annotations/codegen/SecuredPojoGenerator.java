@@ -1,35 +1,84 @@
 package net.craswell.security.annotations.codegen;
 
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.security.MessageDigest;
+import java.sql.Blob;
+import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 
+import javax.annotation.processing.Messager;
+import javax.lang.model.SourceVersion;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
 
+import javax.persistence.Convert;
+import javax.persistence.Lob;
+import javax.persistence.PersistenceException;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
 import javax.persistence.Transient;
 
 import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
 import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
+import com.squareup.javapoet.WildcardTypeName;
 
-import net.craswell.common.BinarySerializer;
 import net.craswell.common.BinarySerializerException;
 import net.craswell.common.codegen.BasicPojoGenerator;
 import net.craswell.common.encryption.AesTool;
 import net.craswell.common.encryption.AesToolException;
-import net.craswell.common.encryption.AesToolImpl;
 import net.craswell.common.encryption.PassphraseProvider;
 
 import net.craswell.security.annotations.Confidential;
+import net.craswell.security.annotations.Confidential.Storage;
 import net.craswell.security.annotations.RequiresConfidentiality;
+import net.craswell.security.bulk.BulkOperationException;
+import net.craswell.security.bulk.BulkOperations;
+import net.craswell.security.bulk.FieldSelection;
+import net.craswell.security.encryption.AesEngine;
+import net.craswell.security.encryption.AesGcmEngine;
+import net.craswell.security.encryption.BlindIndex;
+import net.craswell.security.encryption.CachingPassphraseProvider;
+import net.craswell.security.encryption.CryptoBuffers;
+import net.craswell.security.encryption.DerivedKeyCache;
+import net.craswell.security.encryption.EncryptionEngine;
+import net.craswell.security.encryption.EncryptionException;
+import net.craswell.security.encryption.LegacyCiphertextException;
+import net.craswell.security.encryption.LegacyEncryption;
+import net.craswell.security.metadata.ConfidentialFieldMetadata;
+import net.craswell.security.metadata.SecuredClassMetadata;
+import net.craswell.security.metadata.SecuredMapper;
+import net.craswell.security.metadata.SecuredMappingException;
+import net.craswell.security.persistence.ConfidentialConverters;
+import net.craswell.security.persistence.EncryptedBlobs;
+import net.craswell.security.serialization.ValueEnvelope;
 
 /**
  * Creates secured POJO classes by looking for the presence of annotations on template classes.
@@ -51,29 +100,162 @@ public class SecuredPojoGenerator
    */
   private static final String PASSPHRASE_PROVIDER_FIELD_NAME = "passphraseProvider";
 
+  /**
+   * The suffix appended to the flag indicating that a cached decrypted value is present.
+   */
+  private static final String DECRYPTED_FLAG_SUFFIX = "Decrypted";
+
+  /**
+   * The suffix appended to the blind index field of a searchable confidential field.
+   */
+  private static final String INDEX_SUFFIX = "Index";
+
+  /**
+   * The name of the static field holding the encryption engine shared by all instances.
+   */
+  private static final String ENCRYPTION_ENGINE_FIELD_NAME = "ENCRYPTION_ENGINE";
+
+  /**
+   * The name of the static methods decrypting collections of secured instances.
+   */
+  private static final String DECRYPT_ALL_METHOD_NAME = "decryptAll";
+
+  /**
+   * The name of the static methods encrypting the pending values of collections of secured
+   * instances.
+   */
+  private static final String ENCRYPT_ALL_METHOD_NAME = "encryptAll";
+
+  /**
+   * The name of the constant holding the names of the fields and groups decrypted by decryptAll.
+   */
+  private static final String CACHED_FIELD_NAMES_CONSTANT_NAME = "CACHED_FIELD_NAMES";
+
+  /**
+   * The name of the constant holding the names of the fields and groups encrypted by seal.
+   */
+  private static final String SEALED_FIELD_NAMES_CONSTANT_NAME = "SEALED_FIELD_NAMES";
+
+  /**
+   * The name of the parameter selecting the fields and groups of seal and the bulk operations.
+   */
+  private static final String SELECTED_FIELDS_PARAMETER_NAME = "fields";
+
+  /**
+   * The suffix appended to the flag indicating that a value set awaits encryption.
+   */
+  private static final String PENDING_FLAG_SUFFIX = "Pending";
+
+  /**
+   * The name of the method encrypting the values set since it was last called.
+   */
+  private static final String SEAL_METHOD_NAME = "seal";
+
+  /**
+   * The suffix appended to the getter name of the stream of a streamed byte array field.
+   */
+  private static final String STREAM_SUFFIX = "Stream";
+
+  /**
+   * The suffix appended to the length parameter of the setter of a streamed InputStream field.
+   */
+  private static final String LENGTH_SUFFIX = "Length";
+
+  /**
+   * The suffix appended to the constant holding the field names of a confidential group.
+   */
+  private static final String GROUP_FIELD_NAMES_SUFFIX = "_FIELD_NAMES";
+
+  /**
+   * The name of the static method returning the metadata of a secured class.
+   */
+  private static final String METADATA_METHOD_NAME = "metadata";
+
+  /**
+   * The name of the nested class initializing the metadata of a secured class on first use.
+   */
+  private static final String METADATA_HOLDER_NAME = "MetadataHolder";
+
+  /**
+   * The name of the constant holding the metadata of a secured class.
+   */
+  private static final String METADATA_FIELD_NAME = "METADATA";
+
+  /**
+   * The name of the constant holding the mapper copying a secured class to itself.
+   */
+  private static final String COPIER_FIELD_NAME = "COPIER";
+
+  /**
+   * The name of the method giving the class of a generic confidential field its type arguments.
+   */
+  private static final String GENERIC_CLASS_METHOD_NAME = "genericClass";
+
+  /**
+   * The name of the method copying the confidential values of a secured instance to another.
+   */
+  private static final String COPY_TO_METHOD_NAME = "copyTo";
+
+  /**
+   * Selects the code converting confidential values to and from bytes.
+   */
+  private final ValueCodecSelector valueCodecSelector = new ValueCodecSelector();
+
+  /**
+   * Creates the code reporting encryption and decryption measurements.
+   */
+  private final CryptoMetricsCodeGenerator cryptoMetricsCodeGenerator =
+      new CryptoMetricsCodeGenerator();
+
+  /**
+   * Creates the JPA attribute converters used when converters are enabled.
+   */
+  private final AttributeConverterGenerator attributeConverterGenerator =
+      new AttributeConverterGenerator(this.valueCodecSelector, this.cryptoMetricsCodeGenerator);
+
+  /**
+   * The generator options.
+   */
+  private SecuredPojoGeneratorOptions options = new SecuredPojoGeneratorOptions();
+
+  /**
+   * @return The generator options.
+   */
+  public SecuredPojoGeneratorOptions getOptions() {
+    return this.options;
+  }
+
+  /**
+   * @param options The generator options.
+   */
+  public void setOptions(SecuredPojoGeneratorOptions options) {
+    this.options = options;
+  }
+
+  /**
+   * The qualified names of the annotations which are not copied to secured classes.
+   */
+  private static final Set<String> FILTERED_ANNOTATION_NAMES = new HashSet<String>(Arrays.asList(
+      RequiresConfidentiality.class.getCanonicalName(),
+      Confidential.class.getCanonicalName()));
+
+  /**
+   * Accepts the annotations which are copied to secured classes.
+   */
+  private static final Predicate<AnnotationMirror> ANNOTATION_FILTER = annotationMirror -> {
+    TypeElement annotationElement =
+        (TypeElement) annotationMirror.getAnnotationType().asElement();
+
+    return !FILTERED_ANNOTATION_NAMES.contains(annotationElement.getQualifiedName().toString());
+  };
+
   /**
    * @return The predicate for filtering annotations when copying.
    */
   @Override
   protected Predicate<AnnotationMirror> getAnnotationFilter() {
-    return annotationMirror -> {
-      TypeName requiresConfidentiality = TypeName.get(RequiresConfidentiality.class);
-      TypeName confidential = TypeName.get(Confidential.class);
-      TypeName annotationTypeName =
-          TypeName.get(annotationMirror.getAnnotationType().asElement().asType());
-
-      boolean isFilteredAnnotation =
-          requiresConfidentiality.toString().equals(annotationTypeName.toString())
-              || confidential.toString().equals(annotationTypeName.toString());
-
-      // System.out.println(requiresConfidentiality.toString());
-      // System.out.println(confidential.toString());
-      // System.out.println(annotationTypeName.toString());
-      // System.out.println(isFilteredAnnotation);
-
-      return !isFilteredAnnotation;
-    };
-  };
+    return ANNOTATION_FILTER;
+  }
 
   /**
    * The Encryption tool interface.
@@ -81,9 +263,15 @@ public class SecuredPojoGenerator
   private static final Class<?> EncryptionToolInterface = AesTool.class;
 
   /**
-   * The Encryption tool class.
+   * The encryption engine interface.
+   */
+  private static final Class<?> EncryptionEngineInterface = EncryptionEngine.class;
+
+  /**
+   * The type of exception thrown by the encryption engine.
    */
-  private static final Class<?> EncryptionToolImplementation = AesToolImpl.class;
+  private static final Class<? extends Exception> EncryptionEngineException =
+      EncryptionException.class;
 
   /**
    * The type of exception thrown by the encryption tool.
@@ -106,6 +294,156 @@ public class SecuredPojoGenerator
     return SUFFIX;
   }
 
+  /**
+   * Reports the errors of a template class which prevent its secured class from being generated.
+   * 
+   * @param typeElement The template class.
+   * @param messager The messager receiving the errors, reported on the offending elements.
+   * 
+   * @return True if the secured class can be generated; false if errors were reported.
+   */
+  public boolean checkTemplate(
+      TypeElement typeElement,
+      Messager messager) {
+    boolean valid = true;
+
+    for (VariableElement field : ElementFilter.fieldsIn(typeElement.getEnclosedElements())) {
+      if (this.isSearchable(field) && this.options.isConvertersEnabled()) {
+        messager.printMessage(
+            Kind.ERROR,
+            "Blind indexes are not available with confidential.converters; "
+                + "remove searchable or disable the converters.",
+            field);
+        valid = false;
+      }
+
+      Confidential confidential = field.getAnnotation(Confidential.class);
+
+      if (confidential != null
+          && !confidential.group().isEmpty()
+          && !this.isGroupName(confidential.group())) {
+        messager.printMessage(
+            Kind.ERROR,
+            String.format(
+                "The confidential group %1$s is not a Java identifier.",
+                confidential.group()),
+            field);
+        valid = false;
+      } else if (this.getGroup(field) != null && !confidential.cache()) {
+        messager.printMessage(
+            Kind.ERROR,
+            "Grouped confidential fields are always cached; remove cache = false or the group.",
+            field);
+        valid = false;
+      }
+    }
+
+    String engine = this.getEncryptionEngine(typeElement);
+
+    if (!SecuredPojoGeneratorOptions.AES_CBC_ENGINE.equals(engine)
+        && !SecuredPojoGeneratorOptions.AES_GCM_ENGINE.equals(engine)
+        && (!SourceVersion.isName(engine) || engine.indexOf('.') < 0)) {
+      messager.printMessage(
+          Kind.ERROR,
+          String.format(
+              "The encryption engine %1$s must be %2$s, %3$s or a qualified class name.",
+              engine,
+              SecuredPojoGeneratorOptions.AES_CBC_ENGINE,
+              SecuredPojoGeneratorOptions.AES_GCM_ENGINE),
+          typeElement);
+      valid = false;
+    }
+
+    return valid && this.checkGroupNames(typeElement, messager);
+  }
+
+  /**
+   * Reports the confidential groups whose generated members would collide with the members
+   * generated for the fields of the template class, or for another group.
+   * 
+   * Member names are compared with their first letter capitalized, as their accessors are.
+   * 
+   * @param typeElement The template class.
+   * @param messager The messager receiving the errors, reported on the grouped fields.
+   * 
+   * @return True if no group name collides; false if errors were reported.
+   */
+  private boolean checkGroupNames(
+      TypeElement typeElement,
+      Messager messager) {
+    boolean valid = true;
+    Set<String> memberNames = new HashSet<String>();
+
+    for (VariableElement field : ElementFilter.fieldsIn(typeElement.getEnclosedElements())) {
+      String fieldName = field.getSimpleName().toString();
+
+      memberNames.add(this.capitalize(fieldName));
+
+      if (field.getAnnotation(Confidential.class) != null) {
+        memberNames.addAll(this.constructFlaggedMemberNames(fieldName));
+        memberNames.add(this.capitalize(this.constructIndexFieldName(fieldName)));
+      }
+    }
+
+    Map<String, String> groupNames = new HashMap<String, String>();
+
+    for (VariableElement field : ElementFilter.fieldsIn(typeElement.getEnclosedElements())) {
+      String group = this.getGroup(field);
+
+      if (group == null) {
+        continue;
+      }
+
+      String previousGroup = groupNames.putIfAbsent(this.capitalize(group), group);
+
+      if (previousGroup != null && previousGroup.equals(group)) {
+        continue;
+      }
+
+      if (previousGroup != null
+          || !Collections.disjoint(memberNames, this.constructFlaggedMemberNames(group))) {
+        messager.printMessage(
+            Kind.ERROR,
+            String.format(
+                "The members generated for the confidential group %1$s collide with those of "
+                    + "another field or group; rename the group.",
+                group),
+            field);
+        valid = false;
+      }
+    }
+
+    return valid;
+  }
+
+  /**
+   * Builds the capitalized names of the secured field and flags generated for a field or group.
+   * 
+   * @param name The field or group name.
+   * 
+   * @return The capitalized member names.
+   */
+  private List<String> constructFlaggedMemberNames(String name) {
+    return Arrays.asList(
+        this.capitalize(this.constructSecuredFieldName(name)),
+        this.capitalize(this.constructDecryptedFlagFieldName(name)),
+        this.capitalize(this.constructPendingFlagFieldName(name)));
+  }
+
+  /**
+   * Capitalizes the first letter of a member name.
+   * 
+   * @param name The member name.
+   * 
+   * @return The capitalized name.
+   */
+  private String capitalize(String name) {
+    return String.format(
+        "%1$s%2$s",
+        Character.toUpperCase(name.charAt(0)),
+        name.substring(1));
+  }
+
   /**
    * Processes all fields from the template class.
    * 
@@ -117,97 +455,1940 @@ public class SecuredPojoGenerator
       TypeElement typeElement,
       TypeSpec.Builder typeSpecBuilder) {
 
-    this.constructEncryptionSupportMembers(typeSpecBuilder);
+    // Incremental builds attribute the generated file to its template class.
+    typeSpecBuilder.addOriginatingElement(typeElement);
+
+    this.constructEncryptionSupportMembers(typeElement, typeSpecBuilder);
 
     super.processTemplateClassFields(typeElement, typeSpecBuilder);
+
+    this.constructGroupSupportMembers(typeElement, typeSpecBuilder);
+
+    this.constructBulkOperationMembers(typeElement, typeSpecBuilder);
+
+    this.constructWriteBehindMembers(typeElement, typeSpecBuilder);
+
+    this.constructMetadataMembers(typeElement, typeSpecBuilder);
   }
 
   /**
-   * Constructs the members required to support data confidentiality.
+   * Constructs the static metadata() method describing the confidential fields of the secured
+   * class, with accessors referencing the generated getters and setters directly, and the copyTo
+   * method copying the confidential values of an instance to another through a SecuredMapper.
+   * 
+   * The metadata and mapper are held by a nested class, so that they are only created when first
+   * requested.
    * 
+   * @param typeElement The template class.
    * @param typeSpecBuilder The type spec builder.
    */
-  protected void constructEncryptionSupportMembers(
+  protected void constructMetadataMembers(
+      TypeElement typeElement,
       TypeSpec.Builder typeSpecBuilder) {
-    typeSpecBuilder.addField(this.constructPassphraseProviderFieldSpec());
-    typeSpecBuilder.addField(this.constructEncryptionToolFieldSpec());
-    typeSpecBuilder.addMethod(this.constructBasicSetterSpecForFieldName(
-        PASSPHRASE_PROVIDER_FIELD_NAME,
-        TypeName.get(PassphraseProvider.class)));
-    typeSpecBuilder.addMethod(this.constructSetterSpecForEncryptionTool());
-  }
+    ClassName securedClassName = this.constructSecuredClassName(typeElement);
+    TypeName metadataTypeName = ParameterizedTypeName.get(
+        ClassName.get(SecuredClassMetadata.class),
+        securedClassName);
+    TypeName fieldMetadataTypeName = ParameterizedTypeName.get(
+        ClassName.get(ConfidentialFieldMetadata.class),
+        securedClassName,
+        WildcardTypeName.subtypeOf(Object.class));
 
-  /**
-   * Constructs the setter specification for the encryption tool.
-   * 
-   * @return The setter method specification for the encryption tool.
-   */
-  protected MethodSpec constructSetterSpecForEncryptionTool() {
-    MethodSpec.Builder methodSpecBuilder = this.constructBasicSetterSpecBuilderForFieldName(
-        this.constructEncryptionToolFieldName(),
-        TypeName.get(EncryptionToolInterface));
+    Map<String, List<VariableElement>> groups = this.getConfidentialGroups(typeElement);
+    CodeBlock.Builder fieldsBuilder = CodeBlock.builder();
+    int fieldCount = 0;
+    boolean genericFields = false;
 
-    methodSpecBuilder.addException(EncryptionToolException);
+    for (VariableElement field : ElementFilter.fieldsIn(typeElement.getEnclosedElements())) {
+      if (field.getAnnotation(Confidential.class) != null) {
+        genericFields |= TypeName.get(field.asType()) instanceof ParameterizedTypeName;
+        fieldsBuilder
+            .add(fieldCount++ == 0 ? "" : ",\n")
+            .add(this.constructFieldMetadataExpression(
+                securedClassName,
+                field,
+                groups));
+      }
+    }
 
-    return methodSpecBuilder
-        .build();
+    String entityName = "entity";
+    String targetName = "target";
+    CodeBlock passphraseProviderGetter = CodeBlock.of("null");
+    CodeBlock encryptionToolGetter = CodeBlock.of("null");
+
+    if (!this.options.isConvertersEnabled()) {
+      passphraseProviderGetter = CodeBlock.of(
+          "$L -> $L.$L",
+          entityName,
+          entityName,
+          PASSPHRASE_PROVIDER_FIELD_NAME);
+      encryptionToolGetter = CodeBlock.of(
+          "$L -> $L.$L",
+          entityName,
+          entityName,
+          this.constructEncryptionToolFieldName());
+    }
+
+    TypeSpec.Builder metadataHolderBuilder = TypeSpec.classBuilder(METADATA_HOLDER_NAME)
+        .addJavadoc("Creates the metadata of this class when it is first requested.\n")
+        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL);
+
+    if (genericFields) {
+      TypeVariableName typeVariableName = TypeVariableName.get("T");
+
+      metadataHolderBuilder.addMethod(MethodSpec.methodBuilder(GENERIC_CLASS_METHOD_NAME)
+          .addJavadoc("Gives the class of a generic field the type arguments of the field.\n\n"
+              + "@param rawClass The erased class of the field.\n\n"
+              + "@return The class, parameterized with the type of the field.\n")
+          .addAnnotation(AnnotationSpec.builder(SuppressWarnings.class)
+              .addMember("value", "$S", "unchecked")
+              .build())
+          .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+          .addTypeVariable(typeVariableName)
+          .returns(ParameterizedTypeName.get(ClassName.get(Class.class), typeVariableName))
+          .addParameter(
+              ParameterizedTypeName.get(
+                  ClassName.get(Class.class),
+                  WildcardTypeName.supertypeOf(typeVariableName)),
+              "rawClass")
+          .addStatement(
+              "return ($T) rawClass",
+              ParameterizedTypeName.get(ClassName.get(Class.class), typeVariableName))
+          .build());
+    }
+
+    typeSpecBuilder
+        .addMethod(MethodSpec.methodBuilder(COPY_TO_METHOD_NAME)
+            .addJavadoc("Copies the confidential values of this instance to another. The ciphertext is "
+                + "copied as it is\nwhen both instances share their key context; otherwise values "
+                + "are decrypted and\nencrypted again. The target's passphrase provider must be set "
+                + "beforehand.\n\n"
+                + "@param $L The target instance.\n",
+                targetName)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(securedClassName, targetName)
+            .addException(SecuredMappingException.class)
+            .addStatement(
+                "$L.$L.copy(this, $L)",
+                METADATA_HOLDER_NAME,
+                COPIER_FIELD_NAME,
+                targetName)
+            .build())
+        .addMethod(MethodSpec.methodBuilder(METADATA_METHOD_NAME)
+            .addJavadoc("@return The metadata of the confidential fields of this class.\n")
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(metadataTypeName)
+            .addStatement(
+                "return $L.$L",
+                METADATA_HOLDER_NAME,
+                METADATA_FIELD_NAME)
+            .build())
+        .addType(metadataHolderBuilder
+            .addField(FieldSpec.builder(
+                metadataTypeName,
+                METADATA_FIELD_NAME,
+                Modifier.STATIC,
+                Modifier.FINAL)
+                .initializer(
+                    "new $T(\n$>$>$T.class,\n$S,\n$L,\n$L,\n$L,\n$T.<$T>asList(\n$>$L)$<)$<$<",
+                    metadataTypeName,
+                    securedClassName,
+                    typeElement.getQualifiedName().toString(),
+                    ENCRYPTION_ENGINE_FIELD_NAME,
+                    passphraseProviderGetter,
+                    encryptionToolGetter,
+                    Arrays.class,
+                    fieldMetadataTypeName,
+                    fieldsBuilder.build())
+                .build())
+            .addField(FieldSpec.builder(
+                ParameterizedTypeName.get(
+                    ClassName.get(SecuredMapper.class),
+                    securedClassName,
+                    securedClassName),
+                COPIER_FIELD_NAME,
+                Modifier.STATIC,
+                Modifier.FINAL)
+                .initializer(
+                    "$T.between($L, $L)",
+                    SecuredMapper.class,
+                    METADATA_FIELD_NAME,
+                    METADATA_FIELD_NAME)
+                .build())
+            .build());
   }
 
   /**
-   * Creates a copy of the field and generates associated getters and setters.
+   * Constructs the expression creating the metadata of a confidential field.
    * 
-   * @param typeSpecBuilder The type spec builder.
-   * @param field The field.
+   * Fields encrypted by attribute converters have no secured field and always hold a value, and
+   * streamed InputStream fields have no setter taking only the value.
+   * 
+   * @param securedClassName The secured class name.
+   * @param field The confidential field.
+   * @param groups The fields of each confidential group, by group name.
+   * 
+   * @return The field metadata expression.
    */
-  @Override
-  protected void processField(
-      TypeSpec.Builder typeSpecBuilder,
-      VariableElement field) {
+  protected CodeBlock constructFieldMetadataExpression(
+      ClassName securedClassName,
+      VariableElement field,
+      Map<String, List<VariableElement>> groups) {
+    String fieldName = field.getSimpleName().toString();
+    Confidential confidential = field.getAnnotation(Confidential.class);
+    String group = this.getGroup(field);
+    boolean streaming = this.isStreaming(field);
+    TypeName fieldTypeName = TypeName.get(field.asType());
+    String entityName = "entity";
+    String valueName = "value";
 
-    if (field.getAnnotation(Confidential.class) != null) {
-      this.constructConfidentialitySupportMembers(
-          typeSpecBuilder,
-          field);
+    // The erased class of a generic field is given its type arguments by an unchecked cast.
+    CodeBlock fieldClass = fieldTypeName instanceof ParameterizedTypeName
+        ? CodeBlock.of(
+            "$L.<$T>$L($T.class)",
+            METADATA_HOLDER_NAME,
+            fieldTypeName,
+            GENERIC_CLASS_METHOD_NAME,
+            ((ParameterizedTypeName) fieldTypeName).rawType)
+        : CodeBlock.of("$T.class", fieldTypeName);
+
+    String securedFieldName;
+    TypeName securedFieldTypeName;
+
+    if (streaming) {
+      securedFieldName = this.constructSecuredFieldName(fieldName);
+      securedFieldTypeName = TypeName.get(Blob.class);
+    } else if (group != null) {
+      securedFieldName = this.constructSecuredFieldName(group);
+      securedFieldTypeName = this.constructSecuredFieldTypeName(groups.get(group).get(0));
+    } else if (this.options.isConvertersEnabled()) {
+      securedFieldName = null;
+      securedFieldTypeName = null;
     } else {
-      super.processField(typeSpecBuilder, field);
+      securedFieldName = this.constructSecuredFieldName(fieldName);
+      securedFieldTypeName = this.constructSecuredFieldTypeName(field);
+    }
+
+    CodeBlock setter = streaming && fieldTypeName.equals(TypeName.get(InputStream.class))
+        ? CodeBlock.of("null")
+        : CodeBlock.of("$T::$L", securedClassName, this.determineSetterNameForFieldName(fieldName));
+
+    CodeBlock securedGetter = CodeBlock.of("null");
+    CodeBlock securedSetter = CodeBlock.of("null");
+    CodeBlock presenceGetter = CodeBlock.of("$L -> true", entityName);
+
+    if (securedFieldName != null) {
+      securedGetter = CodeBlock.of(
+          "$T::$L",
+          securedClassName,
+          this.determineGetterNameForFieldName(securedFieldName));
+      securedSetter = CodeBlock.of(
+          "($L, $L) -> $L.$L(($T) $L)",
+          entityName,
+          valueName,
+          entityName,
+          this.determineSetterNameForFieldName(securedFieldName),
+          securedFieldTypeName,
+          valueName);
+
+      String pendingFlagFieldName = this.constructPendingFlagFieldName(
+          group == null ? fieldName : group);
+
+      presenceGetter = !streaming && this.isWriteBehindEnabled()
+          ? CodeBlock.of(
+              "$L -> $L.$L != null || $L.$L",
+              entityName,
+              entityName,
+              securedFieldName,
+              entityName,
+              pendingFlagFieldName)
+          : CodeBlock.of(
+              "$L -> $L.$L != null",
+              entityName,
+              entityName,
+              securedFieldName);
     }
+
+    return CodeBlock.of(
+        "new $T(\n$>$>$S,\n$L,\n$L,\n$L,\n$L,\n$L,\n$L,\n$L,\n$L,\n$T::$L,\n$L,\n$L,\n$L,\n$L)$<$<",
+        ParameterizedTypeName.get(
+            ClassName.get(ConfidentialFieldMetadata.class),
+            securedClassName,
+            fieldTypeName.box()),
+        fieldName,
+        fieldClass,
+        securedFieldName == null
+            ? CodeBlock.of("null")
+            : CodeBlock.of("$S", securedFieldName),
+        securedFieldTypeName == null
+            ? CodeBlock.of("null")
+            : CodeBlock.of("$T.class", securedFieldTypeName),
+        group == null
+            ? CodeBlock.of("null")
+            : CodeBlock.of("$S", group),
+        this.isSearchable(field),
+        streaming,
+        !streaming && confidential.compress(),
+        confidential.compressionThreshold(),
+        securedClassName,
+        this.determineGetterNameForFieldName(fieldName),
+        setter,
+        securedGetter,
+        securedSetter,
+        presenceGetter);
   }
 
   /**
-   * Constructs members required to support an instance of the Confidential annotation.
+   * Constructs the seal method encrypting pending confidential values, and the persistence
+   * callback invoking it before an entity is inserted or updated.
    * 
+   * @param typeElement The template class.
    * @param typeSpecBuilder The type spec builder.
-   * @param field The confidential field.
    */
-  protected void constructConfidentialitySupportMembers(
-      TypeSpec.Builder typeSpecBuilder,
-      VariableElement field) {
+  protected void constructWriteBehindMembers(
+      TypeElement typeElement,
+      TypeSpec.Builder typeSpecBuilder) {
+    List<VariableElement> confidentialFields = this.getConfidentialFields(typeElement);
+    Map<String, List<VariableElement>> groups = this.getConfidentialGroups(typeElement);
 
-    String fieldName = field.getSimpleName()
-        .toString();
+    if (!this.isWriteBehindEnabled() || (confidentialFields.isEmpty() && groups.isEmpty())) {
+      return;
+    }
 
-    String securedFieldName = this.constructSecuredFieldName(fieldName);
+    Iterable<? extends TypeName> exceptionsThrown = Arrays.asList(
+        TypeName.get(EncryptionToolException),
+        TypeName.get(EncryptionEngineException),
+        TypeName.get(SerializerException));
+
+    List<String> pendingFlagFieldNames = new ArrayList<String>();
+
+    for (VariableElement field : confidentialFields) {
+      pendingFlagFieldNames.add(
+          this.constructPendingFlagFieldName(field.getSimpleName().toString()));
+    }
+
+    for (String group : groups.keySet()) {
+      pendingFlagFieldNames.add(this.constructPendingFlagFieldName(group));
+    }
+
+    CodeBlock.Builder pendingCondition = CodeBlock.builder();
+
+    for (int i = 0; i < pendingFlagFieldNames.size(); i++) {
+      pendingCondition.add(
+          i == 0 ? "this.$L" : "\n|| this.$L",
+          pendingFlagFieldNames.get(i));
+    }
+
+    List<String> sealedFieldNames = new ArrayList<String>();
+
+    for (VariableElement field : confidentialFields) {
+      sealedFieldNames.add(field.getSimpleName().toString());
+    }
+
+    sealedFieldNames.addAll(this.constructGroupSelectionNames(groups));
+
+    String selectedFieldsName = SELECTED_FIELDS_PARAMETER_NAME;
+
+    CodeBlock.Builder sealBodyBuilder = CodeBlock.builder()
+        .addStatement(
+            "$T.check($L, $L)",
+            FieldSelection.class,
+            selectedFieldsName,
+            SEALED_FIELD_NAMES_CONSTANT_NAME)
+        .add("\n")
+        .add(
+            "if (this.$L == null\n$>$>&& ($L)$<$<) {\n"
+                + "  throw new IllegalStateException(\"The passphrase provider has not been set.\");\n"
+                + "}\n",
+            PASSPHRASE_PROVIDER_FIELD_NAME,
+            pendingCondition.build());
+
+    for (VariableElement field : confidentialFields) {
+      sealBodyBuilder
+          .add("\n")
+          .beginControlFlow(
+              "if ($L)",
+              this.constructSelectionCheckExpression(
+                  selectedFieldsName,
+                  field.getSimpleName().toString(),
+                  Collections.<VariableElement>emptyList()))
+          .add(this.constructSealCode(field))
+          .endControlFlow();
+    }
+
+    for (Map.Entry<String, List<VariableElement>> group : groups.entrySet()) {
+      sealBodyBuilder
+          .add("\n")
+          .beginControlFlow(
+              "if ($L)",
+              this.constructSelectionCheckExpression(
+                  selectedFieldsName,
+                  group.getKey(),
+                  group.getValue()))
+          .add(this.constructGroupSealCode(group.getKey(), group.getValue()))
+          .endControlFlow();
+    }
+
+    String exceptionName = "e";
 
     typeSpecBuilder
-        // .addField(this.constructConfidentialFieldSpec(field))
-        .addField(this.constructSecuredFieldSpec(field, securedFieldName))
-        .addMethod(this.constructGetterMethodCapableOfDecryption(field))
-        .addMethod(this.constructBasicSetterSpecForFieldName(
-            securedFieldName,
-            TypeName.get(String.class)))
-        .addMethod(this.constructGetterForSecuredField(field))
-        .addMethod(this.constructSetterForSecuredField(field));
+        .addField(this.constructFieldNamesConstantSpec(
+            SEALED_FIELD_NAMES_CONSTANT_NAME,
+            sealedFieldNames))
+        .addMethod(MethodSpec.methodBuilder(SEAL_METHOD_NAME)
+            .addJavadoc("Encrypts the confidential values set since the last call.\n\n"
+                + "@param $L The confidential fields and groups to encrypt; a grouped field\n"
+                + "selects its group. All of them are encrypted when none is named.\n",
+                selectedFieldsName)
+            .addModifiers(Modifier.PUBLIC)
+            .addParameter(ArrayTypeName.of(String.class), selectedFieldsName)
+            .varargs()
+            .addExceptions(exceptionsThrown)
+            .addCode(sealBodyBuilder.build())
+            .build())
+        .addMethod(MethodSpec.methodBuilder(SEAL_METHOD_NAME + "BeforeWrite")
+            .addJavadoc("Encrypts the pending confidential values before the entity is written.\n")
+            .addAnnotation(PrePersist.class)
+            .addAnnotation(PreUpdate.class)
+            .addModifiers(Modifier.PROTECTED)
+            .beginControlFlow("try")
+            .addStatement("this.$L()", SEAL_METHOD_NAME)
+            .nextControlFlow(
+                "catch ($T | $T | $T $L)",
+                EncryptionToolException,
+                EncryptionEngineException,
+                SerializerException,
+                exceptionName)
+            .addStatement(
+                "throw new $T($S, $L)",
+                PersistenceException.class,
+                "Unable to encrypt the confidential values.",
+                exceptionName)
+            .endControlFlow()
+            .build());
   }
 
-  protected MethodSpec constructGetterMethodCapableOfDecryption(VariableElement field) {
+  /**
+   * Constructs the code encrypting the pending value of a confidential field.
+   * 
+   * @param field The confidential field.
+   * 
+   * @return The seal code.
+   */
+  protected CodeBlock constructSealCode(VariableElement field) {
     String fieldName = field.getSimpleName().toString();
+    TypeMirror fieldType = field.asType();
+    String binaryObjectName = "binaryObject";
+
+    CodeBlock.Builder codeBlockBuilder = CodeBlock.builder()
+        .beginControlFlow(
+            "if (this.$L)",
+            this.constructPendingFlagFieldName(fieldName))
+        .addStatement(
+            "$T $L = this.$L",
+            TypeName.get(fieldType),
+            fieldName,
+            fieldName)
+        .addStatement(
+            "byte[] $L = $L",
+            binaryObjectName,
+            this.valueCodecSelector.constructEncodeExpression(field, fieldName))
+        .add(this.constructWipingCode(
+            this.constructMeasuredEncryptionCode(
+                field,
+                binaryObjectName),
+            binaryObjectName));
+
+    if (this.isSearchable(field)) {
+      codeBlockBuilder.addStatement(
+          "this.$L = $L($L, this.$L)",
+          this.constructIndexFieldName(fieldName),
+          this.constructIndexMethodName(fieldName),
+          fieldName,
+          PASSPHRASE_PROVIDER_FIELD_NAME);
+    }
+
+    codeBlockBuilder.addStatement(
+        "this.$L = false",
+        this.constructPendingFlagFieldName(fieldName));
+
+    if (!this.isCachingEnabled(field) && !TypeName.get(fieldType).isPrimitive()) {
+      codeBlockBuilder.addStatement(
+          "this.$L = null",
+          fieldName);
+    }
+
+    return codeBlockBuilder
+        .endControlFlow()
+        .build();
+  }
+
+  /**
+   * Constructs the static methods decrypting collections of secured instances in parallel and,
+   * with write-behind, the static methods sealing them in parallel.
+   * 
+   * Only the fields whose decrypted values are cached and the groups can be decrypted ahead of
+   * being read; the other fields are decrypted by each call of their getters, so decryptAll rejects
+   * them. Without write-behind the setters encrypt values as they are set, so there is nothing left
+   * for encryptAll to encrypt and it is not generated.
+   * 
+   * @param typeElement The template class.
+   * @param typeSpecBuilder The type spec builder.
+   */
+  protected void constructBulkOperationMembers(
+      TypeElement typeElement,
+      TypeSpec.Builder typeSpecBuilder) {
+    if (this.options.isConvertersEnabled()) {
+      return;
+    }
+
+    List<VariableElement> confidentialFields = this.getConfidentialFields(typeElement);
+    List<VariableElement> cachedFields = new ArrayList<VariableElement>();
+    List<String> cachedFieldNames = new ArrayList<String>();
+
+    for (VariableElement field : confidentialFields) {
+      if (this.isCachingEnabled(field)) {
+        cachedFields.add(field);
+        cachedFieldNames.add(field.getSimpleName().toString());
+      }
+    }
+
+    Map<String, List<VariableElement>> groups = this.getConfidentialGroups(typeElement);
+
+    cachedFieldNames.addAll(this.constructGroupSelectionNames(groups));
+
+    if (cachedFields.isEmpty() && groups.isEmpty()) {
+      return;
+    }
+
+    ClassName securedClassName = this.constructSecuredClassName(typeElement);
+    TypeName entitiesTypeName = ParameterizedTypeName.get(
+        ClassName.get(Collection.class),
+        WildcardTypeName.subtypeOf(securedClassName));
+
+    String entitiesName = "entities";
+    String executorName = "executor";
+    String entityName = "entity";
+    String selectedFieldsName = SELECTED_FIELDS_PARAMETER_NAME;
+
+    CodeBlock.Builder operationBuilder = CodeBlock.builder()
+        .add("$L -> {\n", entityName)
+        .indent();
+
+    for (VariableElement field : cachedFields) {
+      String fieldName = field.getSimpleName().toString();
+
+      operationBuilder
+          .beginControlFlow(
+              "if ($L)",
+              this.constructSelectionCheckExpression(
+                  selectedFieldsName,
+                  fieldName,
+                  Collections.<VariableElement>emptyList()))
+          .addStatement(
+              "$L.$L()",
+              entityName,
+              this.determineGetterNameForFieldName(fieldName))
+          .endControlFlow();
+    }
+
+    for (Map.Entry<String, List<VariableElement>> group : groups.entrySet()) {
+      operationBuilder
+          .beginControlFlow(
+              "if ($L)",
+              this.constructSelectionCheckExpression(
+                  selectedFieldsName,
+                  group.getKey(),
+                  group.getValue()))
+          .addStatement(
+              "$L.$L()",
+              entityName,
+              this.determineGetterNameForFieldName(
+                  group.getValue().get(0).getSimpleName().toString()))
+          .endControlFlow();
+    }
+
+    CodeBlock operation = operationBuilder
+        .unindent()
+        .add("}")
+        .build();
+
+    typeSpecBuilder
+        .addField(this.constructFieldNamesConstantSpec(
+            CACHED_FIELD_NAMES_CONSTANT_NAME,
+            cachedFieldNames))
+        .addMethod(this.constructBulkOperationMethod(
+            DECRYPT_ALL_METHOD_NAME,
+            "Decrypts the cached confidential fields and groups of each entity in parallel,\n"
+                + "using the common fork-join pool.\n",
+            entitiesTypeName,
+            null))
+        .addMethod(this.constructBulkOperationMethod(
+            DECRYPT_ALL_METHOD_NAME,
+            "Decrypts the cached confidential fields and groups of each entity in parallel.\n\n"
+                + "The fields whose decrypted values are not cached are decrypted by each call of\n"
+                + "their getters, so they cannot be named.\n",
+            entitiesTypeName,
+            CodeBlock.builder()
+                .addStatement(
+                    "$T.check($L, $L)",
+                    FieldSelection.class,
+                    selectedFieldsName,
+                    CACHED_FIELD_NAMES_CONSTANT_NAME)
+                .add(
+                    "$T.forEach($L, $L, $L);\n",
+                    BulkOperations.class,
+                    entitiesName,
+                    executorName,
+                    operation)
+                .build()));
+
+    if (!this.isWriteBehindEnabled()) {
+      return;
+    }
+
+    typeSpecBuilder
+        .addMethod(this.constructBulkOperationMethod(
+            ENCRYPT_ALL_METHOD_NAME,
+            "Encrypts the pending confidential values of each entity in parallel, using the\n"
+                + "common fork-join pool.\n",
+            entitiesTypeName,
+            null))
+        .addMethod(this.constructBulkOperationMethod(
+            ENCRYPT_ALL_METHOD_NAME,
+            "Encrypts the pending confidential values of each entity in parallel, as its seal\n"
+                + "method would.\n",
+            entitiesTypeName,
+            CodeBlock.builder()
+                .addStatement(
+                    "$T.check($L, $L)",
+                    FieldSelection.class,
+                    selectedFieldsName,
+                    SEALED_FIELD_NAMES_CONSTANT_NAME)
+                .addStatement(
+                    "$T.forEach($L, $L, $L -> $L.$L($L))",
+                    BulkOperations.class,
+                    entitiesName,
+                    executorName,
+                    entityName,
+                    entityName,
+                    SEAL_METHOD_NAME,
+                    selectedFieldsName)
+                .build()));
+  }
+
+  /**
+   * Constructs a static bulk operation method.
+   * 
+   * @param methodName The method name.
+   * @param javadoc The first paragraph of the method javadoc.
+   * @param entitiesTypeName The type of the entity collection.
+   * @param operationCode The code applying the operation with an executor, or null to construct
+   *        the overload delegating to that method with the common fork-join pool.
+   * 
+   * @return The method specification.
+   */
+  protected MethodSpec constructBulkOperationMethod(
+      String methodName,
+      String javadoc,
+      TypeName entitiesTypeName,
+      CodeBlock operationCode) {
+    String entitiesName = "entities";
+    String executorName = "executor";
+    String selectedFieldsName = SELECTED_FIELDS_PARAMETER_NAME;
+
+    MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(methodName)
+        .addJavadoc(javadoc)
+        .addJavadoc("\n@param $L The entities.\n", entitiesName);
+
+    if (operationCode != null) {
+      methodBuilder.addJavadoc("@param $L The executor running the batches.\n", executorName);
+    }
+
+    methodBuilder
+        .addJavadoc(
+            "@param $L The confidential fields and groups; a grouped field selects its group.\n"
+                + "All of them are processed when none is named.\n\n"
+                + "@throws $T Thrown when a field named is not processed by this method.\n",
+            selectedFieldsName,
+            IllegalArgumentException.class)
+        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+        .addParameter(entitiesTypeName, entitiesName);
+
+    if (operationCode != null) {
+      methodBuilder.addParameter(Executor.class, executorName);
+    }
+
+    methodBuilder
+        .addParameter(ArrayTypeName.of(String.class), selectedFieldsName)
+        .varargs()
+        .addException(BulkOperationException.class);
+
+    if (operationCode != null) {
+      return methodBuilder
+          .addCode(operationCode)
+          .build();
+    }
+
+    return methodBuilder
+        .addStatement(
+            "$L($L, $T.commonPool(), $L)",
+            methodName,
+            entitiesName,
+            ForkJoinPool.class,
+            selectedFieldsName)
+        .build();
+  }
+
+  /**
+   * Gets the names selecting the confidential groups: the name of each group and of its fields.
+   * 
+   * @param groups The confidential groups.
+   * 
+   * @return The names.
+   */
+  protected List<String> constructGroupSelectionNames(Map<String, List<VariableElement>> groups) {
+    List<String> names = new ArrayList<String>();
+
+    for (Map.Entry<String, List<VariableElement>> group : groups.entrySet()) {
+      names.add(group.getKey());
+
+      for (VariableElement field : group.getValue()) {
+        names.add(field.getSimpleName().toString());
+      }
+    }
+
+    return names;
+  }
+
+  /**
+   * Constructs the expression determining whether a selection includes a confidential field or
+   * group.
+   * 
+   * @param selectedFieldsName The name of the selection.
+   * @param name The name of the field or group.
+   * @param groupFields The fields of the group, or an empty list for a field.
+   * 
+   * @return The expression.
+   */
+  protected CodeBlock constructSelectionCheckExpression(
+      String selectedFieldsName,
+      String name,
+      List<VariableElement> groupFields) {
+    CodeBlock.Builder expressionBuilder = CodeBlock.builder()
+        .add("$T.isSelected($L, $S", FieldSelection.class, selectedFieldsName, name);
+
+    for (VariableElement field : groupFields) {
+      expressionBuilder.add(", $S", field.getSimpleName().toString());
+    }
+
+    return expressionBuilder
+        .add(")")
+        .build();
+  }
+
+  /**
+   * Constructs a constant holding the names of confidential fields and groups.
+   * 
+   * @param constantName The constant name.
+   * @param names The names.
+   * 
+   * @return The field specification.
+   */
+  protected FieldSpec constructFieldNamesConstantSpec(
+      String constantName,
+      List<String> names) {
+    CodeBlock.Builder initializerBuilder = CodeBlock.builder().add("{");
+
+    for (int i = 0; i < names.size(); i++) {
+      initializerBuilder.add(i == 0 ? "$S" : ", $S", names.get(i));
+    }
+
+    return FieldSpec.builder(
+        ArrayTypeName.of(String.class),
+        constantName,
+        Modifier.PRIVATE,
+        Modifier.STATIC,
+        Modifier.FINAL)
+        .initializer(initializerBuilder.add("}").build())
+        .build();
+  }
+
+  /**
+   * Gets the fields of the template class marked as confidential, except the streamed fields,
+   * which are encrypted as they are written and decrypted as they are read, and the grouped fields,
+   * which are encrypted with their group.
+   * 
+   * @param typeElement The template class.
+   * 
+   * @return The confidential fields encrypted on their own.
+   */
+  protected List<VariableElement> getConfidentialFields(TypeElement typeElement) {
+    List<VariableElement> confidentialFields = new ArrayList<VariableElement>();
+
+    for (VariableElement field : ElementFilter.fieldsIn(typeElement.getEnclosedElements())) {
+      if (field.getAnnotation(Confidential.class) != null
+          && !this.isStreaming(field)
+          && this.getGroup(field) == null) {
+        confidentialFields.add(field);
+      }
+    }
+
+    return confidentialFields;
+  }
+
+  /**
+   * Builds the name of the secured class generated from a template class.
+   * 
+   * The name is not package qualified; it is only used from within the secured class itself.
+   * 
+   * @param typeElement The template class.
+   * 
+   * @return The secured class name.
+   */
+  protected ClassName constructSecuredClassName(TypeElement typeElement) {
+    return ClassName.get(
+        "",
+        String.format(
+            "%1$s%2$s",
+            typeElement.getSimpleName().toString(),
+            SUFFIX));
+  }
+
+  /**
+   * Constructs the members required to support data confidentiality.
+   * 
+   * @param typeElement The template class.
+   * @param typeSpecBuilder The type spec builder.
+   */
+  protected void constructEncryptionSupportMembers(
+      TypeElement typeElement,
+      TypeSpec.Builder typeSpecBuilder) {
+    typeSpecBuilder.addField(this.constructEncryptionEngineFieldSpec(typeElement));
+
+    if (this.options.isConvertersEnabled()) {
+      return;
+    }
+
+    typeSpecBuilder.addField(this.constructPassphraseProviderFieldSpec());
+    typeSpecBuilder.addField(this.constructEncryptionToolFieldSpec());
+    typeSpecBuilder.addMethod(this.constructSetterSpecForPassphraseProvider());
+    typeSpecBuilder.addMethod(this.constructSetterSpecForEncryptionTool());
+  }
+
+  /**
+   * Constructs the setter specification for the passphrase provider.
+   * 
+   * When passphrases are cached, the setter assigns the CachingPassphraseProvider shared by every
+   * instance given the same provider, so that they share its cached passphrase.
+   * 
+   * @return The setter method specification for the passphrase provider.
+   */
+  protected MethodSpec constructSetterSpecForPassphraseProvider() {
+    long timeToLiveMillis = this.options.getPassphraseCacheMillis();
+
+    if (timeToLiveMillis <= 0L) {
+      return this.constructBasicSetterSpecForFieldName(
+          PASSPHRASE_PROVIDER_FIELD_NAME,
+          TypeName.get(PassphraseProvider.class));
+    }
+
+    return MethodSpec.methodBuilder(
+        this.determineSetterNameForFieldName(PASSPHRASE_PROVIDER_FIELD_NAME))
+        .addJavadoc(this.constructBasicSetterJavadoc(PASSPHRASE_PROVIDER_FIELD_NAME))
+        .addModifiers(Modifier.PUBLIC)
+        .addParameter(PassphraseProvider.class, PASSPHRASE_PROVIDER_FIELD_NAME)
+        .addStatement(
+            "this.$L = $T.shared($L, $LL)",
+            PASSPHRASE_PROVIDER_FIELD_NAME,
+            CachingPassphraseProvider.class,
+            PASSPHRASE_PROVIDER_FIELD_NAME,
+            timeToLiveMillis)
+        .build();
+  }
+
+  /**
+   * Constructs the setter specification for the encryption tool.
+   * 
+   * @return The setter method specification for the encryption tool.
+   */
+  protected MethodSpec constructSetterSpecForEncryptionTool() {
+    MethodSpec.Builder methodSpecBuilder = this.constructBasicSetterSpecBuilderForFieldName(
+        this.constructEncryptionToolFieldName(),
+        TypeName.get(EncryptionToolInterface));
+
+    methodSpecBuilder.addException(EncryptionToolException);
+
+    return methodSpecBuilder
+        .build();
+  }
+
+  /**
+   * Creates a copy of the field and generates associated getters and setters.
+   * 
+   * @param typeSpecBuilder The type spec builder.
+   * @param field The field.
+   */
+  @Override
+  protected void processField(
+      TypeSpec.Builder typeSpecBuilder,
+      VariableElement field) {
+
+    if (field.getAnnotation(Confidential.class) != null && this.isStreaming(field)) {
+      this.constructStreamingSupportMembers(
+          typeSpecBuilder,
+          field);
+    } else if (this.getGroup(field) != null) {
+      this.constructGroupMemberSupportMembers(
+          typeSpecBuilder,
+          field);
+    } else if (field.getAnnotation(Confidential.class) != null
+        && this.options.isConvertersEnabled()) {
+      this.constructAttributeConverterSupportMembers(
+          typeSpecBuilder,
+          field);
+    } else if (field.getAnnotation(Confidential.class) != null) {
+      this.constructConfidentialitySupportMembers(
+          typeSpecBuilder,
+          field);
+    } else {
+      super.processField(typeSpecBuilder, field);
+    }
+  }
+
+  /**
+   * Constructs members encrypting a confidential field through a JPA attribute converter.
+   * 
+   * The field keeps its type and plain accessors; the converter decrypts it once when the entity
+   * is loaded and encrypts it once when the entity is flushed.
+   * 
+   * @param typeSpecBuilder The type spec builder.
+   * @param field The confidential field.
+   */
+  protected void constructAttributeConverterSupportMembers(
+      TypeSpec.Builder typeSpecBuilder,
+      VariableElement field) {
+    String fieldName = field.getSimpleName().toString();
+    TypeName fieldTypeName = TypeName.get(field.asType());
+
+    ClassName converterClassName = this.constructSecuredClassName(
+        (TypeElement) field.getEnclosingElement())
+            .nestedClass(this.attributeConverterGenerator.constructConverterName(field));
+
+    List<Modifier> fieldModifiers = new ArrayList<Modifier>(field.getModifiers());
+
+    typeSpecBuilder
+        .addType(this.attributeConverterGenerator.constructConverterTypeSpec(
+            field,
+            this.isBinaryStorage(field),
+            ENCRYPTION_ENGINE_FIELD_NAME,
+            this.constructSecuredClassName((TypeElement) field.getEnclosingElement()),
+            this.options.isMetricsEnabled()))
+        .addField(FieldSpec.builder(
+            fieldTypeName,
+            fieldName,
+            fieldModifiers.toArray(new Modifier[fieldModifiers.size()]))
+            .addAnnotations(this.copyAnnotations(field))
+            .addAnnotation(AnnotationSpec.builder(Convert.class)
+                .addMember("converter", "$T.class", converterClassName)
+                .build())
+            .build())
+        .addMethod(this.constructMethodSpec(
+            this.constructBasicGetterJavadoc(fieldName),
+            this.determineGetterNameForFieldName(fieldName),
+            Arrays.asList(new Modifier[] {
+                Modifier.PUBLIC,
+            }),
+            fieldTypeName,
+            (Iterable<AnnotationSpec>) null,
+            (Iterable<? extends TypeName>) null,
+            (Iterable<ParameterSpec>) null,
+            this.constructBasicGetterMethodBody(fieldName)))
+        .addMethod(this.constructBasicSetterSpecForFieldName(
+            fieldName,
+            fieldTypeName));
+  }
+
+  /**
+   * Determines whether a confidential field is encrypted in chunks into a secured Blob.
+   * 
+   * @param field The confidential field.
+   * 
+   * @return True if the field is streamed; false otherwise.
+   */
+  protected boolean isStreaming(VariableElement field) {
+    TypeName fieldTypeName = TypeName.get(field.asType());
+
+    if (fieldTypeName.equals(TypeName.get(InputStream.class))
+        || fieldTypeName.equals(TypeName.get(Blob.class))) {
+      return true;
+    }
+
+    Confidential confidential = field.getAnnotation(Confidential.class);
+
+    return confidential != null
+        && confidential.streaming()
+        && fieldTypeName.equals(ArrayTypeName.of(TypeName.BYTE));
+  }
+
+  /**
+   * Constructs members encrypting a confidential field in chunks into a secured Blob.
+   * 
+   * The setter wraps the value in a Blob encrypting it as the persistence provider reads it, and
+   * the getter returns a stream or Blob decrypting the secured Blob as the caller reads it, so that
+   * the value is never held in memory as a whole. Only a byte array field is materialized, by its
+   * getter; its stream getter reads it without materializing it.
+   * 
+   * @param typeSpecBuilder The type spec builder.
+   * @param field The streamed confidential field.
+   */
+  protected void constructStreamingSupportMembers(
+      TypeSpec.Builder typeSpecBuilder,
+      VariableElement field) {
+    String fieldName = field.getSimpleName().toString();
+    String securedFieldName = this.constructSecuredFieldName(fieldName);
+    TypeName fieldTypeName = TypeName.get(field.asType());
+    TypeName securedFieldTypeName = TypeName.get(Blob.class);
+
+    List<Modifier> fieldModifiers = new ArrayList<Modifier>(field.getModifiers());
+
+    FieldSpec.Builder securedFieldSpecBuilder = FieldSpec.builder(
+        securedFieldTypeName,
+        securedFieldName,
+        fieldModifiers.toArray(new Modifier[fieldModifiers.size()]))
+        .addAnnotations(this.copyAnnotations(field));
+
+    if (field.getAnnotation(Lob.class) == null) {
+      securedFieldSpecBuilder.addAnnotation(Lob.class);
+    }
+
+    Iterable<Modifier> modifiers = Arrays.asList(new Modifier[] {
+        Modifier.PUBLIC,
+    });
+
+    Iterable<? extends TypeName> exceptionsThrown = Arrays.asList(
+        TypeName.get(EncryptionEngineException));
+
+    CodeBlock.Builder getterBodyBuilder = CodeBlock.builder()
+        .add(this.constructStreamingPassphraseProviderCheckCode());
+    CodeBlock.Builder setterBodyBuilder = CodeBlock.builder()
+        .add(this.constructStreamingPassphraseProviderCheckCode());
+    List<ParameterSpec> setterParameters = new ArrayList<ParameterSpec>();
+    CodeBlock setterJavadoc = this.constructBasicSetterJavadoc(fieldName);
+
+    setterParameters.add(ParameterSpec.builder(fieldTypeName, fieldName).build());
+
+    if (fieldTypeName.equals(TypeName.get(InputStream.class))) {
+      String lengthParameterName = fieldName + LENGTH_SUFFIX;
+
+      getterBodyBuilder.add(this.constructDecryptingStreamCode(field));
+      setterParameters.add(ParameterSpec.builder(TypeName.LONG, lengthParameterName).build());
+      setterJavadoc = CodeBlock.of(
+          "Sets the $L, which is read once, when the entity is written or the value is read back.\n\n"
+              + "@param $L The $L.\n"
+              + "@param $L The length of the $L, in bytes.\n",
+          fieldName,
+          fieldName,
+          fieldName,
+          lengthParameterName,
+          fieldName);
+      setterBodyBuilder.addStatement(
+          "this.$L = $T.encrypt(\n$L,\n$L,\n$L)",
+          securedFieldName,
+          EncryptedBlobs.class,
+          fieldName,
+          lengthParameterName,
+          this.constructStreamingKeyExpression());
+    } else {
+      getterBodyBuilder.addStatement(
+          "return $T.$L(\n$L,\n$L)",
+          EncryptedBlobs.class,
+          fieldTypeName.equals(TypeName.get(Blob.class))
+              ? "decrypt"
+              : "decryptToBytes",
+          CodeBlock.of("this.$L", securedFieldName),
+          this.constructStreamingKeyExpression());
+      setterBodyBuilder.addStatement(
+          "this.$L = $T.encrypt(\n$L,\n$L)",
+          securedFieldName,
+          EncryptedBlobs.class,
+          fieldName,
+          this.constructStreamingKeyExpression());
+    }
+
+    typeSpecBuilder
+        .addField(securedFieldSpecBuilder.build())
+        .addMethod(this.constructMethodSpec(
+            this.constructBasicGetterJavadoc(fieldName),
+            this.determineGetterNameForFieldName(fieldName),
+            modifiers,
+            fieldTypeName,
+            (Iterable<AnnotationSpec>) null,
+            exceptionsThrown,
+            (Iterable<ParameterSpec>) null,
+            getterBodyBuilder.build()))
+        .addMethod(this.constructMethodSpec(
+            setterJavadoc,
+            this.determineSetterNameForFieldName(fieldName),
+            modifiers,
+            (TypeName) null,
+            (Iterable<AnnotationSpec>) null,
+            exceptionsThrown,
+            setterParameters,
+            setterBodyBuilder.build()))
+        .addMethod(this.constructMethodSpec(
+            this.constructBasicGetterJavadoc(securedFieldName),
+            this.determineGetterNameForFieldName(securedFieldName),
+            modifiers,
+            securedFieldTypeName,
+            (Iterable<AnnotationSpec>) null,
+            (Iterable<? extends TypeName>) null,
+            (Iterable<ParameterSpec>) null,
+            this.constructBasicGetterMethodBody(securedFieldName)))
+        .addMethod(this.constructBasicSetterSpecForFieldName(
+            securedFieldName,
+            securedFieldTypeName));
+
+    if (fieldTypeName.equals(ArrayTypeName.of(TypeName.BYTE))) {
+      typeSpecBuilder.addMethod(this.constructMethodSpec(
+          CodeBlock.of("@return A stream decrypting the $L as it is read.\n", fieldName),
+          this.determineGetterNameForFieldName(fieldName + STREAM_SUFFIX),
+          modifiers,
+          TypeName.get(InputStream.class),
+          (Iterable<AnnotationSpec>) null,
+          exceptionsThrown,
+          (Iterable<ParameterSpec>) null,
+          CodeBlock.builder()
+              .add(this.constructStreamingPassphraseProviderCheckCode())
+              .add(this.constructDecryptingStreamCode(field))
+              .build()));
+    }
+  }
+
+  /**
+   * Constructs the code returning a stream decrypting the secured Blob of a streamed field.
+   * 
+   * @param field The streamed confidential field.
+   * 
+   * @return The code returning the decrypting stream.
+   */
+  private CodeBlock constructDecryptingStreamCode(VariableElement field) {
+    String exceptionName = "e";
+
+    return CodeBlock.builder()
+        .beginControlFlow("try")
+        .addStatement(
+            "return $T.openDecryptingStream(\nthis.$L,\n$L)",
+            EncryptedBlobs.class,
+            this.constructSecuredFieldName(field.getSimpleName().toString()),
+            this.constructStreamingKeyExpression())
+        .nextControlFlow(
+            "catch ($T $L)",
+            SQLException.class,
+            exceptionName)
+        .addStatement(
+            "throw new $T($S, $L)",
+            EncryptionEngineException,
+            "Unable to read the secured value.",
+            exceptionName)
+        .endControlFlow()
+        .build();
+  }
+
+  /**
+   * Constructs the code ensuring that the passphrase provider of a streamed field has been set.
+   * 
+   * Attribute converters register their passphrase provider with ConfidentialConverters, which
+   * checks it when the key is requested.
+   * 
+   * @return The passphrase provider check code.
+   */
+  private CodeBlock constructStreamingPassphraseProviderCheckCode() {
+    if (this.options.isConvertersEnabled()) {
+      return CodeBlock.builder().build();
+    }
+
+    return CodeBlock.of(
+        "if (this.$L == null) {\n  throw new IllegalStateException(\"$L\");\n}\n\n",
+        PASSPHRASE_PROVIDER_FIELD_NAME,
+        "The passphrase provider has not been set.");
+  }
+
+  /**
+   * Constructs the expression getting the key of a streamed field.
+   * 
+   * @return The key expression.
+   */
+  private CodeBlock constructStreamingKeyExpression() {
+    return this.options.isConvertersEnabled()
+        ? CodeBlock.of("$T.getKey()", ConfidentialConverters.class)
+        : this.constructKeyExpression(null);
+  }
+
+  /**
+   * Gets the name of the group a confidential field is packed into.
+   * 
+   * Streamed fields are never grouped, and neither are fields encrypted by attribute converters,
+   * which convert one attribute at a time.
+   * 
+   * @param field The field.
+   * 
+   * @return The group name, or null if the field is not grouped.
+   */
+  protected String getGroup(VariableElement field) {
+    Confidential confidential = field.getAnnotation(Confidential.class);
+
+    if (confidential == null
+        || confidential.group().isEmpty()
+        || this.isStreaming(field)
+        || this.options.isConvertersEnabled()) {
+      return null;
+    }
+
+    if (!this.isGroupName(confidential.group())) {
+      throw new IllegalArgumentException(String.format(
+          "The confidential group %1$s of %2$s is not a Java identifier.",
+          confidential.group(),
+          field.getSimpleName().toString()));
+    }
+
+    return confidential.group();
+  }
+
+  /**
+   * Indicates whether a confidential group name is a Java identifier.
+   * 
+   * @param group The group name.
+   * 
+   * @return True if the group name is a Java identifier; false otherwise.
+   */
+  private boolean isGroupName(String group) {
+    return SourceVersion.isIdentifier(group) && !SourceVersion.isKeyword(group);
+  }
+
+  /**
+   * Gets the confidential groups of the template class.
+   * 
+   * @param typeElement The template class.
+   * 
+   * @return The fields of each group, by group name, in declaration order.
+   */
+  protected Map<String, List<VariableElement>> getConfidentialGroups(TypeElement typeElement) {
+    Map<String, List<VariableElement>> groups = new LinkedHashMap<String, List<VariableElement>>();
+
+    for (VariableElement field : ElementFilter.fieldsIn(typeElement.getEnclosedElements())) {
+      String group = this.getGroup(field);
+
+      if (group != null) {
+        groups.computeIfAbsent(group, name -> new ArrayList<VariableElement>()).add(field);
+      }
+    }
+
+    return groups;
+  }
+
+  /**
+   * Constructs the members of a grouped confidential field: the field holding its decrypted value,
+   * its accessors and, if it is searchable, its blind index.
+   * 
+   * The getter decrypts the envelope of the group, unless it has already been decrypted. The setter
+   * re-encrypts the envelope, or, with write-behind enabled, leaves it to the seal method.
+   * 
+   * @param typeSpecBuilder The type spec builder.
+   * @param field The grouped confidential field.
+   */
+  protected void constructGroupMemberSupportMembers(
+      TypeSpec.Builder typeSpecBuilder,
+      VariableElement field) {
+    String fieldName = field.getSimpleName().toString();
+    String group = this.getGroup(field);
+
+    Iterable<Modifier> modifiers = Arrays.asList(new Modifier[] {
+        Modifier.PUBLIC,
+    });
+
+    Iterable<? extends TypeName> exceptionsThrown = Arrays.asList(
+        TypeName.get(EncryptionToolException),
+        TypeName.get(EncryptionEngineException),
+        TypeName.get(SerializerException));
+
+    typeSpecBuilder
+        .addField(this.constructConfidentialFieldSpec(field))
+        .addMethod(this.constructMethodSpec(
+            this.constructBasicGetterJavadoc(fieldName),
+            this.determineGetterNameForFieldName(fieldName),
+            modifiers,
+            TypeName.get(field.asType()),
+            (Iterable<AnnotationSpec>) null,
+            exceptionsThrown,
+            (Iterable<ParameterSpec>) null,
+            CodeBlock.builder()
+                .addStatement(
+                    "this.$L()",
+                    this.constructGroupOpenMethodName(group))
+                .addStatement(
+                    "return this.$L",
+                    fieldName)
+                .build()))
+        .addMethod(this.constructMethodSpec(
+            this.constructBasicSetterJavadoc(fieldName),
+            this.determineSetterNameForFieldName(fieldName),
+            modifiers,
+            (TypeName) null,
+            (Iterable<AnnotationSpec>) null,
+            exceptionsThrown,
+            this.constructBasicSetterParameters(fieldName, TypeName.get(field.asType())),
+            this.constructGroupMemberSetterMethodBody(field)));
+
+    if (this.isSearchable(field)) {
+      this.constructBlindIndexSupportMembers(typeSpecBuilder, field);
+    }
+  }
+
+  /**
+   * Constructs the setter method body of a grouped confidential field.
+   * 
+   * The envelope is left untouched when the value set is equal to the current value of an immutable
+   * type; values which may have been changed in place are always sealed again. A value which
+   * cannot be encrypted is discarded with the other decrypted values of the group, so that they
+   * keep matching the envelope.
+   * 
+   * @param field The grouped confidential field.
+   * 
+   * @return The setter method body.
+   */
+  protected CodeBlock constructGroupMemberSetterMethodBody(VariableElement field) {
+    String fieldName = field.getSimpleName().toString();
+    String group = this.getGroup(field);
+    String exceptionName = "e";
+
+    CodeBlock.Builder codeBlockBuilder = CodeBlock.builder();
+
+    if (!this.isWriteBehindEnabled()) {
+      codeBlockBuilder.add(
+          "if (this.$L == null) {\n  throw new IllegalStateException(\"$L\");\n}\n\n",
+          PASSPHRASE_PROVIDER_FIELD_NAME,
+          "The passphrase provider has not been set.");
+    }
+
+    codeBlockBuilder
+        .addStatement(
+            "this.$L()",
+            this.constructGroupOpenMethodName(group))
+        .add("\n");
+
+    if (this.valueCodecSelector.isImmutable(field.asType())) {
+      codeBlockBuilder
+          .beginControlFlow(
+              "if ($L)",
+              this.constructEqualityExpression(
+                  TypeName.get(field.asType()),
+                  "this." + fieldName,
+                  fieldName))
+          .addStatement("return")
+          .endControlFlow()
+          .add("\n");
+    }
+
+    codeBlockBuilder
+        .addStatement(
+            "this.$L = $L",
+            fieldName,
+            fieldName);
+
+    if (this.isWriteBehindEnabled()) {
+      return codeBlockBuilder
+          .addStatement(
+              "this.$L = true",
+              this.constructPendingFlagFieldName(group))
+          .addStatement(
+              "this.$L = null",
+              this.constructSecuredFieldName(group))
+          .build();
+    }
+
+    codeBlockBuilder
+        .add("\n")
+        .beginControlFlow("try")
+        .addStatement(
+            "this.$L()",
+            this.constructGroupSealMethodName(group))
+        .nextControlFlow(
+            "catch ($T | $T | $T | $T $L)",
+            EncryptionToolException,
+            EncryptionEngineException,
+            SerializerException,
+            RuntimeException.class,
+            exceptionName)
+        .addStatement(
+            "this.$L = false",
+            this.constructDecryptedFlagFieldName(group))
+        .addStatement("throw $L", exceptionName)
+        .endControlFlow();
+
+    if (this.isSearchable(field)) {
+      codeBlockBuilder.addStatement(
+          "this.$L = $L($L, this.$L)",
+          this.constructIndexFieldName(fieldName),
+          this.constructIndexMethodName(fieldName),
+          fieldName,
+          PASSPHRASE_PROVIDER_FIELD_NAME);
+    }
+
+    return codeBlockBuilder.build();
+  }
+
+  /**
+   * Constructs the members of each confidential group: the constant holding the names of its
+   * fields, its secured field and accessors, its flags, and the methods decrypting and encrypting
+   * its envelope.
+   * 
+   * The secured field takes the storage, modifiers and annotations of the first field of the group.
+   * 
+   * @param typeElement The template class.
+   * @param typeSpecBuilder The type spec builder.
+   */
+  protected void constructGroupSupportMembers(
+      TypeElement typeElement,
+      TypeSpec.Builder typeSpecBuilder) {
+    for (Map.Entry<String, List<VariableElement>> entry :
+        this.getConfidentialGroups(typeElement).entrySet()) {
+      String group = entry.getKey();
+      List<VariableElement> fields = entry.getValue();
+      VariableElement firstField = fields.get(0);
+      String securedFieldName = this.constructSecuredFieldName(group);
+      TypeName securedFieldTypeName = this.constructSecuredFieldTypeName(firstField);
+
+      CodeBlock.Builder fieldNamesBuilder = CodeBlock.builder().add("{");
+
+      for (int i = 0; i < fields.size(); i++) {
+        fieldNamesBuilder.add(
+            i == 0 ? "$S" : ", $S",
+            fields.get(i).getSimpleName().toString());
+      }
+
+      List<Modifier> fieldModifiers = new ArrayList<Modifier>(firstField.getModifiers());
+
+      typeSpecBuilder
+          .addField(FieldSpec.builder(
+              ArrayTypeName.of(String.class),
+              this.constructGroupFieldNamesConstantName(group),
+              Modifier.PRIVATE,
+              Modifier.STATIC,
+              Modifier.FINAL)
+              .initializer(fieldNamesBuilder.add("}").build())
+              .build())
+          .addField(FieldSpec.builder(
+              securedFieldTypeName,
+              securedFieldName,
+              fieldModifiers.toArray(new Modifier[fieldModifiers.size()]))
+              .addAnnotations(this.copyAnnotations(firstField))
+              .build())
+          .addField(this.constructTransientFieldSpec(
+              this.constructDecryptedFlagFieldName(group),
+              TypeName.BOOLEAN));
+
+      if (this.isWriteBehindEnabled()) {
+        typeSpecBuilder.addField(this.constructTransientFieldSpec(
+            this.constructPendingFlagFieldName(group),
+            TypeName.BOOLEAN));
+      }
+
+      MethodSpec.Builder securedSetterBuilder = this.constructBasicSetterSpecBuilderForFieldName(
+          securedFieldName,
+          securedFieldTypeName)
+          .addStatement(
+              "this.$L = false",
+              this.constructDecryptedFlagFieldName(group));
+
+      if (this.isWriteBehindEnabled()) {
+        securedSetterBuilder.addStatement(
+            "this.$L = false",
+            this.constructPendingFlagFieldName(group));
+      }
+
+      typeSpecBuilder
+          .addMethod(this.constructMethodSpec(
+              this.constructBasicGetterJavadoc(securedFieldName),
+              this.determineGetterNameForFieldName(securedFieldName),
+              Arrays.asList(new Modifier[] {
+                  Modifier.PUBLIC,
+              }),
+              securedFieldTypeName,
+              (Iterable<AnnotationSpec>) null,
+              (Iterable<? extends TypeName>) null,
+              (Iterable<ParameterSpec>) null,
+              this.constructSealingGetterMethodBody(group, securedFieldName)))
+          .addMethod(securedSetterBuilder.build())
+          .addMethod(this.constructGroupOpenMethod(typeElement, group, fields))
+          .addMethod(this.constructGroupSealMethod(typeElement, group, fields));
+    }
+  }
+
+  /**
+   * Constructs the method decrypting the envelope of a group into the fields of the group, unless
+   * it has already been decrypted.
+   * 
+   * @param typeElement The template class.
+   * @param group The group name.
+   * @param fields The fields of the group.
+   * 
+   * @return The method specification.
+   */
+  protected MethodSpec constructGroupOpenMethod(
+      TypeElement typeElement,
+      String group,
+      List<VariableElement> fields) {
+    String securedFieldName = this.constructSecuredFieldName(group);
+    String decryptedFlagFieldName = this.constructDecryptedFlagFieldName(group);
+    String binaryObjectName = "binaryObject";
+    String encodedValuesName = "encodedValues";
+
+    CodeBlock.Builder defaultValuesBuilder = CodeBlock.builder();
+    CodeBlock.Builder decodedValuesBuilder = CodeBlock.builder()
+        .addStatement(
+            "byte[][] $L = $T.unpack($L, $L)",
+            encodedValuesName,
+            ValueEnvelope.class,
+            binaryObjectName,
+            this.constructGroupFieldNamesConstantName(group));
+
+    for (int i = 0; i < fields.size(); i++) {
+      VariableElement field = fields.get(i);
+      String fieldName = field.getSimpleName().toString();
+      CodeBlock defaultValue = this.constructDefaultValueExpression(TypeName.get(field.asType()));
+
+      defaultValuesBuilder.addStatement(
+          "this.$L = $L",
+          fieldName,
+          defaultValue);
+      decodedValuesBuilder.addStatement(
+          "this.$L = $L[$L] == null\n$>$>? $L\n: $L$<$<",
+          fieldName,
+          encodedValuesName,
+          i,
+          defaultValue,
+          this.valueCodecSelector.constructDecodeExpression(
+              field,
+              String.format("%1$s[%2$d]", encodedValuesName, i)));
+    }
+
+    return MethodSpec.methodBuilder(this.constructGroupOpenMethodName(group))
+        .addJavadoc("Decrypts the envelope of the $L group, unless it has already been decrypted.\n",
+            group)
+        .addModifiers(Modifier.PRIVATE)
+        .addExceptions(Arrays.asList(
+            TypeName.get(EncryptionToolException),
+            TypeName.get(EncryptionEngineException),
+            TypeName.get(SerializerException)))
+        .beginControlFlow(
+            "if (this.$L)",
+            decryptedFlagFieldName)
+        .addStatement("return")
+        .endControlFlow()
+        .addCode("\n")
+        .beginControlFlow(
+            "if (this.$L == null)",
+            securedFieldName)
+        .addCode(defaultValuesBuilder.build())
+        .nextControlFlow("else")
+        .addCode(
+            "if (this.$L == null) {\n  throw new IllegalStateException(\"$L\");\n}\n\n",
+            PASSPHRASE_PROVIDER_FIELD_NAME,
+            "The passphrase provider has not been set.")
+        .addCode(this.constructMeasuredDecryptionCode(
+            typeElement,
+            group,
+            securedFieldName,
+            this.isBinaryStorage(fields.get(0)),
+            binaryObjectName))
+        .addCode(this.constructWipingCode(
+            decodedValuesBuilder.build(),
+            binaryObjectName))
+        .endControlFlow()
+        .addCode("\n")
+        .addStatement(
+            "this.$L = true",
+            decryptedFlagFieldName)
+        .build();
+  }
+
+  /**
+   * Constructs the method packing the fields of a group into its envelope and encrypting it.
+   * 
+   * @param typeElement The template class.
+   * @param group The group name.
+   * @param fields The fields of the group.
+   * 
+   * @return The method specification.
+   */
+  protected MethodSpec constructGroupSealMethod(
+      TypeElement typeElement,
+      String group,
+      List<VariableElement> fields) {
+    String binaryObjectName = "binaryObject";
+
+    CodeBlock.Builder encodedValuesBuilder = CodeBlock.builder();
+
+    for (int i = 0; i < fields.size(); i++) {
+      String fieldName = fields.get(i).getSimpleName().toString();
+
+      encodedValuesBuilder
+          .add(i == 0 ? "" : ",\n")
+          .add(this.valueCodecSelector.constructEncodeExpression(
+              fields.get(i),
+              "this." + fieldName));
+    }
+
+    return MethodSpec.methodBuilder(this.constructGroupSealMethodName(group))
+        .addJavadoc("Packs the fields of the $L group into its envelope and encrypts it.\n",
+            group)
+        .addModifiers(Modifier.PRIVATE)
+        .addExceptions(Arrays.asList(
+            TypeName.get(EncryptionToolException),
+            TypeName.get(EncryptionEngineException),
+            TypeName.get(SerializerException)))
+        .addStatement(
+            "byte[] $L = $T.pack(\n$L,\nnew byte[][] {\n$>$L$<})",
+            binaryObjectName,
+            ValueEnvelope.class,
+            this.constructGroupFieldNamesConstantName(group),
+            encodedValuesBuilder.build())
+        .addCode(this.constructWipingCode(
+            this.constructMeasuredEncryptionCode(
+                typeElement,
+                group,
+                this.constructSecuredFieldName(group),
+                this.isBinaryStorage(fields.get(0)),
+                binaryObjectName),
+            binaryObjectName))
+        .build();
+  }
+
+  /**
+   * Constructs the code of the seal method encrypting the envelope of a pending group.
+   * 
+   * @param group The group name.
+   * @param fields The fields of the group.
+   * 
+   * @return The seal code.
+   */
+  protected CodeBlock constructGroupSealCode(
+      String group,
+      List<VariableElement> fields) {
+    CodeBlock.Builder codeBlockBuilder = CodeBlock.builder()
+        .beginControlFlow(
+            "if (this.$L)",
+            this.constructPendingFlagFieldName(group))
+        .addStatement(
+            "this.$L()",
+            this.constructGroupSealMethodName(group));
+
+    for (VariableElement field : fields) {
+      if (this.isSearchable(field)) {
+        String fieldName = field.getSimpleName().toString();
+
+        codeBlockBuilder.addStatement(
+            "this.$L = $L(this.$L, this.$L)",
+            this.constructIndexFieldName(fieldName),
+            this.constructIndexMethodName(fieldName),
+            fieldName,
+            PASSPHRASE_PROVIDER_FIELD_NAME);
+      }
+    }
+
+    return codeBlockBuilder
+        .addStatement(
+            "this.$L = false",
+            this.constructPendingFlagFieldName(group))
+        .endControlFlow()
+        .build();
+  }
+
+  /**
+   * Constructs the expression of the default value of a type.
+   * 
+   * @param typeName The type.
+   * 
+   * @return The default value expression.
+   */
+  protected CodeBlock constructDefaultValueExpression(TypeName typeName) {
+    return this.valueCodecSelector.constructDefaultValueExpression(typeName);
+  }
+
+
+  /**
+   * Constructs members required to support an instance of the Confidential annotation.
+   * 
+   * @param typeSpecBuilder The type spec builder.
+   * @param field The confidential field.
+   */
+  protected void constructConfidentialitySupportMembers(
+      TypeSpec.Builder typeSpecBuilder,
+      VariableElement field) {
+
+    String fieldName = field.getSimpleName()
+        .toString();
+
+    String securedFieldName = this.constructSecuredFieldName(fieldName);
+
+    if (this.isCachingEnabled(field) || this.isWriteBehindEnabled()) {
+      typeSpecBuilder.addField(this.constructConfidentialFieldSpec(field));
+    }
+
+    if (this.isCachingEnabled(field)) {
+      typeSpecBuilder.addField(this.constructTransientFieldSpec(
+          this.constructDecryptedFlagFieldName(fieldName),
+          TypeName.BOOLEAN));
+    }
+
+    if (this.isWriteBehindEnabled()) {
+      typeSpecBuilder.addField(this.constructTransientFieldSpec(
+          this.constructPendingFlagFieldName(fieldName),
+          TypeName.BOOLEAN));
+    }
+
+    typeSpecBuilder
+        .addField(this.constructSecuredFieldSpec(field, securedFieldName))
+        .addMethod(this.constructGetterMethodCapableOfDecryption(field))
+        .addMethod(this.constructSetterForSecuredFieldValue(field))
+        .addMethod(this.constructGetterForSecuredField(field))
+        .addMethod(this.constructSetterForSecuredField(field));
+
+    if (this.isSearchable(field)) {
+      this.constructBlindIndexSupportMembers(typeSpecBuilder, field);
+    }
+  }
+
+  /**
+   * Determines whether a blind index is generated for a confidential field.
+   * 
+   * @param field The confidential field.
+   * 
+   * @return True if a blind index is generated; false otherwise.
+   */
+  protected boolean isSearchable(VariableElement field) {
+    Confidential confidential = field.getAnnotation(Confidential.class);
+
+    return confidential != null && confidential.searchable();
+  }
+
+  /**
+   * Constructs the blind index field of a searchable confidential field, its accessors, and the
+   * static method computing the lookup token of a value.
+   * 
+   * @param typeSpecBuilder The type spec builder.
+   * @param field The searchable confidential field.
+   */
+  protected void constructBlindIndexSupportMembers(
+      TypeSpec.Builder typeSpecBuilder,
+      VariableElement field) {
+    String fieldName = field.getSimpleName().toString();
+    String indexFieldName = this.constructIndexFieldName(fieldName);
+    String group = this.getGroup(field);
+    String passphraseProviderName = PASSPHRASE_PROVIDER_FIELD_NAME;
+
+    List<Modifier> fieldModifiers = new ArrayList<Modifier>(field.getModifiers());
+
+    typeSpecBuilder
+        .addField(FieldSpec.builder(
+            String.class,
+            indexFieldName,
+            fieldModifiers.toArray(new Modifier[fieldModifiers.size()]))
+            .build())
+        .addMethod(this.constructMethodSpec(
+            this.constructBasicGetterJavadoc(indexFieldName),
+            this.determineGetterNameForFieldName(indexFieldName),
+            Arrays.asList(new Modifier[] {
+                Modifier.PUBLIC,
+            }),
+            TypeName.get(String.class),
+            (Iterable<AnnotationSpec>) null,
+            (Iterable<? extends TypeName>) null,
+            (Iterable<ParameterSpec>) null,
+            this.constructSealingGetterMethodBody(
+                group == null ? fieldName : group,
+                indexFieldName)))
+        .addMethod(this.constructBasicSetterSpecForFieldName(
+            indexFieldName,
+            TypeName.get(String.class)))
+        .addMethod(MethodSpec.methodBuilder(this.constructIndexMethodName(fieldName))
+            .addJavadoc("Computes the blind index token to look up entities by $L.\n\n"
+                + "@param $L The value to look up.\n"
+                + "@param $L The passphrase provider.\n\n"
+                + "@return The blind index token.\n",
+                fieldName,
+                fieldName,
+                passphraseProviderName)
+            .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+            .returns(String.class)
+            .addParameter(TypeName.get(field.asType()), fieldName)
+            .addParameter(PassphraseProvider.class, passphraseProviderName)
+            .addException(EncryptionEngineException)
+            .addException(SerializerException)
+            .addStatement(
+                "return $T.compute(\n$L,\n$L,\n$S,\n$S)",
+                BlindIndex.class,
+                this.valueCodecSelector.constructEncodeExpression(field.asType(), fieldName),
+                this.constructKeyExpression(CodeBlock.of("$L", passphraseProviderName)),
+                ((TypeElement) field.getEnclosingElement()).getQualifiedName().toString(),
+                fieldName)
+            .build());
+  }
+
+  /**
+   * Determines whether the decrypted value of a confidential field may be cached.
+   * 
+   * @param field The confidential field.
+   * 
+   * @return True if the decrypted value may be cached; false otherwise.
+   */
+  protected boolean isCachingEnabled(VariableElement field) {
+    Confidential confidential = field.getAnnotation(Confidential.class);
+
+    return this.options.isCachingEnabled()
+        && (confidential == null || confidential.cache());
+  }
+
+  /**
+   * Determines whether confidential setters defer encryption to the generated seal method.
+   * 
+   * Attribute converters already encrypt when entities are written, so they are not affected.
+   * 
+   * @return True if encryption is deferred; false otherwise.
+   */
+  protected boolean isWriteBehindEnabled() {
+    return this.options.isWriteBehindEnabled()
+        && !this.options.isConvertersEnabled();
+  }
+
+  /**
+   * Determines whether generated classes publish decrypted values safely to other threads.
+   * 
+   * Cached values, their decrypted flags and the passphrase provider are then volatile. Getters
+   * always store a value before setting its flag, so a reader that sees the flag set also sees the
+   * value without taking a lock; concurrent first reads may each decrypt the value once.
+   * 
+   * @return True if the thread safe code is generated; false otherwise.
+   */
+  protected boolean isThreadSafe() {
+    return this.options.isThreadSafe();
+  }
+
+  /**
+   * Determines whether generated classes encrypt through reused buffers and wipe plaintext.
+   * 
+   * @return True if the low allocation code is generated; false otherwise.
+   */
+  protected boolean isLowAllocationEnabled() {
+    return this.options.isLowAllocationEnabled();
+  }
+
+  /**
+   * Determines whether the secured value of a confidential field is stored as a byte array.
+   * 
+   * @param field The confidential field.
+   * 
+   * @return True if the secured value is stored as a byte array; false if it is Base64 text.
+   */
+  protected boolean isBinaryStorage(VariableElement field) {
+    Confidential confidential = field.getAnnotation(Confidential.class);
+    Storage storage = confidential == null
+        ? Storage.DEFAULT
+        : confidential.storage();
+
+    if (storage == Storage.DEFAULT) {
+      storage = this.options.getDefaultStorage();
+    }
+
+    return storage == Storage.BINARY;
+  }
+
+  /**
+   * Gets the type of the secured (encrypted) field for a confidential field.
+   * 
+   * @param field The confidential field.
+   * 
+   * @return The secured field type.
+   */
+  protected TypeName constructSecuredFieldTypeName(VariableElement field) {
+    return this.isBinaryStorage(field)
+        ? ArrayTypeName.of(TypeName.BYTE)
+        : TypeName.get(String.class);
+  }
+
+  /**
+   * Constructs the setter specification for the secured (encrypted) value of a field.
+   * 
+   * Setting the secured value discards any cached decrypted value.
+   * 
+   * @param field The confidential field.
+   * 
+   * @return The setter specification for the secured value.
+   */
+  protected MethodSpec constructSetterForSecuredFieldValue(VariableElement field) {
+    String fieldName = field.getSimpleName().toString();
+    String securedFieldName = this.constructSecuredFieldName(fieldName);
+
+    MethodSpec.Builder methodSpecBuilder = this.constructBasicSetterSpecBuilderForFieldName(
+        securedFieldName,
+        this.constructSecuredFieldTypeName(field));
+
+    if (this.isCachingEnabled(field)) {
+      methodSpecBuilder.addCode(this.constructCacheInvalidationCode(field));
+    }
+
+    if (this.isWriteBehindEnabled()) {
+      if (!this.isCachingEnabled(field) && !TypeName.get(field.asType()).isPrimitive()) {
+        methodSpecBuilder.addStatement(
+            "this.$L = null",
+            fieldName);
+      }
+
+      methodSpecBuilder.addStatement(
+          "this.$L = false",
+          this.constructPendingFlagFieldName(fieldName));
+    }
+
+    return methodSpecBuilder
+        .build();
+  }
+
+  /**
+   * Constructs the code discarding the cached decrypted value of a field.
+   * 
+   * @param field The confidential field.
+   * 
+   * @return The cache invalidation code.
+   */
+  protected CodeBlock constructCacheInvalidationCode(VariableElement field) {
+    String fieldName = field.getSimpleName().toString();
+
+    CodeBlock.Builder codeBlockBuilder = CodeBlock.builder();
+
+    if (!TypeName.get(field.asType()).isPrimitive()) {
+      codeBlockBuilder.addStatement(
+          "this.$L = null",
+          fieldName);
+    }
+
+    return codeBlockBuilder
+        .addStatement(
+            "this.$L = false",
+            this.constructDecryptedFlagFieldName(fieldName))
+        .build();
+  }
+
+  protected MethodSpec constructGetterMethodCapableOfDecryption(VariableElement field) {
+    String fieldName = field.getSimpleName().toString();
+
+    Iterable<Modifier> modifiers = Arrays.asList(new Modifier[] {
+        Modifier.PUBLIC,
+    });
 
-    Iterable<Modifier> modifiers = Arrays.asList(new Modifier[] {
-        Modifier.PUBLIC,
-    });
-
     Iterable<? extends TypeName> exceptionsThrown = Arrays.asList(
         TypeName.get(EncryptionToolException),
+        TypeName.get(EncryptionEngineException),
         TypeName.get(SerializerException));
 
     return this.constructMethodSpec(
@@ -218,55 +2399,511 @@ public class SecuredPojoGenerator
         (Iterable<AnnotationSpec>) null,
         exceptionsThrown,
         (Iterable<ParameterSpec>) null,
-        this.constructGetterMethodCapableOfDecryptionBody(
-            fieldName,
-            TypeName.get(field.asType())));
+        this.constructGetterMethodCapableOfDecryptionBody(field));
+  }
+
+  protected CodeBlock constructGetterMethodCapableOfDecryptionBody(VariableElement field) {
+    String fieldName = field.getSimpleName().toString();
+    boolean cachingEnabled = this.isCachingEnabled(field);
+
+    String illegalStateExceptionMessage = "The passphrase provider has not been set.";
+    String binaryObjectName = "binaryObject";
+    String decryptedFlagFieldName = this.constructDecryptedFlagFieldName(fieldName);
+
+    CodeBlock.Builder codeBlockBuilder = CodeBlock.builder();
+
+    if (cachingEnabled) {
+      codeBlockBuilder.add(
+          "if (this.$L) {\n  return this.$L;\n}\n\n",
+          decryptedFlagFieldName,
+          fieldName);
+    } else if (this.isWriteBehindEnabled()) {
+      codeBlockBuilder.add(
+          "if (this.$L) {\n  return this.$L;\n}\n\n",
+          this.constructPendingFlagFieldName(fieldName),
+          fieldName);
+    }
+
+    codeBlockBuilder
+        .add(
+            "if (this.$L == null) {\n  throw new IllegalStateException(\"$L\");\n}\n\n",
+            PASSPHRASE_PROVIDER_FIELD_NAME,
+            illegalStateExceptionMessage)
+        .add(this.constructMeasuredDecryptionCode(field, binaryObjectName));
+
+    if (!cachingEnabled) {
+      return codeBlockBuilder
+          .add(this.constructWipingCode(
+              CodeBlock.builder()
+                  .addStatement(
+                      "return $L",
+                      this.valueCodecSelector.constructDecodeExpression(field, binaryObjectName))
+                  .build(),
+              binaryObjectName))
+          .build();
+    }
+
+    return codeBlockBuilder
+        .add(this.constructWipingCode(
+            CodeBlock.builder()
+                .addStatement(
+                    "this.$L = $L",
+                    fieldName,
+                    this.valueCodecSelector.constructDecodeExpression(field, binaryObjectName))
+                .build(),
+            binaryObjectName))
+        .addStatement(
+            "this.$L = true",
+            decryptedFlagFieldName)
+        .addStatement(
+            "return this.$L",
+            fieldName)
+        .build();
+  }
+
+  /**
+   * Constructs the code decrypting a secured field into a local byte array.
+   * 
+   * An explicitly assigned encryption tool is used with the raw passphrase; otherwise the shared
+   * engine is used with a key from the derived key cache.
+   * 
+   * @param field The confidential field.
+   * @param binaryObjectName The name of the local variable receiving the decrypted bytes.
+   * 
+   * @return The decryption code.
+   */
+  protected CodeBlock constructDecryptionCode(
+      VariableElement field,
+      String binaryObjectName) {
+    return CodeBlock.builder()
+        .addStatement(
+            "byte[] $L",
+            binaryObjectName)
+        .add(this.constructDecryptionStatements(
+            this.constructSecuredFieldName(field.getSimpleName().toString()),
+            this.isBinaryStorage(field),
+            binaryObjectName))
+        .build();
+  }
+
+  /**
+   * Constructs the code decrypting a secured field into a local byte array and reporting the
+   * measurement, unless metrics are disabled.
+   * 
+   * @param field The confidential field.
+   * @param binaryObjectName The name of the local variable receiving the decrypted bytes.
+   * 
+   * @return The decryption code.
+   */
+  protected CodeBlock constructMeasuredDecryptionCode(
+      VariableElement field,
+      String binaryObjectName) {
+    String fieldName = field.getSimpleName().toString();
+
+    return this.constructMeasuredDecryptionCode(
+        (TypeElement) field.getEnclosingElement(),
+        fieldName,
+        this.constructSecuredFieldName(fieldName),
+        this.isBinaryStorage(field),
+        binaryObjectName);
   }
-  
-  protected CodeBlock constructGetterMethodCapableOfDecryptionBody(
+
+  /**
+   * Constructs the code decrypting a secured field into a local byte array and reporting the
+   * measurement under a name, unless metrics are disabled.
+   * 
+   * @param typeElement The template class.
+   * @param fieldName The name the measurement is reported under.
+   * @param securedFieldName The secured field name.
+   * @param binaryStorage True if the secured field is a byte array; false if it is Base64 text.
+   * @param binaryObjectName The name of the local variable receiving the decrypted bytes.
+   * 
+   * @return The decryption code.
+   */
+  protected CodeBlock constructMeasuredDecryptionCode(
+      TypeElement typeElement,
       String fieldName,
-      TypeName fieldTypeName) {
+      String securedFieldName,
+      boolean binaryStorage,
+      String binaryObjectName) {
+    CodeBlock.Builder codeBlockBuilder = CodeBlock.builder();
+
+    if (!this.options.isMetricsEnabled()) {
+      return codeBlockBuilder
+          .addStatement(
+              "byte[] $L",
+              binaryObjectName)
+          .add(this.constructDecryptionStatements(
+              securedFieldName,
+              binaryStorage,
+              binaryObjectName))
+          .build();
+    }
+
+    ClassName entityClassName = this.constructSecuredClassName(typeElement);
+
+    return codeBlockBuilder
+        .add(this.cryptoMetricsCodeGenerator.constructMeasurementStartCode())
+        .addStatement(
+            "byte[] $L",
+            binaryObjectName)
+        .beginControlFlow("try")
+        .add(this.constructDecryptionStatements(
+            securedFieldName,
+            binaryStorage,
+            binaryObjectName))
+        .nextControlFlow(
+            "catch ($T | $T | $T e)",
+            EncryptionToolException,
+            EncryptionEngineException,
+            RuntimeException.class)
+        .add(this.cryptoMetricsCodeGenerator.constructDecryptionFailureRecordingCode(
+            entityClassName,
+            fieldName,
+            "e"))
+        .addStatement("throw e")
+        .endControlFlow()
+        .add(this.cryptoMetricsCodeGenerator.constructDecryptionRecordingCode(
+            entityClassName,
+            fieldName,
+            this.constructSecuredFieldLengthExpression(securedFieldName, binaryStorage),
+            CodeBlock.of("$L.length", binaryObjectName)))
+        .add("\n")
+        .build();
+  }
+
+  /**
+   * Constructs the statements decrypting a secured field into a declared local byte array.
+   * 
+   * @param securedFieldName The secured field name.
+   * @param binaryStorage True if the secured field is a byte array; false if it is Base64 text.
+   * @param binaryObjectName The name of the local variable receiving the decrypted bytes.
+   * 
+   * @return The decryption statements.
+   */
+  private CodeBlock constructDecryptionStatements(
+      String securedFieldName,
+      boolean binaryStorage,
+      String binaryObjectName) {
+    String encryptionToolFieldName = this.constructEncryptionToolFieldName();
+    String passphraseName = "passphrase";
+
+    return CodeBlock.builder()
+        .addStatement(
+            "$T $L = this.$L",
+            EncryptionToolInterface,
+            encryptionToolFieldName,
+            encryptionToolFieldName)
+        .beginControlFlow(
+            "if ($L != null)",
+            encryptionToolFieldName)
+        .addStatement(
+            "String $L = this.$L.getPassphrase()",
+            passphraseName,
+            PASSPHRASE_PROVIDER_FIELD_NAME)
+        .addStatement(
+            "$L = $L.decrypt(\n$L,\n$L)",
+            binaryObjectName,
+            encryptionToolFieldName,
+            binaryStorage
+                ? CodeBlock.of("this.$L", securedFieldName)
+                : CodeBlock.of("$L.decodeObject(this.$L)", encryptionToolFieldName, securedFieldName),
+            passphraseName)
+        .addStatement(
+            "$L = null",
+            passphraseName)
+        .nextControlFlow("else")
+        .add(this.constructEngineDecryptionStatements(
+            securedFieldName,
+            binaryStorage,
+            binaryObjectName))
+        .endControlFlow()
+        .build();
+  }
+
+  /**
+   * Constructs the statements decrypting a secured field with the encryption engine.
+   * 
+   * Text is decrypted with the legacy encryption tool when the engine finds no ciphertext header in
+   * it, so that values written before encryption engines were introduced stay readable. Any other
+   * failure is thrown as is, rather than handing a value of the engine to the legacy tool.
+   * 
+   * @param securedFieldName The secured field name.
+   * @param binaryStorage True if the secured field is a byte array; false if it is Base64 text.
+   * @param binaryObjectName The name of the local variable receiving the decrypted bytes.
+   * 
+   * @return The decryption statements.
+   */
+  private CodeBlock constructEngineDecryptionStatements(
+      String securedFieldName,
+      boolean binaryStorage,
+      String binaryObjectName) {
+    CodeBlock ciphertext = binaryStorage
+        ? CodeBlock.of("this.$L", securedFieldName)
+        : CodeBlock.of("$T.getDecoder().decode(this.$L)", Base64.class, securedFieldName);
+
+    CodeBlock decryptionStatement = CodeBlock.builder()
+        .addStatement(
+            "$L = $L",
+            binaryObjectName,
+            this.isLowAllocationEnabled() && !binaryStorage
+                ? CodeBlock.of(
+                    "$T.decryptBase64(\n$L,\nthis.$L,\n$L)",
+                    CryptoBuffers.class,
+                    ENCRYPTION_ENGINE_FIELD_NAME,
+                    securedFieldName,
+                    this.constructKeyExpression(null))
+                : CodeBlock.of(
+                    "$L.decrypt(\n$L,\n$L)",
+                    ENCRYPTION_ENGINE_FIELD_NAME,
+                    ciphertext,
+                    this.constructKeyExpression(null)))
+        .build();
+
+    if (binaryStorage) {
+      return decryptionStatement;
+    }
+
+    return CodeBlock.builder()
+        .beginControlFlow("try")
+        .add(decryptionStatement)
+        .nextControlFlow(
+            "catch ($T e)",
+            LegacyCiphertextException.class)
+        .addStatement(
+            "$L = $T.decrypt(\nthis.$L,\nthis.$L,\ne)",
+            binaryObjectName,
+            LegacyEncryption.class,
+            securedFieldName,
+            PASSPHRASE_PROVIDER_FIELD_NAME)
+        .endControlFlow()
+        .build();
+  }
+
+  /**
+   * Constructs the code encrypting a local byte array into a secured field.
+   * 
+   * @param field The confidential field.
+   * @param binaryObjectName The name of the local variable holding the bytes to encrypt.
+   * 
+   * @return The encryption code.
+   */
+  protected CodeBlock constructEncryptionCode(
+      VariableElement field,
+      String binaryObjectName) {
+    return this.constructEncryptionCode(
+        this.constructSecuredFieldName(field.getSimpleName().toString()),
+        this.isBinaryStorage(field),
+        binaryObjectName);
+  }
+
+  /**
+   * Constructs the code encrypting a local byte array into a secured field.
+   * 
+   * @param securedFieldName The secured field name.
+   * @param binaryStorage True if the secured field is a byte array; false if it is Base64 text.
+   * @param binaryObjectName The name of the local variable holding the bytes to encrypt.
+   * 
+   * @return The encryption code.
+   */
+  protected CodeBlock constructEncryptionCode(
+      String securedFieldName,
+      boolean binaryStorage,
+      String binaryObjectName) {
     String encryptionToolFieldName = this.constructEncryptionToolFieldName();
-    String encryptionToolSetterName = this.determineSetterNameForFieldName(encryptionToolFieldName);
+    String passphraseName = "passphrase";
+
+    CodeBlock toolCiphertext = CodeBlock.of(
+        "$L.encrypt($L, $L)",
+        encryptionToolFieldName,
+        binaryObjectName,
+        passphraseName);
+    CodeBlock engineCiphertext = CodeBlock.of(
+        "$L.encrypt($L, $L)",
+        ENCRYPTION_ENGINE_FIELD_NAME,
+        binaryObjectName,
+        this.constructKeyExpression(null));
+    CodeBlock engineSecuredValue;
+
+    if (binaryStorage) {
+      engineSecuredValue = engineCiphertext;
+    } else if (this.isLowAllocationEnabled()) {
+      engineSecuredValue = CodeBlock.of(
+          "$T.encryptToBase64(\n$L,\n$L,\n$L)",
+          CryptoBuffers.class,
+          ENCRYPTION_ENGINE_FIELD_NAME,
+          binaryObjectName,
+          this.constructKeyExpression(null));
+    } else {
+      engineSecuredValue =
+          CodeBlock.of("$T.getEncoder().encodeToString(\n$L)", Base64.class, engineCiphertext);
+    }
+
+    return CodeBlock.builder()
+        .addStatement(
+            "$T $L = this.$L",
+            EncryptionToolInterface,
+            encryptionToolFieldName,
+            encryptionToolFieldName)
+        .beginControlFlow(
+            "if ($L != null)",
+            encryptionToolFieldName)
+        .addStatement(
+            "String $L = this.$L.getPassphrase()",
+            passphraseName,
+            PASSPHRASE_PROVIDER_FIELD_NAME)
+        .addStatement(
+            "this.$L = $L",
+            securedFieldName,
+            binaryStorage
+                ? toolCiphertext
+                : CodeBlock.of("$L.encodeObject(\n$L)", encryptionToolFieldName, toolCiphertext))
+        .addStatement(
+            "$L = null",
+            passphraseName)
+        .nextControlFlow("else")
+        .addStatement(
+            "this.$L = $L",
+            securedFieldName,
+            engineSecuredValue)
+        .endControlFlow()
+        .build();
+  }
+
+  /**
+   * Constructs the code encrypting a local byte array into a secured field and reporting the
+   * measurement, unless metrics are disabled.
+   * 
+   * @param field The confidential field.
+   * @param binaryObjectName The name of the local variable holding the bytes to encrypt.
+   * 
+   * @return The encryption code.
+   */
+  protected CodeBlock constructMeasuredEncryptionCode(
+      VariableElement field,
+      String binaryObjectName) {
+    String fieldName = field.getSimpleName().toString();
+
+    return this.constructMeasuredEncryptionCode(
+        (TypeElement) field.getEnclosingElement(),
+        fieldName,
+        this.constructSecuredFieldName(fieldName),
+        this.isBinaryStorage(field),
+        binaryObjectName);
+  }
+
+  /**
+   * Constructs the code encrypting a local byte array into a secured field and reporting the
+   * measurement under a name, unless metrics are disabled.
+   * 
+   * @param typeElement The template class.
+   * @param fieldName The name the measurement is reported under.
+   * @param securedFieldName The secured field name.
+   * @param binaryStorage True if the secured field is a byte array; false if it is Base64 text.
+   * @param binaryObjectName The name of the local variable holding the bytes to encrypt.
+   * 
+   * @return The encryption code.
+   */
+  protected CodeBlock constructMeasuredEncryptionCode(
+      TypeElement typeElement,
+      String fieldName,
+      String securedFieldName,
+      boolean binaryStorage,
+      String binaryObjectName) {
+    if (!this.options.isMetricsEnabled()) {
+      return this.constructEncryptionCode(securedFieldName, binaryStorage, binaryObjectName);
+    }
+
+    ClassName entityClassName = this.constructSecuredClassName(typeElement);
+
+    return CodeBlock.builder()
+        .add(this.cryptoMetricsCodeGenerator.constructMeasurementStartCode())
+        .beginControlFlow("try")
+        .add(this.constructEncryptionCode(securedFieldName, binaryStorage, binaryObjectName))
+        .nextControlFlow(
+            "catch ($T | $T | $T e)",
+            EncryptionToolException,
+            EncryptionEngineException,
+            RuntimeException.class)
+        .add(this.cryptoMetricsCodeGenerator.constructEncryptionFailureRecordingCode(
+            entityClassName,
+            fieldName,
+            "e"))
+        .addStatement("throw e")
+        .endControlFlow()
+        .add(this.cryptoMetricsCodeGenerator.constructEncryptionRecordingCode(
+            entityClassName,
+            fieldName,
+            CodeBlock.of("$L.length", binaryObjectName),
+            this.constructSecuredFieldLengthExpression(securedFieldName, binaryStorage)))
+        .build();
+  }
 
-    String securedFieldName = this.constructSecuredFieldName(fieldName);
+  /**
+   * Constructs the expression getting the key of a passphrase provider from the derived key cache.
+   * 
+   * In low allocation mode, the provider itself is passed to the cache, so that the passphrase of a
+   * CharArrayPassphraseProvider is read as a character array and wiped.
+   * 
+   * @param passphraseProvider The passphrase provider expression, or null for the passphrase
+   *        provider field.
+   * 
+   * @return The key expression.
+   */
+  protected CodeBlock constructKeyExpression(CodeBlock passphraseProvider) {
+    CodeBlock provider = passphraseProvider == null
+        ? CodeBlock.of("this.$L", PASSPHRASE_PROVIDER_FIELD_NAME)
+        : passphraseProvider;
 
-    String illegalStateExceptionMessage = "The passphrase provider has not been set.";
-    String binaryObjectName = "binaryObject";
-    String passphraseName = "passphrase";
+    return this.isLowAllocationEnabled()
+        ? CodeBlock.of("$T.getDefault().getKey($L)", DerivedKeyCache.class, provider)
+        : CodeBlock.of("$T.getDefault().getKey($L.getPassphrase())", DerivedKeyCache.class, provider);
+  }
+
+  /**
+   * Constructs the code wiping a local byte array once the code using it has completed, in low
+   * allocation mode.
+   * 
+   * @param code The code using the byte array.
+   * @param binaryObjectName The name of the local byte array.
+   * 
+   * @return The code, followed by the wiping code if low allocation mode is enabled.
+   */
+  protected CodeBlock constructWipingCode(
+      CodeBlock code,
+      String binaryObjectName) {
+    if (!this.isLowAllocationEnabled()) {
+      return code;
+    }
 
     return CodeBlock.builder()
-        .add(
-            "if (this.$L == null) {\n  throw new IllegalStateException(\"$L\");\n}\n\n",
-            PASSPHRASE_PROVIDER_FIELD_NAME,
-            illegalStateExceptionMessage)
-        .add(
-            "if (this.$L == null) {\n  this.$L(new $T());\n}\n\n",
-            encryptionToolFieldName,
-            encryptionToolSetterName,
-            EncryptionToolImplementation)
-        .addStatement(
-            "String $L = this.$L.getPassphrase()",
-            passphraseName,
-            PASSPHRASE_PROVIDER_FIELD_NAME)
-        .addStatement(
-            "byte[] $L = this.$L.decrypt(\nthis.$L.decodeObject(this.$L),\n$L)",
-            binaryObjectName,
-            encryptionToolFieldName,
-            encryptionToolFieldName,
-            securedFieldName,
-            passphraseName)
-        .addStatement(
-            "$L = null",
-            passphraseName)
+        .beginControlFlow("try")
+        .add(code)
+        .nextControlFlow("finally")
         .addStatement(
-            "return ($T) $T.deserializeObject($L)",
-            fieldTypeName,
-            BinarySerializer.class,
+            "$T.wipe($L)",
+            CryptoBuffers.class,
             binaryObjectName)
+        .endControlFlow()
         .build();
   }
 
+  /**
+   * Constructs the expression of the length of a secured field value.
+   * 
+   * @param securedFieldName The secured field name.
+   * @param binaryStorage True if the secured field is a byte array; false if it is Base64 text.
+   * 
+   * @return The length expression.
+   */
+  private CodeBlock constructSecuredFieldLengthExpression(
+      String securedFieldName,
+      boolean binaryStorage) {
+    return binaryStorage
+        ? CodeBlock.of("this.$L.length", securedFieldName)
+        : CodeBlock.of("this.$L.length()", securedFieldName);
+  }
+
   /**
    * Constructs the setter specification for a secured field.
    * 
@@ -283,6 +2920,7 @@ public class SecuredPojoGenerator
 
     Iterable<? extends TypeName> exceptionsThrown = Arrays.asList(
         TypeName.get(EncryptionToolException),
+        TypeName.get(EncryptionEngineException),
         TypeName.get(SerializerException));
 
     return this.constructMethodSpec(
@@ -293,56 +2931,283 @@ public class SecuredPojoGenerator
         (Iterable<AnnotationSpec>) null,
         exceptionsThrown,
         this.constructBasicSetterParameters(fieldName, TypeName.get(field.asType())),
-        this.constructConfidentialSetterMethodBody(fieldName));
+        this.constructConfidentialSetterMethodBody(field));
   }
 
   /**
    * Constructs the confidential setter method body.
    * 
-   * @param fieldName The confidential field name.
+   * The existing ciphertext is left untouched when the value set is equal to the current value, so
+   * that persistence frameworks do not see the secured field as modified. Only cached values of
+   * immutable types are compared directly; a cached collection or array may have been changed in
+   * place by the caller, so the serialized value set is compared with the decrypted ciphertext.
+   * 
+   * @param field The confidential field.
    * 
    * @return The confidential setter method body.
    */
-  protected CodeBlock constructConfidentialSetterMethodBody(String fieldName) {
-    String encryptionToolFieldName = this.constructEncryptionToolFieldName();
-    String encryptionToolSetterName = this.determineSetterNameForFieldName(encryptionToolFieldName);
+  protected CodeBlock constructConfidentialSetterMethodBody(VariableElement field) {
+    if (this.isWriteBehindEnabled()) {
+      return this.constructWriteBehindSetterMethodBody(field);
+    }
+
+    String fieldName = field.getSimpleName().toString();
+    TypeMirror fieldType = field.asType();
+    boolean cachingEnabled = this.isCachingEnabled(field);
+    boolean cachedValueComparable =
+        cachingEnabled && this.valueCodecSelector.isImmutable(fieldType);
+
+    String securedFieldName = this.constructSecuredFieldName(fieldName);
+    String decryptedFlagFieldName = this.constructDecryptedFlagFieldName(fieldName);
 
     String illegalStateExceptionMessage = "The passphrase provider has not been set.";
     String binaryObjectName = "binaryObject";
-    String passphraseName = "passphrase";
 
-    return CodeBlock.builder()
+    CodeBlock.Builder codeBlockBuilder = CodeBlock.builder()
         .add(
             "if (this.$L == null) {\n  throw new IllegalStateException(\"$L\");\n}\n\n",
             PASSPHRASE_PROVIDER_FIELD_NAME,
-            illegalStateExceptionMessage)
-        .add(
-            "if (this.$L == null) {\n  this.$L(new $T());\n}\n\n",
-            encryptionToolFieldName,
-            encryptionToolSetterName,
-            EncryptionToolImplementation)
+            illegalStateExceptionMessage);
+
+    if (cachedValueComparable) {
+      codeBlockBuilder
+          .beginControlFlow(
+              "if (this.$L && $L)",
+              decryptedFlagFieldName,
+              this.constructEqualityExpression(
+                  TypeName.get(fieldType),
+                  "this." + fieldName,
+                  fieldName))
+          .addStatement("return")
+          .endControlFlow()
+          .add("\n");
+    }
+
+    codeBlockBuilder
         .addStatement(
-            "byte[] $L = $T.serializeObject($L)",
+            "byte[] $L = $L",
             binaryObjectName,
-            BinarySerializer.class,
-            fieldName)
-        .addStatement(
-            "String $L = this.$L.getPassphrase()",
-            passphraseName,
-            PASSPHRASE_PROVIDER_FIELD_NAME)
+            this.valueCodecSelector.constructEncodeExpression(field, fieldName));
+
+    CodeBlock.Builder encryptionCodeBuilder = CodeBlock.builder();
+
+    if (cachedValueComparable) {
+      encryptionCodeBuilder.beginControlFlow(
+          "if (!this.$L && this.$L != null)",
+          decryptedFlagFieldName,
+          securedFieldName);
+    } else {
+      encryptionCodeBuilder.beginControlFlow(
+          "if (this.$L != null)",
+          securedFieldName);
+    }
+
+    encryptionCodeBuilder
+        .add(this.constructUnchangedValueCheckCode(
+            field,
+            binaryObjectName))
+        .endControlFlow()
+        .add("\n")
+        .add(this.constructMeasuredEncryptionCode(
+            field,
+            binaryObjectName));
+
+    if (this.isSearchable(field)) {
+      encryptionCodeBuilder.addStatement(
+          "this.$L = $L($L, this.$L)",
+          this.constructIndexFieldName(fieldName),
+          this.constructIndexMethodName(fieldName),
+          fieldName,
+          PASSPHRASE_PROVIDER_FIELD_NAME);
+    }
+
+    if (cachingEnabled) {
+      encryptionCodeBuilder.add(this.constructCachePopulationCode(fieldName));
+    }
+
+    return codeBlockBuilder
+        .add(this.constructWipingCode(
+            encryptionCodeBuilder.build(),
+            binaryObjectName))
+        .build();
+  }
+
+  /**
+   * Constructs the confidential setter method body recording the value for the seal method.
+   * 
+   * The secured value is cleared, so that persistence frameworks see the entity as modified and
+   * invoke the seal method before writing it; the secured getter seals the value itself when it is
+   * read before then. A value equal to the current one leaves the entity untouched: it is compared
+   * directly with a pending value or a cached immutable value, and otherwise by its serialized
+   * bytes with the decrypted ciphertext.
+   * 
+   * @param field The confidential field.
+   * 
+   * @return The confidential setter method body.
+   */
+  protected CodeBlock constructWriteBehindSetterMethodBody(VariableElement field) {
+    String fieldName = field.getSimpleName().toString();
+    boolean cachingEnabled = this.isCachingEnabled(field);
+    boolean cachedValueComparable =
+        cachingEnabled && this.valueCodecSelector.isImmutable(field.asType());
+    String pendingFlagFieldName = this.constructPendingFlagFieldName(fieldName);
+    String decryptedFlagFieldName = this.constructDecryptedFlagFieldName(fieldName);
+    String securedFieldName = this.constructSecuredFieldName(fieldName);
+    String binaryObjectName = "binaryObject";
+
+    CodeBlock.Builder codeBlockBuilder = CodeBlock.builder()
+        .beginControlFlow(
+            "if (this.$L && $L)",
+            cachedValueComparable
+                ? decryptedFlagFieldName
+                : pendingFlagFieldName,
+            this.constructEqualityExpression(
+                TypeName.get(field.asType()),
+                "this." + fieldName,
+                fieldName))
+        .addStatement("return")
+        .endControlFlow()
+        .add("\n");
+
+    if (cachedValueComparable) {
+      codeBlockBuilder.beginControlFlow(
+          "if (!this.$L && this.$L != null && this.$L != null)",
+          decryptedFlagFieldName,
+          securedFieldName,
+          PASSPHRASE_PROVIDER_FIELD_NAME);
+    } else {
+      codeBlockBuilder.beginControlFlow(
+          "if (this.$L != null && this.$L != null)",
+          securedFieldName,
+          PASSPHRASE_PROVIDER_FIELD_NAME);
+    }
+
+    codeBlockBuilder
         .addStatement(
-            "this.$L = this.$L.encodeObject(\nthis.$L.encrypt($L, $L))",
-            this.constructSecuredFieldName(fieldName),
-            encryptionToolFieldName,
-            encryptionToolFieldName,
+            "byte[] $L = $L",
             binaryObjectName,
-            passphraseName)
+            this.valueCodecSelector.constructEncodeExpression(field, fieldName))
+        .add(this.constructWipingCode(
+            this.constructUnchangedValueCheckCode(
+                field,
+                binaryObjectName),
+            binaryObjectName))
+        .endControlFlow()
+        .add("\n");
+
+    if (cachingEnabled) {
+      codeBlockBuilder.add(this.constructCachePopulationCode(fieldName));
+    } else {
+      codeBlockBuilder.addStatement(
+          "this.$L = $L",
+          fieldName,
+          fieldName);
+    }
+
+    return codeBlockBuilder
         .addStatement(
-            "$L = null",
-            passphraseName)
+            "this.$L = true",
+            pendingFlagFieldName)
+        .addStatement(
+            "this.$L = null",
+            securedFieldName)
+        .build();
+  }
+
+  /**
+   * Constructs the code returning early from a confidential setter when the serialized value set
+   * matches the decrypted current value.
+   * 
+   * A current value which cannot be decrypted, e.g. after a key rotation, is treated as changed.
+   * 
+   * @param field The confidential field.
+   * @param binaryObjectName The name of the local variable holding the serialized value set.
+   * 
+   * @return The unchanged value check code.
+   */
+  protected CodeBlock constructUnchangedValueCheckCode(
+      VariableElement field,
+      String binaryObjectName) {
+    String fieldName = field.getSimpleName().toString();
+    boolean cachingEnabled = this.isCachingEnabled(field);
+    String currentBinaryObjectName = "currentBinaryObject";
+
+    CodeBlock.Builder comparisonCodeBuilder = CodeBlock.builder()
+        .beginControlFlow(
+            "if ($T.isEqual($L, $L))",
+            MessageDigest.class,
+            currentBinaryObjectName,
+            binaryObjectName);
+
+    if (cachingEnabled) {
+      comparisonCodeBuilder.add(this.constructCachePopulationCode(fieldName));
+    }
+
+    comparisonCodeBuilder
+        .addStatement("return")
+        .endControlFlow();
+
+    return CodeBlock.builder()
+        .beginControlFlow("try")
+        .add(this.constructDecryptionCode(
+            field,
+            currentBinaryObjectName))
+        .add(this.constructWipingCode(
+            comparisonCodeBuilder.build(),
+            currentBinaryObjectName))
+        .nextControlFlow(
+            "catch ($T | $T | $T e)",
+            EncryptionToolException,
+            EncryptionEngineException,
+            IllegalArgumentException.class)
+        .add("// The current value cannot be decrypted and is replaced below.\n")
+        .endControlFlow()
+        .build();
+  }
+
+  /**
+   * Constructs the code keeping the value set as the cached decrypted value.
+   * 
+   * @param fieldName The confidential field name.
+   * 
+   * @return The cache population code.
+   */
+  protected CodeBlock constructCachePopulationCode(String fieldName) {
+    return CodeBlock.builder()
+        .addStatement(
+            "this.$L = $L",
+            fieldName,
+            fieldName)
+        .addStatement(
+            "this.$L = true",
+            this.constructDecryptedFlagFieldName(fieldName))
         .build();
   }
 
+  /**
+   * Constructs an expression comparing two values of a field type for equality.
+   * 
+   * @param fieldTypeName The field type.
+   * @param left The left operand.
+   * @param right The right operand.
+   * 
+   * @return The equality expression.
+   */
+  protected CodeBlock constructEqualityExpression(
+      TypeName fieldTypeName,
+      String left,
+      String right) {
+    if (fieldTypeName.isPrimitive()) {
+      return CodeBlock.of("$L == $L", left, right);
+    }
+
+    if (fieldTypeName instanceof ArrayTypeName) {
+      return CodeBlock.of("$T.equals($L, $L)", Arrays.class, left, right);
+    }
+
+    return CodeBlock.of("$T.equals($L, $L)", Objects.class, left, right);
+  }
+
   /**
    * Constructs the getter specification for a secured field.
    * 
@@ -363,11 +3228,56 @@ public class SecuredPojoGenerator
         this.constructBasicGetterJavadoc(securedFieldName),
         this.determineGetterNameForFieldName(securedFieldName),
         modifiers,
-        TypeName.get(String.class),
+        this.constructSecuredFieldTypeName(field),
         (Iterable<AnnotationSpec>) null,
         (Iterable<? extends TypeName>) null,
         (Iterable<ParameterSpec>) null,
-        this.constructBasicGetterMethodBody(securedFieldName));
+        this.constructSealingGetterMethodBody(fieldName, securedFieldName));
+  }
+
+  /**
+   * Constructs the getter method body of a field written by the seal method: the secured field of
+   * a confidential field or group, or a blind index.
+   * 
+   * With write-behind, a pending value is sealed first, so that the getter never returns the
+   * cleared secured value or a stale index to a caller writing or copying them without the
+   * persistence callbacks.
+   * 
+   * @param fieldName The name of the confidential field or group whose value may be pending.
+   * @param returnedFieldName The name of the field returned.
+   * 
+   * @return The getter method body.
+   */
+  protected CodeBlock constructSealingGetterMethodBody(
+      String fieldName,
+      String returnedFieldName) {
+    if (!this.isWriteBehindEnabled()) {
+      return this.constructBasicGetterMethodBody(returnedFieldName);
+    }
+
+    String exceptionName = "e";
+
+    return CodeBlock.builder()
+        .beginControlFlow(
+            "if (this.$L)",
+            this.constructPendingFlagFieldName(fieldName))
+        .beginControlFlow("try")
+        .addStatement("this.$L($S)", SEAL_METHOD_NAME, fieldName)
+        .nextControlFlow(
+            "catch ($T | $T | $T $L)",
+            EncryptionToolException,
+            EncryptionEngineException,
+            SerializerException,
+            exceptionName)
+        .addStatement(
+            "throw new IllegalStateException($S, $L)",
+            "Unable to encrypt the pending confidential value.",
+            exceptionName)
+        .endControlFlow()
+        .endControlFlow()
+        .add("\n")
+        .add(this.constructBasicGetterMethodBody(returnedFieldName))
+        .build();
   }
 
   /**
@@ -385,7 +3295,7 @@ public class SecuredPojoGenerator
     List<Modifier> fieldModifiers = new ArrayList<Modifier>(field.getModifiers());
 
     return FieldSpec.builder(
-        String.class,
+        this.constructSecuredFieldTypeName(field),
         securedFieldName,
         fieldModifiers.toArray(new Modifier[fieldModifiers.size()]))
         .addAnnotations(this.copyAnnotations(field))
@@ -407,6 +3317,10 @@ public class SecuredPojoGenerator
 
     fieldModifiers.add(Modifier.TRANSIENT);
 
+    if (this.isThreadSafe()) {
+      fieldModifiers.add(Modifier.VOLATILE);
+    }
+
     return FieldSpec.builder(
         TypeName.get(field.asType()),
         field.getSimpleName().toString(),
@@ -429,17 +3343,92 @@ public class SecuredPojoGenerator
   /**
    * Creates the encryption tool field.
    * 
+   * The field is volatile so that a tool assigned on one thread is safely published to others.
+   * 
    * @return The encryption tool field.
    */
   private FieldSpec constructEncryptionToolFieldSpec() {
-    return this.constructTransientFieldSpec(
+    return this.constructField(
         this.constructEncryptionToolFieldName(),
-        TypeName.get(EncryptionToolInterface));
+        TypeName.get(EncryptionToolInterface),
+        new Modifier[] {Modifier.PRIVATE, Modifier.TRANSIENT, Modifier.VOLATILE},
+        Arrays.asList(AnnotationSpec.builder(Transient.class).build()));
+  }
+
+  /**
+   * Creates the shared encryption engine field.
+   * 
+   * @param typeElement The template class.
+   * 
+   * @return The encryption engine field.
+   */
+  private FieldSpec constructEncryptionEngineFieldSpec(TypeElement typeElement) {
+    return FieldSpec.builder(
+        EncryptionEngineInterface,
+        ENCRYPTION_ENGINE_FIELD_NAME,
+        Modifier.PRIVATE,
+        Modifier.STATIC,
+        Modifier.FINAL)
+        .initializer("$T.getInstance()", this.constructEncryptionEngineClassName(typeElement))
+        .build();
+  }
+
+  /**
+   * Gets the class of the encryption engine bound into the secured class of a template class.
+   * 
+   * The engine is selected by the template class, or else by the generator options, and is
+   * referenced directly by the generated code.
+   * 
+   * @param typeElement The template class.
+   * 
+   * @return The encryption engine class name.
+   */
+  protected ClassName constructEncryptionEngineClassName(TypeElement typeElement) {
+    String engine = this.getEncryptionEngine(typeElement);
+
+    if (SecuredPojoGeneratorOptions.AES_CBC_ENGINE.equals(engine)) {
+      return ClassName.get(AesEngine.class);
+    }
+
+    if (SecuredPojoGeneratorOptions.AES_GCM_ENGINE.equals(engine)) {
+      return ClassName.get(AesGcmEngine.class);
+    }
+
+    if (!SourceVersion.isName(engine) || engine.indexOf('.') < 0) {
+      throw new IllegalArgumentException(String.format(
+          "The encryption engine %1$s of %2$s must be %3$s, %4$s or a qualified class name.",
+          engine,
+          typeElement.getSimpleName().toString(),
+          SecuredPojoGeneratorOptions.AES_CBC_ENGINE,
+          SecuredPojoGeneratorOptions.AES_GCM_ENGINE));
+    }
+
+    return ClassName.bestGuess(engine);
+  }
+
+  /**
+   * Gets the encryption engine of a template class: the engine it selects, or else the default
+   * engine of the generator options.
+   * 
+   * @param typeElement The template class.
+   * 
+   * @return The engine name, or the qualified name of an EncryptionEngine class.
+   */
+  private String getEncryptionEngine(TypeElement typeElement) {
+    RequiresConfidentiality requiresConfidentiality =
+        typeElement.getAnnotation(RequiresConfidentiality.class);
+
+    return requiresConfidentiality == null || requiresConfidentiality.engine().isEmpty()
+        ? this.options.getDefaultEngine()
+        : requiresConfidentiality.engine();
   }
 
   /**
    * Creates a transient field given a name and type.
    * 
+   * Transient fields are volatile in thread safe mode, so that a flag set after a decrypted value
+   * is stored also publishes that value to getters running on other threads.
+   * 
    * @param fieldName The name of the transient field.
    * @param fieldType The type of the transient field.
    * 
@@ -449,10 +3438,14 @@ public class SecuredPojoGenerator
       String fieldName,
       TypeName fieldType) {
 
+    Modifier[] fieldModifiers = this.isThreadSafe()
+        ? new Modifier[] {Modifier.PRIVATE, Modifier.TRANSIENT, Modifier.VOLATILE}
+        : new Modifier[] {Modifier.PRIVATE, Modifier.TRANSIENT};
+
     return this.constructField(
         fieldName,
         fieldType,
-        new Modifier[] {Modifier.PRIVATE, Modifier.TRANSIENT},
+        fieldModifiers,
         Arrays.asList(AnnotationSpec.builder(Transient.class).build()));
   }
 
@@ -470,6 +3463,106 @@ public class SecuredPojoGenerator
         SUFFIX);
   }
 
+  /**
+   * Builds the name of the flag indicating that a cached decrypted value is present.
+   * 
+   * @param fieldName The template field name.
+   * 
+   * @return The decrypted flag field name.
+   */
+  private String constructDecryptedFlagFieldName(String fieldName) {
+    return String.format(
+        "%1$s%2$s",
+        fieldName,
+        DECRYPTED_FLAG_SUFFIX);
+  }
+
+  /**
+   * Builds the name of the flag indicating that a value set awaits encryption.
+   * 
+   * @param fieldName The confidential field name.
+   * 
+   * @return The pending flag field name.
+   */
+  private String constructPendingFlagFieldName(String fieldName) {
+    return String.format(
+        "%1$s%2$s",
+        fieldName,
+        PENDING_FLAG_SUFFIX);
+  }
+
+  /**
+   * Builds the blind index field name from the template field name.
+   * 
+   * @param fieldName The template field name.
+   * 
+   * @return The blind index field name.
+   */
+  private String constructIndexFieldName(String fieldName) {
+    return String.format(
+        "%1$s%2$s",
+        fieldName,
+        INDEX_SUFFIX);
+  }
+
+  /**
+   * Builds the name of the static method computing the blind index token of a field.
+   * 
+   * @param fieldName The template field name.
+   * 
+   * @return The blind index method name.
+   */
+  private String constructIndexMethodName(String fieldName) {
+    return String.format(
+        "compute%1$s%2$s%3$s",
+        Character.toUpperCase(fieldName.charAt(0)),
+        fieldName.substring(1),
+        INDEX_SUFFIX);
+  }
+
+  /**
+   * Builds the name of the constant holding the field names of a confidential group.
+   * 
+   * @param group The group name.
+   * 
+   * @return The constant name.
+   */
+  private String constructGroupFieldNamesConstantName(String group) {
+    return String.format(
+        "%1$s%2$s",
+        group.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase(),
+        GROUP_FIELD_NAMES_SUFFIX);
+  }
+
+  /**
+   * Builds the name of the method decrypting the envelope of a confidential group.
+   * 
+   * @param group The group name.
+   * 
+   * @return The method name.
+   */
+  private String constructGroupOpenMethodName(String group) {
+    return String.format(
+        "open%1$s%2$s",
+        Character.toUpperCase(group.charAt(0)),
+        group.substring(1));
+  }
+
+  /**
+   * Builds the name of the method encrypting the envelope of a confidential group.
+   * 
+   * @param group The group name.
+   * 
+   * @return The method name.
+   */
+  private String constructGroupSealMethodName(String group) {
+    return String.format(
+        "%1$s%2$s%3$s",
+        SEAL_METHOD_NAME,
+        Character.toUpperCase(group.charAt(0)),
+        group.substring(1));
+  }
+
   /**
    * Builds the encryption tool field name.
    * 
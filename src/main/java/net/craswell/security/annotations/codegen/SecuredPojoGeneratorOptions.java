@@ -0,0 +1,463 @@
+package net.craswell.security.annotations.codegen;
+
+import java.util.Locale;
+import java.util.Map;
+
+import net.craswell.security.annotations.Confidential.Storage;
+
+/**
+ * Options controlling the code emitted by the secured POJO generator.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class SecuredPojoGeneratorOptions {
+  /**
+   * The processor option used to enable or disable caching of decrypted values.
+   */
+  public static final String CACHE_OPTION = "confidential.cache";
+
+  /**
+   * The processor option selecting the default storage of secured fields (text or binary).
+   */
+  public static final String STORAGE_OPTION = "confidential.storage";
+
+  /**
+   * The processor option generating JPA attribute converters for confidential fields.
+   */
+  public static final String CONVERTERS_OPTION = "confidential.converters";
+
+  /**
+   * The processor option printing a note for each generated secured class.
+   */
+  public static final String VERBOSE_OPTION = "confidential.verbose";
+
+  /**
+   * The processor option setting the number of threads rendering secured classes.
+   */
+  public static final String PARALLELISM_OPTION = "confidential.parallelism";
+
+  /**
+   * The processor option instrumenting generated encryption and decryption with CryptoMetrics.
+   */
+  public static final String METRICS_OPTION = "confidential.metrics";
+
+  /**
+   * The processor option deferring encryption from confidential setters to seal().
+   */
+  public static final String WRITE_BEHIND_OPTION = "confidential.writeBehind";
+
+  /**
+   * The processor option encrypting through buffers reused by each thread and wiping plaintext.
+   */
+  public static final String LOW_ALLOCATION_OPTION = "confidential.lowAllocation";
+
+  /**
+   * The processor option selecting the encryption engine bound into generated classes.
+   */
+  public static final String ENGINE_OPTION = "confidential.engine";
+
+  /**
+   * The processor option naming the registry class listing the generated secured classes.
+   */
+  public static final String REGISTRY_OPTION = "confidential.registry";
+
+  /**
+   * The processor option publishing decrypted values safely to getters running on other threads.
+   */
+  public static final String THREAD_SAFE_OPTION = "confidential.threadSafe";
+
+  /**
+   * The processor option caching the passphrases of the providers assigned to generated classes.
+   */
+  public static final String PASSPHRASE_CACHE_OPTION = "confidential.passphraseCache";
+
+  /**
+   * The engine name selecting AesEngine, which encrypts with AES in CBC mode.
+   */
+  public static final String AES_CBC_ENGINE = "aes-cbc";
+
+  /**
+   * The engine name selecting AesGcmEngine, which encrypts with AES in GCM mode.
+   */
+  public static final String AES_GCM_ENGINE = "aes-gcm";
+
+  /**
+   * Indicates whether generated getters may cache decrypted values.
+   */
+  private boolean cachingEnabled = true;
+
+  /**
+   * The storage of secured fields not selecting one explicitly.
+   */
+  private Storage defaultStorage = Storage.TEXT;
+
+  /**
+   * Indicates whether confidential fields are encrypted by generated JPA attribute converters.
+   */
+  private boolean convertersEnabled = false;
+
+  /**
+   * Indicates whether the processor prints a note for each generated secured class.
+   */
+  private boolean verbose = false;
+
+  /**
+   * The number of threads rendering secured classes.
+   */
+  private int parallelism = 1;
+
+  /**
+   * Indicates whether generated encryption and decryption report to CryptoMetrics.
+   */
+  private boolean metricsEnabled = true;
+
+  /**
+   * Indicates whether confidential setters defer encryption to seal().
+   */
+  private boolean writeBehindEnabled = false;
+
+  /**
+   * Indicates whether generated classes encrypt through reused buffers and wipe plaintext.
+   */
+  private boolean lowAllocationEnabled = false;
+
+  /**
+   * The encryption engine of classes not selecting one explicitly: an engine name, or the
+   * qualified name of an EncryptionEngine class with a static getInstance() method.
+   */
+  private String defaultEngine = AES_CBC_ENGINE;
+
+  /**
+   * The qualified name of the registry class listing the generated secured classes, or null if no
+   * registry is generated.
+   */
+  private String registryClassName = null;
+
+  /**
+   * Indicates whether generated classes publish decrypted values safely to other threads.
+   */
+  private boolean threadSafe = false;
+
+  /**
+   * The time to live of the passphrases cached for generated classes, in milliseconds, or 0 if
+   * passphrases are not cached.
+   */
+  private long passphraseCacheMillis = 0L;
+
+  /**
+   * Creates generator options from the options passed to the annotation processor.
+   * 
+   * @param processorOptions The annotation processor options.
+   * 
+   * @return The generator options.
+   * 
+   * @throws IllegalArgumentException Thrown when an option has an invalid value.
+   */
+  public static SecuredPojoGeneratorOptions fromProcessorOptions(
+      Map<String, String> processorOptions) {
+    SecuredPojoGeneratorOptions options = new SecuredPojoGeneratorOptions();
+
+    if (processorOptions == null) {
+      return options;
+    }
+
+    options.setCachingEnabled(
+        getBooleanOption(processorOptions, CACHE_OPTION, options.isCachingEnabled()));
+
+    options.setConvertersEnabled(
+        getBooleanOption(processorOptions, CONVERTERS_OPTION, options.isConvertersEnabled()));
+
+    options.setMetricsEnabled(
+        getBooleanOption(processorOptions, METRICS_OPTION, options.isMetricsEnabled()));
+
+    options.setWriteBehindEnabled(
+        getBooleanOption(processorOptions, WRITE_BEHIND_OPTION, options.isWriteBehindEnabled()));
+
+    options.setLowAllocationEnabled(
+        getBooleanOption(
+            processorOptions,
+            LOW_ALLOCATION_OPTION,
+            options.isLowAllocationEnabled()));
+
+    options.setThreadSafe(
+        getBooleanOption(processorOptions, THREAD_SAFE_OPTION, options.isThreadSafe()));
+
+    options.setVerbose(
+        getBooleanOption(processorOptions, VERBOSE_OPTION, options.isVerbose()));
+
+    String parallelism = processorOptions.get(PARALLELISM_OPTION);
+
+    if (parallelism != null && !parallelism.trim().isEmpty()) {
+      int threads;
+
+      try {
+        threads = Integer.parseInt(parallelism.trim());
+      } catch (NumberFormatException e) {
+        threads = 0;
+      }
+
+      if (threads < 1) {
+        throw new IllegalArgumentException(String.format(
+            "The %1$s option must be a positive number.",
+            PARALLELISM_OPTION));
+      }
+
+      options.setParallelism(threads);
+    }
+
+    String passphraseCache = processorOptions.get(PASSPHRASE_CACHE_OPTION);
+
+    if (passphraseCache != null && !passphraseCache.trim().isEmpty()) {
+      long timeToLiveMillis;
+
+      try {
+        timeToLiveMillis = Long.parseLong(passphraseCache.trim());
+      } catch (NumberFormatException e) {
+        timeToLiveMillis = -1L;
+      }
+
+      if (timeToLiveMillis < 0L) {
+        throw new IllegalArgumentException(String.format(
+            "The %1$s option must not be negative.",
+            PASSPHRASE_CACHE_OPTION));
+      }
+
+      options.setPassphraseCacheMillis(timeToLiveMillis);
+    }
+
+    String storage = processorOptions.get(STORAGE_OPTION);
+
+    if (storage != null && !storage.trim().isEmpty()) {
+      Storage defaultStorage;
+
+      try {
+        defaultStorage = Storage.valueOf(storage.trim().toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        defaultStorage = Storage.DEFAULT;
+      }
+
+      if (defaultStorage == Storage.DEFAULT) {
+        throw new IllegalArgumentException(String.format(
+            "The %1$s option must be text or binary.",
+            STORAGE_OPTION));
+      }
+
+      options.setDefaultStorage(defaultStorage);
+    }
+
+    String engine = processorOptions.get(ENGINE_OPTION);
+
+    if (engine != null && !engine.trim().isEmpty()) {
+      options.setDefaultEngine(engine.trim());
+    }
+
+    String registryClassName = processorOptions.get(REGISTRY_OPTION);
+
+    if (registryClassName != null && !registryClassName.trim().isEmpty()) {
+      options.setRegistryClassName(registryClassName.trim());
+    }
+
+    return options;
+  }
+
+  /**
+   * @return True if generated getters may cache decrypted values; false otherwise.
+   */
+  public boolean isCachingEnabled() {
+    return this.cachingEnabled;
+  }
+
+  /**
+   * @param cachingEnabled True if generated getters may cache decrypted values; false otherwise.
+   */
+  public void setCachingEnabled(boolean cachingEnabled) {
+    this.cachingEnabled = cachingEnabled;
+  }
+
+  /**
+   * @return The storage of secured fields not selecting one explicitly.
+   */
+  public Storage getDefaultStorage() {
+    return this.defaultStorage;
+  }
+
+  /**
+   * @param defaultStorage The storage of secured fields not selecting one explicitly.
+   */
+  public void setDefaultStorage(Storage defaultStorage) {
+    this.defaultStorage = defaultStorage;
+  }
+
+  /**
+   * @return True if confidential fields are encrypted by generated JPA attribute converters.
+   */
+  public boolean isConvertersEnabled() {
+    return this.convertersEnabled;
+  }
+
+  /**
+   * @param convertersEnabled True if confidential fields are encrypted by generated JPA attribute
+   *        converters; false if they are encrypted by generated accessors.
+   */
+  public void setConvertersEnabled(boolean convertersEnabled) {
+    this.convertersEnabled = convertersEnabled;
+  }
+
+  /**
+   * @return True if generated encryption and decryption report to CryptoMetrics.
+   */
+  public boolean isMetricsEnabled() {
+    return this.metricsEnabled;
+  }
+
+  /**
+   * @param metricsEnabled True if generated encryption and decryption report to CryptoMetrics.
+   */
+  public void setMetricsEnabled(boolean metricsEnabled) {
+    this.metricsEnabled = metricsEnabled;
+  }
+
+  /**
+   * @return True if confidential setters defer encryption to seal().
+   */
+  public boolean isWriteBehindEnabled() {
+    return this.writeBehindEnabled;
+  }
+
+  /**
+   * @param writeBehindEnabled True if confidential setters record the value and defer encryption
+   *        to seal(); false if they encrypt immediately.
+   */
+  public void setWriteBehindEnabled(boolean writeBehindEnabled) {
+    this.writeBehindEnabled = writeBehindEnabled;
+  }
+
+  /**
+   * @return True if generated classes encrypt through reused buffers and wipe plaintext.
+   */
+  public boolean isLowAllocationEnabled() {
+    return this.lowAllocationEnabled;
+  }
+
+  /**
+   * @param lowAllocationEnabled True if generated classes encrypt through buffers reused by each
+   *        thread and wipe serialized and decrypted values after use.
+   */
+  public void setLowAllocationEnabled(boolean lowAllocationEnabled) {
+    this.lowAllocationEnabled = lowAllocationEnabled;
+  }
+
+  /**
+   * @return The encryption engine of classes not selecting one explicitly.
+   */
+  public String getDefaultEngine() {
+    return this.defaultEngine;
+  }
+
+  /**
+   * @param defaultEngine The encryption engine of classes not selecting one explicitly: aes-cbc,
+   *        aes-gcm, or the qualified name of an EncryptionEngine class with a static getInstance()
+   *        method.
+   */
+  public void setDefaultEngine(String defaultEngine) {
+    this.defaultEngine = defaultEngine;
+  }
+
+  /**
+   * @return The qualified name of the registry class listing the generated secured classes, or
+   *         null if no registry is generated.
+   */
+  public String getRegistryClassName() {
+    return this.registryClassName;
+  }
+
+  /**
+   * @param registryClassName The qualified name of the registry class listing the generated
+   *        secured classes, or null if no registry is generated.
+   */
+  public void setRegistryClassName(String registryClassName) {
+    this.registryClassName = registryClassName;
+  }
+
+  /**
+   * @return True if generated classes publish decrypted values safely to other threads.
+   */
+  public boolean isThreadSafe() {
+    return this.threadSafe;
+  }
+
+  /**
+   * @param threadSafe True if generated classes publish decrypted values safely to other threads,
+   *        so that an instance can be read concurrently without locking.
+   */
+  public void setThreadSafe(boolean threadSafe) {
+    this.threadSafe = threadSafe;
+  }
+
+  /**
+   * @return The time to live of the passphrases cached for generated classes, in milliseconds, or
+   *         0 if passphrases are not cached.
+   */
+  public long getPassphraseCacheMillis() {
+    return this.passphraseCacheMillis;
+  }
+
+  /**
+   * @param passphraseCacheMillis The time to live of the passphrases cached for generated classes,
+   *        in milliseconds, or 0 if passphrases are not cached.
+   */
+  public void setPassphraseCacheMillis(long passphraseCacheMillis) {
+    this.passphraseCacheMillis = passphraseCacheMillis;
+  }
+
+  /**
+   * @return True if the processor prints a note for each generated secured class.
+   */
+  public boolean isVerbose() {
+    return this.verbose;
+  }
+
+  /**
+   * @param verbose True if the processor prints a note for each generated secured class.
+   */
+  public void setVerbose(boolean verbose) {
+    this.verbose = verbose;
+  }
+
+  /**
+   * @return The number of threads rendering secured classes.
+   */
+  public int getParallelism() {
+    return this.parallelism;
+  }
+
+  /**
+   * @param parallelism The number of threads rendering secured classes.
+   */
+  public void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Reads a boolean processor option.
+   * 
+   * @param processorOptions The annotation processor options.
+   * @param optionName The option name.
+   * @param defaultValue The value to use when the option is absent.
+   * 
+   * @return The option value.
+   */
+  private static boolean getBooleanOption(
+      Map<String, String> processorOptions,
+      String optionName,
+      boolean defaultValue) {
+    String value = processorOptions.get(optionName);
+
+    if (value == null || value.trim().isEmpty()) {
+      return defaultValue;
+    }
+
+    return Boolean.parseBoolean(value.trim());
+  }
+}
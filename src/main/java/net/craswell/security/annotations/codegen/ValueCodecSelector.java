@@ -0,0 +1,288 @@
+package net.craswell.security.annotations.codegen;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
+
+import net.craswell.common.BinarySerializer;
+import net.craswell.security.annotations.Confidential;
+import net.craswell.security.serialization.ValueCodecs;
+import net.craswell.security.serialization.ValueCompression;
+
+/**
+ * Selects, at compile time, the code converting a confidential field value to and from bytes.
+ * 
+ * Types with a compact encoding in ValueCodecs use it; all other types use Java serialization.
+ * Fields annotated with @Confidential(compress = true) are also compressed by ValueCompression;
+ * the values of every field are decompressed when they carry its marker.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class ValueCodecSelector {
+  /**
+   * The codec method suffixes, by type.
+   */
+  private static final Map<TypeName, String> CODEC_NAMES = new HashMap<TypeName, String>();
+
+  static {
+    CODEC_NAMES.put(TypeName.get(String.class), "String");
+    CODEC_NAMES.put(ArrayTypeName.of(TypeName.BYTE), "Bytes");
+    CODEC_NAMES.put(TypeName.BOOLEAN, "Boolean");
+    CODEC_NAMES.put(TypeName.BYTE, "Byte");
+    CODEC_NAMES.put(TypeName.SHORT, "Short");
+    CODEC_NAMES.put(TypeName.CHAR, "Char");
+    CODEC_NAMES.put(TypeName.INT, "Int");
+    CODEC_NAMES.put(TypeName.LONG, "Long");
+    CODEC_NAMES.put(TypeName.FLOAT, "Float");
+    CODEC_NAMES.put(TypeName.DOUBLE, "Double");
+    CODEC_NAMES.put(TypeName.get(BigDecimal.class), "BigDecimal");
+    CODEC_NAMES.put(TypeName.get(LocalDate.class), "LocalDate");
+  }
+
+  /**
+   * Constructs the expression encoding a value to bytes.
+   * 
+   * @param type The value type.
+   * @param valueName The name of the variable holding the value.
+   * 
+   * @return The encoding expression.
+   */
+  public CodeBlock constructEncodeExpression(
+      TypeMirror type,
+      String valueName) {
+    TypeName typeName = TypeName.get(type);
+
+    if (this.isEnum(type)) {
+      return CodeBlock.of("$T.encodeEnum($L)", ValueCodecs.class, valueName);
+    }
+
+    if (typeName.isBoxedPrimitive()) {
+      return CodeBlock.of(
+          "$L == null ? $T.encodeNull() : $T.encode$L($L)",
+          valueName,
+          ValueCodecs.class,
+          ValueCodecs.class,
+          CODEC_NAMES.get(typeName.unbox()),
+          valueName);
+    }
+
+    String codecName = CODEC_NAMES.get(typeName);
+
+    if (codecName != null) {
+      return CodeBlock.of("$T.encode$L($L)", ValueCodecs.class, codecName, valueName);
+    }
+
+    return CodeBlock.of("$T.serializeObject($L)", BinarySerializer.class, valueName);
+  }
+
+  /**
+   * Constructs the expression encoding the value of a confidential field to the bytes encrypted,
+   * compressing them if the field requests it.
+   * 
+   * @param field The confidential field.
+   * @param valueName The name of the variable holding the value.
+   * 
+   * @return The encoding expression.
+   */
+  public CodeBlock constructEncodeExpression(
+      VariableElement field,
+      String valueName) {
+    CodeBlock encodeExpression = this.constructEncodeExpression(field.asType(), valueName);
+    Confidential confidential = field.getAnnotation(Confidential.class);
+
+    if (confidential == null || !confidential.compress()) {
+      return encodeExpression;
+    }
+
+    return CodeBlock.of(
+        "$T.compress(\n$L,\n$L)",
+        ValueCompression.class,
+        encodeExpression,
+        confidential.compressionThreshold());
+  }
+
+  /**
+   * Constructs the expression decoding the value of a confidential field from the bytes decrypted,
+   * decompressing them if they are compressed.
+   * 
+   * Values are decompressed whether or not the field requests compression, so that values written
+   * while it did remain readable.
+   * 
+   * @param field The confidential field.
+   * @param bytesName The name of the variable holding the decrypted bytes.
+   * 
+   * @return The decoding expression.
+   */
+  public CodeBlock constructDecodeExpression(
+      VariableElement field,
+      String bytesName) {
+    return this.constructDecodeExpression(
+        field.asType(),
+        CodeBlock.of("$L", bytesName),
+        true);
+  }
+
+  /**
+   * Constructs the expression decoding a value from bytes.
+   * 
+   * @param type The value type.
+   * @param bytesName The name of the variable holding the encoded value.
+   * 
+   * @return The decoding expression.
+   */
+  public CodeBlock constructDecodeExpression(
+      TypeMirror type,
+      String bytesName) {
+    return this.constructDecodeExpression(
+        type,
+        CodeBlock.of("$L", bytesName),
+        false);
+  }
+
+  /**
+   * Constructs the expression decoding a value from an expression evaluating to bytes.
+   * 
+   * The bytes expression is evaluated twice for boxed types, so it must not have side effects;
+   * decompression only runs once, as encoded nulls are never compressed.
+   * 
+   * @param type The value type.
+   * @param bytes The expression evaluating to the encoded value.
+   * @param decompress True to decompress the bytes if they are compressed.
+   * 
+   * @return The decoding expression.
+   */
+  private CodeBlock constructDecodeExpression(
+      TypeMirror type,
+      CodeBlock bytes,
+      boolean decompress) {
+    CodeBlock encodedBytes = decompress
+        ? CodeBlock.of("$T.decompress($L)", ValueCompression.class, bytes)
+        : bytes;
+    TypeName typeName = TypeName.get(type);
+
+    if (this.isEnum(type)) {
+      return CodeBlock.of(
+          "$T.decodeEnum($L, $T.class)",
+          ValueCodecs.class,
+          encodedBytes,
+          typeName);
+    }
+
+    if (typeName.isBoxedPrimitive()) {
+      return CodeBlock.of(
+          "$T.isNull($L) ? null : ($T) $T.decode$L($L)",
+          ValueCodecs.class,
+          bytes,
+          typeName,
+          ValueCodecs.class,
+          CODEC_NAMES.get(typeName.unbox()),
+          encodedBytes);
+    }
+
+    String codecName = CODEC_NAMES.get(typeName);
+
+    if (codecName != null) {
+      return CodeBlock.of("$T.decode$L($L)", ValueCodecs.class, codecName, encodedBytes);
+    }
+
+    return CodeBlock.of(
+        "($T) $T.deserializeObject($L)",
+        typeName,
+        BinarySerializer.class,
+        encodedBytes);
+  }
+
+  /**
+   * Constructs the expression of the default value of a type.
+   * 
+   * @param typeName The type.
+   * 
+   * @return The default value expression.
+   */
+  public CodeBlock constructDefaultValueExpression(TypeName typeName) {
+    if (!typeName.isPrimitive()) {
+      return CodeBlock.of("null");
+    }
+
+    if (typeName.equals(TypeName.BOOLEAN)) {
+      return CodeBlock.of("false");
+    }
+
+    if (typeName.equals(TypeName.CHAR)) {
+      return CodeBlock.of("'\\u0000'");
+    }
+
+    if (typeName.equals(TypeName.LONG)) {
+      return CodeBlock.of("0L");
+    }
+
+    if (typeName.equals(TypeName.FLOAT)) {
+      return CodeBlock.of("0F");
+    }
+
+    if (typeName.equals(TypeName.DOUBLE)) {
+      return CodeBlock.of("0D");
+    }
+
+    return typeName.equals(TypeName.INT)
+        ? CodeBlock.of("0")
+        : CodeBlock.of("($T) 0", typeName);
+  }
+
+  /**
+   * Determines whether values of a type fall back to Java serialization.
+   * 
+   * @param type The value type.
+   * 
+   * @return True if values are encoded with Java serialization; false otherwise.
+   */
+  public boolean usesJavaSerialization(TypeMirror type) {
+    TypeName typeName = TypeName.get(type);
+
+    return !this.isEnum(type)
+        && !typeName.isBoxedPrimitive()
+        && !CODEC_NAMES.containsKey(typeName);
+  }
+
+  /**
+   * Determines whether values of a type cannot be changed in place, so that a value handed out by
+   * a getter can safely be compared with the value set later.
+   * 
+   * @param type The value type.
+   * 
+   * @return True for primitives, their boxes, enums and the immutable types with a compact
+   *         encoding; false for arrays and all other types.
+   */
+  public boolean isImmutable(TypeMirror type) {
+    TypeName typeName = TypeName.get(type);
+
+    return this.isEnum(type)
+        || typeName.isPrimitive()
+        || typeName.isBoxedPrimitive()
+        || (CODEC_NAMES.containsKey(typeName) && !(typeName instanceof ArrayTypeName));
+  }
+
+  /**
+   * Determines whether a type is an enum.
+   * 
+   * @param type The type.
+   * 
+   * @return True if the type is an enum; false otherwise.
+   */
+  private boolean isEnum(TypeMirror type) {
+    return type.getKind() == TypeKind.DECLARED
+        && ((DeclaredType) type).asElement().getKind() == ElementKind.ENUM;
+  }
+}
@@ -0,0 +1,29 @@
+package net.craswell.security.bulk;
+
+/**
+ * Thrown when a bulk operation fails for one or more entities.
+ * 
+ * The first failure is the cause; subsequent failures are attached as suppressed exceptions.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class BulkOperationException
+    extends Exception {
+  /**
+   * The serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Initializes a new instance of the BulkOperationException class.
+   * 
+   * @param message The exception message.
+   * @param cause The cause of the exception.
+   */
+  public BulkOperationException(
+      String message,
+      Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,166 @@
+package net.craswell.security.bulk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Applies operations to collections of secured entities in parallel.
+ * 
+ * The collection is split into contiguous batches, one task per batch, so that each entity is only
+ * ever touched by a single thread. The caller blocks until every batch has completed, after which
+ * all changes made to the entities are visible to the calling thread.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class BulkOperations {
+  /**
+   * The minimum number of entities processed by a single task.
+   */
+  private static final int MINIMUM_BATCH_SIZE = 64;
+
+  /**
+   * The number of tasks created per available worker, to balance uneven batches.
+   */
+  private static final int TASKS_PER_WORKER = 4;
+
+  /**
+   * Prevents instantiation.
+   */
+  private BulkOperations() {
+  }
+
+  /**
+   * Applies an operation to each entity using the common fork-join pool.
+   * 
+   * @param entities The entities.
+   * @param operation The operation.
+   * 
+   * @throws BulkOperationException Thrown when the operation fails for any entity.
+   */
+  public static <T> void forEach(
+      Collection<? extends T> entities,
+      EntityOperation<? super T> operation) throws BulkOperationException {
+    forEach(entities, ForkJoinPool.commonPool(), operation);
+  }
+
+  /**
+   * Applies an operation to each entity using an executor.
+   * 
+   * @param entities The entities.
+   * @param executor The executor running the batches.
+   * @param operation The operation.
+   * 
+   * @throws BulkOperationException Thrown when the operation fails for any entity.
+   */
+  public static <T> void forEach(
+      Collection<? extends T> entities,
+      Executor executor,
+      EntityOperation<? super T> operation) throws BulkOperationException {
+    if (entities == null || entities.isEmpty()) {
+      return;
+    }
+
+    List<? extends T> entityList = entities instanceof List
+        ? (List<? extends T>) entities
+        : new ArrayList<T>(entities);
+
+    int batchSize = determineBatchSize(entityList.size(), executor);
+    List<CompletableFuture<Void>> batches = new ArrayList<CompletableFuture<Void>>();
+
+    for (int start = 0; start < entityList.size(); start += batchSize) {
+      List<? extends T> batch = entityList.subList(
+          start,
+          Math.min(start + batchSize, entityList.size()));
+
+      batches.add(CompletableFuture.runAsync(() -> applyToBatch(batch, operation), executor));
+    }
+
+    BulkOperationException bulkOperationException = null;
+
+    for (CompletableFuture<Void> batch : batches) {
+      try {
+        batch.join();
+      } catch (CompletionException e) {
+        Throwable cause = e.getCause() instanceof BatchFailure
+            ? e.getCause().getCause()
+            : e.getCause();
+
+        if (bulkOperationException == null) {
+          bulkOperationException = new BulkOperationException(
+              "The operation failed for one or more entities.",
+              cause);
+        } else {
+          bulkOperationException.addSuppressed(cause);
+        }
+      }
+    }
+
+    if (bulkOperationException != null) {
+      throw bulkOperationException;
+    }
+  }
+
+  /**
+   * Applies an operation to each entity of a batch.
+   * 
+   * @param batch The batch.
+   * @param operation The operation.
+   */
+  private static <T> void applyToBatch(
+      List<? extends T> batch,
+      EntityOperation<? super T> operation) {
+    for (T entity : batch) {
+      try {
+        operation.apply(entity);
+      } catch (Exception e) {
+        throw new BatchFailure(e);
+      }
+    }
+  }
+
+  /**
+   * Determines the number of entities processed by a single task.
+   * 
+   * @param entityCount The number of entities.
+   * @param executor The executor running the batches.
+   * 
+   * @return The batch size.
+   */
+  private static int determineBatchSize(
+      int entityCount,
+      Executor executor) {
+    int parallelism = executor instanceof ForkJoinPool
+        ? ((ForkJoinPool) executor).getParallelism()
+        : Runtime.getRuntime().availableProcessors();
+
+    int taskCount = Math.max(1, parallelism * TASKS_PER_WORKER);
+
+    return Math.max(MINIMUM_BATCH_SIZE, (entityCount + taskCount - 1) / taskCount);
+  }
+
+  /**
+   * Carries a checked exception out of a batch task.
+   */
+  private static final class BatchFailure
+      extends RuntimeException {
+    /**
+     * The serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Initializes a new instance of the BatchFailure class.
+     * 
+     * @param cause The exception thrown by the operation.
+     */
+    private BatchFailure(Exception cause) {
+      super(cause);
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package net.craswell.security.bulk;
+
+/**
+ * An operation applied to each entity of a bulk operation.
+ * 
+ * @author scraswell@gmail.com
+ *
+ * @param <T> The entity type.
+ */
+@FunctionalInterface
+public interface EntityOperation<T> {
+  /**
+   * Applies the operation to an entity.
+   * 
+   * @param entity The entity.
+   * 
+   * @throws Exception Thrown when the operation fails.
+   */
+  void apply(T entity) throws Exception;
+}
@@ -0,0 +1,66 @@
+package net.craswell.security.bulk;
+
+import java.util.Arrays;
+
+/**
+ * Checks the confidential fields and groups named by the callers of generated bulk operations.
+ * 
+ * An empty selection selects every field and group the operation applies to.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class FieldSelection {
+  /**
+   * Prevents instantiation.
+   */
+  private FieldSelection() {
+  }
+
+  /**
+   * Checks that a selection only names fields or groups an operation applies to.
+   * 
+   * @param selection The names selected by the caller.
+   * @param names The names of the fields and groups the operation applies to.
+   * 
+   * @throws IllegalArgumentException Thrown when a selected name is null or not one of the names.
+   */
+  public static void check(
+      String[] selection,
+      String... names) {
+    for (String selected : selection) {
+      if (selected == null || !Arrays.asList(names).contains(selected)) {
+        throw new IllegalArgumentException(String.format(
+            "%1$s is not one of the confidential fields and groups %2$s.",
+            selected,
+            Arrays.toString(names)));
+      }
+    }
+  }
+
+  /**
+   * Determines whether a selection includes a field or group.
+   * 
+   * @param selection The names selected by the caller.
+   * @param names The name of the field or group, followed by the names of the fields of the group.
+   * 
+   * @return True if the selection is empty or names any of the names; false otherwise.
+   */
+  public static boolean isSelected(
+      String[] selection,
+      String... names) {
+    if (selection.length == 0) {
+      return true;
+    }
+
+    for (String selected : selection) {
+      for (String name : names) {
+        if (name.equals(selected)) {
+          return true;
+        }
+      }
+    }
+
+    return false;
+  }
+}
@@ -0,0 +1,238 @@
+package net.craswell.security.encryption;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * Encrypts and decrypts values with AES using previously derived keys.
+ * 
+ * Ciphertext is laid out as a {@link CiphertextHeader} followed by the initialization vector and
+ * the encrypted bytes. Each thread reuses its own Cipher instance and initialization vector buffer,
+ * so a single engine can be shared without locking. Ciphertext written by AesGcmEngine is decrypted
+ * by that engine, going by the engine identifier of its header.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class AesEngine
+    implements EncryptionEngine {
+  /**
+   * The cipher transformation.
+   */
+  private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+
+  /**
+   * The initialization vector length, in bytes.
+   */
+  private static final int IV_LENGTH = 16;
+
+  /**
+   * The engine shared by generated classes.
+   */
+  private static final AesEngine INSTANCE = new AesEngine();
+
+  /**
+   * The source of initialization vectors.
+   */
+  private final SecureRandom secureRandom = new SecureRandom();
+
+  /**
+   * The cipher reused by each thread.
+   */
+  private final ThreadLocal<Cipher> ciphers = new ThreadLocal<Cipher>();
+
+  /**
+   * The initialization vector buffer reused by each thread.
+   */
+  private final ThreadLocal<byte[]> ivs = ThreadLocal.withInitial(() -> new byte[IV_LENGTH]);
+
+  /**
+   * @return The engine shared by generated classes.
+   */
+  public static AesEngine getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Encrypts a value.
+   * 
+   * @param plaintext The value to encrypt.
+   * @param key The encryption key.
+   * 
+   * @return The ciphertext.
+   * 
+   * @throws EncryptionException Thrown when the value cannot be encrypted.
+   */
+  @Override
+  public byte[] encrypt(
+      byte[] plaintext,
+      SecretKey key) throws EncryptionException {
+    byte[] iv = new byte[IV_LENGTH];
+    this.secureRandom.nextBytes(iv);
+
+    try {
+      Cipher cipher = this.getCipher();
+      cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+
+      byte[] ciphertext =
+          new byte[CiphertextHeader.LENGTH + IV_LENGTH + cipher.getOutputSize(plaintext.length)];
+      ByteBuffer ciphertextBuffer = ByteBuffer.wrap(ciphertext);
+      CiphertextHeader.write(ciphertextBuffer, CiphertextHeader.AES_CBC_ENGINE_ID, key);
+      ciphertextBuffer.put(iv);
+
+      int offset = ciphertextBuffer.position();
+      int length = offset + cipher.doFinal(plaintext, 0, plaintext.length, ciphertext, offset);
+
+      return length == ciphertext.length
+          ? ciphertext
+          : Arrays.copyOf(ciphertext, length);
+    } catch (GeneralSecurityException e) {
+      throw new EncryptionException("Unable to encrypt the value.", e);
+    }
+  }
+
+  /**
+   * Decrypts a value.
+   * 
+   * @param ciphertext The ciphertext.
+   * @param key The decryption key.
+   * 
+   * @return The decrypted value.
+   * 
+   * @throws LegacyCiphertextException Thrown when the value has no ciphertext header.
+   * @throws EncryptionException Thrown when the value cannot be decrypted.
+   */
+  @Override
+  public byte[] decrypt(
+      byte[] ciphertext,
+      SecretKey key) throws EncryptionException {
+    if (ciphertext == null) {
+      throw new EncryptionException("The ciphertext is malformed.");
+    }
+
+    ByteBuffer ciphertextBuffer = ByteBuffer.wrap(ciphertext);
+    byte engineId = CiphertextHeader.getEngineId(ciphertextBuffer);
+
+    if (engineId != CiphertextHeader.AES_CBC_ENGINE_ID) {
+      return CiphertextHeader.getEngine(engineId).decrypt(ciphertext, key);
+    }
+
+    CiphertextHeader.read(ciphertextBuffer, CiphertextHeader.AES_CBC_ENGINE_ID, key);
+
+    int offset = ciphertextBuffer.position();
+
+    if (ciphertext.length - offset < IV_LENGTH) {
+      throw new EncryptionException("The ciphertext is malformed.");
+    }
+
+    try {
+      Cipher cipher = this.getCipher();
+      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(ciphertext, offset, IV_LENGTH));
+
+      return cipher.doFinal(
+          ciphertext,
+          offset + IV_LENGTH,
+          ciphertext.length - offset - IV_LENGTH);
+    } catch (GeneralSecurityException e) {
+      throw new EncryptionException("Unable to decrypt the value.", e);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.encryption.EncryptionEngine#getMaximumCiphertextLength(int)
+   */
+  @Override
+  public int getMaximumCiphertextLength(int plaintextLength) {
+    return CiphertextHeader.LENGTH + IV_LENGTH + (plaintextLength / IV_LENGTH + 1) * IV_LENGTH;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.encryption.EncryptionEngine#encrypt(java.nio.ByteBuffer,
+   * java.nio.ByteBuffer, javax.crypto.SecretKey)
+   */
+  @Override
+  public void encrypt(
+      ByteBuffer plaintext,
+      ByteBuffer ciphertext,
+      SecretKey key) throws EncryptionException {
+    byte[] iv = this.ivs.get();
+    this.secureRandom.nextBytes(iv);
+
+    try {
+      Cipher cipher = this.getCipher();
+      cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
+
+      CiphertextHeader.write(ciphertext, CiphertextHeader.AES_CBC_ENGINE_ID, key);
+      ciphertext.put(iv);
+      cipher.doFinal(plaintext, ciphertext);
+    } catch (GeneralSecurityException | BufferOverflowException e) {
+      throw new EncryptionException("Unable to encrypt the value.", e);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.encryption.EncryptionEngine#decrypt(java.nio.ByteBuffer,
+   * java.nio.ByteBuffer, javax.crypto.SecretKey)
+   */
+  @Override
+  public void decrypt(
+      ByteBuffer ciphertext,
+      ByteBuffer plaintext,
+      SecretKey key) throws EncryptionException {
+    byte engineId = CiphertextHeader.getEngineId(ciphertext);
+
+    if (engineId != CiphertextHeader.AES_CBC_ENGINE_ID) {
+      CiphertextHeader.getEngine(engineId).decrypt(ciphertext, plaintext, key);
+      return;
+    }
+
+    CiphertextHeader.read(ciphertext, CiphertextHeader.AES_CBC_ENGINE_ID, key);
+
+    if (ciphertext.remaining() < IV_LENGTH) {
+      throw new EncryptionException("The ciphertext is malformed.");
+    }
+
+    byte[] iv = this.ivs.get();
+    ciphertext.get(iv);
+
+    try {
+      Cipher cipher = this.getCipher();
+      cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
+
+      cipher.doFinal(ciphertext, plaintext);
+    } catch (GeneralSecurityException e) {
+      throw new EncryptionException("Unable to decrypt the value.", e);
+    }
+  }
+
+  /**
+   * Gets the cipher belonging to the current thread, creating it if necessary.
+   * 
+   * @return The cipher for the current thread.
+   * 
+   * @throws GeneralSecurityException Thrown when the cipher cannot be created.
+   */
+  private Cipher getCipher() throws GeneralSecurityException {
+    Cipher cipher = this.ciphers.get();
+
+    if (cipher == null) {
+      cipher = Cipher.getInstance(TRANSFORMATION);
+      this.ciphers.set(cipher);
+    }
+
+    return cipher;
+  }
+}
@@ -0,0 +1,253 @@
+package net.craswell.security.encryption;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Encrypts and decrypts values with AES in Galois/Counter Mode using previously derived keys.
+ * 
+ * Ciphertext is laid out as a {@link CiphertextHeader} followed by a random 96-bit nonce, the
+ * encrypted bytes and a 128-bit authentication tag, so altered ciphertext is rejected rather than
+ * decrypted. The JDK computes AES
+ * and GHASH with hardware intrinsics where the processor supports them, which makes this engine
+ * faster than AesEngine on most current hardware. Each thread reuses its own Cipher instance and
+ * nonce buffer, so a single engine can be shared without locking. Ciphertext written by AesEngine is
+ * decrypted by that engine, going by the engine identifier of its header, so a class can change to
+ * this engine without making its existing values unreadable.
+ * 
+ * Random nonces must not repeat under one key, so a key should encrypt no more than about four
+ * billion values; rotate the passphrase well before then.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class AesGcmEngine
+    implements EncryptionEngine {
+  /**
+   * The cipher transformation.
+   */
+  private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+  /**
+   * The nonce length, in bytes.
+   */
+  private static final int NONCE_LENGTH = 12;
+
+  /**
+   * The authentication tag length, in bytes.
+   */
+  private static final int TAG_LENGTH = 16;
+
+  /**
+   * The engine shared by generated classes.
+   */
+  private static final AesGcmEngine INSTANCE = new AesGcmEngine();
+
+  /**
+   * The source of nonces.
+   */
+  private final SecureRandom secureRandom = new SecureRandom();
+
+  /**
+   * The cipher reused by each thread.
+   */
+  private final ThreadLocal<Cipher> ciphers = new ThreadLocal<Cipher>();
+
+  /**
+   * The nonce buffer reused by each thread.
+   */
+  private final ThreadLocal<byte[]> nonces = ThreadLocal.withInitial(() -> new byte[NONCE_LENGTH]);
+
+  /**
+   * @return The engine shared by generated classes.
+   */
+  public static AesGcmEngine getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Encrypts a value.
+   * 
+   * @param plaintext The value to encrypt.
+   * @param key The encryption key.
+   * 
+   * @return The ciphertext.
+   * 
+   * @throws EncryptionException Thrown when the value cannot be encrypted.
+   */
+  @Override
+  public byte[] encrypt(
+      byte[] plaintext,
+      SecretKey key) throws EncryptionException {
+    byte[] nonce = this.nonces.get();
+    this.secureRandom.nextBytes(nonce);
+
+    try {
+      Cipher cipher = this.getCipher();
+      cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+
+      byte[] ciphertext = new byte[
+          CiphertextHeader.LENGTH + NONCE_LENGTH + cipher.getOutputSize(plaintext.length)];
+      ByteBuffer ciphertextBuffer = ByteBuffer.wrap(ciphertext);
+      CiphertextHeader.write(ciphertextBuffer, CiphertextHeader.AES_GCM_ENGINE_ID, key);
+      ciphertextBuffer.put(nonce);
+
+      int offset = ciphertextBuffer.position();
+      int length = offset + cipher.doFinal(plaintext, 0, plaintext.length, ciphertext, offset);
+
+      return length == ciphertext.length
+          ? ciphertext
+          : Arrays.copyOf(ciphertext, length);
+    } catch (GeneralSecurityException e) {
+      throw new EncryptionException("Unable to encrypt the value.", e);
+    }
+  }
+
+  /**
+   * Decrypts a value.
+   * 
+   * @param ciphertext The ciphertext.
+   * @param key The decryption key.
+   * 
+   * @return The decrypted value.
+   * 
+   * @throws LegacyCiphertextException Thrown when the value has no ciphertext header.
+   * @throws EncryptionException Thrown when the value cannot be decrypted or authenticated.
+   */
+  @Override
+  public byte[] decrypt(
+      byte[] ciphertext,
+      SecretKey key) throws EncryptionException {
+    if (ciphertext == null) {
+      throw new EncryptionException("The ciphertext is malformed.");
+    }
+
+    ByteBuffer ciphertextBuffer = ByteBuffer.wrap(ciphertext);
+    byte engineId = CiphertextHeader.getEngineId(ciphertextBuffer);
+
+    if (engineId != CiphertextHeader.AES_GCM_ENGINE_ID) {
+      return CiphertextHeader.getEngine(engineId).decrypt(ciphertext, key);
+    }
+
+    CiphertextHeader.read(ciphertextBuffer, CiphertextHeader.AES_GCM_ENGINE_ID, key);
+
+    int offset = ciphertextBuffer.position();
+
+    if (ciphertext.length - offset < NONCE_LENGTH + TAG_LENGTH) {
+      throw new EncryptionException("The ciphertext is malformed.");
+    }
+
+    try {
+      Cipher cipher = this.getCipher();
+      cipher.init(
+          Cipher.DECRYPT_MODE,
+          key,
+          new GCMParameterSpec(TAG_LENGTH * 8, ciphertext, offset, NONCE_LENGTH));
+
+      return cipher.doFinal(
+          ciphertext,
+          offset + NONCE_LENGTH,
+          ciphertext.length - offset - NONCE_LENGTH);
+    } catch (GeneralSecurityException e) {
+      throw new EncryptionException("Unable to decrypt the value.", e);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.encryption.EncryptionEngine#getMaximumCiphertextLength(int)
+   */
+  @Override
+  public int getMaximumCiphertextLength(int plaintextLength) {
+    return CiphertextHeader.LENGTH + NONCE_LENGTH + plaintextLength + TAG_LENGTH;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.encryption.EncryptionEngine#encrypt(java.nio.ByteBuffer,
+   * java.nio.ByteBuffer, javax.crypto.SecretKey)
+   */
+  @Override
+  public void encrypt(
+      ByteBuffer plaintext,
+      ByteBuffer ciphertext,
+      SecretKey key) throws EncryptionException {
+    byte[] nonce = this.nonces.get();
+    this.secureRandom.nextBytes(nonce);
+
+    try {
+      Cipher cipher = this.getCipher();
+      cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+
+      CiphertextHeader.write(ciphertext, CiphertextHeader.AES_GCM_ENGINE_ID, key);
+      ciphertext.put(nonce);
+      cipher.doFinal(plaintext, ciphertext);
+    } catch (GeneralSecurityException | BufferOverflowException e) {
+      throw new EncryptionException("Unable to encrypt the value.", e);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.encryption.EncryptionEngine#decrypt(java.nio.ByteBuffer,
+   * java.nio.ByteBuffer, javax.crypto.SecretKey)
+   */
+  @Override
+  public void decrypt(
+      ByteBuffer ciphertext,
+      ByteBuffer plaintext,
+      SecretKey key) throws EncryptionException {
+    byte engineId = CiphertextHeader.getEngineId(ciphertext);
+
+    if (engineId != CiphertextHeader.AES_GCM_ENGINE_ID) {
+      CiphertextHeader.getEngine(engineId).decrypt(ciphertext, plaintext, key);
+      return;
+    }
+
+    CiphertextHeader.read(ciphertext, CiphertextHeader.AES_GCM_ENGINE_ID, key);
+
+    if (ciphertext.remaining() < NONCE_LENGTH + TAG_LENGTH) {
+      throw new EncryptionException("The ciphertext is malformed.");
+    }
+
+    byte[] nonce = this.nonces.get();
+    ciphertext.get(nonce);
+
+    try {
+      Cipher cipher = this.getCipher();
+      cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+
+      cipher.doFinal(ciphertext, plaintext);
+    } catch (GeneralSecurityException | BufferOverflowException e) {
+      throw new EncryptionException("Unable to decrypt the value.", e);
+    }
+  }
+
+  /**
+   * Gets the cipher belonging to the current thread, creating it if necessary.
+   * 
+   * @return The cipher for the current thread.
+   * 
+   * @throws GeneralSecurityException Thrown when the cipher cannot be created.
+   */
+  private Cipher getCipher() throws GeneralSecurityException {
+    Cipher cipher = this.ciphers.get();
+
+    if (cipher == null) {
+      cipher = Cipher.getInstance(TRANSFORMATION);
+      this.ciphers.set(cipher);
+    }
+
+    return cipher;
+  }
+}
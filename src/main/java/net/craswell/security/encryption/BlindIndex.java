@@ -0,0 +1,99 @@
+package net.craswell.security.encryption;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Computes blind index tokens allowing equality lookups on encrypted values.
+ * 
+ * A token is a keyed HMAC of the encoded value. The HMAC key is derived from the encryption key
+ * with a label naming the class and field, so that tokens reveal nothing about the encryption key
+ * itself, and equal values of different fields cannot be linked through their tokens. Equal values
+ * of a field always produce equal tokens under the same key, which allows an ordinary database
+ * index to be used for equality queries.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class BlindIndex {
+  /**
+   * The HMAC algorithm.
+   */
+  private static final String ALGORITHM = "HmacSHA256";
+
+  /**
+   * The prefix of the label used to derive the index key of a field from the encryption key.
+   */
+  private static final String INDEX_KEY_LABEL_PREFIX = "net.craswell.security.encryption.BlindIndex";
+
+  /**
+   * The HMAC reused by each thread.
+   */
+  private static final ThreadLocal<Mac> MACS = new ThreadLocal<Mac>();
+
+  /**
+   * Prevents instantiation.
+   */
+  private BlindIndex() {
+  }
+
+  /**
+   * Computes the blind index token of an encoded value.
+   * 
+   * @param encodedValue The encoded value.
+   * @param key The encryption key.
+   * @param className The qualified name of the template class declaring the field.
+   * @param fieldName The name of the field.
+   * 
+   * @return The Base64 encoded token.
+   * 
+   * @throws EncryptionException Thrown when the token cannot be computed.
+   */
+  public static String compute(
+      byte[] encodedValue,
+      SecretKey key,
+      String className,
+      String fieldName) throws EncryptionException {
+    byte[] indexKeyLabel = String.format(
+        "%1$s:%2$s#%3$s",
+        INDEX_KEY_LABEL_PREFIX,
+        className,
+        fieldName).getBytes(StandardCharsets.UTF_8);
+
+    try {
+      Mac mac = getMac();
+
+      mac.init(key);
+      SecretKey indexKey = new SecretKeySpec(mac.doFinal(indexKeyLabel), ALGORITHM);
+
+      mac.init(indexKey);
+
+      return Base64.getEncoder().encodeToString(mac.doFinal(encodedValue));
+    } catch (GeneralSecurityException e) {
+      throw new EncryptionException("Unable to compute the blind index.", e);
+    }
+  }
+
+  /**
+   * Gets the HMAC belonging to the current thread, creating it if necessary.
+   * 
+   * @return The HMAC for the current thread.
+   * 
+   * @throws GeneralSecurityException Thrown when the HMAC cannot be created.
+   */
+  private static Mac getMac() throws GeneralSecurityException {
+    Mac mac = MACS.get();
+
+    if (mac == null) {
+      mac = Mac.getInstance(ALGORITHM);
+      MACS.set(mac);
+    }
+
+    return mac;
+  }
+}
@@ -0,0 +1,366 @@
+package net.craswell.security.encryption;
+
+import java.lang.ref.SoftReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.craswell.common.encryption.PassphraseProvider;
+
+/**
+ * Caches the passphrase of another provider, such as one reading a remote secret store, for a
+ * fixed time to live.
+ * 
+ * A passphrase older than its refresh time is still returned, while a single background task asks
+ * the provider for it again, so that readers never wait for the provider while the passphrase is
+ * being used. Once the time to live has expired, callers wait for a single load shared by all of
+ * them. A passphrase equal to the cached one keeps the cached instance, which lets the
+ * DerivedKeyCache answer without fingerprinting it.
+ * 
+ * A failed background refresh leaves the cached passphrase in place until it expires; the next
+ * caller past the refresh time tries again. The cache holds the passphrase as a String, even when
+ * the provider is a CharArrayPassphraseProvider.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class CachingPassphraseProvider
+    implements PassphraseProvider {
+  /**
+   * The fraction of the time to live after which a passphrase is refreshed by default.
+   */
+  private static final double DEFAULT_REFRESH_RATIO = 0.75d;
+
+  /**
+   * The providers shared by generated classes, by wrapped provider.
+   * 
+   * Wrapped providers are weakly referenced and caching providers softly, so that neither outlives
+   * the wrapped provider once the caching provider is no longer used and memory is needed.
+   */
+  private static final Map<PassphraseProvider, SoftReference<CachingPassphraseProvider>>
+      SHARED_PROVIDERS =
+          new WeakHashMap<PassphraseProvider, SoftReference<CachingPassphraseProvider>>();
+
+  /**
+   * The wrapped provider.
+   */
+  private final PassphraseProvider passphraseProvider;
+
+  /**
+   * The time after which a cached passphrase is no longer returned, in milliseconds.
+   */
+  private final long timeToLiveMillis;
+
+  /**
+   * The time after which a cached passphrase is no longer returned, in nanoseconds.
+   */
+  private final long timeToLiveNanos;
+
+  /**
+   * The time after which a cached passphrase is refreshed in the background, in nanoseconds.
+   */
+  private final long refreshAfterNanos;
+
+  /**
+   * The executor refreshing passphrases in the background.
+   */
+  private final Executor executor;
+
+  /**
+   * The cached passphrase, or null.
+   */
+  private volatile CachedPassphrase cachedPassphrase;
+
+  /**
+   * The load in progress, shared by every caller, or null.
+   */
+  private final AtomicReference<CompletableFuture<CachedPassphrase>> pendingLoad =
+      new AtomicReference<CompletableFuture<CachedPassphrase>>();
+
+  /**
+   * The number of passphrases returned from the cache.
+   */
+  private final LongAdder hitCount = new LongAdder();
+
+  /**
+   * The number of passphrases obtained from the wrapped provider.
+   */
+  private final LongAdder loadCount = new LongAdder();
+
+  /**
+   * Initializes a new instance of the CachingPassphraseProvider class, refreshing passphrases in
+   * the common fork-join pool after three quarters of their time to live.
+   * 
+   * @param passphraseProvider The wrapped provider.
+   * @param timeToLiveMillis The time after which a cached passphrase is no longer returned, in
+   *        milliseconds.
+   */
+  public CachingPassphraseProvider(
+      PassphraseProvider passphraseProvider,
+      long timeToLiveMillis) {
+    this(
+        passphraseProvider,
+        timeToLiveMillis,
+        (long) (timeToLiveMillis * DEFAULT_REFRESH_RATIO),
+        ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Initializes a new instance of the CachingPassphraseProvider class.
+   * 
+   * @param passphraseProvider The wrapped provider.
+   * @param timeToLiveMillis The time after which a cached passphrase is no longer returned, in
+   *        milliseconds.
+   * @param refreshAfterMillis The time after which a cached passphrase is refreshed in the
+   *        background, in milliseconds; at least the time to live disables background refreshes.
+   * @param executor The executor refreshing passphrases in the background.
+   */
+  public CachingPassphraseProvider(
+      PassphraseProvider passphraseProvider,
+      long timeToLiveMillis,
+      long refreshAfterMillis,
+      Executor executor) {
+    if (passphraseProvider == null) {
+      throw new IllegalArgumentException("The passphrase provider is required.");
+    }
+
+    if (timeToLiveMillis < 1) {
+      throw new IllegalArgumentException("The time to live must be positive.");
+    }
+
+    if (refreshAfterMillis < 0) {
+      throw new IllegalArgumentException("The refresh time must not be negative.");
+    }
+
+    this.passphraseProvider = passphraseProvider;
+    this.timeToLiveMillis = timeToLiveMillis;
+    this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis);
+    this.refreshAfterNanos = TimeUnit.MILLISECONDS.toNanos(refreshAfterMillis);
+    this.executor = executor;
+  }
+
+  /**
+   * Gets the caching provider shared by every caller wrapping the same provider, creating it if
+   * necessary.
+   * 
+   * Providers are matched by equals, so a provider created anew for each caller, such as a
+   * capturing lambda, shares nothing; reuse the same instance. The shared caching provider is kept
+   * while it is in use, and then until memory is needed.
+   * 
+   * @param passphraseProvider The provider to wrap.
+   * @param timeToLiveMillis The time after which a cached passphrase is no longer returned, in
+   *        milliseconds.
+   * 
+   * @return The caching provider; the provider itself if it already caches; null if it is null.
+   * 
+   * @throws IllegalArgumentException Thrown when the provider is already shared with another time
+   *         to live.
+   */
+  public static CachingPassphraseProvider shared(
+      PassphraseProvider passphraseProvider,
+      long timeToLiveMillis) {
+    if (passphraseProvider == null) {
+      return null;
+    }
+
+    if (passphraseProvider instanceof CachingPassphraseProvider) {
+      return (CachingPassphraseProvider) passphraseProvider;
+    }
+
+    synchronized (SHARED_PROVIDERS) {
+      SoftReference<CachingPassphraseProvider> reference = SHARED_PROVIDERS.get(passphraseProvider);
+      CachingPassphraseProvider sharedProvider = reference == null
+          ? null
+          : reference.get();
+
+      if (sharedProvider == null) {
+        sharedProvider = new CachingPassphraseProvider(passphraseProvider, timeToLiveMillis);
+        SHARED_PROVIDERS.put(
+            passphraseProvider,
+            new SoftReference<CachingPassphraseProvider>(sharedProvider));
+      } else if (sharedProvider.timeToLiveMillis != timeToLiveMillis) {
+        throw new IllegalArgumentException(String.format(
+            "The passphrase provider is already shared with a time to live of %1$d ms, "
+                + "not %2$d ms.",
+            sharedProvider.timeToLiveMillis,
+            timeToLiveMillis));
+      }
+
+      return sharedProvider;
+    }
+  }
+
+  /**
+   * Gets the passphrase, from the cache unless it has expired.
+   * 
+   * @return The passphrase.
+   */
+  @Override
+  public String getPassphrase() {
+    CachedPassphrase cached = this.cachedPassphrase;
+
+    if (cached != null) {
+      long age = System.nanoTime() - cached.loadTime;
+
+      if (age < this.timeToLiveNanos) {
+        if (age >= this.refreshAfterNanos) {
+          this.refreshInBackground();
+        }
+
+        this.hitCount.increment();
+        return cached.passphrase;
+      }
+    }
+
+    return this.load().passphrase;
+  }
+
+  /**
+   * Discards the cached passphrase, e.g. after the passphrase has been rotated, so that the next
+   * caller obtains it from the wrapped provider.
+   */
+  public void invalidate() {
+    this.cachedPassphrase = null;
+  }
+
+  /**
+   * @return The time after which a cached passphrase is no longer returned, in milliseconds.
+   */
+  public long getTimeToLiveMillis() {
+    return this.timeToLiveMillis;
+  }
+
+  /**
+   * @return The wrapped provider.
+   */
+  public PassphraseProvider getPassphraseProvider() {
+    return this.passphraseProvider;
+  }
+
+  /**
+   * @return The number of passphrases returned from the cache.
+   */
+  public long getHitCount() {
+    return this.hitCount.sum();
+  }
+
+  /**
+   * @return The number of passphrases obtained from the wrapped provider.
+   */
+  public long getLoadCount() {
+    return this.loadCount.sum();
+  }
+
+  /**
+   * Obtains the passphrase from the wrapped provider on the current thread, or waits for the load
+   * already in progress.
+   * 
+   * @return The loaded passphrase.
+   */
+  private CachedPassphrase load() {
+    while (true) {
+      CompletableFuture<CachedPassphrase> load = this.pendingLoad.get();
+
+      if (load == null) {
+        load = new CompletableFuture<CachedPassphrase>();
+
+        if (!this.pendingLoad.compareAndSet(null, load)) {
+          continue;
+        }
+
+        this.runLoad(load);
+      }
+
+      try {
+        return load.join();
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException
+            ? (RuntimeException) e.getCause()
+            : e;
+      }
+    }
+  }
+
+  /**
+   * Starts a background load, unless a load is already in progress.
+   */
+  private void refreshInBackground() {
+    if (this.pendingLoad.get() != null) {
+      return;
+    }
+
+    CompletableFuture<CachedPassphrase> load = new CompletableFuture<CachedPassphrase>();
+
+    if (!this.pendingLoad.compareAndSet(null, load)) {
+      return;
+    }
+
+    try {
+      this.executor.execute(() -> this.runLoad(load));
+    } catch (RejectedExecutionException e) {
+      this.pendingLoad.compareAndSet(load, null);
+      load.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Obtains the passphrase from the wrapped provider and caches it.
+   * 
+   * @param load The load, completed with the passphrase.
+   */
+  private void runLoad(CompletableFuture<CachedPassphrase> load) {
+    try {
+      String passphrase = this.passphraseProvider.getPassphrase();
+      CachedPassphrase previous = this.cachedPassphrase;
+
+      if (passphrase != null && previous != null && passphrase.equals(previous.passphrase)) {
+        passphrase = previous.passphrase;
+      }
+
+      CachedPassphrase loaded = new CachedPassphrase(passphrase, System.nanoTime());
+
+      this.loadCount.increment();
+      this.cachedPassphrase = loaded;
+      load.complete(loaded);
+    } catch (RuntimeException | Error e) {
+      load.completeExceptionally(e);
+    } finally {
+      this.pendingLoad.compareAndSet(load, null);
+    }
+  }
+
+  /**
+   * A passphrase and the time it was obtained.
+   */
+  private static final class CachedPassphrase {
+    /**
+     * The passphrase.
+     */
+    private final String passphrase;
+
+    /**
+     * The time the passphrase was obtained, from System.nanoTime().
+     */
+    private final long loadTime;
+
+    /**
+     * Initializes a new instance of the CachedPassphrase class.
+     * 
+     * @param passphrase The passphrase.
+     * @param loadTime The time the passphrase was obtained, from System.nanoTime().
+     */
+    private CachedPassphrase(
+        String passphrase,
+        long loadTime) {
+      this.passphrase = passphrase;
+      this.loadTime = loadTime;
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package net.craswell.security.encryption;
+
+import net.craswell.common.encryption.PassphraseProvider;
+
+/**
+ * Provides passphrases as character arrays, which can be wiped once a key has been derived, rather
+ * than as Strings lingering on the heap until they are collected.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public interface CharArrayPassphraseProvider
+    extends PassphraseProvider {
+  /**
+   * Gets the passphrase as a new character array, which the caller wipes after use.
+   * 
+   * @return The passphrase.
+   */
+  char[] getPassphraseCharacters();
+}
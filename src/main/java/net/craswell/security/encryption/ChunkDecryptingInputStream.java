@@ -0,0 +1,268 @@
+package net.craswell.security.encryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Decrypts the ciphertext read from another stream one chunk at a time, in the format described by
+ * {@link StreamingEncryption}.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+class ChunkDecryptingInputStream
+    extends InputStream {
+  /**
+   * The ciphertext stream.
+   */
+  private final InputStream ciphertext;
+
+  /**
+   * The decryption key.
+   */
+  private final SecretKey key;
+
+  /**
+   * The nonce of the current chunk.
+   */
+  private final byte[] nonce = new byte[StreamingEncryption.NONCE_LENGTH];
+
+  /**
+   * The number of plaintext bytes per chunk, read from the header.
+   */
+  private int chunkSize;
+
+  /**
+   * The ciphertext of the current chunk.
+   */
+  private byte[] ciphertextChunk;
+
+  /**
+   * The plaintext not yet read, wiped once the stream is closed.
+   */
+  private byte[] plaintextChunk;
+
+  /**
+   * The position of the next plaintext byte to read.
+   */
+  private int position;
+
+  /**
+   * The number of plaintext bytes available.
+   */
+  private int limit;
+
+  /**
+   * The number of the next chunk.
+   */
+  private int chunkNumber;
+
+  /**
+   * Indicates whether the final chunk has been decrypted.
+   */
+  private boolean finalChunkDecrypted;
+
+  /**
+   * The cipher, created when the header is read.
+   */
+  private Cipher cipher;
+
+  /**
+   * Initializes a new instance of the ChunkDecryptingInputStream class.
+   * 
+   * @param ciphertext The ciphertext stream.
+   * @param key The decryption key.
+   */
+  ChunkDecryptingInputStream(
+      InputStream ciphertext,
+      SecretKey key) {
+    this.ciphertext = ciphertext;
+    this.key = key;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.InputStream#read()
+   */
+  @Override
+  public int read() throws IOException {
+    if (!this.fill()) {
+      return -1;
+    }
+
+    return this.plaintextChunk[this.position++] & 0xff;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.InputStream#read(byte[], int, int)
+   */
+  @Override
+  public int read(
+      byte[] b,
+      int off,
+      int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+
+    if (!this.fill()) {
+      return -1;
+    }
+
+    int count = Math.min(len, this.limit - this.position);
+    System.arraycopy(this.plaintextChunk, this.position, b, off, count);
+    this.position += count;
+
+    return count;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.InputStream#available()
+   */
+  @Override
+  public int available() {
+    return this.limit - this.position;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.InputStream#close()
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.plaintextChunk != null) {
+      Arrays.fill(this.plaintextChunk, (byte) 0);
+    }
+
+    this.ciphertext.close();
+  }
+
+  /**
+   * Decrypts the next chunk if all of the plaintext of the current one has been read.
+   * 
+   * @return True if plaintext is available; false at the end of the stream.
+   * 
+   * @throws IOException Thrown when the ciphertext cannot be read or authenticated.
+   */
+  private boolean fill() throws IOException {
+    while (this.position == this.limit) {
+      if (this.finalChunkDecrypted) {
+        return false;
+      }
+
+      if (this.cipher == null) {
+        this.readHeader();
+      }
+
+      this.decryptChunk();
+    }
+
+    return true;
+  }
+
+  /**
+   * Reads the ciphertext header and prepares the chunk buffers.
+   * 
+   * @throws IOException Thrown when the header cannot be read or is malformed.
+   */
+  private void readHeader() throws IOException {
+    byte[] header = new byte[StreamingEncryption.HEADER_LENGTH];
+
+    if (this.readFully(header) < header.length) {
+      throw new IOException("The ciphertext is truncated.");
+    }
+
+    try {
+      this.chunkSize = StreamingEncryption.getChunkSize(header);
+      this.cipher = Cipher.getInstance(StreamingEncryption.TRANSFORMATION);
+    } catch (IllegalArgumentException | GeneralSecurityException e) {
+      throw new IOException("Unable to read the ciphertext header.", e);
+    }
+
+    System.arraycopy(header, 5, this.nonce, 0, StreamingEncryption.NONCE_PREFIX_LENGTH);
+    this.ciphertextChunk = new byte[this.chunkSize + StreamingEncryption.TAG_LENGTH];
+    this.plaintextChunk = new byte[this.chunkSize];
+  }
+
+  /**
+   * Reads and decrypts the next chunk.
+   * 
+   * A chunk shorter than the chunk size is the final one, after which the ciphertext must end.
+   * 
+   * @throws IOException Thrown when the chunk cannot be read or authenticated.
+   */
+  private void decryptChunk() throws IOException {
+    int length = this.readFully(this.ciphertextChunk);
+    boolean finalChunk = length < this.ciphertextChunk.length;
+
+    if (length < StreamingEncryption.TAG_LENGTH) {
+      throw new IOException("The ciphertext is truncated.");
+    }
+
+    if (finalChunk && this.ciphertext.read() >= 0) {
+      throw new IOException("The ciphertext has trailing data.");
+    }
+
+    if (this.chunkNumber == -1) {
+      throw new IOException("The ciphertext has too many chunks.");
+    }
+
+    StreamingEncryption.setChunkNumber(this.nonce, this.chunkNumber++);
+
+    try {
+      this.cipher.init(
+          Cipher.DECRYPT_MODE,
+          this.key,
+          new GCMParameterSpec(StreamingEncryption.TAG_LENGTH * 8, this.nonce));
+      this.cipher.updateAAD(finalChunk
+          ? StreamingEncryption.FINAL_CHUNK
+          : StreamingEncryption.INTERMEDIATE_CHUNK);
+
+      this.limit = this.cipher.doFinal(this.ciphertextChunk, 0, length, this.plaintextChunk, 0);
+      this.position = 0;
+      this.finalChunkDecrypted = finalChunk;
+    } catch (AEADBadTagException e) {
+      throw new IOException("The ciphertext chunk cannot be authenticated.", e);
+    } catch (GeneralSecurityException e) {
+      throw new IOException("Unable to decrypt the chunk.", e);
+    }
+  }
+
+  /**
+   * Reads from the ciphertext stream until a buffer is full or the stream ends.
+   * 
+   * @param buffer The buffer.
+   * 
+   * @return The number of bytes read.
+   * 
+   * @throws IOException Thrown when the ciphertext cannot be read.
+   */
+  private int readFully(byte[] buffer) throws IOException {
+    int length = 0;
+
+    while (length < buffer.length) {
+      int count = this.ciphertext.read(buffer, length, buffer.length - length);
+
+      if (count < 0) {
+        break;
+      }
+
+      length += count;
+    }
+
+    return length;
+  }
+}
@@ -0,0 +1,237 @@
+package net.craswell.security.encryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Encrypts the plaintext read from another stream one chunk at a time, in the format described by
+ * {@link StreamingEncryption}.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+class ChunkEncryptingInputStream
+    extends InputStream {
+  /**
+   * The source of nonce prefixes.
+   */
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+  /**
+   * The plaintext stream.
+   */
+  private final InputStream plaintext;
+
+  /**
+   * The encryption key.
+   */
+  private final SecretKey key;
+
+  /**
+   * The number of plaintext bytes per chunk.
+   */
+  private final int chunkSize;
+
+  /**
+   * The nonce of the current chunk.
+   */
+  private final byte[] nonce = new byte[StreamingEncryption.NONCE_LENGTH];
+
+  /**
+   * The plaintext of the current chunk, wiped once it has been encrypted.
+   */
+  private final byte[] plaintextChunk;
+
+  /**
+   * The ciphertext not yet read.
+   */
+  private final byte[] ciphertextChunk;
+
+  /**
+   * The position of the next ciphertext byte to read.
+   */
+  private int position;
+
+  /**
+   * The number of ciphertext bytes available.
+   */
+  private int limit;
+
+  /**
+   * The number of the next chunk.
+   */
+  private int chunkNumber;
+
+  /**
+   * Indicates whether the final chunk has been encrypted.
+   */
+  private boolean finalChunkEncrypted;
+
+  /**
+   * The cipher, created when the first chunk is encrypted.
+   */
+  private Cipher cipher;
+
+  /**
+   * Initializes a new instance of the ChunkEncryptingInputStream class.
+   * 
+   * @param plaintext The plaintext stream.
+   * @param key The encryption key.
+   * @param chunkSize The number of plaintext bytes per chunk.
+   */
+  ChunkEncryptingInputStream(
+      InputStream plaintext,
+      SecretKey key,
+      int chunkSize) {
+    this.plaintext = plaintext;
+    this.key = key;
+    this.chunkSize = chunkSize;
+    this.plaintextChunk = new byte[chunkSize];
+    this.ciphertextChunk = new byte[Math.max(
+        StreamingEncryption.HEADER_LENGTH,
+        chunkSize + StreamingEncryption.TAG_LENGTH)];
+
+    SECURE_RANDOM.nextBytes(this.nonce);
+
+    this.ciphertextChunk[0] = StreamingEncryption.VERSION;
+    this.ciphertextChunk[1] = (byte) (chunkSize >>> 24);
+    this.ciphertextChunk[2] = (byte) (chunkSize >>> 16);
+    this.ciphertextChunk[3] = (byte) (chunkSize >>> 8);
+    this.ciphertextChunk[4] = (byte) chunkSize;
+    System.arraycopy(
+        this.nonce,
+        0,
+        this.ciphertextChunk,
+        5,
+        StreamingEncryption.NONCE_PREFIX_LENGTH);
+    this.limit = StreamingEncryption.HEADER_LENGTH;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.InputStream#read()
+   */
+  @Override
+  public int read() throws IOException {
+    if (!this.fill()) {
+      return -1;
+    }
+
+    return this.ciphertextChunk[this.position++] & 0xff;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.InputStream#read(byte[], int, int)
+   */
+  @Override
+  public int read(
+      byte[] b,
+      int off,
+      int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+
+    if (!this.fill()) {
+      return -1;
+    }
+
+    int count = Math.min(len, this.limit - this.position);
+    System.arraycopy(this.ciphertextChunk, this.position, b, off, count);
+    this.position += count;
+
+    return count;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.InputStream#available()
+   */
+  @Override
+  public int available() {
+    return this.limit - this.position;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.io.InputStream#close()
+   */
+  @Override
+  public void close() throws IOException {
+    Arrays.fill(this.plaintextChunk, (byte) 0);
+    this.plaintext.close();
+  }
+
+  /**
+   * Encrypts the next chunk if all of the ciphertext of the current one has been read.
+   * 
+   * @return True if ciphertext is available; false at the end of the stream.
+   * 
+   * @throws IOException Thrown when the plaintext cannot be read or encrypted.
+   */
+  private boolean fill() throws IOException {
+    if (this.position < this.limit) {
+      return true;
+    }
+
+    if (this.finalChunkEncrypted) {
+      return false;
+    }
+
+    int length = 0;
+
+    while (length < this.chunkSize) {
+      int count = this.plaintext.read(this.plaintextChunk, length, this.chunkSize - length);
+
+      if (count < 0) {
+        break;
+      }
+
+      length += count;
+    }
+
+    boolean finalChunk = length < this.chunkSize;
+
+    if (this.chunkNumber == -1) {
+      throw new IOException("The plaintext has too many chunks.");
+    }
+
+    StreamingEncryption.setChunkNumber(this.nonce, this.chunkNumber++);
+
+    try {
+      if (this.cipher == null) {
+        this.cipher = Cipher.getInstance(StreamingEncryption.TRANSFORMATION);
+      }
+
+      this.cipher.init(
+          Cipher.ENCRYPT_MODE,
+          this.key,
+          new GCMParameterSpec(StreamingEncryption.TAG_LENGTH * 8, this.nonce));
+      this.cipher.updateAAD(finalChunk
+          ? StreamingEncryption.FINAL_CHUNK
+          : StreamingEncryption.INTERMEDIATE_CHUNK);
+
+      this.limit = this.cipher.doFinal(this.plaintextChunk, 0, length, this.ciphertextChunk, 0);
+      this.position = 0;
+      this.finalChunkEncrypted = finalChunk;
+    } catch (GeneralSecurityException e) {
+      throw new IOException("Unable to encrypt the chunk.", e);
+    } finally {
+      Arrays.fill(this.plaintextChunk, 0, length, (byte) 0);
+    }
+
+    return true;
+  }
+}
@@ -0,0 +1,292 @@
+package net.craswell.security.encryption;
+
+import java.lang.ref.WeakReference;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Reads and writes the header in front of the ciphertext of the built-in encryption engines.
+ * 
+ * The header is made of three fixed bytes marking the format, a byte identifying the engine which
+ * wrote the ciphertext and four bytes identifying the key it was encrypted with. Values written by
+ * the legacy encryption tool carry no header, so they are recognized by its absence rather than by
+ * a failure to decrypt them, and a value encrypted with another key is rejected before it is
+ * decrypted rather than decrypted into garbage.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class CiphertextHeader {
+  /**
+   * The bytes marking the format.
+   */
+  private static final byte[] MAGIC = {(byte) 0xC5, (byte) 0x3A, (byte) 0x9E};
+
+  /**
+   * The length of the key identifier, in bytes.
+   */
+  private static final int KEY_ID_LENGTH = 4;
+
+  /**
+   * The header length, in bytes.
+   */
+  public static final int LENGTH = MAGIC.length + 1 + KEY_ID_LENGTH;
+
+  /**
+   * The identifier of the AES/CBC engine.
+   */
+  static final byte AES_CBC_ENGINE_ID = 0x01;
+
+  /**
+   * The identifier of the AES/GCM engine.
+   */
+  static final byte AES_GCM_ENGINE_ID = 0x02;
+
+  /**
+   * The algorithm digesting keys into key identifiers.
+   */
+  private static final String KEY_ID_ALGORITHM = "SHA-256";
+
+  /**
+   * The label digested ahead of each key, so that key identifiers are not plain key digests.
+   */
+  private static final byte[] KEY_ID_LABEL =
+      "net.craswell.security.encryption.CiphertextHeader".getBytes(StandardCharsets.UTF_8);
+
+  /**
+   * The key identification reused by each thread.
+   */
+  private static final ThreadLocal<KeyIdentifier> KEY_IDENTIFIERS =
+      ThreadLocal.withInitial(KeyIdentifier::new);
+
+  /**
+   * Prevents instantiation.
+   */
+  private CiphertextHeader() {
+  }
+
+  /**
+   * Determines whether a value starts with a ciphertext header.
+   * 
+   * @param ciphertext The value.
+   * 
+   * @return True if the value was written by a built-in encryption engine; false if it was written
+   *         by the legacy encryption tool.
+   */
+  public static boolean isPresent(byte[] ciphertext) {
+    return ciphertext != null && isPresent(ByteBuffer.wrap(ciphertext));
+  }
+
+  /**
+   * Determines whether the remaining bytes of a buffer start with a ciphertext header.
+   * 
+   * @param ciphertext The value, left unchanged.
+   * 
+   * @return True if the value was written by a built-in encryption engine.
+   */
+  static boolean isPresent(ByteBuffer ciphertext) {
+    if (ciphertext.remaining() < LENGTH) {
+      return false;
+    }
+
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (ciphertext.get(ciphertext.position() + i) != MAGIC[i]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Determines whether a value was encrypted by a built-in engine with a given key.
+   * 
+   * @param ciphertext The value.
+   * @param key The key.
+   * 
+   * @return True if the value starts with a header identifying the key.
+   * 
+   * @throws EncryptionException Thrown when the key cannot be identified.
+   */
+  public static boolean isEncryptedWith(
+      byte[] ciphertext,
+      SecretKey key) throws EncryptionException {
+    return isPresent(ciphertext)
+        && ByteBuffer.wrap(ciphertext).getInt(MAGIC.length + 1) == identify(key);
+  }
+
+  /**
+   * Gets the identifier of the engine which wrote a ciphertext.
+   * 
+   * @param ciphertext The ciphertext, left unchanged.
+   * 
+   * @return The engine identifier.
+   * 
+   * @throws LegacyCiphertextException Thrown when the ciphertext has no header.
+   */
+  static byte getEngineId(ByteBuffer ciphertext) throws LegacyCiphertextException {
+    if (!isPresent(ciphertext)) {
+      throw new LegacyCiphertextException();
+    }
+
+    return ciphertext.get(ciphertext.position() + MAGIC.length);
+  }
+
+  /**
+   * Gets the built-in engine of an engine identifier.
+   * 
+   * @param engineId The engine identifier.
+   * 
+   * @return The engine shared by generated classes.
+   * 
+   * @throws EncryptionException Thrown when the identifier names no built-in engine.
+   */
+  static EncryptionEngine getEngine(byte engineId) throws EncryptionException {
+    switch (engineId) {
+      case AES_CBC_ENGINE_ID:
+        return AesEngine.getInstance();
+      case AES_GCM_ENGINE_ID:
+        return AesGcmEngine.getInstance();
+      default:
+        throw new EncryptionException(String.format(
+            "The ciphertext was written by unknown engine %1$d.",
+            engineId));
+    }
+  }
+
+  /**
+   * Writes a header into a buffer.
+   * 
+   * @param ciphertext The buffer receiving the ciphertext, advanced past the header.
+   * @param engineId The identifier of the engine writing the ciphertext.
+   * @param key The encryption key.
+   * 
+   * @throws EncryptionException Thrown when the key cannot be identified.
+   * @throws BufferOverflowException Thrown when the buffer cannot hold the header.
+   */
+  static void write(
+      ByteBuffer ciphertext,
+      byte engineId,
+      SecretKey key) throws EncryptionException {
+    ciphertext.put(MAGIC);
+    ciphertext.put(engineId);
+    ciphertext.putInt(identify(key));
+  }
+
+  /**
+   * Reads the header of the ciphertext of an engine, checking that the engine and the key match.
+   * 
+   * @param ciphertext The ciphertext, advanced past the header.
+   * @param engineId The identifier of the engine reading the ciphertext.
+   * @param key The decryption key.
+   * 
+   * @throws LegacyCiphertextException Thrown when the ciphertext has no header.
+   * @throws EncryptionException Thrown when the ciphertext was written by another engine or with
+   *         another key.
+   */
+  static void read(
+      ByteBuffer ciphertext,
+      byte engineId,
+      SecretKey key) throws EncryptionException {
+    if (!isPresent(ciphertext)) {
+      throw new LegacyCiphertextException();
+    }
+
+    ciphertext.position(ciphertext.position() + MAGIC.length);
+
+    byte actualEngineId = ciphertext.get();
+
+    if (actualEngineId != engineId) {
+      throw new EncryptionException(String.format(
+          "The ciphertext was written by engine %1$d rather than engine %2$d.",
+          actualEngineId,
+          engineId));
+    }
+
+    if (ciphertext.getInt() != identify(key)) {
+      throw new EncryptionException("The ciphertext was encrypted with another key.");
+    }
+  }
+
+  /**
+   * Gets the identifier of a key.
+   * 
+   * @param key The key.
+   * 
+   * @return The key identifier.
+   * 
+   * @throws EncryptionException Thrown when the key cannot be identified.
+   */
+  private static int identify(SecretKey key) throws EncryptionException {
+    return KEY_IDENTIFIERS.get().identify(key);
+  }
+
+  /**
+   * Computes key identifiers, remembering the key last identified by its thread.
+   */
+  private static final class KeyIdentifier {
+    /**
+     * The digest computing key identifiers.
+     */
+    private final MessageDigest messageDigest;
+
+    /**
+     * The key last identified.
+     */
+    private WeakReference<SecretKey> key = new WeakReference<SecretKey>(null);
+
+    /**
+     * The identifier of the key last identified.
+     */
+    private int keyId;
+
+    /**
+     * Initializes a new instance of the KeyIdentifier class.
+     */
+    private KeyIdentifier() {
+      try {
+        this.messageDigest = MessageDigest.getInstance(KEY_ID_ALGORITHM);
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException("The key identifier algorithm is unavailable.", e);
+      }
+    }
+
+    /**
+     * Gets the identifier of a key, computing it unless the key was the last one identified.
+     * 
+     * @param key The key.
+     * 
+     * @return The key identifier: the leading bytes of the digest of the label and the key.
+     * 
+     * @throws EncryptionException Thrown when the key cannot be encoded.
+     */
+    private int identify(SecretKey key) throws EncryptionException {
+      if (this.key.get() == key) {
+        return this.keyId;
+      }
+
+      byte[] encodedKey = key.getEncoded();
+
+      if (encodedKey == null) {
+        throw new EncryptionException("The key cannot be identified because it cannot be encoded.");
+      }
+
+      try {
+        this.messageDigest.update(KEY_ID_LABEL);
+        this.messageDigest.update(encodedKey);
+        this.keyId = ByteBuffer.wrap(this.messageDigest.digest()).getInt();
+        this.key = new WeakReference<SecretKey>(key);
+
+        return this.keyId;
+      } finally {
+        Arrays.fill(encodedKey, (byte) 0);
+      }
+    }
+  }
+}
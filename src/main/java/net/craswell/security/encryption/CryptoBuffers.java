@@ -0,0 +1,374 @@
+package net.craswell.security.encryption;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Encrypts and decrypts values through buffers reused by each thread, so that the intermediate
+ * plaintext, ciphertext and Base64 copies do not allocate: encryption allocates the returned String
+ * only, and decryption the returned plaintext only, besides what the Cipher itself allocates.
+ * Base64 is encoded and decoded here, straight between the Strings and the reused buffers, since
+ * java.util.Base64 only works on arrays and buffers it allocates or whose length is exact.
+ * 
+ * The buffers grow to the largest value handled by their thread, up to 64 KiB; larger values go
+ * through buffers allocated for the call only, so that no thread keeps a copy of its largest value.
+ * They are heap buffers unless the {@value #DIRECT_BUFFERS_PROPERTY} system property is true.
+ * Plaintext left in a buffer is wiped before each method returns.
+ * 
+ * The buffers are not reentrant: encryption engines used with these methods must not call them.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class CryptoBuffers {
+  /**
+   * The system property selecting direct buffers.
+   */
+  public static final String DIRECT_BUFFERS_PROPERTY =
+      "net.craswell.security.encryption.directBuffers";
+
+  /**
+   * Indicates whether the buffers are allocated outside of the heap.
+   */
+  private static final boolean DIRECT_BUFFERS = Boolean.getBoolean(DIRECT_BUFFERS_PROPERTY);
+
+  /**
+   * The initial capacity of the buffers, in bytes.
+   */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * The largest capacity of the buffers reused by a thread, in bytes.
+   */
+  private static final int MAXIMUM_REUSED_CAPACITY = 64 * 1024;
+
+  /**
+   * The Base64 alphabet.
+   */
+  private static final byte[] BASE64_ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+          .getBytes(StandardCharsets.US_ASCII);
+
+  /**
+   * The value of each ASCII character in the Base64 alphabet, or -1.
+   */
+  private static final byte[] BASE64_VALUES = new byte[128];
+
+  static {
+    Arrays.fill(BASE64_VALUES, (byte) -1);
+
+    for (int i = 0; i < BASE64_ALPHABET.length; i++) {
+      BASE64_VALUES[BASE64_ALPHABET[i]] = (byte) i;
+    }
+  }
+
+  /**
+   * The buffers reused by each thread.
+   */
+  private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+  /**
+   * Prevents instantiation.
+   */
+  private CryptoBuffers() {
+  }
+
+  /**
+   * Encrypts a value and encodes the ciphertext as Base64.
+   * 
+   * @param encryptionEngine The encryption engine.
+   * @param plaintext The value to encrypt.
+   * @param key The encryption key.
+   * 
+   * @return The Base64 encoded ciphertext.
+   * 
+   * @throws EncryptionException Thrown when the value cannot be encrypted.
+   */
+  public static String encryptToBase64(
+      EncryptionEngine encryptionEngine,
+      byte[] plaintext,
+      SecretKey key) throws EncryptionException {
+    Buffers buffers = BUFFERS.get();
+    ByteBuffer plaintextBuffer = buffers.plaintext(plaintext.length);
+
+    try {
+      plaintextBuffer.put(plaintext);
+      plaintextBuffer.flip();
+
+      ByteBuffer ciphertextBuffer =
+          buffers.ciphertext(encryptionEngine.getMaximumCiphertextLength(plaintext.length));
+      encryptionEngine.encrypt(plaintextBuffer, ciphertextBuffer, key);
+      ciphertextBuffer.flip();
+
+      return encodeBase64(ciphertextBuffer, buffers);
+    } finally {
+      wipe(plaintextBuffer);
+    }
+  }
+
+  /**
+   * Decodes Base64 encoded ciphertext and decrypts it.
+   * 
+   * @param encryptionEngine The encryption engine.
+   * @param ciphertext The Base64 encoded ciphertext.
+   * @param key The decryption key.
+   * 
+   * @return The decrypted value, which the caller wipes after use.
+   * 
+   * @throws EncryptionException Thrown when the value cannot be decrypted.
+   * @throws IllegalArgumentException Thrown when the ciphertext is not valid Base64.
+   */
+  public static byte[] decryptBase64(
+      EncryptionEngine encryptionEngine,
+      String ciphertext,
+      SecretKey key) throws EncryptionException {
+    Buffers buffers = BUFFERS.get();
+    ByteBuffer ciphertextBuffer = buffers.ciphertext(ciphertext.length() / 4 * 3 + 2);
+
+    decodeBase64(ciphertext, ciphertextBuffer);
+    ciphertextBuffer.flip();
+
+    ByteBuffer plaintextBuffer = buffers.plaintext(ciphertextBuffer.remaining());
+
+    try {
+      encryptionEngine.decrypt(ciphertextBuffer, plaintextBuffer, key);
+      plaintextBuffer.flip();
+
+      byte[] plaintext = new byte[plaintextBuffer.remaining()];
+      plaintextBuffer.get(plaintext);
+
+      return plaintext;
+    } finally {
+      wipe(plaintextBuffer);
+    }
+  }
+
+  /**
+   * Overwrites a decrypted or serialized value with zeroes.
+   * 
+   * @param bytes The value, which may be null.
+   */
+  public static void wipe(byte[] bytes) {
+    if (bytes != null) {
+      Arrays.fill(bytes, (byte) 0);
+    }
+  }
+
+  /**
+   * Overwrites the bytes written to a buffer with zeroes and clears it.
+   * 
+   * @param buffer The buffer.
+   */
+  private static void wipe(ByteBuffer buffer) {
+    int length = Math.max(buffer.position(), buffer.limit());
+
+    if (buffer.hasArray()) {
+      Arrays.fill(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + length, (byte) 0);
+    } else {
+      for (int i = 0; i < length; i++) {
+        buffer.put(i, (byte) 0);
+      }
+    }
+
+    buffer.clear();
+  }
+
+  /**
+   * Encodes the remaining bytes of a buffer as Base64, with padding, through the character buffer
+   * of the thread.
+   * 
+   * @param bytes The bytes to encode, consumed by this method.
+   * @param buffers The buffers of the thread.
+   * 
+   * @return The Base64 encoding.
+   */
+  private static String encodeBase64(
+      ByteBuffer bytes,
+      Buffers buffers) {
+    byte[] characters = buffers.characters((bytes.remaining() + 2) / 3 * 4);
+    int length = 0;
+
+    while (bytes.remaining() >= 3) {
+      int bits = (bytes.get() & 0xff) << 16 | (bytes.get() & 0xff) << 8 | (bytes.get() & 0xff);
+
+      characters[length++] = BASE64_ALPHABET[bits >>> 18];
+      characters[length++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+      characters[length++] = BASE64_ALPHABET[(bits >>> 6) & 0x3f];
+      characters[length++] = BASE64_ALPHABET[bits & 0x3f];
+    }
+
+    if (bytes.hasRemaining()) {
+      int remaining = bytes.remaining();
+      int bits = (bytes.get() & 0xff) << 16 | (remaining == 2 ? (bytes.get() & 0xff) << 8 : 0);
+
+      characters[length++] = BASE64_ALPHABET[bits >>> 18];
+      characters[length++] = BASE64_ALPHABET[(bits >>> 12) & 0x3f];
+      characters[length++] = remaining == 2 ? BASE64_ALPHABET[(bits >>> 6) & 0x3f] : (byte) '=';
+      characters[length++] = '=';
+    }
+
+    return new String(characters, 0, length, StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * Decodes Base64 into a buffer, accepting the same text as the basic decoder of
+   * java.util.Base64: padding is optional, but only allowed at the end.
+   * 
+   * @param characters The Base64 text.
+   * @param bytes The buffer receiving the decoded bytes, advanced past them.
+   * 
+   * @throws IllegalArgumentException Thrown when the text is not valid Base64.
+   */
+  private static void decodeBase64(
+      String characters,
+      ByteBuffer bytes) {
+    int length = characters.length();
+
+    while (length > 0 && characters.length() - length < 2 && characters.charAt(length - 1) == '=') {
+      length--;
+    }
+
+    if (length % 4 == 1 || (length < characters.length() && characters.length() % 4 != 0)) {
+      throw new IllegalArgumentException("The ciphertext is not valid Base64.");
+    }
+
+    int bits = 0;
+    int bitCount = 0;
+
+    for (int i = 0; i < length; i++) {
+      char character = characters.charAt(i);
+      int value = character < BASE64_VALUES.length
+          ? BASE64_VALUES[character]
+          : -1;
+
+      if (value < 0) {
+        throw new IllegalArgumentException("The ciphertext is not valid Base64.");
+      }
+
+      bits = bits << 6 | value;
+      bitCount += 6;
+
+      if (bitCount >= 8) {
+        bitCount -= 8;
+        bytes.put((byte) (bits >>> bitCount));
+      }
+    }
+  }
+
+  /**
+   * The buffers reused by a thread.
+   */
+  private static final class Buffers {
+    /**
+     * The plaintext buffer.
+     */
+    private ByteBuffer plaintext = allocate(INITIAL_CAPACITY);
+
+    /**
+     * The ciphertext buffer.
+     */
+    private ByteBuffer ciphertext = allocate(INITIAL_CAPACITY);
+
+    /**
+     * The Base64 character buffer.
+     */
+    private byte[] characters = new byte[INITIAL_CAPACITY];
+
+    /**
+     * Gets the plaintext buffer, cleared and large enough for a value.
+     * 
+     * @param capacity The required capacity, in bytes.
+     * 
+     * @return The plaintext buffer, or a buffer allocated for the value if it is larger than the
+     *         buffers reused.
+     */
+    private ByteBuffer plaintext(int capacity) {
+      if (capacity > MAXIMUM_REUSED_CAPACITY) {
+        return allocate(capacity);
+      }
+
+      if (this.plaintext.capacity() < capacity) {
+        wipe(this.plaintext);
+        this.plaintext = allocate(grow(this.plaintext.capacity(), capacity));
+      }
+
+      this.plaintext.clear();
+
+      return this.plaintext;
+    }
+
+    /**
+     * Gets the ciphertext buffer, cleared and large enough for a value.
+     * 
+     * @param capacity The required capacity, in bytes.
+     * 
+     * @return The ciphertext buffer, or a buffer allocated for the value if it is larger than the
+     *         buffers reused.
+     */
+    private ByteBuffer ciphertext(int capacity) {
+      if (capacity > MAXIMUM_REUSED_CAPACITY) {
+        return allocate(capacity);
+      }
+
+      if (this.ciphertext.capacity() < capacity) {
+        this.ciphertext = allocate(grow(this.ciphertext.capacity(), capacity));
+      }
+
+      this.ciphertext.clear();
+
+      return this.ciphertext;
+    }
+
+    /**
+     * Gets the Base64 character buffer, large enough for a value.
+     * 
+     * @param capacity The required capacity, in characters.
+     * 
+     * @return The character buffer, or an array allocated for the value if it is larger than the
+     *         buffers reused.
+     */
+    private byte[] characters(int capacity) {
+      if (capacity > MAXIMUM_REUSED_CAPACITY) {
+        return new byte[capacity];
+      }
+
+      if (this.characters.length < capacity) {
+        this.characters = new byte[grow(this.characters.length, capacity)];
+      }
+
+      return this.characters;
+    }
+
+    /**
+     * Computes the capacity of a grown buffer.
+     * 
+     * @param currentCapacity The current capacity.
+     * @param requiredCapacity The required capacity.
+     * 
+     * @return The new capacity, which does not exceed the largest capacity of reused buffers.
+     */
+    private static int grow(
+        int currentCapacity,
+        int requiredCapacity) {
+      return Math.max(
+          requiredCapacity,
+          Math.min(currentCapacity * 2, MAXIMUM_REUSED_CAPACITY));
+    }
+
+    /**
+     * Allocates a buffer.
+     * 
+     * @param capacity The buffer capacity, in bytes.
+     * 
+     * @return The buffer.
+     */
+    private static ByteBuffer allocate(int capacity) {
+      return DIRECT_BUFFERS
+          ? ByteBuffer.allocateDirect(capacity)
+          : ByteBuffer.allocate(capacity);
+    }
+  }
+}
@@ -0,0 +1,722 @@
+package net.craswell.security.encryption;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import net.craswell.common.encryption.PassphraseProvider;
+
+/**
+ * A bounded cache of AES keys derived from passphrases.
+ * 
+ * Keys are looked up by an HMAC-SHA256 fingerprint of the passphrase, keyed with a random key
+ * generated for each process, so that the passphrase itself is never retained and fingerprints
+ * found in a heap dump cannot be used to guess passphrases offline. Entries are evicted in least recently used order once the cache is full, and
+ * expire after a fixed time to live. Fingerprints are computed with digests and buffers reused by each
+ * thread, and passphrases can be supplied as character arrays so that they can be wiped after use.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class DerivedKeyCache {
+  /**
+   * The default maximum number of cached keys.
+   */
+  public static final int DEFAULT_MAXIMUM_SIZE = 16;
+
+  /**
+   * The default time to live of a cached key, in milliseconds.
+   */
+  public static final long DEFAULT_TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+  /**
+   * The key derivation algorithm.
+   */
+  private static final String KEY_DERIVATION_ALGORITHM = "PBKDF2WithHmacSHA256";
+
+  /**
+   * The fingerprint algorithm.
+   */
+  private static final String FINGERPRINT_ALGORITHM = "HmacSHA256";
+
+  /**
+   * The fingerprint key length, in bytes.
+   */
+  private static final int FINGERPRINT_KEY_LENGTH = 32;
+
+  /**
+   * The key derivation iteration count.
+   */
+  private static final int KEY_DERIVATION_ITERATIONS = 65536;
+
+  /**
+   * The derived key length, in bits.
+   */
+  private static final int KEY_LENGTH = 256;
+
+  /**
+   * The salt used for key derivation.
+   * 
+   * A fixed salt is required so that a passphrase always derives the same key.
+   */
+  private static final byte[] KEY_DERIVATION_SALT =
+      "net.craswell.security.encryption.DerivedKeyCache".getBytes(StandardCharsets.UTF_8);
+
+  /**
+   * The random key of passphrase fingerprints, generated for each process.
+   */
+  private static final SecretKey FINGERPRINT_KEY = generateFingerprintKey();
+
+  /**
+   * The fingerprint computation reused by each thread.
+   */
+  private static final ThreadLocal<Fingerprinter> FINGERPRINTERS =
+      ThreadLocal.withInitial(Fingerprinter::new);
+
+  /**
+   * The process-wide cache used by generated classes.
+   */
+  private static final DerivedKeyCache DEFAULT_INSTANCE = new DerivedKeyCache(
+      DEFAULT_MAXIMUM_SIZE,
+      DEFAULT_TIME_TO_LIVE_MILLIS);
+
+  /**
+   * The maximum number of cached keys.
+   */
+  private final int maximumSize;
+
+  /**
+   * The time to live of a cached key, in milliseconds.
+   */
+  private final long timeToLiveMillis;
+
+  /**
+   * The cached keys, by passphrase fingerprint, in access order.
+   */
+  private final Map<Fingerprint, CachedKey> keys;
+
+  /**
+   * The derivations in flight, by passphrase fingerprint, guarded by the lock of the cached keys.
+   * A derivation removed from this map by an invalidation still answers the threads waiting for
+   * it, but its key is not cached.
+   */
+  private final Map<Fingerprint, CompletableFuture<CachedKey>> derivations =
+      new HashMap<Fingerprint, CompletableFuture<CachedKey>>();
+
+  /**
+   * The key most recently returned to each thread, reused without locking while the thread keeps
+   * asking for the same passphrase instance.
+   */
+  private final ThreadLocal<RecentKey> recentKeys = ThreadLocal.withInitial(RecentKey::new);
+
+  /**
+   * The number of times the cache has been invalidated, which retires the recent keys of every
+   * thread.
+   */
+  private volatile long generation;
+
+  /**
+   * The number of lookups satisfied from the cache.
+   */
+  private final LongAdder hitCount = new LongAdder();
+
+  /**
+   * The number of lookups requiring key derivation.
+   */
+  private final LongAdder missCount = new LongAdder();
+
+  /**
+   * Initializes a new instance of the DerivedKeyCache class.
+   * 
+   * @param maximumSize The maximum number of cached keys.
+   * @param timeToLiveMillis The time to live of a cached key, in milliseconds.
+   */
+  public DerivedKeyCache(
+      int maximumSize,
+      long timeToLiveMillis) {
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("The maximum size must be at least 1.");
+    }
+
+    this.maximumSize = maximumSize;
+    this.timeToLiveMillis = timeToLiveMillis;
+    this.keys = new LinkedHashMap<Fingerprint, CachedKey>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Fingerprint, CachedKey> eldest) {
+        return this.size() > DerivedKeyCache.this.maximumSize;
+      }
+    };
+  }
+
+  /**
+   * @return The process-wide cache used by generated classes.
+   */
+  public static DerivedKeyCache getDefault() {
+    return DEFAULT_INSTANCE;
+  }
+
+  /**
+   * Gets the key derived from a passphrase, deriving it if it is not cached.
+   * 
+   * A thread asking repeatedly for the key of the same passphrase instance is answered without
+   * fingerprinting the passphrase, locking or allocating.
+   * 
+   * @param passphrase The passphrase.
+   * 
+   * @return The derived key.
+   * 
+   * @throws EncryptionException Thrown when the key cannot be derived.
+   */
+  public SecretKey getKey(String passphrase) throws EncryptionException {
+    if (passphrase == null) {
+      throw new IllegalArgumentException("The passphrase must not be null.");
+    }
+
+    RecentKey recentKey = this.recentKeys.get();
+    long now = System.currentTimeMillis();
+
+    if (recentKey.matches(passphrase, this.generation, now)) {
+      this.hitCount.increment();
+      return recentKey.cachedKey.key;
+    }
+
+    long currentGeneration = this.generation;
+    Fingerprinter fingerprinter = FINGERPRINTERS.get();
+    CachedKey cachedKey = this.getCachedKey(
+        fingerprinter.fingerprint(CharBuffer.wrap(passphrase)),
+        passphrase,
+        now);
+
+    recentKey.update(passphrase, cachedKey, currentGeneration);
+
+    return cachedKey.key;
+  }
+
+  /**
+   * Gets the key derived from a passphrase held in a character array, deriving it if it is not
+   * cached.
+   * 
+   * The array is neither retained nor copied into a String; the caller wipes it once the key has
+   * been returned.
+   * 
+   * @param passphrase The passphrase.
+   * 
+   * @return The derived key.
+   * 
+   * @throws EncryptionException Thrown when the key cannot be derived.
+   */
+  public SecretKey getKey(char[] passphrase) throws EncryptionException {
+    if (passphrase == null) {
+      throw new IllegalArgumentException("The passphrase must not be null.");
+    }
+
+    CharBuffer passphraseBuffer = CharBuffer.wrap(passphrase);
+    Fingerprinter fingerprinter = FINGERPRINTERS.get();
+
+    return this.getCachedKey(
+        fingerprinter.fingerprint(passphraseBuffer),
+        passphraseBuffer,
+        System.currentTimeMillis()).key;
+  }
+
+  /**
+   * Gets the key derived from the passphrase of a provider.
+   * 
+   * Passphrases of a {@link CharArrayPassphraseProvider} are read as character arrays, which are
+   * wiped as soon as the key has been found.
+   * 
+   * @param passphraseProvider The passphrase provider.
+   * 
+   * @return The derived key.
+   * 
+   * @throws EncryptionException Thrown when the key cannot be derived.
+   */
+  public SecretKey getKey(PassphraseProvider passphraseProvider) throws EncryptionException {
+    if (!(passphraseProvider instanceof CharArrayPassphraseProvider)) {
+      return this.getKey(passphraseProvider.getPassphrase());
+    }
+
+    char[] passphrase =
+        ((CharArrayPassphraseProvider) passphraseProvider).getPassphraseCharacters();
+
+    try {
+      return this.getKey(passphrase);
+    } finally {
+      if (passphrase != null) {
+        Arrays.fill(passphrase, '\0');
+      }
+    }
+  }
+
+  /**
+   * Discards the key derived from a passphrase, e.g. after the passphrase has been rotated.
+   * 
+   * A derivation of the key in flight is not cached once it completes, and the keys recently
+   * returned to each thread are retired.
+   * 
+   * @param passphrase The passphrase.
+   * 
+   * @throws EncryptionException Thrown when the passphrase cannot be fingerprinted.
+   */
+  public void invalidate(String passphrase) throws EncryptionException {
+    Fingerprint fingerprint = FINGERPRINTERS.get().fingerprint(CharBuffer.wrap(passphrase));
+
+    synchronized (this.keys) {
+      this.keys.remove(fingerprint);
+      this.derivations.remove(fingerprint);
+      this.generation++;
+    }
+  }
+
+  /**
+   * Discards all cached keys, and keeps the derivations in flight from caching their keys.
+   */
+  public void invalidateAll() {
+    synchronized (this.keys) {
+      this.keys.clear();
+      this.derivations.clear();
+      this.generation++;
+    }
+  }
+
+  /**
+   * @return The number of cached keys.
+   */
+  public int size() {
+    synchronized (this.keys) {
+      return this.keys.size();
+    }
+  }
+
+  /**
+   * @return The number of lookups satisfied from the cache.
+   */
+  public long getHitCount() {
+    return this.hitCount.sum();
+  }
+
+  /**
+   * @return The number of lookups requiring key derivation.
+   */
+  public long getMissCount() {
+    return this.missCount.sum();
+  }
+
+  /**
+   * Resets the hit and miss counts.
+   */
+  public void resetStatistics() {
+    this.hitCount.reset();
+    this.missCount.reset();
+  }
+
+  /**
+   * Gets the cached key of a passphrase fingerprint, deriving and caching it if necessary.
+   * 
+   * Keys are derived outside of the cache lock, so that lookups of other passphrases are not held
+   * up by a derivation; threads asking for a passphrase whose key is being derived wait for that
+   * derivation instead of starting their own.
+   * 
+   * @param fingerprint The passphrase fingerprint, which may be reused by the calling thread once
+   *        this method returns.
+   * @param passphrase The passphrase, copied only if its key must be derived.
+   * @param now The current time, in milliseconds since the epoch.
+   * 
+   * @return The cached key.
+   * 
+   * @throws EncryptionException Thrown when the key cannot be derived.
+   */
+  private CachedKey getCachedKey(
+      Fingerprint fingerprint,
+      CharSequence passphrase,
+      long now) throws EncryptionException {
+    CompletableFuture<CachedKey> derivation;
+    Fingerprint retainedFingerprint = null;
+
+    synchronized (this.keys) {
+      CachedKey cachedKey = this.keys.get(fingerprint);
+
+      if (cachedKey != null && cachedKey.expiresAt > now) {
+        this.hitCount.increment();
+        return cachedKey;
+      }
+
+      derivation = this.derivations.get(fingerprint);
+
+      if (derivation == null) {
+        this.missCount.increment();
+
+        retainedFingerprint = fingerprint.copy();
+        derivation = new CompletableFuture<CachedKey>();
+        this.derivations.put(retainedFingerprint, derivation);
+      } else {
+        this.hitCount.increment();
+      }
+    }
+
+    if (retainedFingerprint == null) {
+      return this.awaitDerivation(derivation);
+    }
+
+    try {
+      CachedKey cachedKey = new CachedKey(
+          this.deriveKey(passphrase),
+          now + this.timeToLiveMillis);
+
+      synchronized (this.keys) {
+        if (this.derivations.remove(retainedFingerprint, derivation)) {
+          this.keys.put(retainedFingerprint, cachedKey);
+        }
+      }
+
+      derivation.complete(cachedKey);
+
+      return cachedKey;
+    } catch (EncryptionException | RuntimeException e) {
+      synchronized (this.keys) {
+        this.derivations.remove(retainedFingerprint, derivation);
+      }
+
+      derivation.completeExceptionally(e);
+
+      throw e;
+    }
+  }
+
+  /**
+   * Waits for the key being derived by another thread.
+   * 
+   * @param derivation The derivation in flight.
+   * 
+   * @return The cached key.
+   * 
+   * @throws EncryptionException Thrown when the key cannot be derived.
+   */
+  private CachedKey awaitDerivation(CompletableFuture<CachedKey> derivation)
+      throws EncryptionException {
+    try {
+      return derivation.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+
+      throw new EncryptionException("Interrupted while waiting for the key to be derived.", e);
+    } catch (ExecutionException e) {
+      throw new EncryptionException("Unable to derive the key from the passphrase.", e.getCause());
+    }
+  }
+
+  /**
+   * Generates the random key of passphrase fingerprints.
+   * 
+   * @return The fingerprint key.
+   */
+  private static SecretKey generateFingerprintKey() {
+    byte[] keyBytes = new byte[FINGERPRINT_KEY_LENGTH];
+    new SecureRandom().nextBytes(keyBytes);
+
+    try {
+      return new SecretKeySpec(keyBytes, FINGERPRINT_ALGORITHM);
+    } finally {
+      Arrays.fill(keyBytes, (byte) 0);
+    }
+  }
+
+  /**
+   * Derives an AES key from a passphrase.
+   * 
+   * @param passphrase The passphrase.
+   * 
+   * @return The derived key.
+   * 
+   * @throws EncryptionException Thrown when the key cannot be derived.
+   */
+  private SecretKey deriveKey(CharSequence passphrase) throws EncryptionException {
+    char[] passphraseCharacters = new char[passphrase.length()];
+
+    for (int i = 0; i < passphraseCharacters.length; i++) {
+      passphraseCharacters[i] = passphrase.charAt(i);
+    }
+
+    PBEKeySpec keySpec = new PBEKeySpec(
+        passphraseCharacters,
+        KEY_DERIVATION_SALT,
+        KEY_DERIVATION_ITERATIONS,
+        KEY_LENGTH);
+
+    try {
+      SecretKeyFactory keyFactory = SecretKeyFactory.getInstance(KEY_DERIVATION_ALGORITHM);
+
+      return new SecretKeySpec(
+          keyFactory.generateSecret(keySpec).getEncoded(),
+          "AES");
+    } catch (GeneralSecurityException e) {
+      throw new EncryptionException("Unable to derive the key from the passphrase.", e);
+    } finally {
+      keySpec.clearPassword();
+      Arrays.fill(passphraseCharacters, '\0');
+    }
+  }
+
+  /**
+   * A cached key and its expiry time.
+   */
+  private static final class CachedKey {
+    /**
+     * The derived key.
+     */
+    private final SecretKey key;
+
+    /**
+     * The time at which the key expires, in milliseconds since the epoch.
+     */
+    private final long expiresAt;
+
+    /**
+     * Initializes a new instance of the CachedKey class.
+     * 
+     * @param key The derived key.
+     * @param expiresAt The time at which the key expires.
+     */
+    private CachedKey(
+        SecretKey key,
+        long expiresAt) {
+      this.key = key;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * The key most recently returned to a thread.
+   */
+  private static final class RecentKey {
+    /**
+     * The passphrase instance the key was returned for.
+     */
+    private WeakReference<String> passphrase = new WeakReference<String>(null);
+
+    /**
+     * The key returned for the passphrase.
+     */
+    private CachedKey cachedKey;
+
+    /**
+     * The cache generation in which the key was returned.
+     */
+    private long generation = -1;
+
+    /**
+     * Determines whether the key can be returned again.
+     * 
+     * @param passphrase The passphrase.
+     * @param generation The current cache generation.
+     * @param now The current time, in milliseconds since the epoch.
+     * 
+     * @return True if the key was returned for the same passphrase instance, has not been
+     *         invalidated since and has not expired.
+     */
+    private boolean matches(
+        String passphrase,
+        long generation,
+        long now) {
+      return this.passphrase.get() == passphrase
+          && this.generation == generation
+          && this.cachedKey.expiresAt > now;
+    }
+
+    /**
+     * Records the key returned for a passphrase.
+     * 
+     * @param passphrase The passphrase.
+     * @param cachedKey The key returned for the passphrase.
+     * @param generation The cache generation observed before the key was looked up.
+     */
+    private void update(
+        String passphrase,
+        CachedKey cachedKey,
+        long generation) {
+      if (this.passphrase.get() != passphrase) {
+        this.passphrase = new WeakReference<String>(passphrase);
+      }
+
+      this.cachedKey = cachedKey;
+      this.generation = generation;
+    }
+  }
+
+  /**
+   * Computes passphrase fingerprints with buffers reused by its thread.
+   */
+  private static final class Fingerprinter {
+    /**
+     * The initial capacity of the encoded passphrase buffer, in bytes.
+     */
+    private static final int INITIAL_CAPACITY = 128;
+
+    /**
+     * The keyed digest computing fingerprints.
+     */
+    private final Mac mac;
+
+    /**
+     * The encoder converting passphrases to UTF-8, replacing malformed characters as
+     * String.getBytes does.
+     */
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * The fingerprint reused by each lookup.
+     */
+    private final Fingerprint fingerprint;
+
+    /**
+     * The encoded passphrase, wiped after each fingerprint.
+     */
+    private ByteBuffer encodedPassphrase = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    /**
+     * Initializes a new instance of the Fingerprinter class.
+     */
+    private Fingerprinter() {
+      try {
+        this.mac = Mac.getInstance(FINGERPRINT_ALGORITHM);
+        this.mac.init(FINGERPRINT_KEY);
+      } catch (GeneralSecurityException e) {
+        throw new IllegalStateException("The fingerprint algorithm is unavailable.", e);
+      }
+
+      this.fingerprint = new Fingerprint(new byte[this.mac.getMacLength()]);
+    }
+
+    /**
+     * Computes the fingerprint identifying a passphrase in the cache.
+     * 
+     * @param passphrase The passphrase, rewound once it has been read.
+     * 
+     * @return The passphrase fingerprint, overwritten by the next fingerprint computed by this
+     *         thread.
+     * 
+     * @throws EncryptionException Thrown when the fingerprint cannot be computed.
+     */
+    private Fingerprint fingerprint(CharBuffer passphrase) throws EncryptionException {
+      this.encode(passphrase);
+      passphrase.rewind();
+
+      try {
+        this.mac.update(
+            this.encodedPassphrase.array(),
+            0,
+            this.encodedPassphrase.position());
+        this.mac.doFinal(this.fingerprint.value, 0);
+        this.fingerprint.rehash();
+
+        return this.fingerprint;
+      } catch (GeneralSecurityException e) {
+        throw new EncryptionException("Unable to fingerprint the passphrase.", e);
+      } finally {
+        Arrays.fill(this.encodedPassphrase.array(), 0, this.encodedPassphrase.position(), (byte) 0);
+        this.encodedPassphrase.clear();
+      }
+    }
+
+    /**
+     * Encodes a passphrase into the encoded passphrase buffer, growing it as necessary.
+     * 
+     * @param passphrase The passphrase.
+     */
+    private void encode(CharBuffer passphrase) {
+      int required = (int) (passphrase.remaining() * this.encoder.maxBytesPerChar());
+
+      if (this.encodedPassphrase.capacity() < required) {
+        Arrays.fill(this.encodedPassphrase.array(), (byte) 0);
+        this.encodedPassphrase = ByteBuffer.allocate(required);
+      }
+
+      this.encoder.reset();
+      this.encoder.encode(passphrase, this.encodedPassphrase, true);
+      this.encoder.flush(this.encodedPassphrase);
+    }
+  }
+
+  /**
+   * A passphrase fingerprint, used as the key of cached keys.
+   */
+  private static final class Fingerprint {
+    /**
+     * The keyed digest of the passphrase.
+     */
+    private final byte[] value;
+
+    /**
+     * The hash code of the digest.
+     */
+    private int hashCode;
+
+    /**
+     * Initializes a new instance of the Fingerprint class.
+     * 
+     * @param value The keyed digest of the passphrase.
+     */
+    private Fingerprint(byte[] value) {
+      this.value = value;
+      this.rehash();
+    }
+
+    /**
+     * Recomputes the hash code after the digest has been overwritten.
+     */
+    private void rehash() {
+      this.hashCode = Arrays.hashCode(this.value);
+    }
+
+    /**
+     * @return A copy of this fingerprint which can be retained by the cache.
+     */
+    private Fingerprint copy() {
+      return new Fingerprint(this.value.clone());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#hashCode()
+     */
+    @Override
+    public int hashCode() {
+      return this.hashCode;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#equals(java.lang.Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Fingerprint
+          && Arrays.equals(this.value, ((Fingerprint) obj).value);
+    }
+  }
+}
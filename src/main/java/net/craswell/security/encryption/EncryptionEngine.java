@@ -0,0 +1,94 @@
+package net.craswell.security.encryption;
+
+import java.nio.ByteBuffer;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Encrypts and decrypts confidential values using previously derived keys.
+ * 
+ * Implementations must be thread safe so that a single instance can be shared by all generated
+ * classes. The ByteBuffer methods let callers encrypt into buffers they reuse; their default
+ * implementations delegate to the array methods.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public interface EncryptionEngine {
+  /**
+   * Encrypts a value.
+   * 
+   * @param plaintext The value to encrypt.
+   * @param key The encryption key.
+   * 
+   * @return The ciphertext.
+   * 
+   * @throws EncryptionException Thrown when the value cannot be encrypted.
+   */
+  byte[] encrypt(
+      byte[] plaintext,
+      SecretKey key) throws EncryptionException;
+
+  /**
+   * Decrypts a value.
+   * 
+   * @param ciphertext The ciphertext.
+   * @param key The decryption key.
+   * 
+   * @return The decrypted value.
+   * 
+   * @throws EncryptionException Thrown when the value cannot be decrypted.
+   */
+  byte[] decrypt(
+      byte[] ciphertext,
+      SecretKey key) throws EncryptionException;
+
+  /**
+   * Gets the largest ciphertext produced by encrypting a value.
+   * 
+   * @param plaintextLength The length of the value, in bytes.
+   * 
+   * @return The maximum ciphertext length, in bytes.
+   */
+  default int getMaximumCiphertextLength(int plaintextLength) {
+    return plaintextLength + 64;
+  }
+
+  /**
+   * Encrypts the remaining bytes of a buffer into another buffer.
+   * 
+   * @param plaintext The value to encrypt, consumed by this method.
+   * @param ciphertext The buffer receiving the ciphertext, advanced past it.
+   * @param key The encryption key.
+   * 
+   * @throws EncryptionException Thrown when the value cannot be encrypted.
+   */
+  default void encrypt(
+      ByteBuffer plaintext,
+      ByteBuffer ciphertext,
+      SecretKey key) throws EncryptionException {
+    byte[] plaintextBytes = new byte[plaintext.remaining()];
+    plaintext.get(plaintextBytes);
+
+    ciphertext.put(this.encrypt(plaintextBytes, key));
+  }
+
+  /**
+   * Decrypts the remaining bytes of a buffer into another buffer.
+   * 
+   * @param ciphertext The ciphertext, consumed by this method.
+   * @param plaintext The buffer receiving the decrypted value, advanced past it.
+   * @param key The decryption key.
+   * 
+   * @throws EncryptionException Thrown when the value cannot be decrypted.
+   */
+  default void decrypt(
+      ByteBuffer ciphertext,
+      ByteBuffer plaintext,
+      SecretKey key) throws EncryptionException {
+    byte[] ciphertextBytes = new byte[ciphertext.remaining()];
+    ciphertext.get(ciphertextBytes);
+
+    plaintext.put(this.decrypt(ciphertextBytes, key));
+  }
+}
@@ -0,0 +1,36 @@
+package net.craswell.security.encryption;
+
+/**
+ * Thrown when a confidential value cannot be encrypted or decrypted.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class EncryptionException
+    extends Exception {
+  /**
+   * The serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Initializes a new instance of the EncryptionException class.
+   * 
+   * @param message The exception message.
+   */
+  public EncryptionException(String message) {
+    super(message);
+  }
+
+  /**
+   * Initializes a new instance of the EncryptionException class.
+   * 
+   * @param message The exception message.
+   * @param cause The cause of the exception.
+   */
+  public EncryptionException(
+      String message,
+      Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,26 @@
+package net.craswell.security.encryption;
+
+/**
+ * Thrown when a value to decrypt carries no ciphertext header, meaning that it was not written by
+ * an encryption engine but by the legacy encryption tool.
+ * 
+ * Generated classes decrypt such values with {@link LegacyEncryption}; engines which write their
+ * own format throw this exception to hand their legacy values over in the same way.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class LegacyCiphertextException
+    extends EncryptionException {
+  /**
+   * The serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Initializes a new instance of the LegacyCiphertextException class.
+   */
+  public LegacyCiphertextException() {
+    super("The ciphertext has no header; it was written by the legacy encryption tool.");
+  }
+}
@@ -0,0 +1,59 @@
+package net.craswell.security.encryption;
+
+import net.craswell.common.encryption.AesTool;
+import net.craswell.common.encryption.AesToolException;
+import net.craswell.common.encryption.AesToolImpl;
+import net.craswell.common.encryption.PassphraseProvider;
+
+/**
+ * Reads secured values written by the AesToolImpl which generated classes used before encryption
+ * engines were introduced.
+ * 
+ * Generated accessors fall back to this class when their engine finds no ciphertext header in a
+ * secured value, so that existing rows stay readable; the values are encrypted with the engine once
+ * they are set again.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class LegacyEncryption {
+  /**
+   * The legacy encryption tool used by each thread.
+   */
+  private static final ThreadLocal<AesTool> TOOLS = ThreadLocal.withInitial(AesToolImpl::new);
+
+  /**
+   * Prevents instantiation.
+   */
+  private LegacyEncryption() {
+  }
+
+  /**
+   * Decrypts a secured value written by the legacy encryption tool.
+   * 
+   * @param securedValue The secured value.
+   * @param passphraseProvider The passphrase provider.
+   * @param failure The exception thrown by the engine which found no ciphertext header.
+   * 
+   * @return The decrypted bytes.
+   * 
+   * @throws EncryptionException The engine failure, when the legacy tool cannot decrypt the value
+   *         either.
+   */
+  public static byte[] decrypt(
+      String securedValue,
+      PassphraseProvider passphraseProvider,
+      EncryptionException failure) throws EncryptionException {
+    AesTool aesTool = TOOLS.get();
+
+    try {
+      return aesTool.decrypt(
+          aesTool.decodeObject(securedValue),
+          passphraseProvider.getPassphrase());
+    } catch (AesToolException | RuntimeException e) {
+      failure.addSuppressed(e);
+
+      throw failure;
+    }
+  }
+}
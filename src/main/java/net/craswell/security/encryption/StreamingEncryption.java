@@ -0,0 +1,255 @@
+package net.craswell.security.encryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.SecretKey;
+
+/**
+ * Encrypts and decrypts streams in independently authenticated chunks, so that values too large to
+ * hold in memory can be encrypted and decrypted as they are read.
+ * 
+ * The ciphertext starts with a header holding the format version, the chunk size and a random
+ * nonce prefix. Each chunk of plaintext is then encrypted with AES-GCM under a nonce made of the
+ * prefix and the chunk number. Every chunk but the last holds exactly the chunk size; the last one
+ * is shorter, possibly empty, and is authenticated as such, so that reordered, truncated or
+ * extended ciphertext is rejected.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class StreamingEncryption {
+  /**
+   * The default number of plaintext bytes per chunk.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+  /**
+   * The largest number of plaintext bytes per chunk accepted when decrypting.
+   */
+  public static final int MAXIMUM_CHUNK_SIZE = 16 * 1024 * 1024;
+
+  /**
+   * The format version.
+   */
+  static final byte VERSION = 0x01;
+
+  /**
+   * The cipher transformation.
+   */
+  static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+  /**
+   * The length of the authentication tag of each chunk, in bytes.
+   */
+  static final int TAG_LENGTH = 16;
+
+  /**
+   * The length of the random nonce prefix, in bytes.
+   */
+  static final int NONCE_PREFIX_LENGTH = 8;
+
+  /**
+   * The length of the nonce of each chunk, in bytes.
+   */
+  static final int NONCE_LENGTH = NONCE_PREFIX_LENGTH + 4;
+
+  /**
+   * The length of the header: the version, the chunk size and the nonce prefix.
+   */
+  public static final int HEADER_LENGTH = 1 + 4 + NONCE_PREFIX_LENGTH;
+
+  /**
+   * The additional authenticated data of every chunk but the last.
+   */
+  static final byte[] INTERMEDIATE_CHUNK = new byte[] {0x00};
+
+  /**
+   * The additional authenticated data of the last chunk.
+   */
+  static final byte[] FINAL_CHUNK = new byte[] {0x01};
+
+  /**
+   * Prevents instantiation.
+   */
+  private StreamingEncryption() {
+  }
+
+  /**
+   * Opens a stream encrypting the plaintext read from another stream, with the default chunk size.
+   * 
+   * @param plaintext The plaintext stream, closed when the encrypting stream is closed.
+   * @param key The encryption key.
+   * 
+   * @return The stream of ciphertext.
+   */
+  public static InputStream encrypt(
+      InputStream plaintext,
+      SecretKey key) {
+    return encrypt(plaintext, key, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Opens a stream encrypting the plaintext read from another stream.
+   * 
+   * @param plaintext The plaintext stream, closed when the encrypting stream is closed.
+   * @param key The encryption key.
+   * @param chunkSize The number of plaintext bytes per chunk.
+   * 
+   * @return The stream of ciphertext.
+   */
+  public static InputStream encrypt(
+      InputStream plaintext,
+      SecretKey key,
+      int chunkSize) {
+    checkChunkSize(chunkSize);
+
+    return new ChunkEncryptingInputStream(plaintext, key, chunkSize);
+  }
+
+  /**
+   * Opens a stream decrypting the ciphertext read from another stream.
+   * 
+   * The stream throws an IOException when a chunk cannot be authenticated or the ciphertext is
+   * truncated; plaintext read before then must not be trusted until the end of the stream is
+   * reached.
+   * 
+   * @param ciphertext The ciphertext stream, closed when the decrypting stream is closed.
+   * @param key The decryption key.
+   * 
+   * @return The stream of plaintext.
+   */
+  public static InputStream decrypt(
+      InputStream ciphertext,
+      SecretKey key) {
+    return new ChunkDecryptingInputStream(ciphertext, key);
+  }
+
+  /**
+   * Determines whether a ciphertext was encrypted with a key, by authenticating its first chunk.
+   * 
+   * @param ciphertext The ciphertext stream, closed by this method.
+   * @param key The key.
+   * 
+   * @return True if the first chunk is authenticated by the key; false if it is not.
+   * 
+   * @throws IOException Thrown when the ciphertext cannot be read or is malformed.
+   */
+  public static boolean isEncryptedWith(
+      InputStream ciphertext,
+      SecretKey key) throws IOException {
+    try (InputStream plaintext = decrypt(ciphertext, key)) {
+      plaintext.read();
+
+      return true;
+    } catch (IOException e) {
+      if (e.getCause() instanceof AEADBadTagException) {
+        return false;
+      }
+
+      throw e;
+    }
+  }
+
+  /**
+   * Computes the length of the ciphertext of a value.
+   * 
+   * @param plaintextLength The length of the value, in bytes.
+   * @param chunkSize The number of plaintext bytes per chunk.
+   * 
+   * @return The ciphertext length, in bytes.
+   */
+  public static long getCiphertextLength(
+      long plaintextLength,
+      int chunkSize) {
+    checkChunkSize(chunkSize);
+
+    if (plaintextLength < 0) {
+      throw new IllegalArgumentException("The plaintext length must not be negative.");
+    }
+
+    return HEADER_LENGTH
+        + plaintextLength / chunkSize * (chunkSize + TAG_LENGTH)
+        + plaintextLength % chunkSize
+        + TAG_LENGTH;
+  }
+
+  /**
+   * Computes the length of the value encrypted in a ciphertext.
+   * 
+   * @param ciphertextLength The length of the ciphertext, in bytes.
+   * @param chunkSize The number of plaintext bytes per chunk, read from the ciphertext header.
+   * 
+   * @return The plaintext length, in bytes.
+   * 
+   * @throws IllegalArgumentException Thrown when no ciphertext has the given length.
+   */
+  public static long getPlaintextLength(
+      long ciphertextLength,
+      int chunkSize) {
+    checkChunkSize(chunkSize);
+
+    long bodyLength = ciphertextLength - HEADER_LENGTH;
+    long chunkCount = bodyLength / (chunkSize + TAG_LENGTH);
+    long finalChunkLength = bodyLength - chunkCount * (chunkSize + TAG_LENGTH);
+
+    if (bodyLength < TAG_LENGTH || finalChunkLength < TAG_LENGTH) {
+      throw new IllegalArgumentException("The ciphertext length is malformed.");
+    }
+
+    return chunkCount * chunkSize + finalChunkLength - TAG_LENGTH;
+  }
+
+  /**
+   * Reads the chunk size from a ciphertext header.
+   * 
+   * @param header The first bytes of the ciphertext.
+   * 
+   * @return The number of plaintext bytes per chunk.
+   * 
+   * @throws IllegalArgumentException Thrown when the header is malformed.
+   */
+  public static int getChunkSize(byte[] header) {
+    if (header == null || header.length < 5 || header[0] != VERSION) {
+      throw new IllegalArgumentException("The ciphertext header is malformed.");
+    }
+
+    int chunkSize = (header[1] & 0xff) << 24
+        | (header[2] & 0xff) << 16
+        | (header[3] & 0xff) << 8
+        | (header[4] & 0xff);
+
+    checkChunkSize(chunkSize);
+
+    return chunkSize;
+  }
+
+  /**
+   * Builds the nonce of a chunk.
+   * 
+   * @param nonce The nonce, whose first bytes hold the nonce prefix.
+   * @param chunkNumber The chunk number.
+   */
+  static void setChunkNumber(
+      byte[] nonce,
+      int chunkNumber) {
+    nonce[NONCE_PREFIX_LENGTH] = (byte) (chunkNumber >>> 24);
+    nonce[NONCE_PREFIX_LENGTH + 1] = (byte) (chunkNumber >>> 16);
+    nonce[NONCE_PREFIX_LENGTH + 2] = (byte) (chunkNumber >>> 8);
+    nonce[NONCE_PREFIX_LENGTH + 3] = (byte) chunkNumber;
+  }
+
+  /**
+   * Ensures that a chunk size is supported.
+   * 
+   * @param chunkSize The number of plaintext bytes per chunk.
+   */
+  static void checkChunkSize(int chunkSize) {
+    if (chunkSize < 1 || chunkSize > MAXIMUM_CHUNK_SIZE) {
+      throw new IllegalArgumentException(String.format(
+          "The chunk size must be between 1 and %1$d.",
+          MAXIMUM_CHUNK_SIZE));
+    }
+  }
+}
@@ -0,0 +1,292 @@
+package net.craswell.security.metadata;
+
+/**
+ * Describes a confidential field of a secured class, and accesses it without reflection.
+ * 
+ * The getter and setter read and write the decrypted value through the generated accessors. The
+ * secured getter and setter read and write the ciphertext as it is stored, without decrypting it.
+ * 
+ * @author scraswell@gmail.com
+ *
+ * @param <T> The secured class.
+ * @param <V> The field type, boxed if it is primitive.
+ */
+public final class ConfidentialFieldMetadata<T, V> {
+  /**
+   * The field name.
+   */
+  private final String name;
+
+  /**
+   * The field type.
+   */
+  private final Class<V> type;
+
+  /**
+   * The name of the field holding the ciphertext.
+   */
+  private final String securedFieldName;
+
+  /**
+   * The type of the field holding the ciphertext.
+   */
+  private final Class<?> securedType;
+
+  /**
+   * The name of the group the field is packed into.
+   */
+  private final String group;
+
+  /**
+   * Indicates whether the field has a blind index.
+   */
+  private final boolean searchable;
+
+  /**
+   * Indicates whether the field is encrypted in chunks into a Blob.
+   */
+  private final boolean streaming;
+
+  /**
+   * Indicates whether large values are compressed before they are encrypted.
+   */
+  private final boolean compressed;
+
+  /**
+   * The serialized length from which values are compressed.
+   */
+  private final int compressionThreshold;
+
+  /**
+   * Reads the decrypted value.
+   */
+  private final ValueGetter<T, ? extends V> getter;
+
+  /**
+   * Writes the value.
+   */
+  private final ValueSetter<T, ? super V> setter;
+
+  /**
+   * Reads the ciphertext.
+   */
+  private final ValueGetter<T, ?> securedGetter;
+
+  /**
+   * Writes the ciphertext.
+   */
+  private final ValueSetter<T, Object> securedSetter;
+
+  /**
+   * Determines whether an entity holds a value.
+   */
+  private final ValueGetter<T, Boolean> presenceGetter;
+
+  /**
+   * Initializes a new instance of the ConfidentialFieldMetadata class.
+   * 
+   * @param name The field name.
+   * @param type The field type.
+   * @param securedFieldName The name of the field holding the ciphertext, or null if the field is
+   *        encrypted by an attribute converter.
+   * @param securedType The type of the field holding the ciphertext, or null if the field is
+   *        encrypted by an attribute converter.
+   * @param group The name of the group the field is packed into, or null.
+   * @param searchable True if the field has a blind index; false otherwise.
+   * @param streaming True if the field is encrypted in chunks into a Blob; false otherwise.
+   * @param compressed True if large values are compressed before they are encrypted; false
+   *        otherwise.
+   * @param compressionThreshold The serialized length, in bytes, from which values are compressed.
+   * @param getter Reads the decrypted value.
+   * @param setter Writes the value, or null if the setter takes more than the value.
+   * @param securedGetter Reads the ciphertext, or null if there is no secured field.
+   * @param securedSetter Writes the ciphertext, or null if there is no secured field.
+   * @param presenceGetter Determines whether an entity holds a value: ciphertext, or a value
+   *        awaiting encryption.
+   */
+  public ConfidentialFieldMetadata(
+      String name,
+      Class<V> type,
+      String securedFieldName,
+      Class<?> securedType,
+      String group,
+      boolean searchable,
+      boolean streaming,
+      boolean compressed,
+      int compressionThreshold,
+      ValueGetter<T, ? extends V> getter,
+      ValueSetter<T, ? super V> setter,
+      ValueGetter<T, ?> securedGetter,
+      ValueSetter<T, Object> securedSetter,
+      ValueGetter<T, Boolean> presenceGetter) {
+    this.name = name;
+    this.type = type;
+    this.securedFieldName = securedFieldName;
+    this.securedType = securedType;
+    this.group = group;
+    this.searchable = searchable;
+    this.streaming = streaming;
+    this.compressed = compressed;
+    this.compressionThreshold = compressionThreshold;
+    this.getter = getter;
+    this.setter = setter;
+    this.securedGetter = securedGetter;
+    this.securedSetter = securedSetter;
+    this.presenceGetter = presenceGetter;
+  }
+
+  /**
+   * @return The field name.
+   */
+  public String getName() {
+    return this.name;
+  }
+
+  /**
+   * @return The field type.
+   */
+  public Class<V> getType() {
+    return this.type;
+  }
+
+  /**
+   * @return The name of the field holding the ciphertext, or null if the field is encrypted by an
+   *         attribute converter.
+   */
+  public String getSecuredFieldName() {
+    return this.securedFieldName;
+  }
+
+  /**
+   * @return The type of the field holding the ciphertext, or null if the field is encrypted by an
+   *         attribute converter.
+   */
+  public Class<?> getSecuredType() {
+    return this.securedType;
+  }
+
+  /**
+   * @return The name of the group the field is packed into, or null. The fields of a group share
+   *         their secured field.
+   */
+  public String getGroup() {
+    return this.group;
+  }
+
+  /**
+   * @return True if the field has a blind index; false otherwise.
+   */
+  public boolean isSearchable() {
+    return this.searchable;
+  }
+
+  /**
+   * @return True if the field is encrypted in chunks into a Blob; false otherwise.
+   */
+  public boolean isStreaming() {
+    return this.streaming;
+  }
+
+  /**
+   * @return True if large values are compressed before they are encrypted; false otherwise.
+   */
+  public boolean isCompressed() {
+    return this.compressed;
+  }
+
+  /**
+   * @return The serialized length, in bytes, from which values are compressed.
+   */
+  public int getCompressionThreshold() {
+    return this.compressionThreshold;
+  }
+
+  /**
+   * Determines whether an entity holds a value for the field, either as ciphertext or as a value
+   * awaiting encryption. The getter of a field holding no value may fail.
+   * 
+   * @param entity The entity.
+   * 
+   * @return True if the entity holds a value; false otherwise.
+   * 
+   * @throws Exception Thrown when the presence of the value cannot be determined.
+   */
+  public boolean hasValue(T entity) throws Exception {
+    return this.presenceGetter.get(entity);
+  }
+
+  /**
+   * Reads the decrypted value of an entity.
+   * 
+   * @param entity The entity.
+   * 
+   * @return The decrypted value.
+   * 
+   * @throws Exception Thrown when the value cannot be decrypted.
+   */
+  public V getValue(T entity) throws Exception {
+    return this.getter.get(entity);
+  }
+
+  /**
+   * Writes the value of an entity.
+   * 
+   * @param entity The entity.
+   * @param value The value.
+   * 
+   * @throws Exception Thrown when the value cannot be encrypted.
+   * @throws UnsupportedOperationException Thrown when the setter takes more than the value.
+   */
+  public void setValue(
+      T entity,
+      V value) throws Exception {
+    if (this.setter == null) {
+      throw new UnsupportedOperationException(String.format(
+          "The %1$s setter takes more than the value.",
+          this.name));
+    }
+
+    this.setter.set(entity, value);
+  }
+
+  /**
+   * Reads the ciphertext of an entity, as it is stored.
+   * 
+   * @param entity The entity.
+   * 
+   * @return The ciphertext.
+   * 
+   * @throws Exception Thrown when the ciphertext cannot be read.
+   * @throws UnsupportedOperationException Thrown when there is no secured field.
+   */
+  public Object getSecuredValue(T entity) throws Exception {
+    if (this.securedGetter == null) {
+      throw new UnsupportedOperationException(String.format(
+          "The %1$s field is encrypted by an attribute converter.",
+          this.name));
+    }
+
+    return this.securedGetter.get(entity);
+  }
+
+  /**
+   * Writes the ciphertext of an entity, as it is stored.
+   * 
+   * @param entity The entity.
+   * @param securedValue The ciphertext, of the secured type.
+   * 
+   * @throws Exception Thrown when the ciphertext cannot be written.
+   * @throws UnsupportedOperationException Thrown when there is no secured field.
+   */
+  public void setSecuredValue(
+      T entity,
+      Object securedValue) throws Exception {
+    if (this.securedSetter == null) {
+      throw new UnsupportedOperationException(String.format(
+          "The %1$s field is encrypted by an attribute converter.",
+          this.name));
+    }
+
+    this.securedSetter.set(entity, securedValue);
+  }
+}
@@ -0,0 +1,163 @@
+package net.craswell.security.metadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.craswell.common.encryption.AesTool;
+import net.craswell.common.encryption.PassphraseProvider;
+import net.craswell.security.encryption.EncryptionEngine;
+
+/**
+ * Describes a secured class generated from a template class and its confidential fields.
+ * 
+ * Instances are created by the generated code; tools obtain them from the static metadata() method
+ * of a secured class, or from a generated SecuredClassRegistry.
+ * 
+ * @author scraswell@gmail.com
+ *
+ * @param <T> The secured class.
+ */
+public final class SecuredClassMetadata<T> {
+  /**
+   * The secured class.
+   */
+  private final Class<T> securedClass;
+
+  /**
+   * The qualified name of the template class.
+   */
+  private final String templateClassName;
+
+  /**
+   * The encryption engine of the secured class.
+   */
+  private final EncryptionEngine engine;
+
+  /**
+   * Reads the passphrase provider of an entity.
+   */
+  private final ValueGetter<T, PassphraseProvider> passphraseProviderGetter;
+
+  /**
+   * Reads the encryption tool assigned to an entity.
+   */
+  private final ValueGetter<T, AesTool> encryptionToolGetter;
+
+  /**
+   * The confidential fields, in declaration order.
+   */
+  private final List<ConfidentialFieldMetadata<T, ?>> fields;
+
+  /**
+   * Initializes a new instance of the SecuredClassMetadata class.
+   * 
+   * @param securedClass The secured class.
+   * @param templateClassName The qualified name of the template class.
+   * @param engine The encryption engine of the secured class.
+   * @param passphraseProviderGetter Reads the passphrase provider of an entity, or null if the
+   *        fields are encrypted by attribute converters.
+   * @param encryptionToolGetter Reads the encryption tool assigned to an entity, or null if the
+   *        fields are encrypted by attribute converters.
+   * @param fields The confidential fields, in declaration order.
+   */
+  public SecuredClassMetadata(
+      Class<T> securedClass,
+      String templateClassName,
+      EncryptionEngine engine,
+      ValueGetter<T, PassphraseProvider> passphraseProviderGetter,
+      ValueGetter<T, AesTool> encryptionToolGetter,
+      List<ConfidentialFieldMetadata<T, ?>> fields) {
+    this.securedClass = securedClass;
+    this.templateClassName = templateClassName;
+    this.engine = engine;
+    this.passphraseProviderGetter = passphraseProviderGetter;
+    this.encryptionToolGetter = encryptionToolGetter;
+    this.fields = Collections.unmodifiableList(
+        new ArrayList<ConfidentialFieldMetadata<T, ?>>(fields));
+  }
+
+  /**
+   * @return The secured class.
+   */
+  public Class<T> getSecuredClass() {
+    return this.securedClass;
+  }
+
+  /**
+   * @return The qualified name of the template class, which need not be accessible from the
+   *         secured class.
+   */
+  public String getTemplateClassName() {
+    return this.templateClassName;
+  }
+
+  /**
+   * @return The encryption engine of the secured class.
+   */
+  public EncryptionEngine getEngine() {
+    return this.engine;
+  }
+
+  /**
+   * @return The qualified name of the encryption engine class.
+   */
+  public String getEngineClassName() {
+    return this.engine.getClass().getName();
+  }
+
+  /**
+   * Reads the passphrase provider of an entity.
+   * 
+   * @param entity The entity.
+   * 
+   * @return The passphrase provider, or null if it has not been set or the fields are encrypted by
+   *         attribute converters.
+   * 
+   * @throws Exception Thrown when the passphrase provider cannot be read.
+   */
+  public PassphraseProvider getPassphraseProvider(T entity) throws Exception {
+    return this.passphraseProviderGetter == null
+        ? null
+        : this.passphraseProviderGetter.get(entity);
+  }
+
+  /**
+   * Reads the encryption tool assigned to an entity.
+   * 
+   * @param entity The entity.
+   * 
+   * @return The encryption tool, or null if none has been assigned.
+   * 
+   * @throws Exception Thrown when the encryption tool cannot be read.
+   */
+  public AesTool getEncryptionTool(T entity) throws Exception {
+    return this.encryptionToolGetter == null
+        ? null
+        : this.encryptionToolGetter.get(entity);
+  }
+
+  /**
+   * @return The confidential fields, in declaration order.
+   */
+  public List<ConfidentialFieldMetadata<T, ?>> getFields() {
+    return this.fields;
+  }
+
+  /**
+   * Gets a confidential field by name.
+   * 
+   * @param name The field name.
+   * 
+   * @return The confidential field, or null if the class has no such confidential field.
+   */
+  public ConfidentialFieldMetadata<T, ?> getField(String name) {
+    for (ConfidentialFieldMetadata<T, ?> field : this.fields) {
+      if (field.getName().equals(name)) {
+        return field;
+      }
+    }
+
+    return null;
+  }
+}
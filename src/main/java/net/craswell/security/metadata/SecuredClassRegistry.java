@@ -0,0 +1,38 @@
+package net.craswell.security.metadata;
+
+import java.util.List;
+
+/**
+ * Lists the secured classes generated in a compilation, so that tools can operate on their
+ * confidential fields without scanning the classpath or using reflection.
+ * 
+ * Implementations are generated by ConfidentialityProcessor when the confidential.registry option
+ * names the registry class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public interface SecuredClassRegistry {
+  /**
+   * @return The metadata of the secured classes.
+   */
+  List<SecuredClassMetadata<?>> getSecuredClasses();
+
+  /**
+   * Gets the metadata of a secured class.
+   * 
+   * @param securedClass The secured class.
+   * 
+   * @return The metadata of the secured class, or null if it is not registered.
+   */
+  @SuppressWarnings("unchecked")
+  default <T> SecuredClassMetadata<T> getSecuredClass(Class<T> securedClass) {
+    for (SecuredClassMetadata<?> metadata : this.getSecuredClasses()) {
+      if (metadata.getSecuredClass() == securedClass) {
+        return (SecuredClassMetadata<T>) metadata;
+      }
+    }
+
+    return null;
+  }
+}
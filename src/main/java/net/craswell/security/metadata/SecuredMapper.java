@@ -0,0 +1,353 @@
+package net.craswell.security.metadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import net.craswell.common.encryption.AesTool;
+import net.craswell.common.encryption.PassphraseProvider;
+
+/**
+ * Copies the confidential values of secured entities of one class to secured entities of another,
+ * or of the same class.
+ * 
+ * Fields are matched by name and type. When the source and target entities share their key
+ * context, i.e. the same engine, the same assigned encryption tool if any, and the same passphrase,
+ * a matched field's ciphertext is copied as it is, without being decrypted and encrypted again;
+ * so is the envelope of a group whose fields match those of the target group. Otherwise, and for
+ * fields with a blind index on the target, the value is decrypted with the source getter and
+ * encrypted with the target setter. Values awaiting encryption are copied through the accessors.
+ * 
+ * The matching is computed once, so a mapper is meant to be created once per pair of classes and
+ * reused; it is immutable and thread safe.
+ * 
+ * @author scraswell@gmail.com
+ *
+ * @param <S> The source secured class.
+ * @param <T> The target secured class.
+ */
+public final class SecuredMapper<S, T> {
+  /**
+   * The source class metadata.
+   */
+  private final SecuredClassMetadata<S> sourceMetadata;
+
+  /**
+   * The target class metadata.
+   */
+  private final SecuredClassMetadata<T> targetMetadata;
+
+  /**
+   * The matched fields, in the declaration order of the target fields.
+   */
+  private final List<FieldMapping<S, T>> fieldMappings;
+
+  /**
+   * Initializes a new instance of the SecuredMapper class.
+   * 
+   * @param sourceMetadata The source class metadata.
+   * @param targetMetadata The target class metadata.
+   * @param fieldMappings The matched fields.
+   */
+  private SecuredMapper(
+      SecuredClassMetadata<S> sourceMetadata,
+      SecuredClassMetadata<T> targetMetadata,
+      List<FieldMapping<S, T>> fieldMappings) {
+    this.sourceMetadata = sourceMetadata;
+    this.targetMetadata = targetMetadata;
+    this.fieldMappings = Collections.unmodifiableList(fieldMappings);
+  }
+
+  /**
+   * Creates a mapper between two secured classes.
+   * 
+   * @param sourceMetadata The source class metadata.
+   * @param targetMetadata The target class metadata.
+   * 
+   * @return The mapper.
+   */
+  public static <S, T> SecuredMapper<S, T> between(
+      SecuredClassMetadata<S> sourceMetadata,
+      SecuredClassMetadata<T> targetMetadata) {
+    Map<String, ConfidentialFieldMetadata<S, ?>> sourceFields =
+        new HashMap<String, ConfidentialFieldMetadata<S, ?>>();
+
+    for (ConfidentialFieldMetadata<S, ?> sourceField : sourceMetadata.getFields()) {
+      sourceFields.put(sourceField.getName(), sourceField);
+    }
+
+    List<FieldMapping<S, T>> fieldMappings = new ArrayList<FieldMapping<S, T>>();
+
+    for (ConfidentialFieldMetadata<T, ?> targetField : targetMetadata.getFields()) {
+      ConfidentialFieldMetadata<S, ?> sourceField = sourceFields.get(targetField.getName());
+
+      if (sourceField != null && sourceField.getType() == targetField.getType()) {
+        fieldMappings.add(new FieldMapping<S, T>(
+            sourceField,
+            targetField,
+            isPassThroughCapable(sourceMetadata, sourceField, targetMetadata, targetField)));
+      }
+    }
+
+    return new SecuredMapper<S, T>(sourceMetadata, targetMetadata, fieldMappings);
+  }
+
+  /**
+   * Copies the confidential values of a source entity to a target entity.
+   * 
+   * Fields for which the source holds no value are left untouched. The target's passphrase
+   * provider must be set beforehand.
+   * 
+   * @param source The source entity.
+   * @param target The target entity.
+   * 
+   * @throws SecuredMappingException Thrown when a value cannot be copied.
+   */
+  public void copy(
+      S source,
+      T target) throws SecuredMappingException {
+    try {
+      boolean sharedKeys = this.sharesKeys(source, target);
+      Set<String> copiedGroups = new HashSet<String>();
+
+      for (FieldMapping<S, T> fieldMapping : this.fieldMappings) {
+        ConfidentialFieldMetadata<S, ?> sourceField = fieldMapping.getSourceField();
+        ConfidentialFieldMetadata<T, Object> targetField = fieldMapping.getTargetField();
+
+        if (targetField.getGroup() != null && copiedGroups.contains(targetField.getGroup())) {
+          continue;
+        }
+
+        if (sharedKeys && fieldMapping.isPassThroughCapable()) {
+          Object securedValue = sourceField.getSecuredValue(source);
+
+          if (securedValue != null) {
+            targetField.setSecuredValue(target, securedValue);
+
+            if (targetField.getGroup() != null) {
+              copiedGroups.add(targetField.getGroup());
+            }
+
+            continue;
+          }
+        }
+
+        if (sourceField.hasValue(source)) {
+          targetField.setValue(target, sourceField.getValue(source));
+        }
+      }
+    } catch (Exception e) {
+      throw new SecuredMappingException(
+          String.format(
+              "Unable to copy %1$s to %2$s.",
+              this.sourceMetadata.getSecuredClass().getName(),
+              this.targetMetadata.getSecuredClass().getName()),
+          e);
+    }
+  }
+
+  /**
+   * Determines whether two entities share their key context, so that the ciphertext of one can be
+   * decrypted by the other.
+   * 
+   * @param source The source entity.
+   * @param target The target entity.
+   * 
+   * @return True if the entities share their key context; false otherwise.
+   * 
+   * @throws Exception Thrown when the passphrase of either entity cannot be read.
+   */
+  public boolean sharesKeys(
+      S source,
+      T target) throws Exception {
+    if (!Objects.equals(
+        this.sourceMetadata.getEngineClassName(),
+        this.targetMetadata.getEngineClassName())) {
+      return false;
+    }
+
+    AesTool sourceTool = this.sourceMetadata.getEncryptionTool(source);
+    AesTool targetTool = this.targetMetadata.getEncryptionTool(target);
+
+    if (sourceTool != targetTool) {
+      return false;
+    }
+
+    PassphraseProvider sourceProvider = this.sourceMetadata.getPassphraseProvider(source);
+    PassphraseProvider targetProvider = this.targetMetadata.getPassphraseProvider(target);
+
+    if (sourceProvider == null || targetProvider == null) {
+      return false;
+    }
+
+    return sourceProvider == targetProvider
+        || Objects.equals(sourceProvider.getPassphrase(), targetProvider.getPassphrase());
+  }
+
+  /**
+   * Determines whether the ciphertext of a source field can be copied to a target field.
+   * 
+   * The secured fields must have the same type and be compressed alike, and the target must keep
+   * no blind index, which only its setter maintains. Grouped fields are copied with their envelope,
+   * so the groups must hold the same fields, compressed alike.
+   * 
+   * @param sourceMetadata The source class metadata.
+   * @param sourceField The source field.
+   * @param targetMetadata The target class metadata.
+   * @param targetField The target field.
+   * 
+   * @return True if the ciphertext can be copied given a shared key context; false otherwise.
+   */
+  private static <S, T> boolean isPassThroughCapable(
+      SecuredClassMetadata<S> sourceMetadata,
+      ConfidentialFieldMetadata<S, ?> sourceField,
+      SecuredClassMetadata<T> targetMetadata,
+      ConfidentialFieldMetadata<T, ?> targetField) {
+    if (sourceField.getSecuredType() == null
+        || sourceField.getSecuredType() != targetField.getSecuredType()
+        || sourceField.isStreaming() != targetField.isStreaming()
+        || !isCompressedAlike(sourceField, targetField)
+        || targetField.isSearchable()) {
+      return false;
+    }
+
+    if (sourceField.getGroup() == null || targetField.getGroup() == null) {
+      return sourceField.getGroup() == null && targetField.getGroup() == null;
+    }
+
+    Map<String, ConfidentialFieldMetadata<S, ?>> sourceGroup =
+        getGroupFields(sourceMetadata, sourceField.getGroup());
+    Map<String, ConfidentialFieldMetadata<T, ?>> targetGroup =
+        getGroupFields(targetMetadata, targetField.getGroup());
+
+    if (!sourceGroup.keySet().equals(targetGroup.keySet())) {
+      return false;
+    }
+
+    for (ConfidentialFieldMetadata<S, ?> field : sourceGroup.values()) {
+      ConfidentialFieldMetadata<T, ?> targetGroupField = targetGroup.get(field.getName());
+
+      if (field.getType() != targetGroupField.getType()
+          || !isCompressedAlike(field, targetGroupField)) {
+        return false;
+      }
+    }
+
+    for (ConfidentialFieldMetadata<T, ?> field : targetMetadata.getFields()) {
+      if (targetField.getGroup().equals(field.getGroup()) && field.isSearchable()) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Determines whether two fields compress their values alike, so that the serialized values of one
+   * are those the other would write.
+   * 
+   * @param sourceField The source field.
+   * @param targetField The target field.
+   * 
+   * @return True if the fields compress their values alike; false otherwise.
+   */
+  private static boolean isCompressedAlike(
+      ConfidentialFieldMetadata<?, ?> sourceField,
+      ConfidentialFieldMetadata<?, ?> targetField) {
+    if (sourceField.isCompressed() != targetField.isCompressed()) {
+      return false;
+    }
+
+    return !sourceField.isCompressed()
+        || sourceField.getCompressionThreshold() == targetField.getCompressionThreshold();
+  }
+
+  /**
+   * Gets the fields of a group, by field name.
+   * 
+   * @param metadata The class metadata.
+   * @param group The group name.
+   * 
+   * @return The fields, by field name.
+   */
+  private static <T> Map<String, ConfidentialFieldMetadata<T, ?>> getGroupFields(
+      SecuredClassMetadata<T> metadata,
+      String group) {
+    Map<String, ConfidentialFieldMetadata<T, ?>> groupFields =
+        new HashMap<String, ConfidentialFieldMetadata<T, ?>>();
+
+    for (ConfidentialFieldMetadata<T, ?> field : metadata.getFields()) {
+      if (group.equals(field.getGroup())) {
+        groupFields.put(field.getName(), field);
+      }
+    }
+
+    return groupFields;
+  }
+
+  /**
+   * A source field matched with a target field of the same name and type.
+   * 
+   * @param <S> The source secured class.
+   * @param <T> The target secured class.
+   */
+  private static final class FieldMapping<S, T> {
+    /**
+     * The source field.
+     */
+    private final ConfidentialFieldMetadata<S, ?> sourceField;
+
+    /**
+     * The target field.
+     */
+    private final ConfidentialFieldMetadata<T, Object> targetField;
+
+    /**
+     * Indicates whether the ciphertext can be copied given a shared key context.
+     */
+    private final boolean passThroughCapable;
+
+    /**
+     * Initializes a new instance of the FieldMapping class.
+     * 
+     * @param sourceField The source field.
+     * @param targetField The target field, of the same type as the source field.
+     * @param passThroughCapable True if the ciphertext can be copied given a shared key context.
+     */
+    @SuppressWarnings("unchecked")
+    private FieldMapping(
+        ConfidentialFieldMetadata<S, ?> sourceField,
+        ConfidentialFieldMetadata<T, ?> targetField,
+        boolean passThroughCapable) {
+      this.sourceField = sourceField;
+      this.targetField = (ConfidentialFieldMetadata<T, Object>) targetField;
+      this.passThroughCapable = passThroughCapable;
+    }
+
+    /**
+     * @return The source field.
+     */
+    private ConfidentialFieldMetadata<S, ?> getSourceField() {
+      return this.sourceField;
+    }
+
+    /**
+     * @return The target field.
+     */
+    private ConfidentialFieldMetadata<T, Object> getTargetField() {
+      return this.targetField;
+    }
+
+    /**
+     * @return True if the ciphertext can be copied given a shared key context.
+     */
+    private boolean isPassThroughCapable() {
+      return this.passThroughCapable;
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package net.craswell.security.metadata;
+
+/**
+ * Thrown when the confidential values of a secured entity cannot be copied to another.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class SecuredMappingException
+    extends Exception {
+  /**
+   * The serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Initializes a new instance of the SecuredMappingException class.
+   * 
+   * @param message The exception message.
+   * @param cause The cause of the exception.
+   */
+  public SecuredMappingException(
+      String message,
+      Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,23 @@
+package net.craswell.security.metadata;
+
+/**
+ * Reads a value from a secured entity.
+ * 
+ * @author scraswell@gmail.com
+ *
+ * @param <T> The secured entity type.
+ * @param <V> The value type.
+ */
+@FunctionalInterface
+public interface ValueGetter<T, V> {
+  /**
+   * Reads the value of an entity.
+   * 
+   * @param entity The entity.
+   * 
+   * @return The value.
+   * 
+   * @throws Exception Thrown when the value cannot be read, e.g. decrypted.
+   */
+  V get(T entity) throws Exception;
+}
@@ -0,0 +1,24 @@
+package net.craswell.security.metadata;
+
+/**
+ * Writes a value to a secured entity.
+ * 
+ * @author scraswell@gmail.com
+ *
+ * @param <T> The secured entity type.
+ * @param <V> The value type.
+ */
+@FunctionalInterface
+public interface ValueSetter<T, V> {
+  /**
+   * Writes the value of an entity.
+   * 
+   * @param entity The entity.
+   * @param value The value.
+   * 
+   * @throws Exception Thrown when the value cannot be written, e.g. encrypted.
+   */
+  void set(
+      T entity,
+      V value) throws Exception;
+}
@@ -0,0 +1,59 @@
+package net.craswell.security.metrics;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Holds the metrics implementation used by generated secured classes and attribute converters.
+ * 
+ * The first CryptoMetrics implementation registered as a java.util.ServiceLoader provider is used
+ * by default; without one, measurements are discarded. An implementation may also be registered
+ * programmatically, process-wide, at startup.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class ConfidentialMetrics {
+  /**
+   * The metrics implementation used by generated code.
+   */
+  private static volatile CryptoMetrics metrics = loadMetrics();
+
+  /**
+   * Prevents instantiation.
+   */
+  private ConfidentialMetrics() {
+  }
+
+  /**
+   * @return The metrics implementation used by generated code.
+   */
+  public static CryptoMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @param metrics The metrics implementation used by generated code, or null to discard
+   *        measurements.
+   */
+  public static void setMetrics(CryptoMetrics metrics) {
+    ConfidentialMetrics.metrics = metrics != null
+        ? metrics
+        : NoOpCryptoMetrics.INSTANCE;
+  }
+
+  /**
+   * Loads the first metrics implementation registered as a service provider.
+   * 
+   * @return The metrics implementation.
+   */
+  private static CryptoMetrics loadMetrics() {
+    Iterator<CryptoMetrics> providers = ServiceLoader.load(
+        CryptoMetrics.class,
+        ConfidentialMetrics.class.getClassLoader()).iterator();
+
+    return providers.hasNext()
+        ? providers.next()
+        : NoOpCryptoMetrics.INSTANCE;
+  }
+}
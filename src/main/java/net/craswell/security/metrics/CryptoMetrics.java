@@ -0,0 +1,76 @@
+package net.craswell.security.metrics;
+
+/**
+ * Receives measurements of the encryption and decryption of confidential fields.
+ * 
+ * Generated secured classes and attribute converters report through the implementation
+ * registered with ConfidentialMetrics, or found with java.util.ServiceLoader. Implementations are
+ * called concurrently and must be thread safe.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public interface CryptoMetrics {
+  /**
+   * Indicates whether measurements are recorded. Generated code skips timing when they are not.
+   * 
+   * @return True if measurements are recorded; false otherwise.
+   */
+  boolean isEnabled();
+
+  /**
+   * Records the decryption of a confidential field.
+   * 
+   * @param entityClass The secured class.
+   * @param fieldName The confidential field name.
+   * @param durationNanos The time spent decrypting, in nanoseconds.
+   * @param ciphertextLength The length of the stored secured value.
+   * @param plaintextLength The length of the decrypted serialized value.
+   */
+  void recordDecryption(
+      Class<?> entityClass,
+      String fieldName,
+      long durationNanos,
+      int ciphertextLength,
+      int plaintextLength);
+
+  /**
+   * Records the encryption of a confidential field.
+   * 
+   * @param entityClass The secured class.
+   * @param fieldName The confidential field name.
+   * @param durationNanos The time spent encrypting, in nanoseconds.
+   * @param plaintextLength The length of the serialized value.
+   * @param ciphertextLength The length of the stored secured value.
+   */
+  void recordEncryption(
+      Class<?> entityClass,
+      String fieldName,
+      long durationNanos,
+      int plaintextLength,
+      int ciphertextLength);
+
+  /**
+   * Records a failure to decrypt a confidential field.
+   * 
+   * @param entityClass The secured class.
+   * @param fieldName The confidential field name.
+   * @param exception The exception thrown.
+   */
+  void recordDecryptionFailure(
+      Class<?> entityClass,
+      String fieldName,
+      Exception exception);
+
+  /**
+   * Records a failure to encrypt a confidential field.
+   * 
+   * @param entityClass The secured class.
+   * @param fieldName The confidential field name.
+   * @param exception The exception thrown.
+   */
+  void recordEncryptionFailure(
+      Class<?> entityClass,
+      String fieldName,
+      Exception exception);
+}
@@ -0,0 +1,88 @@
+package net.craswell.security.metrics;
+
+/**
+ * Discards all measurements. This is the default, and reduces the generated instrumentation to a
+ * single inlined check.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class NoOpCryptoMetrics
+    implements CryptoMetrics {
+  /**
+   * The single instance.
+   */
+  public static final NoOpCryptoMetrics INSTANCE = new NoOpCryptoMetrics();
+
+  /**
+   * Prevents instantiation.
+   */
+  private NoOpCryptoMetrics() {
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#isEnabled()
+   */
+  @Override
+  public boolean isEnabled() {
+    return false;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordDecryption(java.lang.Class,
+   * java.lang.String, long, int, int)
+   */
+  @Override
+  public void recordDecryption(
+      Class<?> entityClass,
+      String fieldName,
+      long durationNanos,
+      int ciphertextLength,
+      int plaintextLength) {
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordEncryption(java.lang.Class,
+   * java.lang.String, long, int, int)
+   */
+  @Override
+  public void recordEncryption(
+      Class<?> entityClass,
+      String fieldName,
+      long durationNanos,
+      int plaintextLength,
+      int ciphertextLength) {
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordDecryptionFailure(java.lang.Class,
+   * java.lang.String, java.lang.Exception)
+   */
+  @Override
+  public void recordDecryptionFailure(
+      Class<?> entityClass,
+      String fieldName,
+      Exception exception) {
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordEncryptionFailure(java.lang.Class,
+   * java.lang.String, java.lang.Exception)
+   */
+  @Override
+  public void recordEncryptionFailure(
+      Class<?> entityClass,
+      String fieldName,
+      Exception exception) {
+  }
+}
@@ -0,0 +1,243 @@
+package net.craswell.security.metrics.dropwizard;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import net.craswell.security.metrics.CryptoMetrics;
+
+/**
+ * Reports confidential field measurements to a Dropwizard metric registry.
+ * 
+ * Each field gets metrics named prefix.entityClass.field.operation: decrypt and encrypt timers,
+ * plaintext and ciphertext byte histograms per operation, and decrypt and encrypt failure meters.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class DropwizardCryptoMetrics
+    implements CryptoMetrics {
+  /**
+   * The default prefix of metric names.
+   */
+  public static final String DEFAULT_PREFIX = "confidential";
+
+  /**
+   * The metric registry.
+   */
+  private final MetricRegistry registry;
+
+  /**
+   * The prefix of metric names.
+   */
+  private final String prefix;
+
+  /**
+   * The metrics of each field, by secured class and field name.
+   */
+  private final ConcurrentMap<Class<?>, ConcurrentMap<String, FieldMetrics>> fieldMetrics =
+      new ConcurrentHashMap<Class<?>, ConcurrentMap<String, FieldMetrics>>();
+
+  /**
+   * Initializes a new instance of the DropwizardCryptoMetrics class.
+   * 
+   * @param registry The metric registry.
+   */
+  public DropwizardCryptoMetrics(MetricRegistry registry) {
+    this(registry, DEFAULT_PREFIX);
+  }
+
+  /**
+   * Initializes a new instance of the DropwizardCryptoMetrics class.
+   * 
+   * @param registry The metric registry.
+   * @param prefix The prefix of metric names.
+   */
+  public DropwizardCryptoMetrics(MetricRegistry registry, String prefix) {
+    if (registry == null) {
+      throw new IllegalArgumentException("The metric registry must not be null.");
+    }
+
+    this.registry = registry;
+    this.prefix = prefix;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#isEnabled()
+   */
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordDecryption(java.lang.Class,
+   * java.lang.String, long, int, int)
+   */
+  @Override
+  public void recordDecryption(
+      Class<?> entityClass,
+      String fieldName,
+      long durationNanos,
+      int ciphertextLength,
+      int plaintextLength) {
+    FieldMetrics metrics = this.getFieldMetrics(entityClass, fieldName);
+
+    metrics.decryptions.update(durationNanos, TimeUnit.NANOSECONDS);
+    metrics.decryptedCiphertextBytes.update(ciphertextLength);
+    metrics.decryptedPlaintextBytes.update(plaintextLength);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordEncryption(java.lang.Class,
+   * java.lang.String, long, int, int)
+   */
+  @Override
+  public void recordEncryption(
+      Class<?> entityClass,
+      String fieldName,
+      long durationNanos,
+      int plaintextLength,
+      int ciphertextLength) {
+    FieldMetrics metrics = this.getFieldMetrics(entityClass, fieldName);
+
+    metrics.encryptions.update(durationNanos, TimeUnit.NANOSECONDS);
+    metrics.encryptedPlaintextBytes.update(plaintextLength);
+    metrics.encryptedCiphertextBytes.update(ciphertextLength);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordDecryptionFailure(java.lang.Class,
+   * java.lang.String, java.lang.Exception)
+   */
+  @Override
+  public void recordDecryptionFailure(
+      Class<?> entityClass,
+      String fieldName,
+      Exception exception) {
+    this.getFieldMetrics(entityClass, fieldName).decryptionFailures.mark();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordEncryptionFailure(java.lang.Class,
+   * java.lang.String, java.lang.Exception)
+   */
+  @Override
+  public void recordEncryptionFailure(
+      Class<?> entityClass,
+      String fieldName,
+      Exception exception) {
+    this.getFieldMetrics(entityClass, fieldName).encryptionFailures.mark();
+  }
+
+  /**
+   * Gets the metrics of a field, registering them on first use.
+   * 
+   * @param entityClass The secured class.
+   * @param fieldName The confidential field name.
+   * 
+   * @return The field metrics.
+   */
+  private FieldMetrics getFieldMetrics(Class<?> entityClass, String fieldName) {
+    ConcurrentMap<String, FieldMetrics> classMetrics = this.fieldMetrics.get(entityClass);
+
+    if (classMetrics == null) {
+      classMetrics = this.fieldMetrics.computeIfAbsent(
+          entityClass,
+          k -> new ConcurrentHashMap<String, FieldMetrics>());
+    }
+
+    FieldMetrics metrics = classMetrics.get(fieldName);
+
+    if (metrics == null) {
+      metrics = classMetrics.computeIfAbsent(
+          fieldName,
+          k -> new FieldMetrics(
+              this.registry,
+              MetricRegistry.name(this.prefix, entityClass.getName(), fieldName)));
+    }
+
+    return metrics;
+  }
+
+  /**
+   * The metrics of a confidential field.
+   */
+  private static final class FieldMetrics {
+    /**
+     * The decryption timer.
+     */
+    private final Timer decryptions;
+
+    /**
+     * The encryption timer.
+     */
+    private final Timer encryptions;
+
+    /**
+     * The ciphertext lengths decrypted.
+     */
+    private final Histogram decryptedCiphertextBytes;
+
+    /**
+     * The plaintext lengths decrypted.
+     */
+    private final Histogram decryptedPlaintextBytes;
+
+    /**
+     * The plaintext lengths encrypted.
+     */
+    private final Histogram encryptedPlaintextBytes;
+
+    /**
+     * The ciphertext lengths encrypted.
+     */
+    private final Histogram encryptedCiphertextBytes;
+
+    /**
+     * The decryption failures.
+     */
+    private final Meter decryptionFailures;
+
+    /**
+     * The encryption failures.
+     */
+    private final Meter encryptionFailures;
+
+    /**
+     * Registers the metrics of a field.
+     * 
+     * @param registry The metric registry.
+     * @param name The name prefix of the field metrics.
+     */
+    private FieldMetrics(MetricRegistry registry, String name) {
+      this.decryptions = registry.timer(MetricRegistry.name(name, "decrypt"));
+      this.encryptions = registry.timer(MetricRegistry.name(name, "encrypt"));
+      this.decryptedCiphertextBytes =
+          registry.histogram(MetricRegistry.name(name, "decrypt", "ciphertextBytes"));
+      this.decryptedPlaintextBytes =
+          registry.histogram(MetricRegistry.name(name, "decrypt", "plaintextBytes"));
+      this.encryptedPlaintextBytes =
+          registry.histogram(MetricRegistry.name(name, "encrypt", "plaintextBytes"));
+      this.encryptedCiphertextBytes =
+          registry.histogram(MetricRegistry.name(name, "encrypt", "ciphertextBytes"));
+      this.decryptionFailures = registry.meter(MetricRegistry.name(name, "decrypt", "failures"));
+      this.encryptionFailures = registry.meter(MetricRegistry.name(name, "encrypt", "failures"));
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package net.craswell.security.metrics.micrometer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import net.craswell.security.metrics.CryptoMetrics;
+
+/**
+ * Reports confidential field measurements to a Micrometer meter registry.
+ * 
+ * Meters are tagged with the secured class, the field and the operation (decrypt or encrypt):
+ * the confidential.crypto timer, the confidential.crypto.plaintext and
+ * confidential.crypto.ciphertext byte summaries, and the confidential.crypto.failures counter.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class MicrometerCryptoMetrics
+    implements CryptoMetrics {
+  /**
+   * The name of the timer.
+   */
+  private static final String TIMER_NAME = "confidential.crypto";
+
+  /**
+   * The name of the plaintext length summary.
+   */
+  private static final String PLAINTEXT_SUMMARY_NAME = "confidential.crypto.plaintext";
+
+  /**
+   * The name of the ciphertext length summary.
+   */
+  private static final String CIPHERTEXT_SUMMARY_NAME = "confidential.crypto.ciphertext";
+
+  /**
+   * The name of the failure counter.
+   */
+  private static final String FAILURE_COUNTER_NAME = "confidential.crypto.failures";
+
+  /**
+   * The meter registry.
+   */
+  private final MeterRegistry registry;
+
+  /**
+   * The decryption meters of each field, by secured class and field name.
+   */
+  private final ConcurrentMap<Class<?>, ConcurrentMap<String, OperationMeters>> decryptionMeters =
+      new ConcurrentHashMap<Class<?>, ConcurrentMap<String, OperationMeters>>();
+
+  /**
+   * The encryption meters of each field, by secured class and field name.
+   */
+  private final ConcurrentMap<Class<?>, ConcurrentMap<String, OperationMeters>> encryptionMeters =
+      new ConcurrentHashMap<Class<?>, ConcurrentMap<String, OperationMeters>>();
+
+  /**
+   * Initializes a new instance of the MicrometerCryptoMetrics class.
+   * 
+   * @param registry The meter registry.
+   */
+  public MicrometerCryptoMetrics(MeterRegistry registry) {
+    if (registry == null) {
+      throw new IllegalArgumentException("The meter registry must not be null.");
+    }
+
+    this.registry = registry;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#isEnabled()
+   */
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordDecryption(java.lang.Class,
+   * java.lang.String, long, int, int)
+   */
+  @Override
+  public void recordDecryption(
+      Class<?> entityClass,
+      String fieldName,
+      long durationNanos,
+      int ciphertextLength,
+      int plaintextLength) {
+    OperationMeters meters =
+        this.getOperationMeters(this.decryptionMeters, entityClass, fieldName, "decrypt");
+
+    meters.timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    meters.ciphertextBytes.record(ciphertextLength);
+    meters.plaintextBytes.record(plaintextLength);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordEncryption(java.lang.Class,
+   * java.lang.String, long, int, int)
+   */
+  @Override
+  public void recordEncryption(
+      Class<?> entityClass,
+      String fieldName,
+      long durationNanos,
+      int plaintextLength,
+      int ciphertextLength) {
+    OperationMeters meters =
+        this.getOperationMeters(this.encryptionMeters, entityClass, fieldName, "encrypt");
+
+    meters.timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    meters.plaintextBytes.record(plaintextLength);
+    meters.ciphertextBytes.record(ciphertextLength);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordDecryptionFailure(java.lang.Class,
+   * java.lang.String, java.lang.Exception)
+   */
+  @Override
+  public void recordDecryptionFailure(
+      Class<?> entityClass,
+      String fieldName,
+      Exception exception) {
+    this.getOperationMeters(this.decryptionMeters, entityClass, fieldName, "decrypt")
+        .failures
+          .increment();
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.metrics.CryptoMetrics#recordEncryptionFailure(java.lang.Class,
+   * java.lang.String, java.lang.Exception)
+   */
+  @Override
+  public void recordEncryptionFailure(
+      Class<?> entityClass,
+      String fieldName,
+      Exception exception) {
+    this.getOperationMeters(this.encryptionMeters, entityClass, fieldName, "encrypt")
+        .failures
+          .increment();
+  }
+
+  /**
+   * Gets the meters of an operation on a field, registering them on first use.
+   * 
+   * @param operationMeters The meters of the operation, by secured class and field name.
+   * @param entityClass The secured class.
+   * @param fieldName The confidential field name.
+   * @param operation The operation tag.
+   * 
+   * @return The operation meters.
+   */
+  private OperationMeters getOperationMeters(
+      ConcurrentMap<Class<?>, ConcurrentMap<String, OperationMeters>> operationMeters,
+      Class<?> entityClass,
+      String fieldName,
+      String operation) {
+    ConcurrentMap<String, OperationMeters> classMeters = operationMeters.get(entityClass);
+
+    if (classMeters == null) {
+      classMeters = operationMeters.computeIfAbsent(
+          entityClass,
+          k -> new ConcurrentHashMap<String, OperationMeters>());
+    }
+
+    OperationMeters meters = classMeters.get(fieldName);
+
+    if (meters == null) {
+      meters = classMeters.computeIfAbsent(
+          fieldName,
+          k -> new OperationMeters(
+              this.registry,
+              entityClass.getName(),
+              fieldName,
+              operation));
+    }
+
+    return meters;
+  }
+
+  /**
+   * The meters of an operation on a confidential field.
+   */
+  private static final class OperationMeters {
+    /**
+     * The operation timer.
+     */
+    private final Timer timer;
+
+    /**
+     * The plaintext lengths.
+     */
+    private final DistributionSummary plaintextBytes;
+
+    /**
+     * The ciphertext lengths.
+     */
+    private final DistributionSummary ciphertextBytes;
+
+    /**
+     * The failures.
+     */
+    private final Counter failures;
+
+    /**
+     * Registers the meters of an operation on a field.
+     * 
+     * @param registry The meter registry.
+     * @param entityClassName The secured class name.
+     * @param fieldName The confidential field name.
+     * @param operation The operation tag.
+     */
+    private OperationMeters(
+        MeterRegistry registry,
+        String entityClassName,
+        String fieldName,
+        String operation) {
+      String[] tags = new String[] {
+          "entity", entityClassName,
+          "field", fieldName,
+          "operation", operation
+      };
+
+      this.timer = Timer.builder(TIMER_NAME)
+          .tags(tags)
+          .register(registry);
+      this.plaintextBytes = DistributionSummary.builder(PLAINTEXT_SUMMARY_NAME)
+          .baseUnit("bytes")
+          .tags(tags)
+          .register(registry);
+      this.ciphertextBytes = DistributionSummary.builder(CIPHERTEXT_SUMMARY_NAME)
+          .baseUnit("bytes")
+          .tags(tags)
+          .register(registry);
+      this.failures = Counter.builder(FAILURE_COUNTER_NAME)
+          .tags(tags)
+          .register(registry);
+    }
+  }
+}
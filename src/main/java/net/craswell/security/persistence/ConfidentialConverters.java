@@ -0,0 +1,60 @@
+package net.craswell.security.persistence;
+
+import javax.crypto.SecretKey;
+
+import net.craswell.common.encryption.PassphraseProvider;
+import net.craswell.security.encryption.DerivedKeyCache;
+import net.craswell.security.encryption.EncryptionException;
+
+/**
+ * Supplies keys to the attribute converters generated for confidential fields.
+ * 
+ * Converters are instantiated by the persistence provider, so the passphrase provider they use is
+ * registered here once, process-wide, before the first entity is loaded or flushed.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class ConfidentialConverters {
+  /**
+   * The passphrase provider used by generated converters.
+   */
+  private static volatile PassphraseProvider passphraseProvider;
+
+  /**
+   * Prevents instantiation.
+   */
+  private ConfidentialConverters() {
+  }
+
+  /**
+   * @return The passphrase provider used by generated converters.
+   */
+  public static PassphraseProvider getPassphraseProvider() {
+    return passphraseProvider;
+  }
+
+  /**
+   * @param passphraseProvider The passphrase provider used by generated converters.
+   */
+  public static void setPassphraseProvider(PassphraseProvider passphraseProvider) {
+    ConfidentialConverters.passphraseProvider = passphraseProvider;
+  }
+
+  /**
+   * Gets the key derived from the registered passphrase provider.
+   * 
+   * @return The key.
+   * 
+   * @throws EncryptionException Thrown when the key cannot be derived.
+   */
+  public static SecretKey getKey() throws EncryptionException {
+    PassphraseProvider currentPassphraseProvider = passphraseProvider;
+
+    if (currentPassphraseProvider == null) {
+      throw new IllegalStateException("The passphrase provider has not been set.");
+    }
+
+    return DerivedKeyCache.getDefault().getKey(currentPassphraseProvider.getPassphrase());
+  }
+}
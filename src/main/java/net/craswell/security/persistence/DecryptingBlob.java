@@ -0,0 +1,74 @@
+package net.craswell.security.persistence;
+
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+
+import javax.crypto.SecretKey;
+
+import net.craswell.security.encryption.StreamingEncryption;
+
+/**
+ * A Blob holding the plaintext of a secured Blob, decrypted as the Blob is read.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+class DecryptingBlob
+    extends ReadOnlyBlob {
+  /**
+   * The secured Blob.
+   */
+  private final Blob secured;
+
+  /**
+   * The decryption key.
+   */
+  private final SecretKey key;
+
+  /**
+   * Initializes a new instance of the DecryptingBlob class.
+   * 
+   * @param secured The secured Blob.
+   * @param key The decryption key.
+   */
+  DecryptingBlob(
+      Blob secured,
+      SecretKey key) {
+    this.secured = secured;
+    this.key = key;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#length()
+   */
+  @Override
+  public long length() throws SQLException {
+    if (this.secured instanceof EncryptingBlob) {
+      return ((EncryptingBlob) this.secured).getPlaintextLength();
+    }
+
+    try {
+      return StreamingEncryption.getPlaintextLength(
+          this.secured.length(),
+          StreamingEncryption.getChunkSize(
+              this.secured.getBytes(1, StreamingEncryption.HEADER_LENGTH)));
+    } catch (IllegalArgumentException e) {
+      throw new SQLException("The secured Blob is malformed.", e);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#getBinaryStream()
+   */
+  @Override
+  public InputStream getBinaryStream() throws SQLException {
+    return EncryptedBlobs.openDecryptingStream(
+        this.secured,
+        this.key);
+  }
+}
@@ -0,0 +1,182 @@
+package net.craswell.security.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+
+import javax.crypto.SecretKey;
+
+import net.craswell.security.encryption.EncryptionException;
+import net.craswell.security.encryption.StreamingEncryption;
+
+/**
+ * Encrypts and decrypts the Blobs holding streamed confidential values.
+ * 
+ * Values are encrypted by {@link StreamingEncryption} while the persistence provider reads the
+ * secured Blob, and decrypted while the caller reads the returned stream or Blob, so that no
+ * value is held in memory as a whole.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class EncryptedBlobs {
+  /**
+   * Prevents instantiation.
+   */
+  private EncryptedBlobs() {
+  }
+
+  /**
+   * Creates the secured Blob of a byte array.
+   * 
+   * @param plaintext The value, which must not be modified afterwards.
+   * @param key The encryption key.
+   * 
+   * @return The secured Blob, or null if the value is null.
+   */
+  public static Blob encrypt(
+      byte[] plaintext,
+      SecretKey key) {
+    return plaintext == null
+        ? null
+        : new EncryptingBlob(plaintext, plaintext.length, key);
+  }
+
+  /**
+   * Creates the secured Blob of a Blob.
+   * 
+   * @param plaintext The value, read each time the secured Blob is read.
+   * @param key The encryption key.
+   * 
+   * @return The secured Blob, or null if the value is null.
+   * 
+   * @throws EncryptionException Thrown when the length of the value cannot be read.
+   */
+  public static Blob encrypt(
+      Blob plaintext,
+      SecretKey key) throws EncryptionException {
+    if (plaintext == null) {
+      return null;
+    }
+
+    try {
+      return new EncryptingBlob(plaintext, plaintext.length(), key);
+    } catch (SQLException e) {
+      throw new EncryptionException("Unable to read the length of the value.", e);
+    }
+  }
+
+  /**
+   * Creates the secured Blob of a stream.
+   * 
+   * The stream is read once, when the secured Blob is written or the value is read back.
+   * 
+   * @param plaintext The value.
+   * @param length The length of the value, in bytes.
+   * @param key The encryption key.
+   * 
+   * @return The secured Blob, or null if the value is null.
+   */
+  public static Blob encrypt(
+      InputStream plaintext,
+      long length,
+      SecretKey key) {
+    return plaintext == null
+        ? null
+        : new EncryptingBlob(plaintext, length, key);
+  }
+
+  /**
+   * Creates a Blob decrypting a secured Blob as it is read.
+   * 
+   * @param secured The secured Blob.
+   * @param key The decryption key.
+   * 
+   * @return The decrypting Blob, or null if the secured Blob is null.
+   */
+  public static Blob decrypt(
+      Blob secured,
+      SecretKey key) {
+    return secured == null
+        ? null
+        : new DecryptingBlob(secured, key);
+  }
+
+  /**
+   * Opens a stream decrypting a secured Blob.
+   * 
+   * @param secured The secured Blob.
+   * @param key The decryption key.
+   * 
+   * @return The plaintext stream, or null if the secured Blob is null.
+   * 
+   * @throws SQLException Thrown when the secured Blob cannot be read.
+   */
+  public static InputStream openDecryptingStream(
+      Blob secured,
+      SecretKey key) throws SQLException {
+    if (secured == null) {
+      return null;
+    }
+
+    if (secured instanceof EncryptingBlob) {
+      return ((EncryptingBlob) secured).openPlaintextStream();
+    }
+
+    return StreamingEncryption.decrypt(
+        secured.getBinaryStream(),
+        key);
+  }
+
+  /**
+   * Decrypts a secured Blob into a byte array.
+   * 
+   * @param secured The secured Blob.
+   * @param key The decryption key.
+   * 
+   * @return The value, or null if the secured Blob is null.
+   * 
+   * @throws EncryptionException Thrown when the secured Blob cannot be read or authenticated.
+   */
+  public static byte[] decryptToBytes(
+      Blob secured,
+      SecretKey key) throws EncryptionException {
+    if (secured == null) {
+      return null;
+    }
+
+    try {
+      Blob decrypted = decrypt(secured, key);
+      long length = decrypted.length();
+
+      if (length > Integer.MAX_VALUE - 8) {
+        throw new EncryptionException("The value is too large for a byte array.");
+      }
+
+      byte[] plaintext = new byte[(int) length];
+
+      try (InputStream stream = decrypted.getBinaryStream()) {
+        int read = 0;
+
+        while (read < plaintext.length) {
+          int count = stream.read(plaintext, read, plaintext.length - read);
+
+          if (count < 0) {
+            throw new EncryptionException("The value ended before its length.");
+          }
+
+          read += count;
+        }
+
+        if (stream.read() >= 0) {
+          throw new EncryptionException("The value continues beyond its length.");
+        }
+      }
+
+      return plaintext;
+    } catch (SQLException | IOException e) {
+      throw new EncryptionException("Unable to decrypt the value.", e);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package net.craswell.security.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+
+import javax.crypto.SecretKey;
+
+import net.craswell.security.encryption.StreamingEncryption;
+
+/**
+ * A Blob holding the ciphertext of a plaintext source, encrypted as the Blob is read, so that the
+ * plaintext is never held in memory as a whole.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+class EncryptingBlob
+    extends ReadOnlyBlob {
+  /**
+   * The plaintext, read once if it is a stream.
+   */
+  private final Object plaintext;
+
+  /**
+   * The plaintext length, in bytes.
+   */
+  private final long plaintextLength;
+
+  /**
+   * The encryption key.
+   */
+  private final SecretKey key;
+
+  /**
+   * Indicates whether a plaintext stream has been read.
+   */
+  private boolean plaintextStreamRead;
+
+  /**
+   * Initializes a new instance of the EncryptingBlob class.
+   * 
+   * @param plaintext The plaintext: a byte array, a Blob, or a stream which can be read once.
+   * @param plaintextLength The plaintext length, in bytes.
+   * @param key The encryption key.
+   */
+  EncryptingBlob(
+      Object plaintext,
+      long plaintextLength,
+      SecretKey key) {
+    this.plaintext = plaintext;
+    this.plaintextLength = plaintextLength;
+    this.key = key;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#length()
+   */
+  @Override
+  public long length() {
+    return StreamingEncryption.getCiphertextLength(
+        this.plaintextLength,
+        StreamingEncryption.DEFAULT_CHUNK_SIZE);
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#getBinaryStream()
+   */
+  @Override
+  public InputStream getBinaryStream() throws SQLException {
+    return StreamingEncryption.encrypt(
+        this.openPlaintextStream(),
+        this.key);
+  }
+
+  /**
+   * @return The plaintext length, in bytes.
+   */
+  long getPlaintextLength() {
+    return this.plaintextLength;
+  }
+
+  /**
+   * Opens the plaintext, so that a value set but not yet written is read without encrypting it.
+   * 
+   * @return The plaintext stream.
+   * 
+   * @throws SQLException Thrown when the plaintext cannot be read, or is a stream already read.
+   */
+  synchronized InputStream openPlaintextStream() throws SQLException {
+    if (this.plaintext instanceof byte[]) {
+      return new ByteArrayInputStream((byte[]) this.plaintext);
+    }
+
+    if (this.plaintext instanceof Blob) {
+      return ((Blob) this.plaintext).getBinaryStream();
+    }
+
+    if (this.plaintextStreamRead) {
+      throw new SQLException("The plaintext stream has already been read.");
+    }
+
+    this.plaintextStreamRead = true;
+
+    return (InputStream) this.plaintext;
+  }
+}
@@ -0,0 +1,155 @@
+package net.craswell.security.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Blob;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * A Blob whose content is only available as a stream, as needed to bind it to a statement or to
+ * read it back.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+abstract class ReadOnlyBlob
+    implements Blob {
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#getBytes(long, int)
+   */
+  @Override
+  public byte[] getBytes(
+      long pos,
+      int length) throws SQLException {
+    if (pos < 1 || length < 0) {
+      throw new SQLException("The position or length is out of range.");
+    }
+
+    byte[] bytes = new byte[(int) Math.max(0, Math.min(length, this.length() - pos + 1))];
+
+    try (InputStream stream = this.getBinaryStream()) {
+      long skipped = 0;
+
+      while (skipped < pos - 1) {
+        long count = stream.skip(pos - 1 - skipped);
+
+        if (count <= 0) {
+          throw new SQLException("The position is beyond the end of the Blob.");
+        }
+
+        skipped += count;
+      }
+
+      int read = 0;
+
+      while (read < bytes.length) {
+        int count = stream.read(bytes, read, bytes.length - read);
+
+        if (count < 0) {
+          throw new SQLException("The Blob ended before its length.");
+        }
+
+        read += count;
+      }
+    } catch (IOException e) {
+      throw new SQLException("Unable to read the Blob.", e);
+    }
+
+    return bytes;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#getBinaryStream(long, long)
+   */
+  @Override
+  public InputStream getBinaryStream(
+      long pos,
+      long length) throws SQLException {
+    throw new SQLFeatureNotSupportedException("The Blob can only be streamed from the start.");
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#position(byte[], long)
+   */
+  @Override
+  public long position(
+      byte[] pattern,
+      long start) throws SQLException {
+    throw new SQLFeatureNotSupportedException("The Blob cannot be searched.");
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#position(java.sql.Blob, long)
+   */
+  @Override
+  public long position(
+      Blob pattern,
+      long start) throws SQLException {
+    throw new SQLFeatureNotSupportedException("The Blob cannot be searched.");
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#setBytes(long, byte[])
+   */
+  @Override
+  public int setBytes(
+      long pos,
+      byte[] bytes) throws SQLException {
+    throw new SQLFeatureNotSupportedException("The Blob is read only.");
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#setBytes(long, byte[], int, int)
+   */
+  @Override
+  public int setBytes(
+      long pos,
+      byte[] bytes,
+      int offset,
+      int len) throws SQLException {
+    throw new SQLFeatureNotSupportedException("The Blob is read only.");
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#setBinaryStream(long)
+   */
+  @Override
+  public OutputStream setBinaryStream(long pos) throws SQLException {
+    throw new SQLFeatureNotSupportedException("The Blob is read only.");
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#truncate(long)
+   */
+  @Override
+  public void truncate(long len) throws SQLException {
+    throw new SQLFeatureNotSupportedException("The Blob is read only.");
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.sql.Blob#free()
+   */
+  @Override
+  public void free() throws SQLException {
+  }
+}
@@ -0,0 +1,844 @@
+package net.craswell.security.rotation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.crypto.SecretKey;
+
+import net.craswell.common.encryption.PassphraseProvider;
+import net.craswell.security.bulk.BulkOperationException;
+import net.craswell.security.bulk.BulkOperations;
+import net.craswell.security.encryption.BlindIndex;
+import net.craswell.security.encryption.CiphertextHeader;
+import net.craswell.security.encryption.DerivedKeyCache;
+import net.craswell.security.encryption.EncryptionEngine;
+import net.craswell.security.encryption.EncryptionException;
+import net.craswell.security.encryption.LegacyCiphertextException;
+import net.craswell.security.encryption.LegacyEncryption;
+import net.craswell.security.encryption.StreamingEncryption;
+import net.craswell.security.metadata.ConfidentialFieldMetadata;
+import net.craswell.security.metadata.SecuredClassMetadata;
+import net.craswell.security.rotation.RotatedColumn.Format;
+import net.craswell.security.serialization.ValueCompression;
+import net.craswell.security.serialization.ValueEnvelope;
+
+/**
+ * Encrypts the ciphertext columns of a table again under a new passphrase, without loading
+ * entities.
+ * 
+ * Rows are read in pages ordered by their key, each page starting after the last key of the
+ * previous one, so every page is found through the key index however large the table is. The
+ * values of a page are decrypted and encrypted again in parallel with BulkOperations, written back
+ * with one JDBC batch, and committed together with the checkpoint, if any. A rotation interrupted
+ * by a failure rolls back its current page only, and resumes after the last page committed when it
+ * is run again with the same checkpoint.
+ * 
+ * Streamed values are encrypted again while the page is read, since Blobs may not be readable once
+ * their result set is closed, into temporary files holding the new ciphertext until the page is
+ * written.
+ * 
+ * Values already encrypted with the new key are written back as they are, going by the key
+ * identifier of their ciphertext header, or by the authentication of the first chunk of streamed
+ * values. A rotation run again without its checkpoint, or after failing before its first
+ * checkpoint, therefore never decrypts a rotated value with the old key.
+ * 
+ * Blind indexes are computed again from the decrypted values, since they are keyed with the
+ * encryption key. Text values written by the legacy encryption tool, including through an AesTool
+ * assigned to entities, are decrypted with LegacyEncryption and encrypted with the engine; they
+ * are rejected in columns with blind indexes, which cannot be computed from their serialized
+ * form, and in binary columns, which never held them.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class KeyRotation {
+  /**
+   * The default number of rows per page.
+   */
+  public static final int DEFAULT_PAGE_SIZE = 1000;
+
+  /**
+   * The name of the table.
+   */
+  private final String tableName;
+
+  /**
+   * The name of the key column, which must be unique and indexed.
+   */
+  private final String keyColumnName;
+
+  /**
+   * The ciphertext columns.
+   */
+  private final List<RotatedColumn> columns;
+
+  /**
+   * The encryption engine that wrote the ciphertext.
+   */
+  private final EncryptionEngine engine;
+
+  /**
+   * Provides the passphrase the ciphertext is currently encrypted with.
+   */
+  private final PassphraseProvider currentPassphraseProvider;
+
+  /**
+   * Provides the passphrase to encrypt the ciphertext with.
+   */
+  private final PassphraseProvider newPassphraseProvider;
+
+  /**
+   * The number of rows per page.
+   */
+  private int pageSize = DEFAULT_PAGE_SIZE;
+
+  /**
+   * The executor encrypting the values of each page.
+   */
+  private Executor executor = ForkJoinPool.commonPool();
+
+  /**
+   * Records the progress of the rotation, or null.
+   */
+  private RotationCheckpoint checkpoint;
+
+  /**
+   * Receives the progress of the rotation, or null.
+   */
+  private RotationListener listener;
+
+  /**
+   * Initializes a new instance of the KeyRotation class.
+   * 
+   * @param tableName The name of the table.
+   * @param keyColumnName The name of the key column, which must be unique and indexed.
+   * @param columns The ciphertext columns.
+   * @param engine The encryption engine that wrote the ciphertext.
+   * @param currentPassphraseProvider Provides the passphrase the ciphertext is currently encrypted
+   *        with.
+   * @param newPassphraseProvider Provides the passphrase to encrypt the ciphertext with.
+   */
+  public KeyRotation(
+      String tableName,
+      String keyColumnName,
+      List<RotatedColumn> columns,
+      EncryptionEngine engine,
+      PassphraseProvider currentPassphraseProvider,
+      PassphraseProvider newPassphraseProvider) {
+    if (columns == null || columns.isEmpty()) {
+      throw new IllegalArgumentException("At least one ciphertext column is required.");
+    }
+
+    this.tableName = tableName;
+    this.keyColumnName = keyColumnName;
+    this.columns = Collections.unmodifiableList(new ArrayList<RotatedColumn>(columns));
+    this.engine = engine;
+    this.currentPassphraseProvider = currentPassphraseProvider;
+    this.newPassphraseProvider = newPassphraseProvider;
+  }
+
+  /**
+   * Creates a rotation of the ciphertext columns of a secured class, named after its secured
+   * fields and blind indexes.
+   * 
+   * Fields encrypted by attribute converters have no secured field; rotate their columns by
+   * describing them explicitly.
+   * 
+   * @param metadata The secured class metadata.
+   * @param tableName The name of the table the secured class is mapped to.
+   * @param keyColumnName The name of the key column, which must be unique and indexed.
+   * @param currentPassphraseProvider Provides the passphrase the ciphertext is currently encrypted
+   *        with.
+   * @param newPassphraseProvider Provides the passphrase to encrypt the ciphertext with.
+   * 
+   * @return The key rotation.
+   */
+  public static KeyRotation forClass(
+      SecuredClassMetadata<?> metadata,
+      String tableName,
+      String keyColumnName,
+      PassphraseProvider currentPassphraseProvider,
+      PassphraseProvider newPassphraseProvider) {
+    return new KeyRotation(
+        tableName,
+        keyColumnName,
+        describeColumns(metadata),
+        metadata.getEngine(),
+        currentPassphraseProvider,
+        newPassphraseProvider);
+  }
+
+  /**
+   * Describes the ciphertext columns of a secured class.
+   * 
+   * @param metadata The secured class metadata.
+   * 
+   * @return The ciphertext columns, one per secured field.
+   */
+  public static List<RotatedColumn> describeColumns(SecuredClassMetadata<?> metadata) {
+    Map<String, List<String>> envelopeNames = new LinkedHashMap<String, List<String>>();
+    Map<String, Map<String, String>> indexColumnNames =
+        new LinkedHashMap<String, Map<String, String>>();
+    Map<String, ConfidentialFieldMetadata<?, ?>> securedFields =
+        new LinkedHashMap<String, ConfidentialFieldMetadata<?, ?>>();
+
+    for (ConfidentialFieldMetadata<?, ?> field : metadata.getFields()) {
+      String securedFieldName = field.getSecuredFieldName();
+
+      if (securedFieldName == null) {
+        continue;
+      }
+
+      securedFields.putIfAbsent(securedFieldName, field);
+
+      if (field.getGroup() != null) {
+        envelopeNames
+            .computeIfAbsent(securedFieldName, name -> new ArrayList<String>())
+            .add(field.getName());
+      }
+
+      if (field.isSearchable()) {
+        indexColumnNames
+            .computeIfAbsent(securedFieldName, name -> new LinkedHashMap<String, String>())
+            .put(field.getName(), field.getName() + "Index");
+      }
+    }
+
+    List<RotatedColumn> columns = new ArrayList<RotatedColumn>();
+
+    for (Map.Entry<String, ConfidentialFieldMetadata<?, ?>> securedField
+        : securedFields.entrySet()) {
+      String securedFieldName = securedField.getKey();
+      ConfidentialFieldMetadata<?, ?> field = securedField.getValue();
+      Format format = field.isStreaming()
+          ? Format.STREAM
+          : field.getSecuredType() == byte[].class
+              ? Format.BINARY
+              : Format.TEXT;
+
+      if (envelopeNames.containsKey(securedFieldName)) {
+        columns.add(new RotatedColumn(
+            securedFieldName,
+            format,
+            envelopeNames.get(securedFieldName),
+            metadata.getTemplateClassName(),
+            indexColumnNames.get(securedFieldName)));
+      } else if (field.isSearchable()) {
+        columns.add(new RotatedColumn(
+            securedFieldName,
+            format,
+            metadata.getTemplateClassName(),
+            field.getName(),
+            indexColumnNames.get(securedFieldName).get(field.getName())));
+      } else {
+        columns.add(new RotatedColumn(securedFieldName, format));
+      }
+    }
+
+    return columns;
+  }
+
+  /**
+   * @return The number of rows per page.
+   */
+  public int getPageSize() {
+    return this.pageSize;
+  }
+
+  /**
+   * @param pageSize The number of rows per page, i.e. per batch and per transaction.
+   */
+  public void setPageSize(int pageSize) {
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("The page size must be a positive number.");
+    }
+
+    this.pageSize = pageSize;
+  }
+
+  /**
+   * @param executor The executor encrypting the values of each page.
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * @param checkpoint Records the progress of the rotation, or null to always start from the
+   *        first row.
+   */
+  public void setCheckpoint(RotationCheckpoint checkpoint) {
+    this.checkpoint = checkpoint;
+  }
+
+  /**
+   * @param listener Receives the progress of the rotation after each page, or null.
+   */
+  public void setListener(RotationListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Encrypts the ciphertext of every row after the checkpoint again under the new passphrase,
+   * committing each page.
+   * 
+   * The connection is left in its original auto-commit mode.
+   * 
+   * @param connection The connection to the database.
+   * 
+   * @return The progress of the rotation once every row has been rotated.
+   * 
+   * @throws KeyRotationException Thrown when a page cannot be rotated; it is rolled back.
+   */
+  public RotationProgress run(Connection connection) throws KeyRotationException {
+    long startTime = System.nanoTime();
+    long pageCount = 0L;
+    long rowCount = 0L;
+    long valueCount = 0L;
+    Object lastKey = null;
+
+    try {
+      SecretKey currentKey = DerivedKeyCache.getDefault().getKey(this.currentPassphraseProvider);
+      SecretKey newKey = DerivedKeyCache.getDefault().getKey(this.newPassphraseProvider);
+      boolean autoCommit = connection.getAutoCommit();
+
+      connection.setAutoCommit(false);
+
+      try (PreparedStatement firstPageStatement = connection.prepareStatement(
+          this.constructSelectSql(false));
+          PreparedStatement nextPageStatement = connection.prepareStatement(
+              this.constructSelectSql(true));
+          PreparedStatement updateStatement = connection.prepareStatement(
+              this.constructUpdateSql())) {
+        lastKey = this.checkpoint == null
+            ? null
+            : this.checkpoint.load(connection);
+
+        while (true) {
+          PreparedStatement selectStatement = lastKey == null
+              ? firstPageStatement
+              : nextPageStatement;
+
+          if (lastKey != null) {
+            selectStatement.setObject(1, lastKey);
+          }
+
+          List<Row> page = this.readPage(selectStatement, currentKey, newKey);
+
+          if (page.isEmpty()) {
+            break;
+          }
+
+          try {
+            BulkOperations.forEach(
+                page,
+                this.executor,
+                row -> this.encryptAgain(row, currentKey, newKey));
+
+            this.writePage(updateStatement, page);
+          } finally {
+            this.deleteStreamedValues(page);
+          }
+
+          lastKey = page.get(page.size() - 1).key;
+
+          if (this.checkpoint != null) {
+            this.checkpoint.save(connection, lastKey);
+          }
+
+          connection.commit();
+
+          pageCount++;
+          rowCount += page.size();
+
+          for (Row row : page) {
+            valueCount += row.valueCount;
+          }
+
+          if (this.listener != null) {
+            this.listener.pageRotated(new RotationProgress(
+                pageCount,
+                rowCount,
+                valueCount,
+                lastKey,
+                System.nanoTime() - startTime));
+          }
+        }
+      } catch (SQLException | IOException | BulkOperationException | RuntimeException e) {
+        connection.rollback();
+        throw e;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+    } catch (SQLException | IOException | EncryptionException | BulkOperationException e) {
+      throw new KeyRotationException(
+          String.format(
+              "Unable to rotate the keys of %1$s after key %2$s.",
+              this.tableName,
+              lastKey),
+          e);
+    }
+
+    return new RotationProgress(
+        pageCount,
+        rowCount,
+        valueCount,
+        lastKey,
+        System.nanoTime() - startTime);
+  }
+
+  /**
+   * Reads a page of rows.
+   * 
+   * Streamed values are encrypted again as they are read, through a stream decrypting and
+   * encrypting them, so they are never held in memory as a whole. Streamed values already
+   * encrypted with the new key are copied as they are.
+   * 
+   * @param selectStatement The statement selecting the page.
+   * @param currentKey The key streamed values are currently encrypted with.
+   * @param newKey The key to encrypt streamed values with.
+   * 
+   * @return The rows of the page, in key order.
+   * 
+   * @throws SQLException Thrown when the rows cannot be read.
+   * @throws IOException Thrown when a streamed value cannot be encrypted again.
+   */
+  private List<Row> readPage(
+      PreparedStatement selectStatement,
+      SecretKey currentKey,
+      SecretKey newKey) throws SQLException, IOException {
+    List<Row> page = new ArrayList<Row>(this.pageSize);
+
+    selectStatement.setMaxRows(this.pageSize);
+    selectStatement.setFetchSize(this.pageSize);
+
+    try (ResultSet resultSet = selectStatement.executeQuery()) {
+      while (resultSet.next()) {
+        Row row = new Row(resultSet.getObject(1), this.columns.size());
+        int position = 2;
+
+        for (int i = 0; i < this.columns.size(); i++) {
+          RotatedColumn column = this.columns.get(i);
+
+          switch (column.getFormat()) {
+            case TEXT:
+              row.values[i] = resultSet.getString(position++);
+              break;
+            case BINARY:
+              row.values[i] = resultSet.getBytes(position++);
+              break;
+            default:
+              Blob blob = resultSet.getBlob(position++);
+
+              if (blob != null
+                  && StreamingEncryption.isEncryptedWith(blob.getBinaryStream(), newKey)) {
+                row.values[i] = this.copyToTemporaryFile(blob.getBinaryStream());
+              } else {
+                row.values[i] = this.encryptStreamedValueAgain(blob, currentKey, newKey);
+                row.valueCount += row.values[i] == null ? 0 : 1;
+              }
+              break;
+          }
+
+          row.indexValues[i] = new String[column.getIndexColumnCount()];
+
+          for (int j = 0; j < column.getIndexColumnCount(); j++) {
+            row.indexValues[i][j] = resultSet.getString(position++);
+          }
+        }
+
+        page.add(row);
+      }
+    } catch (SQLException | IOException | RuntimeException e) {
+      this.deleteStreamedValues(page);
+      throw e;
+    }
+
+    return page;
+  }
+
+  /**
+   * Encrypts a streamed value again into a temporary file.
+   * 
+   * @param blob The ciphertext, or null.
+   * @param currentKey The key the value is currently encrypted with.
+   * @param newKey The key to encrypt the value with.
+   * 
+   * @return The temporary file holding the new ciphertext, or null if there is no value.
+   * 
+   * @throws SQLException Thrown when the ciphertext cannot be read.
+   * @throws IOException Thrown when the value cannot be decrypted or written.
+   */
+  private Path encryptStreamedValueAgain(
+      Blob blob,
+      SecretKey currentKey,
+      SecretKey newKey) throws SQLException, IOException {
+    if (blob == null) {
+      return null;
+    }
+
+    return this.copyToTemporaryFile(StreamingEncryption.encrypt(
+        StreamingEncryption.decrypt(blob.getBinaryStream(), currentKey),
+        newKey));
+  }
+
+  /**
+   * Copies a streamed value into a temporary file.
+   * 
+   * @param ciphertext The ciphertext stream, closed by this method.
+   * 
+   * @return The temporary file holding the ciphertext.
+   * 
+   * @throws IOException Thrown when the value cannot be read or written.
+   */
+  private Path copyToTemporaryFile(InputStream ciphertext) throws IOException {
+    Path ciphertextFile = Files.createTempFile("rotation", ".bin");
+
+    try (InputStream input = ciphertext) {
+      Files.copy(input, ciphertextFile, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(ciphertextFile);
+      throw e;
+    }
+
+    return ciphertextFile;
+  }
+
+  /**
+   * Deletes the temporary files holding the new ciphertext of the streamed values of a page.
+   * 
+   * @param page The rows of the page.
+   * 
+   * @throws IOException Thrown when a file cannot be deleted.
+   */
+  private void deleteStreamedValues(List<Row> page) throws IOException {
+    for (Row row : page) {
+      for (Object value : row.values) {
+        if (value instanceof Path) {
+          Files.deleteIfExists((Path) value);
+        }
+      }
+    }
+  }
+
+  /**
+   * Encrypts the values of a row again, and computes their blind indexes again.
+   * 
+   * Streamed values have been encrypted again as the page was read. Values already encrypted with
+   * the new key are left as they are, with their blind indexes.
+   * 
+   * @param row The row.
+   * @param currentKey The key the values are currently encrypted with.
+   * @param newKey The key to encrypt the values with.
+   * 
+   * @throws EncryptionException Thrown when a value cannot be decrypted or encrypted, or is a
+   *         legacy value which cannot be rotated.
+   */
+  private void encryptAgain(
+      Row row,
+      SecretKey currentKey,
+      SecretKey newKey) throws EncryptionException {
+    for (int i = 0; i < this.columns.size(); i++) {
+      RotatedColumn column = this.columns.get(i);
+      Object value = row.values[i];
+
+      if (value == null || column.getFormat() == Format.STREAM) {
+        continue;
+      }
+
+      byte[] ciphertext = column.getFormat() == Format.TEXT
+          ? Base64.getDecoder().decode((String) value)
+          : (byte[]) value;
+
+      if (CiphertextHeader.isEncryptedWith(ciphertext, newKey)) {
+        continue;
+      }
+
+      byte[] plaintext = this.decrypt(column, value, ciphertext, currentKey);
+
+      try {
+        this.computeIndexes(column, plaintext, row.indexValues[i], newKey);
+
+        byte[] newCiphertext = this.engine.encrypt(plaintext, newKey);
+
+        row.values[i] = column.getFormat() == Format.TEXT
+            ? Base64.getEncoder().encodeToString(newCiphertext)
+            : newCiphertext;
+        row.valueCount++;
+      } finally {
+        Arrays.fill(plaintext, (byte) 0);
+      }
+    }
+  }
+
+  /**
+   * Decrypts a value with the current key, or with the legacy encryption tool when it has no
+   * ciphertext header.
+   * 
+   * @param column The column.
+   * @param value The value read from the column.
+   * @param ciphertext The ciphertext of the value.
+   * @param currentKey The key the value is currently encrypted with.
+   * 
+   * @return The decrypted value.
+   * 
+   * @throws EncryptionException Thrown when the value cannot be decrypted, or is a legacy value
+   *         which cannot be rotated.
+   */
+  private byte[] decrypt(
+      RotatedColumn column,
+      Object value,
+      byte[] ciphertext,
+      SecretKey currentKey) throws EncryptionException {
+    try {
+      return this.engine.decrypt(ciphertext, currentKey);
+    } catch (LegacyCiphertextException e) {
+      if (column.getFormat() != Format.TEXT || column.getIndexColumnCount() > 0) {
+        throw new EncryptionException(
+            String.format(
+                "The legacy value of column %1$s cannot be rotated; set it again first.",
+                column.getColumnName()),
+            e);
+      }
+
+      return LegacyEncryption.decrypt((String) value, this.currentPassphraseProvider, e);
+    }
+  }
+
+  /**
+   * Computes the blind indexes of a decrypted value under the new key.
+   * 
+   * Blind indexes are computed from the encoded values before compression, so compressed values
+   * are decompressed first. Fields missing from an envelope keep their index.
+   * 
+   * @param column The column.
+   * @param plaintext The decrypted value.
+   * @param indexValues The blind indexes of the column, replaced by the new ones.
+   * @param newKey The key to compute the blind indexes with.
+   * 
+   * @throws EncryptionException Thrown when a blind index cannot be computed.
+   */
+  private void computeIndexes(
+      RotatedColumn column,
+      byte[] plaintext,
+      String[] indexValues,
+      SecretKey newKey) throws EncryptionException {
+    if (column.getIndexColumnCount() == 0) {
+      return;
+    }
+
+    byte[][] envelopeValues = column.holdsEnvelope()
+        ? ValueEnvelope.unpack(plaintext, column.getEnvelopeNames())
+        : null;
+
+    for (int j = 0; j < column.getIndexColumnCount(); j++) {
+      int position = column.getIndexedPosition(j);
+      byte[] encodedValue = position < 0
+          ? plaintext
+          : envelopeValues[position];
+
+      if (encodedValue != null) {
+        indexValues[j] = BlindIndex.compute(
+            ValueCompression.decompress(encodedValue),
+            newKey,
+            column.getIndexClassName(),
+            column.getIndexedFieldName(j));
+      }
+    }
+  }
+
+  /**
+   * Writes a page of rows with one batch.
+   * 
+   * Streamed values are written from their temporary files, which the driver reads as the batch
+   * is executed.
+   * 
+   * @param updateStatement The statement updating a row.
+   * @param page The rows of the page.
+   * 
+   * @throws SQLException Thrown when the rows cannot be written.
+   * @throws IOException Thrown when a streamed value cannot be read.
+   */
+  private void writePage(
+      PreparedStatement updateStatement,
+      List<Row> page) throws SQLException, IOException {
+    List<InputStream> newCiphertexts = new ArrayList<InputStream>();
+
+    try {
+      this.addPageToBatch(updateStatement, page, newCiphertexts);
+      updateStatement.executeBatch();
+    } finally {
+      for (InputStream newCiphertext : newCiphertexts) {
+        newCiphertext.close();
+      }
+    }
+  }
+
+  /**
+   * Adds the updates of a page of rows to the batch.
+   * 
+   * @param updateStatement The statement updating a row.
+   * @param page The rows of the page.
+   * @param newCiphertexts The streams of the new ciphertext of streamed values, to be closed once
+   *        the batch is executed.
+   * 
+   * @throws SQLException Thrown when a parameter cannot be set.
+   * @throws IOException Thrown when a streamed value cannot be opened.
+   */
+  private void addPageToBatch(
+      PreparedStatement updateStatement,
+      List<Row> page,
+      List<InputStream> newCiphertexts) throws SQLException, IOException {
+    for (Row row : page) {
+      int position = 1;
+
+      for (int i = 0; i < this.columns.size(); i++) {
+        RotatedColumn column = this.columns.get(i);
+        Object value = row.values[i];
+
+        if (value == null) {
+          updateStatement.setNull(
+              position++,
+              column.getFormat() == Format.TEXT
+                  ? Types.VARCHAR
+                  : column.getFormat() == Format.BINARY
+                      ? Types.VARBINARY
+                      : Types.BLOB);
+        } else if (column.getFormat() == Format.TEXT) {
+          updateStatement.setString(position++, (String) value);
+        } else if (column.getFormat() == Format.BINARY) {
+          updateStatement.setBytes(position++, (byte[]) value);
+        } else {
+          Path newCiphertextFile = (Path) value;
+          InputStream newCiphertext = Files.newInputStream(newCiphertextFile);
+
+          newCiphertexts.add(newCiphertext);
+          updateStatement.setBinaryStream(
+              position++,
+              newCiphertext,
+              Files.size(newCiphertextFile));
+        }
+
+        for (String indexValue : row.indexValues[i]) {
+          if (indexValue == null) {
+            updateStatement.setNull(position++, Types.VARCHAR);
+          } else {
+            updateStatement.setString(position++, indexValue);
+          }
+        }
+      }
+
+      updateStatement.setObject(position, row.key);
+      updateStatement.addBatch();
+    }
+  }
+
+  /**
+   * Constructs the statement selecting a page of rows.
+   * 
+   * @param afterKey True to select the rows after a key; false to select the first rows.
+   * 
+   * @return The SQL statement.
+   */
+  private String constructSelectSql(boolean afterKey) {
+    StringBuilder sql = new StringBuilder("SELECT ").append(this.keyColumnName);
+
+    for (RotatedColumn column : this.columns) {
+      sql.append(", ").append(column.getColumnName());
+
+      for (String indexColumnName : column.getIndexColumnNames()) {
+        sql.append(", ").append(indexColumnName);
+      }
+    }
+
+    sql.append(" FROM ").append(this.tableName);
+
+    if (afterKey) {
+      sql.append(" WHERE ").append(this.keyColumnName).append(" > ?");
+    }
+
+    return sql.append(" ORDER BY ").append(this.keyColumnName).toString();
+  }
+
+  /**
+   * Constructs the statement updating the ciphertext and blind indexes of a row.
+   * 
+   * @return The SQL statement.
+   */
+  private String constructUpdateSql() {
+    StringBuilder sql = new StringBuilder("UPDATE ").append(this.tableName).append(" SET ");
+    int columnCount = 0;
+
+    for (RotatedColumn column : this.columns) {
+      sql.append(columnCount++ == 0 ? "" : ", ").append(column.getColumnName()).append(" = ?");
+
+      for (String indexColumnName : column.getIndexColumnNames()) {
+        sql.append(", ").append(indexColumnName).append(" = ?");
+      }
+    }
+
+    return sql
+        .append(" WHERE ")
+        .append(this.keyColumnName)
+        .append(" = ?")
+        .toString();
+  }
+
+  /**
+   * A row being rotated.
+   */
+  private static final class Row {
+    /**
+     * The key of the row.
+     */
+    private final Object key;
+
+    /**
+     * The ciphertext of each column, replaced by the new ciphertext; streamed values are the
+     * temporary files holding their new ciphertext.
+     */
+    private final Object[] values;
+
+    /**
+     * The blind indexes of each column, replaced by the new ones.
+     */
+    private final String[][] indexValues;
+
+    /**
+     * The number of values encrypted again.
+     */
+    private int valueCount;
+
+    /**
+     * Initializes a new instance of the Row class.
+     * 
+     * @param key The key of the row.
+     * @param columnCount The number of ciphertext columns.
+     */
+    private Row(
+        Object key,
+        int columnCount) {
+      this.key = key;
+      this.values = new Object[columnCount];
+      this.indexValues = new String[columnCount][];
+    }
+  }
+}
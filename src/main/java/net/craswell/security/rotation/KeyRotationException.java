@@ -0,0 +1,27 @@
+package net.craswell.security.rotation;
+
+/**
+ * Thrown when the ciphertext of a table cannot be encrypted again under a new key.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class KeyRotationException
+    extends Exception {
+  /**
+   * The serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Initializes a new instance of the KeyRotationException class.
+   * 
+   * @param message The exception message.
+   * @param cause The cause of the exception.
+   */
+  public KeyRotationException(
+      String message,
+      Throwable cause) {
+    super(message, cause);
+  }
+}
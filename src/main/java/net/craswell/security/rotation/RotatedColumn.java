@@ -0,0 +1,263 @@
+package net.craswell.security.rotation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes a column holding ciphertext written by a secured class, and the blind index columns
+ * derived from its value.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class RotatedColumn {
+  /**
+   * The ways ciphertext is stored in a column.
+   */
+  public enum Format {
+    /**
+     * Base64 text, as stored by String secured fields.
+     */
+    TEXT,
+
+    /**
+     * Bytes, as stored by byte[] secured fields.
+     */
+    BINARY,
+
+    /**
+     * Chunks encrypted with StreamingEncryption, as stored by Blob secured fields.
+     */
+    STREAM
+  }
+
+  /**
+   * The column name.
+   */
+  private final String columnName;
+
+  /**
+   * The way ciphertext is stored in the column.
+   */
+  private final Format format;
+
+  /**
+   * The names of the values packed into the envelope stored in the column, or null.
+   */
+  private final String[] envelopeNames;
+
+  /**
+   * The qualified name of the template class declaring the indexed fields, or null.
+   */
+  private final String indexClassName;
+
+  /**
+   * The name of the field of each blind index column.
+   */
+  private final String[] indexedFieldNames;
+
+  /**
+   * The blind index column names.
+   */
+  private final String[] indexColumnNames;
+
+  /**
+   * The position in the envelope of the value of each blind index column, or -1 for the whole
+   * value.
+   */
+  private final int[] indexedPositions;
+
+  /**
+   * Initializes a new instance of the RotatedColumn class, for a column without blind index.
+   * 
+   * @param columnName The column name.
+   * @param format The way ciphertext is stored in the column.
+   */
+  public RotatedColumn(
+      String columnName,
+      Format format) {
+    this(columnName, format, (List<String>) null, null, null);
+  }
+
+  /**
+   * Initializes a new instance of the RotatedColumn class, for a column whose value has a blind
+   * index.
+   * 
+   * @param columnName The column name.
+   * @param format The way ciphertext is stored in the column.
+   * @param indexClassName The qualified name of the template class declaring the field, which
+   *        binds the blind index to it.
+   * @param indexedFieldName The name of the field, which binds the blind index to it.
+   * @param indexColumnName The blind index column name.
+   */
+  public RotatedColumn(
+      String columnName,
+      Format format,
+      String indexClassName,
+      String indexedFieldName,
+      String indexColumnName) {
+    this.columnName = columnName;
+    this.format = format;
+    this.envelopeNames = null;
+    this.indexClassName = indexClassName;
+    this.indexedFieldNames = new String[] {indexedFieldName};
+    this.indexColumnNames = new String[] {indexColumnName};
+    this.indexedPositions = new int[] {-1};
+
+    this.checkFormat();
+  }
+
+  /**
+   * Initializes a new instance of the RotatedColumn class, for a column holding the envelope of a
+   * confidential group.
+   * 
+   * @param columnName The column name.
+   * @param format The way ciphertext is stored in the column.
+   * @param envelopeNames The names of the fields of the group, or null if the column holds a
+   *        single value.
+   * @param indexClassName The qualified name of the template class declaring the fields, which
+   *        binds their blind indexes to it, or null if the group has no blind index.
+   * @param indexColumnNames The blind index column name of each searchable field of the group, by
+   *        field name, or null.
+   */
+  public RotatedColumn(
+      String columnName,
+      Format format,
+      List<String> envelopeNames,
+      String indexClassName,
+      Map<String, String> indexColumnNames) {
+    this.columnName = columnName;
+    this.format = format;
+    this.envelopeNames = envelopeNames == null
+        ? null
+        : envelopeNames.toArray(new String[envelopeNames.size()]);
+    this.indexClassName = indexClassName;
+
+    List<String> indexedFieldNames = new ArrayList<String>();
+    List<String> indexColumns = new ArrayList<String>();
+    List<Integer> indexedPositions = new ArrayList<Integer>();
+
+    if (indexColumnNames != null) {
+      for (Map.Entry<String, String> indexColumnName : indexColumnNames.entrySet()) {
+        int position = this.envelopeNames == null
+            ? -1
+            : Arrays.asList(this.envelopeNames).indexOf(indexColumnName.getKey());
+
+        if (position < 0) {
+          throw new IllegalArgumentException(String.format(
+              "The %1$s column holds no %2$s value.",
+              columnName,
+              indexColumnName.getKey()));
+        }
+
+        indexedFieldNames.add(indexColumnName.getKey());
+        indexColumns.add(indexColumnName.getValue());
+        indexedPositions.add(position);
+      }
+    }
+
+    this.indexedFieldNames = indexedFieldNames.toArray(new String[indexedFieldNames.size()]);
+    this.indexColumnNames = indexColumns.toArray(new String[indexColumns.size()]);
+    this.indexedPositions = new int[indexedPositions.size()];
+
+    for (int i = 0; i < this.indexedPositions.length; i++) {
+      this.indexedPositions[i] = indexedPositions.get(i);
+    }
+
+    this.checkFormat();
+  }
+
+  /**
+   * @return The column name.
+   */
+  public String getColumnName() {
+    return this.columnName;
+  }
+
+  /**
+   * @return The way ciphertext is stored in the column.
+   */
+  public Format getFormat() {
+    return this.format;
+  }
+
+  /**
+   * @return The names of the values packed into the envelope stored in the column, or null if the
+   *         column holds a single value.
+   */
+  public String[] getEnvelopeNames() {
+    return this.envelopeNames == null
+        ? null
+        : this.envelopeNames.clone();
+  }
+
+  /**
+   * @return The blind index column names.
+   */
+  public String[] getIndexColumnNames() {
+    return this.indexColumnNames.clone();
+  }
+
+  /**
+   * @return The qualified name of the template class declaring the indexed fields, or null.
+   */
+  String getIndexClassName() {
+    return this.indexClassName;
+  }
+
+  /**
+   * Gets the name of the field of a blind index column.
+   * 
+   * @param index The position of the blind index column.
+   * 
+   * @return The field name.
+   */
+  String getIndexedFieldName(int index) {
+    return this.indexedFieldNames[index];
+  }
+
+  /**
+   * Gets the position in the envelope of the value of a blind index column.
+   * 
+   * @param index The position of the blind index column.
+   * 
+   * @return The position of the value in the envelope, or -1 for the whole value.
+   */
+  int getIndexedPosition(int index) {
+    return this.indexedPositions[index];
+  }
+
+  /**
+   * @return The number of blind index columns.
+   */
+  int getIndexColumnCount() {
+    return this.indexColumnNames.length;
+  }
+
+  /**
+   * @return True if the column holds an envelope.
+   */
+  boolean holdsEnvelope() {
+    return this.envelopeNames != null;
+  }
+
+  /**
+   * Rejects blind indexes on streamed columns, whose values are never held in memory, and blind
+   * indexes not bound to a class.
+   */
+  private void checkFormat() {
+    if (this.indexColumnNames.length > 0 && this.indexClassName == null) {
+      throw new IllegalArgumentException(String.format(
+          "The blind indexes of the %1$s column require the name of their class.",
+          this.columnName));
+    }
+
+    if (this.format == Format.STREAM && this.indexColumnNames.length > 0) {
+      throw new IllegalArgumentException(String.format(
+          "The streamed %1$s column cannot have a blind index.",
+          this.columnName));
+    }
+  }
+}
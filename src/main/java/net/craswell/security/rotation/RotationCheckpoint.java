@@ -0,0 +1,40 @@
+package net.craswell.security.rotation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Records how far a key rotation has progressed, so that an interrupted rotation resumes after the
+ * last page committed rather than from the first row.
+ * 
+ * The checkpoint is saved through the connection of the rotation, before each page is committed,
+ * so an implementation writing to the same database records it in the same transaction as the
+ * page itself.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public interface RotationCheckpoint {
+  /**
+   * Loads the key of the last row rotated.
+   * 
+   * @param connection The connection of the rotation.
+   * 
+   * @return The key of the last row rotated, or null if the rotation has not started.
+   * 
+   * @throws SQLException Thrown when the checkpoint cannot be loaded.
+   */
+  Object load(Connection connection) throws SQLException;
+
+  /**
+   * Saves the key of the last row rotated.
+   * 
+   * @param connection The connection of the rotation.
+   * @param lastKey The key of the last row rotated.
+   * 
+   * @throws SQLException Thrown when the checkpoint cannot be saved.
+   */
+  void save(
+      Connection connection,
+      Object lastKey) throws SQLException;
+}
@@ -0,0 +1,17 @@
+package net.craswell.security.rotation;
+
+/**
+ * Receives the progress of a key rotation after each page is committed.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+@FunctionalInterface
+public interface RotationListener {
+  /**
+   * Called on the thread running the rotation once a page has been committed.
+   * 
+   * @param progress The progress of the rotation.
+   */
+  void pageRotated(RotationProgress progress);
+}
@@ -0,0 +1,118 @@
+package net.craswell.security.rotation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The progress of a key rotation, as of the last page committed.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class RotationProgress {
+  /**
+   * The number of pages committed.
+   */
+  private final long pageCount;
+
+  /**
+   * The number of rows rotated.
+   */
+  private final long rowCount;
+
+  /**
+   * The number of values encrypted again.
+   */
+  private final long valueCount;
+
+  /**
+   * The key of the last row rotated.
+   */
+  private final Object lastKey;
+
+  /**
+   * The time elapsed since the rotation started, in nanoseconds.
+   */
+  private final long elapsedNanos;
+
+  /**
+   * Initializes a new instance of the RotationProgress class.
+   * 
+   * @param pageCount The number of pages committed.
+   * @param rowCount The number of rows rotated.
+   * @param valueCount The number of values encrypted again.
+   * @param lastKey The key of the last row rotated, or null if no row has been rotated.
+   * @param elapsedNanos The time elapsed since the rotation started, in nanoseconds.
+   */
+  public RotationProgress(
+      long pageCount,
+      long rowCount,
+      long valueCount,
+      Object lastKey,
+      long elapsedNanos) {
+    this.pageCount = pageCount;
+    this.rowCount = rowCount;
+    this.valueCount = valueCount;
+    this.lastKey = lastKey;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * @return The number of pages committed.
+   */
+  public long getPageCount() {
+    return this.pageCount;
+  }
+
+  /**
+   * @return The number of rows rotated by this run, excluding rows rotated before it resumed.
+   */
+  public long getRowCount() {
+    return this.rowCount;
+  }
+
+  /**
+   * @return The number of values encrypted again; null values are not counted.
+   */
+  public long getValueCount() {
+    return this.valueCount;
+  }
+
+  /**
+   * @return The key of the last row rotated, or null if no row has been rotated.
+   */
+  public Object getLastKey() {
+    return this.lastKey;
+  }
+
+  /**
+   * @return The time elapsed since the rotation started, in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return this.elapsedNanos;
+  }
+
+  /**
+   * @return The number of rows rotated per second.
+   */
+  public double getRowsPerSecond() {
+    return this.elapsedNanos == 0L
+        ? 0d
+        : (double) this.rowCount * TimeUnit.SECONDS.toNanos(1) / this.elapsedNanos;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return String.format(
+        "%1$d rows (%2$d values) in %3$d pages, %4$.0f rows/s, last key %5$s",
+        this.rowCount,
+        this.valueCount,
+        this.pageCount,
+        this.getRowsPerSecond(),
+        this.lastKey);
+  }
+}
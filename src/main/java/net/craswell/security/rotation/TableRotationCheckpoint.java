@@ -0,0 +1,114 @@
+package net.craswell.security.rotation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Records the progress of key rotations in a table of the rotated database, in the transaction of
+ * each page.
+ * 
+ * The table is created beforehand, with a rotation_name primary key holding the rotation name and
+ * a last_key column of the type of the keys of the rotated table.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class TableRotationCheckpoint
+    implements RotationCheckpoint {
+  /**
+   * The column holding the rotation name.
+   */
+  public static final String ROTATION_NAME_COLUMN = "rotation_name";
+
+  /**
+   * The column holding the key of the last row rotated.
+   */
+  public static final String LAST_KEY_COLUMN = "last_key";
+
+  /**
+   * The checkpoint table name.
+   */
+  private final String tableName;
+
+  /**
+   * The rotation name, distinguishing the rotations recorded in the table.
+   */
+  private final String rotationName;
+
+  /**
+   * Initializes a new instance of the TableRotationCheckpoint class.
+   * 
+   * @param tableName The checkpoint table name.
+   * @param rotationName The rotation name, distinguishing the rotations recorded in the table.
+   */
+  public TableRotationCheckpoint(
+      String tableName,
+      String rotationName) {
+    this.tableName = tableName;
+    this.rotationName = rotationName;
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.rotation.RotationCheckpoint#load(java.sql.Connection)
+   */
+  @Override
+  public Object load(Connection connection) throws SQLException {
+    String sql = String.format(
+        "SELECT %1$s FROM %2$s WHERE %3$s = ?",
+        LAST_KEY_COLUMN,
+        this.tableName,
+        ROTATION_NAME_COLUMN);
+
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setString(1, this.rotationName);
+
+      try (ResultSet resultSet = statement.executeQuery()) {
+        return resultSet.next()
+            ? resultSet.getObject(1)
+            : null;
+      }
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see net.craswell.security.rotation.RotationCheckpoint#save(java.sql.Connection,
+   * java.lang.Object)
+   */
+  @Override
+  public void save(
+      Connection connection,
+      Object lastKey) throws SQLException {
+    String updateSql = String.format(
+        "UPDATE %1$s SET %2$s = ? WHERE %3$s = ?",
+        this.tableName,
+        LAST_KEY_COLUMN,
+        ROTATION_NAME_COLUMN);
+
+    try (PreparedStatement statement = connection.prepareStatement(updateSql)) {
+      statement.setObject(1, lastKey);
+      statement.setString(2, this.rotationName);
+
+      if (statement.executeUpdate() > 0) {
+        return;
+      }
+    }
+
+    String insertSql = String.format(
+        "INSERT INTO %1$s (%2$s, %3$s) VALUES (?, ?)",
+        this.tableName,
+        ROTATION_NAME_COLUMN,
+        LAST_KEY_COLUMN);
+
+    try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+      statement.setString(1, this.rotationName);
+      statement.setObject(2, lastKey);
+      statement.executeUpdate();
+    }
+  }
+}
@@ -0,0 +1,676 @@
+package net.craswell.security.serialization;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import net.craswell.common.BinarySerializer;
+import net.craswell.common.BinarySerializerException;
+
+/**
+ * Compact binary encodings for the value types most commonly marked confidential.
+ * 
+ * Every encoded value starts with a marker byte distinguishing null from present values. Values
+ * written with Java serialization start with the serialization stream magic instead, and are still
+ * decoded through the binary serializer so that existing ciphertext remains readable. Any other
+ * leading byte, or a length not matching the type, is rejected rather than decoded.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class ValueCodecs {
+  /**
+   * The marker of an encoded null value.
+   */
+  private static final byte NULL_MARKER = 0x00;
+
+  /**
+   * The marker of an encoded value.
+   */
+  private static final byte VALUE_MARKER = 0x01;
+
+  /**
+   * The first byte of a Java serialization stream.
+   */
+  private static final byte LEGACY_MAGIC_0 = (byte) 0xAC;
+
+  /**
+   * The second byte of a Java serialization stream.
+   */
+  private static final byte LEGACY_MAGIC_1 = (byte) 0xED;
+
+  /**
+   * The Java serialization of a null reference.
+   */
+  private static final byte[] LEGACY_NULL = new byte[] {
+      LEGACY_MAGIC_0, LEGACY_MAGIC_1, 0x00, 0x05, 0x70};
+
+  /**
+   * The encoded null value.
+   */
+  private static final byte[] ENCODED_NULL = new byte[] {NULL_MARKER};
+
+  /**
+   * Prevents instantiation.
+   */
+  private ValueCodecs() {
+  }
+
+  /**
+   * @return The encoded null value.
+   */
+  public static byte[] encodeNull() {
+    return ENCODED_NULL.clone();
+  }
+
+  /**
+   * Determines whether an encoded value is null.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return True if the encoded value is null; false otherwise.
+   */
+  public static boolean isNull(byte[] bytes) {
+    if (bytes == null) {
+      return true;
+    }
+
+    if (isLegacy(bytes)) {
+      return Arrays.equals(bytes, LEGACY_NULL);
+    }
+
+    return bytes.length > 0 && bytes[0] == NULL_MARKER;
+  }
+
+  /**
+   * Encodes a String as UTF-8.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeString(String value) {
+    if (value == null) {
+      return encodeNull();
+    }
+
+    return prefix(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a String.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static String decodeString(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (String) BinarySerializer.deserializeObject(bytes);
+    }
+
+    if (checkMarker(bytes)) {
+      return null;
+    }
+
+    return new String(bytes, 1, bytes.length - 1, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Encodes a byte array as is.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeBytes(byte[] value) {
+    if (value == null) {
+      return encodeNull();
+    }
+
+    return prefix(value);
+  }
+
+  /**
+   * Decodes a byte array.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static byte[] decodeBytes(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (byte[]) BinarySerializer.deserializeObject(bytes);
+    }
+
+    if (checkMarker(bytes)) {
+      return null;
+    }
+
+    return Arrays.copyOfRange(bytes, 1, bytes.length);
+  }
+
+  /**
+   * Encodes a boolean value.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeBoolean(boolean value) {
+    byte[] bytes = allocate(1);
+    bytes[1] = (byte) (value ? 1 : 0);
+
+    return bytes;
+  }
+
+  /**
+   * Decodes a boolean value.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static boolean decodeBoolean(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (Boolean) BinarySerializer.deserializeObject(bytes);
+    }
+
+    checkLength(bytes, 1);
+
+    return bytes[1] != 0;
+  }
+
+  /**
+   * Encodes a byte value.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeByte(byte value) {
+    byte[] bytes = allocate(1);
+    bytes[1] = value;
+
+    return bytes;
+  }
+
+  /**
+   * Decodes a byte value.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static byte decodeByte(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (Byte) BinarySerializer.deserializeObject(bytes);
+    }
+
+    checkLength(bytes, 1);
+
+    return bytes[1];
+  }
+
+  /**
+   * Encodes a short value.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeShort(short value) {
+    byte[] bytes = allocate(2);
+    writeLong(bytes, value, 2);
+
+    return bytes;
+  }
+
+  /**
+   * Decodes a short value.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static short decodeShort(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (Short) BinarySerializer.deserializeObject(bytes);
+    }
+
+    checkLength(bytes, 2);
+
+    return (short) readLong(bytes, 2);
+  }
+
+  /**
+   * Encodes a char value.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeChar(char value) {
+    byte[] bytes = allocate(2);
+    writeLong(bytes, value, 2);
+
+    return bytes;
+  }
+
+  /**
+   * Decodes a char value.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static char decodeChar(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (Character) BinarySerializer.deserializeObject(bytes);
+    }
+
+    checkLength(bytes, 2);
+
+    return (char) readLong(bytes, 2);
+  }
+
+  /**
+   * Encodes an int value.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeInt(int value) {
+    byte[] bytes = allocate(4);
+    writeLong(bytes, value, 4);
+
+    return bytes;
+  }
+
+  /**
+   * Decodes an int value.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static int decodeInt(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (Integer) BinarySerializer.deserializeObject(bytes);
+    }
+
+    checkLength(bytes, 4);
+
+    return (int) readLong(bytes, 4);
+  }
+
+  /**
+   * Encodes a long value.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeLong(long value) {
+    byte[] bytes = allocate(8);
+    writeLong(bytes, value, 8);
+
+    return bytes;
+  }
+
+  /**
+   * Decodes a long value.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static long decodeLong(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (Long) BinarySerializer.deserializeObject(bytes);
+    }
+
+    checkLength(bytes, 8);
+
+    return readLong(bytes, 8);
+  }
+
+  /**
+   * Encodes a float value.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeFloat(float value) {
+    byte[] bytes = allocate(4);
+    writeLong(bytes, Float.floatToIntBits(value), 4);
+
+    return bytes;
+  }
+
+  /**
+   * Decodes a float value.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static float decodeFloat(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (Float) BinarySerializer.deserializeObject(bytes);
+    }
+
+    checkLength(bytes, 4);
+
+    return Float.intBitsToFloat((int) readLong(bytes, 4));
+  }
+
+  /**
+   * Encodes a double value.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeDouble(double value) {
+    byte[] bytes = allocate(8);
+    writeLong(bytes, Double.doubleToLongBits(value), 8);
+
+    return bytes;
+  }
+
+  /**
+   * Decodes a double value.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static double decodeDouble(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (Double) BinarySerializer.deserializeObject(bytes);
+    }
+
+    checkLength(bytes, 8);
+
+    return Double.longBitsToDouble(readLong(bytes, 8));
+  }
+
+  /**
+   * Encodes a BigDecimal as its scale followed by its unscaled value.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeBigDecimal(BigDecimal value) {
+    if (value == null) {
+      return encodeNull();
+    }
+
+    byte[] unscaledValue = value.unscaledValue().toByteArray();
+    byte[] bytes = allocate(4 + unscaledValue.length);
+
+    writeLong(bytes, value.scale(), 4);
+    System.arraycopy(unscaledValue, 0, bytes, 5, unscaledValue.length);
+
+    return bytes;
+  }
+
+  /**
+   * Decodes a BigDecimal.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static BigDecimal decodeBigDecimal(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (BigDecimal) BinarySerializer.deserializeObject(bytes);
+    }
+
+    if (checkMarker(bytes)) {
+      return null;
+    }
+
+    if (bytes.length < 6) {
+      throw new BinarySerializerException("The encoded value is malformed.");
+    }
+
+    return new BigDecimal(
+        new BigInteger(Arrays.copyOfRange(bytes, 5, bytes.length)),
+        (int) readLong(bytes, 4));
+  }
+
+  /**
+   * Encodes a LocalDate as its epoch day.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeLocalDate(LocalDate value) {
+    if (value == null) {
+      return encodeNull();
+    }
+
+    return encodeLong(value.toEpochDay());
+  }
+
+  /**
+   * Decodes a LocalDate.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static LocalDate decodeLocalDate(byte[] bytes) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return (LocalDate) BinarySerializer.deserializeObject(bytes);
+    }
+
+    if (checkMarker(bytes)) {
+      return null;
+    }
+
+    return LocalDate.ofEpochDay(decodeLong(bytes));
+  }
+
+  /**
+   * Encodes an enum constant by name, so that reordering constants does not alter stored values.
+   * 
+   * @param value The value.
+   * 
+   * @return The encoded value.
+   */
+  public static byte[] encodeEnum(Enum<?> value) {
+    if (value == null) {
+      return encodeNull();
+    }
+
+    return encodeString(value.name());
+  }
+
+  /**
+   * Decodes an enum constant.
+   * 
+   * @param bytes The encoded value.
+   * @param enumType The enum type.
+   * 
+   * @return The decoded value.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed, or is a legacy value
+   *         which cannot be deserialized.
+   */
+  public static <E extends Enum<E>> E decodeEnum(
+      byte[] bytes,
+      Class<E> enumType) throws BinarySerializerException {
+    if (isLegacy(bytes)) {
+      return enumType.cast(BinarySerializer.deserializeObject(bytes));
+    }
+
+    if (checkMarker(bytes)) {
+      return null;
+    }
+
+    return Enum.valueOf(enumType, decodeString(bytes));
+  }
+
+  /**
+   * Determines whether a value was written with Java serialization.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return True if the value was written with Java serialization; false otherwise.
+   */
+  private static boolean isLegacy(byte[] bytes) {
+    return bytes != null
+        && bytes.length > 1
+        && bytes[0] == LEGACY_MAGIC_0
+        && bytes[1] == LEGACY_MAGIC_1;
+  }
+
+  /**
+   * Allocates an encoded value of a given payload length, with its value marker set.
+   * 
+   * @param payloadLength The payload length.
+   * 
+   * @return The encoded value.
+   */
+  private static byte[] allocate(int payloadLength) {
+    byte[] bytes = new byte[payloadLength + 1];
+    bytes[0] = VALUE_MARKER;
+
+    return bytes;
+  }
+
+  /**
+   * Prefixes a payload with the value marker.
+   * 
+   * @param payload The payload.
+   * 
+   * @return The encoded value.
+   */
+  private static byte[] prefix(byte[] payload) {
+    byte[] bytes = allocate(payload.length);
+    System.arraycopy(payload, 0, bytes, 1, payload.length);
+
+    return bytes;
+  }
+
+  /**
+   * Ensures that an encoded value holds a payload of the expected length.
+   * 
+   * @param bytes The encoded value.
+   * @param payloadLength The expected payload length.
+   * 
+   * @throws BinarySerializerException Thrown when the value is malformed.
+   */
+  private static void checkLength(
+      byte[] bytes,
+      int payloadLength) throws BinarySerializerException {
+    if (bytes == null || bytes.length != payloadLength + 1 || bytes[0] != VALUE_MARKER) {
+      throw new BinarySerializerException("The encoded value is malformed.");
+    }
+  }
+
+  /**
+   * Ensures that an encoded value of variable length starts with a known marker, so that bytes
+   * which are not an encoded value are rejected rather than decoded into garbage.
+   * 
+   * @param bytes The encoded value.
+   * 
+   * @return True if the encoded value is null; false if it holds a payload.
+   * 
+   * @throws BinarySerializerException Thrown when the value starts with neither marker, or is an
+   *         encoded null followed by further bytes.
+   */
+  private static boolean checkMarker(byte[] bytes) throws BinarySerializerException {
+    if (bytes == null || Arrays.equals(bytes, ENCODED_NULL)) {
+      return true;
+    }
+
+    if (bytes.length == 0 || bytes[0] != VALUE_MARKER) {
+      throw new BinarySerializerException("The encoded value is malformed.");
+    }
+
+    return false;
+  }
+
+  /**
+   * Writes the low order bytes of a value in big-endian order, after the marker byte.
+   * 
+   * @param bytes The encoded value.
+   * @param value The value.
+   * @param length The number of bytes to write.
+   */
+  private static void writeLong(
+      byte[] bytes,
+      long value,
+      int length) {
+    for (int i = length; i > 0; i--) {
+      bytes[i] = (byte) value;
+      value >>>= 8;
+    }
+  }
+
+  /**
+   * Reads a big-endian, sign-extended value following the marker byte.
+   * 
+   * @param bytes The encoded value.
+   * @param length The number of bytes to read.
+   * 
+   * @return The value.
+   */
+  private static long readLong(
+      byte[] bytes,
+      int length) {
+    long value = bytes[1];
+
+    for (int i = 2; i <= length; i++) {
+      value = (value << 8) | (bytes[i] & 0xFF);
+    }
+
+    return value;
+  }
+}
@@ -0,0 +1,162 @@
+package net.craswell.security.serialization;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses encoded values before they are encrypted.
+ * 
+ * A compressed value starts with its own marker byte followed by the length of the encoded value
+ * and its zlib stream. The marker differs from those of encoded and Java serialized values, so
+ * values written before compression was enabled, or left uncompressed because they were too small
+ * or did not shrink, are returned as is by {@link #decompress(byte[])}.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class ValueCompression {
+  /**
+   * The marker of a compressed value.
+   */
+  private static final byte COMPRESSED_MARKER = 0x02;
+
+  /**
+   * The length of the marker and encoded value length preceding the zlib stream.
+   */
+  private static final int HEADER_LENGTH = 5;
+
+  /**
+   * The largest ratio between the lengths of a value and its zlib stream.
+   */
+  private static final int MAXIMUM_COMPRESSION_RATIO = 1032;
+
+  /**
+   * Prevents instantiation.
+   */
+  private ValueCompression() {
+  }
+
+  /**
+   * Determines whether a value is compressed.
+   * 
+   * @param bytes The value.
+   * 
+   * @return True if the value is compressed; false otherwise.
+   */
+  public static boolean isCompressed(byte[] bytes) {
+    return bytes != null
+        && bytes.length > 0
+        && bytes[0] == COMPRESSED_MARKER;
+  }
+
+  /**
+   * Compresses an encoded value if it is at least a threshold long and shrinks when compressed.
+   * 
+   * The encoded value is wiped when the compressed value is returned in its place.
+   * 
+   * @param encoded The encoded value.
+   * @param threshold The length, in bytes, from which the value is compressed.
+   * 
+   * @return The compressed value, or the encoded value if it is not compressed.
+   */
+  public static byte[] compress(
+      byte[] encoded,
+      int threshold) {
+    if (encoded == null
+        || encoded.length < threshold
+        || encoded.length <= HEADER_LENGTH
+        || isCompressed(encoded)) {
+      return encoded;
+    }
+
+    byte[] buffer = new byte[encoded.length];
+    buffer[0] = COMPRESSED_MARKER;
+    buffer[1] = (byte) (encoded.length >>> 24);
+    buffer[2] = (byte) (encoded.length >>> 16);
+    buffer[3] = (byte) (encoded.length >>> 8);
+    buffer[4] = (byte) encoded.length;
+
+    Deflater deflater = new Deflater();
+    int length = HEADER_LENGTH;
+
+    try {
+      deflater.setInput(encoded);
+      deflater.finish();
+
+      while (!deflater.finished() && length < buffer.length) {
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+
+      if (!deflater.finished()) {
+        return encoded;
+      }
+
+      byte[] compressed = Arrays.copyOf(buffer, length);
+      Arrays.fill(encoded, (byte) 0);
+
+      return compressed;
+    } finally {
+      deflater.end();
+      Arrays.fill(buffer, (byte) 0);
+    }
+  }
+
+  /**
+   * Decompresses a value if it is compressed.
+   * 
+   * @param bytes The value.
+   * 
+   * @return The encoded value.
+   * 
+   * @throws IllegalArgumentException Thrown when the compressed value is malformed.
+   */
+  public static byte[] decompress(byte[] bytes) {
+    if (!isCompressed(bytes)) {
+      return bytes;
+    }
+
+    if (bytes.length <= HEADER_LENGTH) {
+      throw new IllegalArgumentException("The compressed value is malformed.");
+    }
+
+    int length = (bytes[1] & 0xff) << 24
+        | (bytes[2] & 0xff) << 16
+        | (bytes[3] & 0xff) << 8
+        | (bytes[4] & 0xff);
+
+    if (length < 0 || length > (long) (bytes.length - HEADER_LENGTH) * MAXIMUM_COMPRESSION_RATIO) {
+      throw new IllegalArgumentException("The compressed value is malformed.");
+    }
+
+    byte[] encoded = new byte[length];
+    Inflater inflater = new Inflater();
+
+    try {
+      inflater.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+
+      int inflated = 0;
+
+      while (inflated < length && !inflater.finished()) {
+        int count = inflater.inflate(encoded, inflated, length - inflated);
+
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+
+        inflated += count;
+      }
+
+      if (inflated != length || !inflater.finished()) {
+        throw new IllegalArgumentException("The compressed value is malformed.");
+      }
+
+      return encoded;
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("The compressed value is malformed.", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
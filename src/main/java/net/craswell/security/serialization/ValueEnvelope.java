@@ -0,0 +1,178 @@
+package net.craswell.security.serialization;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Packs the encoded values of a group of confidential fields into one envelope, encrypted as a
+ * single value.
+ * 
+ * The envelope starts with its own marker byte and the number of values, followed by each value
+ * with the name of its field. Values are looked up by name when the envelope is unpacked, so that
+ * fields can be added to or removed from a group without rewriting existing envelopes.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public final class ValueEnvelope {
+  /**
+   * The marker of an envelope.
+   */
+  private static final byte ENVELOPE_MARKER = 0x03;
+
+  /**
+   * The length of the marker and value count.
+   */
+  private static final int HEADER_LENGTH = 3;
+
+  /**
+   * The largest number of values, and the longest field name, of an envelope.
+   */
+  private static final int MAXIMUM_COUNT = 0xffff;
+
+  /**
+   * Prevents instantiation.
+   */
+  private ValueEnvelope() {
+  }
+
+  /**
+   * Packs encoded values into an envelope.
+   * 
+   * The encoded values are wiped once they have been copied to the envelope.
+   * 
+   * @param names The field names.
+   * @param values The encoded values, in the order of the field names.
+   * 
+   * @return The envelope.
+   */
+  public static byte[] pack(
+      String[] names,
+      byte[][] values) {
+    if (names.length != values.length || names.length > MAXIMUM_COUNT) {
+      throw new IllegalArgumentException("The field names do not match the values.");
+    }
+
+    byte[][] encodedNames = new byte[names.length][];
+    int length = HEADER_LENGTH;
+
+    for (int i = 0; i < names.length; i++) {
+      encodedNames[i] = names[i].getBytes(StandardCharsets.UTF_8);
+
+      if (encodedNames[i].length > MAXIMUM_COUNT) {
+        throw new IllegalArgumentException("The field name is too long.");
+      }
+
+      length += 2 + encodedNames[i].length + 4 + values[i].length;
+    }
+
+    byte[] envelope = new byte[length];
+    envelope[0] = ENVELOPE_MARKER;
+    envelope[1] = (byte) (names.length >>> 8);
+    envelope[2] = (byte) names.length;
+
+    int position = HEADER_LENGTH;
+
+    for (int i = 0; i < names.length; i++) {
+      envelope[position++] = (byte) (encodedNames[i].length >>> 8);
+      envelope[position++] = (byte) encodedNames[i].length;
+      System.arraycopy(encodedNames[i], 0, envelope, position, encodedNames[i].length);
+      position += encodedNames[i].length;
+
+      envelope[position++] = (byte) (values[i].length >>> 24);
+      envelope[position++] = (byte) (values[i].length >>> 16);
+      envelope[position++] = (byte) (values[i].length >>> 8);
+      envelope[position++] = (byte) values[i].length;
+      System.arraycopy(values[i], 0, envelope, position, values[i].length);
+      position += values[i].length;
+
+      Arrays.fill(values[i], (byte) 0);
+    }
+
+    return envelope;
+  }
+
+  /**
+   * Unpacks the encoded values of an envelope.
+   * 
+   * @param envelope The envelope.
+   * @param names The field names.
+   * 
+   * @return The encoded values, in the order of the field names; null for the fields missing from
+   *         the envelope.
+   * 
+   * @throws IllegalArgumentException Thrown when the envelope is malformed.
+   */
+  public static byte[][] unpack(
+      byte[] envelope,
+      String[] names) {
+    if (envelope == null
+        || envelope.length < HEADER_LENGTH
+        || envelope[0] != ENVELOPE_MARKER) {
+      throw new IllegalArgumentException("The envelope is malformed.");
+    }
+
+    byte[][] values = new byte[names.length][];
+    int count = (envelope[1] & 0xff) << 8 | (envelope[2] & 0xff);
+    int position = HEADER_LENGTH;
+
+    for (int i = 0; i < count; i++) {
+      int nameLength = readLength(envelope, position, 2);
+      position += 2;
+
+      String name = new String(envelope, position, nameLength, StandardCharsets.UTF_8);
+      position += nameLength;
+
+      int valueLength = readLength(envelope, position, 4);
+      position += 4;
+
+      for (int j = 0; j < names.length; j++) {
+        if (names[j].equals(name)) {
+          values[j] = Arrays.copyOfRange(envelope, position, position + valueLength);
+        }
+      }
+
+      position += valueLength;
+    }
+
+    if (position != envelope.length) {
+      throw new IllegalArgumentException("The envelope is malformed.");
+    }
+
+    return values;
+  }
+
+  /**
+   * Reads a big-endian length from an envelope, and ensures that the envelope holds as many bytes
+   * after it.
+   * 
+   * @param envelope The envelope.
+   * @param position The position of the length.
+   * @param size The size of the length, in bytes.
+   * 
+   * @return The length.
+   * 
+   * @throws IllegalArgumentException Thrown when the length or the bytes it counts are outside the
+   *         envelope.
+   */
+  private static int readLength(
+      byte[] envelope,
+      int position,
+      int size) {
+    if (size > envelope.length - position) {
+      throw new IllegalArgumentException("The envelope is malformed.");
+    }
+
+    long length = 0;
+
+    for (int i = 0; i < size; i++) {
+      length = length << 8 | (envelope[position + i] & 0xff);
+    }
+
+    if (length > envelope.length - position - size) {
+      throw new IllegalArgumentException("The envelope is malformed.");
+    }
+
+    return (int) length;
+  }
+}
@@ -0,0 +1,207 @@
+package net.craswell.security.annotationProcessors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+/**
+ * Tests the errors reported by the ConfidentialityProcessor class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class ConfidentialityProcessorTest {
+  /**
+   * Tests that a group named after a confidential field is reported on the grouped field.
+   */
+  @Test
+  public void groupNamedAfterFieldIsReported() {
+    List<String> errors = this.process(
+        "@Confidential private String pii;",
+        "@Confidential(group = \"pii\") private String name;");
+
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0).contains("group pii"));
+  }
+
+  /**
+   * Tests that groups whose names only differ by the case of their first letter are reported.
+   */
+  @Test
+  public void groupsCollidingOnAccessorNamesAreReported() {
+    List<String> errors = this.process(
+        "@Confidential(group = \"contact\") private String email;",
+        "@Confidential(group = \"Contact\") private String phone;");
+
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0).contains("group Contact"));
+  }
+
+  /**
+   * Tests that disabling the cache of a grouped field is reported.
+   */
+  @Test
+  public void uncachedGroupedFieldIsReported() {
+    List<String> errors = this.process(
+        "@Confidential(group = \"contact\", cache = false) private String email;");
+
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0).contains("cache = false"));
+  }
+
+  /**
+   * Tests that a group name which is not a Java identifier is reported.
+   */
+  @Test
+  public void invalidGroupNameIsReported() {
+    List<String> errors = this.process(
+        "@Confidential(group = \"contact-details\") private String email;");
+
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0).contains("not a Java identifier"));
+  }
+
+  /**
+   * Tests that an unknown encryption engine is reported.
+   */
+  @Test
+  public void unknownEngineIsReported() {
+    List<String> errors = this.process(
+        new String[] {"@Confidential private String name;"},
+        new String[] {"-Aconfidential.engine=aes-ctr"});
+
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0).contains("aes-ctr"));
+  }
+
+  /**
+   * Tests that an invalid processor option is reported.
+   */
+  @Test
+  public void invalidOptionIsReported() {
+    List<String> errors = this.process(
+        new String[] {"@Confidential private String name;"},
+        new String[] {"-Aconfidential.parallelism=many"});
+
+    assertEquals(1, errors.size());
+    assertTrue(errors.get(0).contains("confidential.parallelism"));
+  }
+
+  /**
+   * Tests that valid groups are not reported.
+   */
+  @Test
+  public void validGroupsAreNotReported() {
+    List<String> errors = this.process(
+        "@Confidential private String name;",
+        "@Confidential(group = \"contact\") private String email;",
+        "@Confidential(group = \"contact\") private String phone;");
+
+    assertTrue(errors.isEmpty());
+  }
+
+  /**
+   * Runs the processor on a template class.
+   * 
+   * @param fields The field declarations of the template class.
+   * 
+   * @return The error messages.
+   */
+  private List<String> process(
+      String... fields) {
+    return this.process(fields, new String[0]);
+  }
+
+  /**
+   * Runs the processor on a template class.
+   * 
+   * @param fields The field declarations of the template class.
+   * @param options The processor options, as -A arguments.
+   * 
+   * @return The error messages.
+   */
+  private List<String> process(
+      String[] fields,
+      String[] options) {
+    Path generatedSourceDirectory;
+
+    try {
+      generatedSourceDirectory = Files.createTempDirectory("confidentiality");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    String source = String.format(
+        "package com.acme;%n"
+            + "import net.craswell.security.annotations.Confidential;%n"
+            + "import net.craswell.security.annotations.RequiresConfidentiality;%n"
+            + "@RequiresConfidentiality%n"
+            + "public class Template {%n"
+            + "  %1$s%n"
+            + "}%n",
+        String.join(String.format("%n  "), fields));
+
+    JavaFileObject template = new SimpleJavaFileObject(
+        URI.create("string:///com/acme/Template.java"),
+        JavaFileObject.Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return source;
+      }
+    };
+
+    List<String> arguments = new ArrayList<String>(Arrays.asList(
+        "-proc:only",
+        "-s",
+        generatedSourceDirectory.toString(),
+        "-classpath",
+        System.getProperty("java.class.path")));
+    arguments.addAll(Arrays.asList(options));
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    JavaCompiler.CompilationTask task = compiler.getTask(
+        null,
+        null,
+        diagnostics,
+        arguments,
+        null,
+        Arrays.asList(template));
+
+    task.setProcessors(Arrays.asList(new ConfidentialityProcessor()));
+    task.call();
+
+    try (Stream<Path> generatedSources = Files.walk(generatedSourceDirectory)) {
+      generatedSources
+          .sorted(Comparator.reverseOrder())
+          .forEach(path -> path.toFile().delete());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    return diagnostics.getDiagnostics().stream()
+        .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+        .map(diagnostic -> diagnostic.getMessage(null))
+        .collect(Collectors.toList());
+  }
+}
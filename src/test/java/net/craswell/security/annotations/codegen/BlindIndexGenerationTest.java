@@ -0,0 +1,54 @@
+package net.craswell.security.annotations.codegen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+
+import net.craswell.common.encryption.PassphraseProvider;
+import net.craswell.security.annotations.codegen.model.generated.SearchableSampleSecured;
+
+/**
+ * Tests the blind indexes generated by the SecuredPojoGenerator class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class BlindIndexGenerationTest {
+  /**
+   * The passphrase provider.
+   */
+  private static final PassphraseProvider PASSPHRASE_PROVIDER = () -> "index passphrase";
+
+  /**
+   * Tests that setters keep the blind index matching the lookup token of the value.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted.
+   */
+  @Test
+  public void settersKeepIndexesMatchingLookupTokens() throws Exception {
+    SearchableSampleSecured sample = new SearchableSampleSecured();
+    sample.setPassphraseProvider(PASSPHRASE_PROVIDER);
+    sample.setSsn("123-45-6789");
+    sample.setEmail("someone@example.com");
+
+    assertEquals(
+        SearchableSampleSecured.computeSsnIndex("123-45-6789", PASSPHRASE_PROVIDER),
+        sample.getSsnIndex());
+    assertEquals(
+        SearchableSampleSecured.computeEmailIndex("someone@example.com", PASSPHRASE_PROVIDER),
+        sample.getEmailIndex());
+  }
+
+  /**
+   * Tests that equal values of different fields cannot be linked through their blind indexes.
+   * 
+   * @throws Exception Thrown when a token cannot be computed.
+   */
+  @Test
+  public void equalValuesOfDifferentFieldsHaveUnrelatedIndexes() throws Exception {
+    assertNotEquals(
+        SearchableSampleSecured.computeSsnIndex("123-45-6789", PASSPHRASE_PROVIDER),
+        SearchableSampleSecured.computeTaxNumberIndex("123-45-6789", PASSPHRASE_PROVIDER));
+  }
+}
@@ -0,0 +1,138 @@
+package net.craswell.security.annotations.codegen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.craswell.common.encryption.PassphraseProvider;
+import net.craswell.security.annotations.codegen.model.generated.BulkSampleSecured;
+
+/**
+ * Tests the bulk operations generated by the SecuredPojoGenerator class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class BulkOperationGenerationTest {
+  /**
+   * The number of entities of each test.
+   */
+  private static final int ENTITY_COUNT = 200;
+
+  /**
+   * The number of passphrases supplied, i.e. of values encrypted or decrypted.
+   */
+  private final AtomicInteger passphraseCount = new AtomicInteger();
+
+  /**
+   * The passphrase provider counting the passphrases it supplies.
+   */
+  private final PassphraseProvider passphraseProvider = () -> {
+    this.passphraseCount.incrementAndGet();
+
+    return "bulk passphrase";
+  };
+
+  /**
+   * The entities under test, none of which has decrypted its values yet.
+   */
+  private List<BulkSampleSecured> entities;
+
+  /**
+   * Creates the entities under test.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted.
+   */
+  @Before
+  public void setUp() throws Exception {
+    BulkSampleSecured template = new BulkSampleSecured();
+    template.setPassphraseProvider(this.passphraseProvider);
+    template.setName("name");
+    template.setNotes("notes");
+    template.setEmail("someone@example.com");
+    template.setPhone("555-0100");
+
+    this.entities = new ArrayList<BulkSampleSecured>();
+
+    for (int i = 0; i < ENTITY_COUNT; i++) {
+      BulkSampleSecured entity = new BulkSampleSecured();
+      entity.setPassphraseProvider(this.passphraseProvider);
+      entity.setNameSecured(template.getNameSecured());
+      entity.setNotesSecured(template.getNotesSecured());
+      entity.setContactSecured(template.getContactSecured());
+      this.entities.add(entity);
+    }
+
+    this.passphraseCount.set(0);
+  }
+
+  /**
+   * Tests that decrypting every field leaves nothing to decrypt for the getters of cached fields
+   * and groups.
+   * 
+   * @throws Exception Thrown when a value cannot be decrypted.
+   */
+  @Test
+  public void decryptAllDecryptsCachedFieldsAndGroups() throws Exception {
+    BulkSampleSecured.decryptAll(this.entities);
+    this.passphraseCount.set(0);
+
+    for (BulkSampleSecured entity : this.entities) {
+      assertEquals("name", entity.getName());
+      assertEquals("someone@example.com", entity.getEmail());
+      assertEquals("555-0100", entity.getPhone());
+    }
+
+    assertEquals(0, this.passphraseCount.get());
+  }
+
+  /**
+   * Tests that decrypting selected fields leaves the other fields encrypted, and that a grouped
+   * field selects its group.
+   * 
+   * @throws Exception Thrown when a value cannot be decrypted.
+   */
+  @Test
+  public void decryptAllDecryptsSelectedFields() throws Exception {
+    BulkSampleSecured.decryptAll(this.entities, "phone");
+    this.passphraseCount.set(0);
+
+    for (BulkSampleSecured entity : this.entities) {
+      assertEquals("someone@example.com", entity.getEmail());
+    }
+
+    assertEquals(0, this.passphraseCount.get());
+
+    for (BulkSampleSecured entity : this.entities) {
+      assertEquals("name", entity.getName());
+    }
+
+    assertTrue(this.passphraseCount.get() >= ENTITY_COUNT);
+  }
+
+  /**
+   * Tests that a field whose decrypted value is not cached cannot be decrypted in bulk.
+   * 
+   * @throws Exception Thrown when the field is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void decryptAllRejectsUncachedFields() throws Exception {
+    BulkSampleSecured.decryptAll(this.entities, "notes");
+  }
+
+  /**
+   * Tests that a name which is no confidential field or group is rejected.
+   * 
+   * @throws Exception Thrown when the name is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void decryptAllRejectsUnknownFields() throws Exception {
+    BulkSampleSecured.decryptAll(this.entities, "nmae");
+  }
+}
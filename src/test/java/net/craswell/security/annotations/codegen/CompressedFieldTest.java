@@ -0,0 +1,91 @@
+package net.craswell.security.annotations.codegen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import net.craswell.common.encryption.PassphraseProvider;
+import net.craswell.security.annotations.codegen.model.generated.CompressedSampleSecured;
+import net.craswell.security.annotations.codegen.model.generated.UncompressedSampleSecured;
+
+/**
+ * Tests the compressed confidential fields generated by the SecuredPojoGenerator class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class CompressedFieldTest {
+  /**
+   * The passphrase provider.
+   */
+  private static final PassphraseProvider PASSPHRASE_PROVIDER = () -> "compression passphrase";
+
+  /**
+   * A value long and repetitive enough to be compressed.
+   */
+  private static final String NOTES = String.format("%0200d", 0).replace("0", "note ");
+
+  /**
+   * Tests that compressed values round trip.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted or decrypted.
+   */
+  @Test
+  public void compressedValuesRoundTrip() throws Exception {
+    CompressedSampleSecured sample = new CompressedSampleSecured();
+    sample.setPassphraseProvider(PASSPHRASE_PROVIDER);
+    sample.setNotes(NOTES);
+    sample.setCount(7L);
+
+    CompressedSampleSecured reloaded = new CompressedSampleSecured();
+    reloaded.setPassphraseProvider(PASSPHRASE_PROVIDER);
+    reloaded.setNotesSecured(sample.getNotesSecured());
+    reloaded.setCountSecured(sample.getCountSecured());
+
+    assertEquals(NOTES, reloaded.getNotes());
+    assertEquals(Long.valueOf(7L), reloaded.getCount());
+  }
+
+  /**
+   * Tests that values compressed before compression was turned off remain readable.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted or decrypted.
+   */
+  @Test
+  public void compressedValuesRemainReadableWithoutCompression() throws Exception {
+    CompressedSampleSecured compressed = new CompressedSampleSecured();
+    compressed.setPassphraseProvider(PASSPHRASE_PROVIDER);
+    compressed.setNotes(NOTES);
+    compressed.setCount(null);
+
+    UncompressedSampleSecured uncompressed = new UncompressedSampleSecured();
+    uncompressed.setPassphraseProvider(PASSPHRASE_PROVIDER);
+    uncompressed.setNotesSecured(compressed.getNotesSecured());
+    uncompressed.setCountSecured(compressed.getCountSecured());
+
+    assertEquals(NOTES, uncompressed.getNotes());
+    assertNull(uncompressed.getCount());
+  }
+
+  /**
+   * Tests that values written without compression are read by a compressed field.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted or decrypted.
+   */
+  @Test
+  public void uncompressedValuesAreReadByCompressedFields() throws Exception {
+    UncompressedSampleSecured uncompressed = new UncompressedSampleSecured();
+    uncompressed.setPassphraseProvider(PASSPHRASE_PROVIDER);
+    uncompressed.setNotes(NOTES);
+    uncompressed.setCount(3L);
+
+    CompressedSampleSecured compressed = new CompressedSampleSecured();
+    compressed.setPassphraseProvider(PASSPHRASE_PROVIDER);
+    compressed.setNotesSecured(uncompressed.getNotesSecured());
+    compressed.setCountSecured(uncompressed.getCountSecured());
+
+    assertEquals(NOTES, compressed.getNotes());
+    assertEquals(Long.valueOf(3L), compressed.getCount());
+  }
+}
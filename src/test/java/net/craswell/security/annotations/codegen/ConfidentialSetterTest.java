@@ -0,0 +1,156 @@
+package net.craswell.security.annotations.codegen;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.craswell.common.encryption.PassphraseProvider;
+import net.craswell.security.annotations.codegen.model.generated.SetterSampleSecured;
+
+/**
+ * Tests the confidential setters generated by the SecuredPojoGenerator class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class ConfidentialSetterTest {
+  /**
+   * The passphrase provider.
+   */
+  private static final PassphraseProvider PASSPHRASE_PROVIDER = () -> "setter passphrase";
+
+  /**
+   * The entity under test.
+   */
+  private SetterSampleSecured sample;
+
+  /**
+   * Creates the entity under test.
+   */
+  @Before
+  public void setUp() {
+    this.sample = new SetterSampleSecured();
+    this.sample.setPassphraseProvider(PASSPHRASE_PROVIDER);
+  }
+
+  /**
+   * Tests that setting an equal value keeps the existing ciphertext.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted.
+   */
+  @Test
+  public void setterKeepsCiphertextOfEqualValue() throws Exception {
+    this.sample.setName("name");
+    String nameSecured = this.sample.getNameSecured();
+
+    this.sample.setName(new String("name"));
+
+    assertSame(nameSecured, this.sample.getNameSecured());
+
+    this.sample.setTags(new ArrayList<String>(Arrays.asList("a")));
+    String tagsSecured = this.sample.getTagsSecured();
+
+    this.sample.setTags(new ArrayList<String>(Arrays.asList("a")));
+
+    assertSame(tagsSecured, this.sample.getTagsSecured());
+  }
+
+  /**
+   * Tests that a collection changed in place after being read is encrypted again when set.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted.
+   */
+  @Test
+  public void setterEncryptsCollectionChangedInPlace() throws Exception {
+    this.sample.setTags(new ArrayList<String>(Arrays.asList("a")));
+    String tagsSecured = this.sample.getTagsSecured();
+
+    List<String> tags = this.sample.getTags();
+    tags.add("b");
+    this.sample.setTags(tags);
+
+    assertNotEquals(tagsSecured, this.sample.getTagsSecured());
+    assertEquals(Arrays.asList("a", "b"), this.reload().getTags());
+  }
+
+  /**
+   * Tests that an array changed in place after being read is encrypted again when set.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted.
+   */
+  @Test
+  public void setterEncryptsArrayChangedInPlace() throws Exception {
+    this.sample.setData(new byte[] { 1, 2, 3 });
+
+    byte[] data = this.sample.getData();
+    data[0] = 9;
+    this.sample.setData(data);
+
+    assertArrayEquals(new byte[] { 9, 2, 3 }, this.reload().getData());
+  }
+
+  /**
+   * Tests that a grouped collection changed in place after being read is sealed again when set.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted.
+   */
+  @Test
+  public void groupSetterSealsCollectionChangedInPlace() throws Exception {
+    this.sample.setGroupedName("name");
+    this.sample.setGroupedTags(new ArrayList<String>(Arrays.asList("a")));
+
+    List<String> groupedTags = this.sample.getGroupedTags();
+    groupedTags.add("b");
+    this.sample.setGroupedTags(groupedTags);
+
+    SetterSampleSecured reloaded = this.reload();
+
+    assertEquals(Arrays.asList("a", "b"), reloaded.getGroupedTags());
+    assertEquals("name", reloaded.getGroupedName());
+  }
+
+  /**
+   * Tests that the secured values read after replacing stored values hold the new values, even when
+   * the setters only record them until the entity is sealed.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted.
+   */
+  @Test
+  public void securedGettersReturnValuesSetSinceLastSeal() throws Exception {
+    this.sample.setName("name");
+    this.sample.setGroupedName("name");
+    this.sample = this.reload();
+
+    this.sample.setName("other name");
+    this.sample.setGroupedName("other name");
+
+    SetterSampleSecured reloaded = this.reload();
+
+    assertEquals("other name", reloaded.getName());
+    assertEquals("other name", reloaded.getGroupedName());
+  }
+
+  /**
+   * Copies the secured values of the entity under test into a new entity, as a reload would.
+   * 
+   * @return The new entity.
+   */
+  private SetterSampleSecured reload() {
+    SetterSampleSecured reloaded = new SetterSampleSecured();
+    reloaded.setPassphraseProvider(PASSPHRASE_PROVIDER);
+    reloaded.setNameSecured(this.sample.getNameSecured());
+    reloaded.setTagsSecured(this.sample.getTagsSecured());
+    reloaded.setDataSecured(this.sample.getDataSecured());
+    reloaded.setPairSecured(this.sample.getPairSecured());
+
+    return reloaded;
+  }
+}
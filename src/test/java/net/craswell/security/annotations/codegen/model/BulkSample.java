@@ -0,0 +1,37 @@
+package net.craswell.security.annotations.codegen.model;
+
+import net.craswell.security.annotations.Confidential;
+import net.craswell.security.annotations.RequiresConfidentiality;
+
+/**
+ * Template of the secured class used to test generated bulk operations.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+@RequiresConfidentiality
+public class BulkSample {
+  /**
+   * A confidential value whose decrypted value is cached.
+   */
+  @Confidential
+  private String name;
+
+  /**
+   * A confidential value decrypted by each call of its getter.
+   */
+  @Confidential(cache = false)
+  private String notes;
+
+  /**
+   * A grouped confidential value.
+   */
+  @Confidential(group = "contact")
+  private String email;
+
+  /**
+   * A grouped confidential value.
+   */
+  @Confidential(group = "contact")
+  private String phone;
+}
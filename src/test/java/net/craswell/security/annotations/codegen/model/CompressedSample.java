@@ -0,0 +1,31 @@
+package net.craswell.security.annotations.codegen.model;
+
+import net.craswell.security.annotations.Confidential;
+import net.craswell.security.annotations.RequiresConfidentiality;
+
+/**
+ * Template of the secured class used to test compressed confidential fields.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+@RequiresConfidentiality
+public class CompressedSample {
+  /**
+   * A compressed confidential value.
+   */
+  @Confidential(compress = true, compressionThreshold = 64)
+  private String notes;
+
+  /**
+   * A compressed boxed confidential value.
+   */
+  @Confidential(compress = true, compressionThreshold = 0)
+  private Long count;
+
+  /**
+   * A grouped confidential value.
+   */
+  @Confidential(group = "details", compress = true, compressionThreshold = 0)
+  private String title;
+}
@@ -0,0 +1,37 @@
+package net.craswell.security.annotations.codegen.model;
+
+import net.craswell.security.annotations.Confidential;
+import net.craswell.security.annotations.RequiresConfidentiality;
+
+/**
+ * Template of the secured class used to test generated blind indexes.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+@RequiresConfidentiality
+public class SearchableSample {
+  /**
+   * A searchable confidential value.
+   */
+  @Confidential(searchable = true)
+  private String ssn;
+
+  /**
+   * Another searchable confidential value.
+   */
+  @Confidential(searchable = true)
+  private String taxNumber;
+
+  /**
+   * A searchable grouped confidential value.
+   */
+  @Confidential(group = "contact", searchable = true)
+  private String email;
+
+  /**
+   * A grouped confidential value.
+   */
+  @Confidential(group = "contact")
+  private String phone;
+}
@@ -0,0 +1,45 @@
+package net.craswell.security.annotations.codegen.model;
+
+import java.util.List;
+
+import net.craswell.security.annotations.Confidential;
+import net.craswell.security.annotations.RequiresConfidentiality;
+
+/**
+ * Template of the secured class used to test generated confidential setters.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+@RequiresConfidentiality
+public class SetterSample {
+  /**
+   * A confidential immutable value.
+   */
+  @Confidential
+  private String name;
+
+  /**
+   * A confidential collection.
+   */
+  @Confidential
+  private List<String> tags;
+
+  /**
+   * A confidential array.
+   */
+  @Confidential
+  private byte[] data;
+
+  /**
+   * A grouped confidential collection.
+   */
+  @Confidential(group = "pair")
+  private List<String> groupedTags;
+
+  /**
+   * A grouped confidential immutable value.
+   */
+  @Confidential(group = "pair")
+  private String groupedName;
+}
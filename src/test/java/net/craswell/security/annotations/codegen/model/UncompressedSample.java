@@ -0,0 +1,31 @@
+package net.craswell.security.annotations.codegen.model;
+
+import net.craswell.security.annotations.Confidential;
+import net.craswell.security.annotations.RequiresConfidentiality;
+
+/**
+ * Template of the secured class used to test confidential fields whose compression was turned off.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+@RequiresConfidentiality
+public class UncompressedSample {
+  /**
+   * A confidential value.
+   */
+  @Confidential
+  private String notes;
+
+  /**
+   * A boxed confidential value.
+   */
+  @Confidential
+  private Long count;
+
+  /**
+   * A grouped confidential value.
+   */
+  @Confidential(group = "details")
+  private String title;
+}
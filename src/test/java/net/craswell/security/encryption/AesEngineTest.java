@@ -0,0 +1,160 @@
+package net.craswell.security.encryption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+/**
+ * Tests the AesEngine class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class AesEngineTest {
+  /**
+   * The number of values tried by the tests expecting every value to be rejected.
+   */
+  private static final int ATTEMPTS = 2000;
+
+  /**
+   * The engine under test.
+   */
+  private final AesEngine engine = AesEngine.getInstance();
+
+  /**
+   * Tests that ciphertext starts with a header identifying the key.
+   * 
+   * @throws Exception Thrown when the value cannot be encrypted.
+   */
+  @Test
+  public void encryptWritesHeader() throws Exception {
+    SecretKey key = createKey(1);
+    byte[] ciphertext = this.engine.encrypt(new byte[] {1, 2, 3}, key);
+
+    assertTrue(CiphertextHeader.isPresent(ciphertext));
+    assertTrue(CiphertextHeader.isEncryptedWith(ciphertext, key));
+    assertFalse(CiphertextHeader.isEncryptedWith(ciphertext, createKey(2)));
+    assertEquals(this.engine.getMaximumCiphertextLength(3), ciphertext.length);
+  }
+
+  /**
+   * Tests that values round trip through both the array and the buffer methods.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted or decrypted.
+   */
+  @Test
+  public void encryptedValuesRoundTrip() throws Exception {
+    SecretKey key = createKey(1);
+    byte[] plaintext = "confidential value".getBytes(StandardCharsets.UTF_8);
+
+    assertArrayEquals(plaintext, this.engine.decrypt(this.engine.encrypt(plaintext, key), key));
+
+    ByteBuffer ciphertext =
+        ByteBuffer.allocate(this.engine.getMaximumCiphertextLength(plaintext.length));
+    this.engine.encrypt(ByteBuffer.wrap(plaintext), ciphertext, key);
+    ciphertext.flip();
+
+    ByteBuffer decrypted = ByteBuffer.allocate(ciphertext.remaining());
+    this.engine.decrypt(ciphertext, decrypted, key);
+
+    assertArrayEquals(plaintext, Arrays.copyOf(decrypted.array(), decrypted.position()));
+  }
+
+  /**
+   * Tests that values without a header are reported as legacy values rather than decrypted, however
+   * their padding happens to decrypt.
+   * 
+   * @throws Exception Thrown when the key cannot be created.
+   */
+  @Test
+  public void decryptRejectsValuesWithoutHeader() throws Exception {
+    SecretKey key = createKey(1);
+    Random random = new Random(42L);
+
+    for (int i = 0; i < ATTEMPTS; i++) {
+      byte[] legacyValue = new byte[48];
+      random.nextBytes(legacyValue);
+
+      try {
+        this.engine.decrypt(legacyValue, key);
+        fail("A value without a header should not have been decrypted.");
+      } catch (LegacyCiphertextException e) {
+        // Expected.
+      }
+    }
+  }
+
+  /**
+   * Tests that values encrypted with another key are rejected rather than decrypted into garbage.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted.
+   */
+  @Test
+  public void decryptRejectsValuesOfAnotherKey() throws Exception {
+    SecretKey key = createKey(1);
+    SecretKey otherKey = createKey(2);
+
+    for (int i = 0; i < ATTEMPTS; i++) {
+      byte[] ciphertext = this.engine.encrypt(new byte[] {(byte) i}, otherKey);
+
+      try {
+        this.engine.decrypt(ciphertext, key);
+        fail("A value of another key should not have been decrypted.");
+      } catch (LegacyCiphertextException e) {
+        fail("A value of another key should not have been taken for a legacy value.");
+      } catch (EncryptionException e) {
+        // Expected.
+      }
+    }
+  }
+
+  /**
+   * Tests that each built-in engine decrypts the ciphertext of the other, so that a class can change
+   * its engine without making its existing values unreadable.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted or decrypted.
+   */
+  @Test
+  public void enginesReadEachOthersCiphertext() throws Exception {
+    SecretKey key = createKey(1);
+    byte[] plaintext = "confidential value".getBytes(StandardCharsets.UTF_8);
+    AesGcmEngine gcmEngine = AesGcmEngine.getInstance();
+
+    for (int i = 0; i < ATTEMPTS; i++) {
+      assertArrayEquals(plaintext, this.engine.decrypt(gcmEngine.encrypt(plaintext, key), key));
+      assertArrayEquals(plaintext, gcmEngine.decrypt(this.engine.encrypt(plaintext, key), key));
+    }
+
+    ByteBuffer ciphertext = ByteBuffer.wrap(gcmEngine.encrypt(plaintext, key));
+    ByteBuffer decrypted = ByteBuffer.allocate(ciphertext.remaining());
+    this.engine.decrypt(ciphertext, decrypted, key);
+
+    assertArrayEquals(plaintext, Arrays.copyOf(decrypted.array(), decrypted.position()));
+  }
+
+  /**
+   * Creates an AES key.
+   * 
+   * @param seed The seed of the key bytes.
+   * 
+   * @return The key.
+   */
+  static SecretKey createKey(int seed) {
+    byte[] keyBytes = new byte[32];
+    new Random(seed).nextBytes(keyBytes);
+
+    return new SecretKeySpec(keyBytes, "AES");
+  }
+}
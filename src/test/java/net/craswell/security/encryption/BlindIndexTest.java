@@ -0,0 +1,71 @@
+package net.craswell.security.encryption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.crypto.SecretKey;
+
+import org.junit.Test;
+
+/**
+ * Tests the BlindIndex class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class BlindIndexTest {
+  /**
+   * The encoded value indexed.
+   */
+  private static final byte[] VALUE = "123-45-6789".getBytes(StandardCharsets.UTF_8);
+
+  /**
+   * Tests that equal values of a field produce equal tokens.
+   * 
+   * @throws Exception Thrown when a token cannot be computed.
+   */
+  @Test
+  public void computeIsDeterministicForAField() throws Exception {
+    SecretKey key = DerivedKeyCache.getDefault().getKey("index passphrase");
+
+    assertEquals(
+        BlindIndex.compute(VALUE, key, "com.acme.Customer", "ssn"),
+        BlindIndex.compute(VALUE.clone(), key, "com.acme.Customer", "ssn"));
+  }
+
+  /**
+   * Tests that equal values of different fields or classes produce unrelated tokens.
+   * 
+   * @throws Exception Thrown when a token cannot be computed.
+   */
+  @Test
+  public void computeBindsTokensToTheClassAndField() throws Exception {
+    SecretKey key = DerivedKeyCache.getDefault().getKey("index passphrase");
+    String token = BlindIndex.compute(VALUE, key, "com.acme.Customer", "ssn");
+
+    assertNotEquals(token, BlindIndex.compute(VALUE, key, "com.acme.Customer", "taxNumber"));
+    assertNotEquals(token, BlindIndex.compute(VALUE, key, "com.acme.Employee", "ssn"));
+  }
+
+  /**
+   * Tests that tokens depend on the encryption key.
+   * 
+   * @throws Exception Thrown when a token cannot be computed.
+   */
+  @Test
+  public void computeDependsOnTheKey() throws Exception {
+    assertNotEquals(
+        BlindIndex.compute(
+            VALUE,
+            DerivedKeyCache.getDefault().getKey("index passphrase"),
+            "com.acme.Customer",
+            "ssn"),
+        BlindIndex.compute(
+            VALUE,
+            DerivedKeyCache.getDefault().getKey("other passphrase"),
+            "com.acme.Customer",
+            "ssn"));
+  }
+}
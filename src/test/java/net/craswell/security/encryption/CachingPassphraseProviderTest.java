@@ -0,0 +1,172 @@
+package net.craswell.security.encryption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import net.craswell.common.encryption.PassphraseProvider;
+
+/**
+ * Tests the CachingPassphraseProvider class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class CachingPassphraseProviderTest {
+  /**
+   * Tests that the passphrase is obtained once within its time to live.
+   */
+  @Test
+  public void cachesPassphraseWithinTimeToLive() {
+    CountingPassphraseProvider provider = new CountingPassphraseProvider();
+    CachingPassphraseProvider cachingProvider = new CachingPassphraseProvider(provider, 60000L);
+
+    assertEquals("passphrase", cachingProvider.getPassphrase());
+    assertEquals("passphrase", cachingProvider.getPassphrase());
+
+    assertEquals(1, provider.loadCount.get());
+    assertEquals(1L, cachingProvider.getLoadCount());
+    assertEquals(1L, cachingProvider.getHitCount());
+  }
+
+  /**
+   * Tests that an expired passphrase is obtained again.
+   * 
+   * @throws InterruptedException Thrown when the test is interrupted.
+   */
+  @Test
+  public void reloadsExpiredPassphrase() throws InterruptedException {
+    CountingPassphraseProvider provider = new CountingPassphraseProvider();
+    CachingPassphraseProvider cachingProvider = new CachingPassphraseProvider(
+        provider,
+        20L,
+        20L,
+        Runnable::run);
+
+    cachingProvider.getPassphrase();
+    Thread.sleep(40L);
+    cachingProvider.getPassphrase();
+
+    assertEquals(2, provider.loadCount.get());
+  }
+
+  /**
+   * Tests that an invalidated passphrase is obtained again.
+   */
+  @Test
+  public void reloadsInvalidatedPassphrase() {
+    CountingPassphraseProvider provider = new CountingPassphraseProvider();
+    CachingPassphraseProvider cachingProvider = new CachingPassphraseProvider(provider, 60000L);
+
+    cachingProvider.getPassphrase();
+    cachingProvider.invalidate();
+    cachingProvider.getPassphrase();
+
+    assertEquals(2, provider.loadCount.get());
+  }
+
+  /**
+   * Tests that a passphrase past its refresh time is returned while it is refreshed in the
+   * background, and that an unchanged passphrase keeps the cached instance.
+   */
+  @Test
+  public void refreshesInBackground() {
+    CountingPassphraseProvider provider = new CountingPassphraseProvider();
+    List<Runnable> tasks = new ArrayList<Runnable>();
+    CachingPassphraseProvider cachingProvider = new CachingPassphraseProvider(
+        provider,
+        60000L,
+        0L,
+        tasks::add);
+
+    String passphrase = cachingProvider.getPassphrase();
+
+    assertSame(passphrase, cachingProvider.getPassphrase());
+    assertSame(passphrase, cachingProvider.getPassphrase());
+    assertEquals(1, tasks.size());
+    assertEquals(1, provider.loadCount.get());
+
+    tasks.get(0).run();
+
+    assertEquals(2, provider.loadCount.get());
+    assertSame(passphrase, cachingProvider.getPassphrase());
+  }
+
+  /**
+   * Tests that every caller sharing a provider gets the same caching provider, however many
+   * providers are shared.
+   */
+  @Test
+  public void sharesOneCachingProviderPerProvider() {
+    List<PassphraseProvider> providers = new ArrayList<PassphraseProvider>();
+    List<CachingPassphraseProvider> cachingProviders = new ArrayList<CachingPassphraseProvider>();
+
+    for (int i = 0; i < 100; i++) {
+      PassphraseProvider provider = new CountingPassphraseProvider();
+
+      providers.add(provider);
+      cachingProviders.add(CachingPassphraseProvider.shared(provider, 60000L));
+    }
+
+    for (int i = 0; i < providers.size(); i++) {
+      assertSame(
+          cachingProviders.get(i),
+          CachingPassphraseProvider.shared(providers.get(i), 60000L));
+    }
+
+    assertNotSame(cachingProviders.get(0), cachingProviders.get(1));
+  }
+
+  /**
+   * Tests that a caching provider is shared as it is.
+   */
+  @Test
+  public void sharesCachingProviderAsItIs() {
+    CachingPassphraseProvider cachingProvider = new CachingPassphraseProvider(
+        new CountingPassphraseProvider(),
+        60000L);
+
+    assertSame(cachingProvider, CachingPassphraseProvider.shared(cachingProvider, 1000L));
+  }
+
+  /**
+   * Tests that sharing a provider with another time to live is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsConflictingTimeToLive() {
+    PassphraseProvider provider = new CountingPassphraseProvider();
+
+    CachingPassphraseProvider.shared(provider, 60000L);
+    CachingPassphraseProvider.shared(provider, 1000L);
+  }
+
+  /**
+   * A provider counting how many times its passphrase is obtained, returning a new instance of an
+   * equal passphrase each time.
+   */
+  private static final class CountingPassphraseProvider
+      implements PassphraseProvider {
+    /**
+     * The number of times the passphrase was obtained.
+     */
+    private final AtomicInteger loadCount = new AtomicInteger();
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see net.craswell.common.encryption.PassphraseProvider#getPassphrase()
+     */
+    @Override
+    public String getPassphrase() {
+      this.loadCount.incrementAndGet();
+
+      return new String("passphrase");
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package net.craswell.security.encryption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Base64;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+
+import org.junit.Test;
+
+/**
+ * Tests the CryptoBuffers class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class CryptoBuffersTest {
+  /**
+   * Tests that values of every size, including values larger than the reused buffers, round trip.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted or decrypted.
+   */
+  @Test
+  public void encryptedValuesRoundTrip() throws Exception {
+    EncryptionEngine engine = AesEngine.getInstance();
+    SecretKey key = DerivedKeyCache.getDefault().getKey("buffers passphrase");
+    Random random = new Random(42L);
+
+    for (int length : new int[] {0, 1, 2, 3, 1023, 1024, 70000, 200000, 5}) {
+      byte[] plaintext = new byte[length];
+      random.nextBytes(plaintext);
+
+      String ciphertext = CryptoBuffers.encryptToBase64(engine, plaintext, key);
+
+      assertArrayEquals(plaintext, CryptoBuffers.decryptBase64(engine, ciphertext, key));
+      assertArrayEquals(
+          plaintext,
+          engine.decrypt(Base64.getDecoder().decode(ciphertext), key));
+    }
+  }
+
+  /**
+   * Tests that ciphertext encrypted without the buffers is decrypted.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted or decrypted.
+   */
+  @Test
+  public void decryptBase64ReadsCiphertextOfTheEngine() throws Exception {
+    EncryptionEngine engine = AesEngine.getInstance();
+    SecretKey key = DerivedKeyCache.getDefault().getKey("buffers passphrase");
+    byte[] plaintext = "confidential value".getBytes("UTF-8");
+
+    assertArrayEquals(
+        plaintext,
+        CryptoBuffers.decryptBase64(
+            engine,
+            Base64.getEncoder().encodeToString(engine.encrypt(plaintext, key)),
+            key));
+  }
+
+  /**
+   * Tests that the Base64 written and read through the buffers is the Base64 of java.util.Base64,
+   * padded or not.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted or decrypted.
+   */
+  @Test
+  public void base64MatchesJavaUtilBase64() throws Exception {
+    EncryptionEngine engine = AesEngine.getInstance();
+    SecretKey key = DerivedKeyCache.getDefault().getKey("buffers passphrase");
+    Random random = new Random(7L);
+
+    for (int length = 0; length < 64; length++) {
+      byte[] plaintext = new byte[length];
+      random.nextBytes(plaintext);
+
+      String ciphertext = CryptoBuffers.encryptToBase64(engine, plaintext, key);
+      byte[] ciphertextBytes = Base64.getDecoder().decode(ciphertext);
+
+      assertEquals(Base64.getEncoder().encodeToString(ciphertextBytes), ciphertext);
+      assertArrayEquals(
+          plaintext,
+          CryptoBuffers.decryptBase64(
+              engine,
+              Base64.getEncoder().withoutPadding().encodeToString(ciphertextBytes),
+              key));
+    }
+  }
+
+  /**
+   * Tests that characters outside of ASCII are rejected rather than truncated into Base64.
+   * 
+   * @throws Exception Thrown when the value cannot be decrypted.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void decryptBase64RejectsCharactersOutsideOfAscii() throws Exception {
+    CryptoBuffers.decryptBase64(
+        AesEngine.getInstance(),
+        "\u0141AAA",
+        DerivedKeyCache.getDefault().getKey("buffers passphrase"));
+  }
+
+  /**
+   * Tests that padding is rejected unless it completes the last group of four characters.
+   * 
+   * @throws Exception Thrown when the value cannot be decrypted.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void decryptBase64RejectsIncompletePadding() throws Exception {
+    CryptoBuffers.decryptBase64(
+        AesEngine.getInstance(),
+        "QUJDRA=",
+        DerivedKeyCache.getDefault().getKey("buffers passphrase"));
+  }
+
+  /**
+   * Tests that text which is not Base64 is rejected.
+   * 
+   * @throws Exception Thrown when the value cannot be decrypted.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void decryptBase64RejectsInvalidText() throws Exception {
+    CryptoBuffers.decryptBase64(
+        AesEngine.getInstance(),
+        "not*base64",
+        DerivedKeyCache.getDefault().getKey("buffers passphrase"));
+  }
+}
@@ -0,0 +1,168 @@
+package net.craswell.security.encryption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.SecretKey;
+
+import org.junit.Test;
+
+/**
+ * Tests the DerivedKeyCache class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class DerivedKeyCacheTest {
+  /**
+   * The number of threads looking up keys at once.
+   */
+  private static final int THREAD_COUNT = 8;
+
+  /**
+   * Tests that a cached key is returned for equal passphrases.
+   * 
+   * @throws Exception Thrown when the key cannot be derived.
+   */
+  @Test
+  public void getKeyReturnsCachedKeyForEqualPassphrases() throws Exception {
+    DerivedKeyCache cache = new DerivedKeyCache(4, 60000L);
+
+    SecretKey key = cache.getKey(new String("passphrase"));
+
+    assertSame(key, cache.getKey(new String("passphrase")));
+    assertSame(key, cache.getKey("passphrase".toCharArray()));
+    assertEquals(1L, cache.getMissCount());
+    assertEquals(2L, cache.getHitCount());
+  }
+
+  /**
+   * Tests that different passphrases derive different keys.
+   * 
+   * @throws Exception Thrown when the key cannot be derived.
+   */
+  @Test
+  public void getKeyDerivesDifferentKeysForDifferentPassphrases() throws Exception {
+    DerivedKeyCache cache = new DerivedKeyCache(4, 60000L);
+
+    assertNotEquals(cache.getKey("first"), cache.getKey("second"));
+    assertEquals(2, cache.size());
+  }
+
+  /**
+   * Tests that threads asking for the same passphrase at once share a single derivation.
+   * 
+   * @throws Exception Thrown when the key cannot be derived.
+   */
+  @Test
+  public void getKeyDerivesOnceForConcurrentLookups() throws Exception {
+    DerivedKeyCache cache = new DerivedKeyCache(4, 60000L);
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+
+    try {
+      List<Future<SecretKey>> keys = new ArrayList<Future<SecretKey>>();
+
+      for (int i = 0; i < THREAD_COUNT; i++) {
+        keys.add(executor.submit((Callable<SecretKey>) () -> {
+          start.await();
+          return cache.getKey(new String("shared passphrase"));
+        }));
+      }
+
+      start.countDown();
+
+      SecretKey key = keys.get(0).get();
+
+      for (Future<SecretKey> otherKey : keys) {
+        assertSame(key, otherKey.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(1L, cache.getMissCount());
+    assertEquals(THREAD_COUNT - 1L, cache.getHitCount());
+  }
+
+  /**
+   * Tests that an invalidated key is derived again.
+   * 
+   * @throws Exception Thrown when the key cannot be derived.
+   */
+  @Test
+  public void invalidateDiscardsCachedKey() throws Exception {
+    DerivedKeyCache cache = new DerivedKeyCache(4, 60000L);
+    String passphrase = "passphrase";
+
+    SecretKey key = cache.getKey(passphrase);
+    cache.invalidate(passphrase);
+
+    assertEquals(key, cache.getKey(passphrase));
+    assertEquals(2L, cache.getMissCount());
+  }
+
+  /**
+   * Tests that a key whose derivation was in flight when it was invalidated is returned to the
+   * thread deriving it, but not cached.
+   * 
+   * @throws Exception Thrown when the key cannot be derived.
+   */
+  @Test
+  public void invalidateKeepsDerivationInFlightFromCachingKey() throws Exception {
+    DerivedKeyCache cache = new DerivedKeyCache(4, 60000L);
+    String passphrase = "passphrase";
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try {
+      Future<SecretKey> key = executor.submit(() -> cache.getKey(passphrase));
+
+      while (cache.getMissCount() == 0L) {
+        Thread.yield();
+      }
+
+      cache.invalidate(passphrase);
+
+      assertNotNull(key.get());
+      assertEquals(0, cache.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * Tests that invalidating every key keeps derivations in flight from caching their keys.
+   * 
+   * @throws Exception Thrown when the key cannot be derived.
+   */
+  @Test
+  public void invalidateAllKeepsDerivationsInFlightFromCachingKeys() throws Exception {
+    DerivedKeyCache cache = new DerivedKeyCache(4, 60000L);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    try {
+      Future<SecretKey> key = executor.submit(() -> cache.getKey("passphrase"));
+
+      while (cache.getMissCount() == 0L) {
+        Thread.yield();
+      }
+
+      cache.invalidateAll();
+
+      assertNotNull(key.get());
+      assertEquals(0, cache.size());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
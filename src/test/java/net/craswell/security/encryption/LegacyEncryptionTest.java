@@ -0,0 +1,59 @@
+package net.craswell.security.encryption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import net.craswell.common.encryption.AesTool;
+import net.craswell.common.encryption.AesToolImpl;
+
+/**
+ * Tests the LegacyEncryption class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class LegacyEncryptionTest {
+  /**
+   * The passphrase.
+   */
+  private static final String PASSPHRASE = "legacy passphrase";
+
+  /**
+   * Tests that values written by the legacy encryption tool are decrypted.
+   * 
+   * @throws Exception Thrown when the value cannot be decrypted.
+   */
+  @Test
+  public void decryptReadsLegacyValues() throws Exception {
+    AesTool aesTool = new AesToolImpl();
+    byte[] plaintext = "legacy value".getBytes(StandardCharsets.UTF_8);
+    String securedValue = aesTool.encodeObject(aesTool.encrypt(plaintext, PASSPHRASE));
+
+    assertArrayEquals(
+        plaintext,
+        LegacyEncryption.decrypt(
+            securedValue,
+            () -> PASSPHRASE,
+            new EncryptionException("Unable to decrypt the value.")));
+  }
+
+  /**
+   * Tests that the engine failure is thrown when the legacy tool cannot decrypt the value either.
+   */
+  @Test
+  public void decryptThrowsEngineFailureForUnreadableValues() {
+    EncryptionException failure = new EncryptionException("Unable to decrypt the value.");
+
+    try {
+      LegacyEncryption.decrypt("AAAA", () -> PASSPHRASE, failure);
+      fail("The value should not have been decrypted.");
+    } catch (EncryptionException e) {
+      assertSame(failure, e);
+    }
+  }
+}
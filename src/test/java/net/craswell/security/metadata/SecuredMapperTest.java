@@ -0,0 +1,114 @@
+package net.craswell.security.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.craswell.common.encryption.PassphraseProvider;
+import net.craswell.security.annotations.codegen.model.generated.CompressedSampleSecured;
+import net.craswell.security.annotations.codegen.model.generated.UncompressedSampleSecured;
+
+/**
+ * Tests the SecuredMapper class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class SecuredMapperTest {
+  /**
+   * The passphrase provider shared by the source and target entities.
+   */
+  private static final PassphraseProvider PASSPHRASE_PROVIDER = () -> "mapper passphrase";
+
+  /**
+   * A value long and repetitive enough to be compressed.
+   */
+  private static final String NOTES = String.format("%0200d", 0).replace("0", "note ");
+
+  /**
+   * A grouped value long and repetitive enough to be compressed.
+   */
+  private static final String TITLE = String.format("%0100d", 0).replace("0", "title ");
+
+  /**
+   * The source entity.
+   */
+  private CompressedSampleSecured source;
+
+  /**
+   * Creates the source entity.
+   * 
+   * @throws Exception Thrown when a value cannot be encrypted.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.source = new CompressedSampleSecured();
+    this.source.setPassphraseProvider(PASSPHRASE_PROVIDER);
+    this.source.setNotes(NOTES);
+    this.source.setCount(5L);
+    this.source.setTitle(TITLE);
+  }
+
+  /**
+   * Tests that the ciphertext is copied as it is between fields compressed alike.
+   * 
+   * @throws Exception Thrown when a value cannot be copied.
+   */
+  @Test
+  public void ciphertextIsCopiedBetweenFieldsCompressedAlike() throws Exception {
+    CompressedSampleSecured target = new CompressedSampleSecured();
+    target.setPassphraseProvider(PASSPHRASE_PROVIDER);
+
+    this.source.copyTo(target);
+
+    assertEquals(this.source.getNotesSecured(), target.getNotesSecured());
+    assertEquals(this.source.getDetailsSecured(), target.getDetailsSecured());
+    assertEquals(NOTES, target.getNotes());
+    assertEquals(TITLE, target.getTitle());
+  }
+
+  /**
+   * Tests that values are encrypted again for target fields which do not compress them.
+   * 
+   * @throws Exception Thrown when a value cannot be copied.
+   */
+  @Test
+  public void valuesAreEncryptedAgainForFieldsCompressedDifferently() throws Exception {
+    UncompressedSampleSecured target = new UncompressedSampleSecured();
+    target.setPassphraseProvider(PASSPHRASE_PROVIDER);
+
+    SecuredMapper.between(CompressedSampleSecured.metadata(), UncompressedSampleSecured.metadata())
+        .copy(this.source, target);
+
+    assertNotEquals(this.source.getNotesSecured(), target.getNotesSecured());
+    assertNotEquals(this.source.getDetailsSecured(), target.getDetailsSecured());
+
+    // Uncompressed values are longer than their compressed source.
+    assertTrue(target.getNotesSecured().length() > this.source.getNotesSecured().length());
+    assertTrue(target.getDetailsSecured().length() > this.source.getDetailsSecured().length());
+
+    assertEquals(NOTES, target.getNotes());
+    assertEquals(Long.valueOf(5L), target.getCount());
+    assertEquals(TITLE, target.getTitle());
+  }
+
+  /**
+   * Tests that values are encrypted again when the entities do not share their passphrase.
+   * 
+   * @throws Exception Thrown when a value cannot be copied.
+   */
+  @Test
+  public void valuesAreEncryptedAgainWithoutSharedKeys() throws Exception {
+    CompressedSampleSecured target = new CompressedSampleSecured();
+    target.setPassphraseProvider(() -> "another passphrase");
+
+    this.source.copyTo(target);
+
+    assertNotEquals(this.source.getNotesSecured(), target.getNotesSecured());
+    assertEquals(NOTES, target.getNotes());
+    assertEquals(TITLE, target.getTitle());
+  }
+}
@@ -0,0 +1,405 @@
+package net.craswell.security.rotation;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.craswell.common.BinarySerializer;
+import net.craswell.common.encryption.AesTool;
+import net.craswell.common.encryption.AesToolImpl;
+import net.craswell.common.encryption.PassphraseProvider;
+import net.craswell.security.annotations.codegen.model.generated.SearchableSampleSecured;
+import net.craswell.security.encryption.DerivedKeyCache;
+import net.craswell.security.encryption.StreamingEncryption;
+import net.craswell.security.rotation.RotatedColumn.Format;
+
+/**
+ * Tests the KeyRotation class against an in-memory database.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class KeyRotationTest {
+  /**
+   * The number of rows of the rotated table.
+   */
+  private static final int ROW_COUNT = 5;
+
+  /**
+   * Provides the passphrase the rows are written with.
+   */
+  private static final PassphraseProvider OLD_PASSPHRASE_PROVIDER = () -> "old rotation passphrase";
+
+  /**
+   * Provides the passphrase the rows are rotated to.
+   */
+  private static final PassphraseProvider NEW_PASSPHRASE_PROVIDER = () -> "new rotation passphrase";
+
+  /**
+   * The connection to the in-memory database.
+   */
+  private Connection connection;
+
+  /**
+   * Creates the rotated table and the checkpoint table, and writes the rows under the old
+   * passphrase.
+   * 
+   * @throws Exception Thrown when the rows cannot be written.
+   */
+  @Before
+  public void setUp() throws Exception {
+    this.connection = DriverManager.getConnection("jdbc:h2:mem:");
+
+    try (Statement statement = this.connection.createStatement()) {
+      statement.execute("CREATE TABLE sample (id BIGINT PRIMARY KEY, "
+          + "ssnSecured VARCHAR(1000), ssnIndex VARCHAR(100), "
+          + "taxNumberSecured VARCHAR(1000), taxNumberIndex VARCHAR(100), "
+          + "contactSecured VARCHAR(1000), emailIndex VARCHAR(100), "
+          + "document BLOB)");
+      statement.execute("CREATE TABLE key_rotation "
+          + "(rotation_name VARCHAR(100) PRIMARY KEY, last_key BIGINT)");
+    }
+
+    try (PreparedStatement statement = this.connection.prepareStatement(
+        "INSERT INTO sample VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+      for (int id = 1; id <= ROW_COUNT; id++) {
+        SearchableSampleSecured sample = new SearchableSampleSecured();
+        sample.setPassphraseProvider(OLD_PASSPHRASE_PROVIDER);
+        sample.setSsn(ssn(id));
+        sample.setTaxNumber(id % 2 == 0 ? null : "tax-" + id);
+        sample.setEmail(email(id));
+        sample.setPhone("555-000" + id);
+
+        statement.setLong(1, id);
+        statement.setString(2, sample.getSsnSecured());
+        statement.setString(3, sample.getSsnIndex());
+        statement.setString(4, sample.getTaxNumberSecured());
+        statement.setString(5, sample.getTaxNumberIndex());
+        statement.setString(6, sample.getContactSecured());
+        statement.setString(7, sample.getEmailIndex());
+        statement.setBytes(8, readFully(StreamingEncryption.encrypt(
+            new ByteArrayInputStream(document(id)),
+            DerivedKeyCache.getDefault().getKey(OLD_PASSPHRASE_PROVIDER),
+            64)));
+        statement.executeUpdate();
+      }
+    }
+  }
+
+  /**
+   * Closes the in-memory database.
+   * 
+   * @throws SQLException Thrown when the connection cannot be closed.
+   */
+  @After
+  public void tearDown() throws SQLException {
+    this.connection.close();
+  }
+
+  /**
+   * Tests that every value, blind index, group envelope and streamed value is rotated.
+   * 
+   * @throws Exception Thrown when the rotation fails.
+   */
+  @Test
+  public void rotatesEveryRow() throws Exception {
+    KeyRotation rotation = this.createRotation();
+    rotation.setPageSize(2);
+
+    RotationProgress progress = rotation.run(this.connection);
+
+    assertEquals(3L, progress.getPageCount());
+    assertEquals(ROW_COUNT, progress.getRowCount());
+    assertEquals(Long.valueOf(ROW_COUNT), progress.getLastKey());
+
+    for (int id = 1; id <= ROW_COUNT; id++) {
+      this.assertRotated(id);
+    }
+  }
+
+  /**
+   * Tests that an interrupted rotation resumes after the last page committed.
+   * 
+   * @throws Exception Thrown when the rotation fails.
+   */
+  @Test
+  public void resumesFromCheckpoint() throws Exception {
+    KeyRotation interruptedRotation = this.createRotation();
+    interruptedRotation.setPageSize(2);
+    interruptedRotation.setCheckpoint(new TableRotationCheckpoint("key_rotation", "sample"));
+    interruptedRotation.setListener(progress -> {
+      throw new IllegalStateException("Interrupted.");
+    });
+
+    try {
+      interruptedRotation.run(this.connection);
+      fail("The rotation was not interrupted.");
+    } catch (IllegalStateException e) {
+      // Expected; the first page has been committed.
+    }
+
+    this.assertRotated(1);
+    this.assertRotated(2);
+
+    KeyRotation resumedRotation = this.createRotation();
+    resumedRotation.setPageSize(2);
+    resumedRotation.setCheckpoint(new TableRotationCheckpoint("key_rotation", "sample"));
+
+    // Rows of the first page no longer decrypt with the old passphrase, so they must be skipped.
+    RotationProgress progress = resumedRotation.run(this.connection);
+
+    assertEquals(ROW_COUNT - 2, progress.getRowCount());
+
+    for (int id = 1; id <= ROW_COUNT; id++) {
+      this.assertRotated(id);
+    }
+  }
+
+  /**
+   * Tests that a rotation run twice without a checkpoint leaves the values rotated by the first run
+   * as they are, rather than decrypting them with the old passphrase.
+   * 
+   * @throws Exception Thrown when the rotation fails.
+   */
+  @Test
+  public void runningTwiceLeavesRotatedValues() throws Exception {
+    KeyRotation rotation = this.createRotation();
+    rotation.setPageSize(2);
+    rotation.run(this.connection);
+
+    RotationProgress progress = this.createRotation().run(this.connection);
+
+    assertEquals(ROW_COUNT, progress.getRowCount());
+    assertEquals(0L, progress.getValueCount());
+
+    for (int id = 1; id <= ROW_COUNT; id++) {
+      this.assertRotated(id);
+    }
+  }
+
+  /**
+   * Tests that a rotation failing before any checkpoint can be run again from the first row.
+   * 
+   * @throws Exception Thrown when the rotation fails.
+   */
+  @Test
+  public void restartsWithoutCheckpoint() throws Exception {
+    KeyRotation interruptedRotation = this.createRotation();
+    interruptedRotation.setPageSize(2);
+    interruptedRotation.setListener(progress -> {
+      throw new IllegalStateException("Interrupted.");
+    });
+
+    try {
+      interruptedRotation.run(this.connection);
+      fail("The rotation was not interrupted.");
+    } catch (IllegalStateException e) {
+      // Expected; the first page has been committed.
+    }
+
+    RotationProgress progress = this.createRotation().run(this.connection);
+
+    assertEquals(ROW_COUNT, progress.getRowCount());
+
+    for (int id = 1; id <= ROW_COUNT; id++) {
+      this.assertRotated(id);
+    }
+  }
+
+  /**
+   * Tests that legacy text values of a column without blind indexes are rotated.
+   * 
+   * @throws Exception Thrown when the rotation fails.
+   */
+  @Test
+  public void rotatesLegacyValues() throws Exception {
+    this.writeLegacyTaxNumber(1);
+
+    new KeyRotation(
+        "sample",
+        "id",
+        Collections.singletonList(new RotatedColumn("taxNumberSecured", Format.TEXT)),
+        SearchableSampleSecured.metadata().getEngine(),
+        OLD_PASSPHRASE_PROVIDER,
+        NEW_PASSPHRASE_PROVIDER).run(this.connection);
+
+    try (Statement statement = this.connection.createStatement();
+        ResultSet resultSet = statement.executeQuery(
+            "SELECT taxNumberSecured FROM sample WHERE id = 1")) {
+      resultSet.next();
+
+      SearchableSampleSecured sample = new SearchableSampleSecured();
+      sample.setPassphraseProvider(NEW_PASSPHRASE_PROVIDER);
+      sample.setTaxNumberSecured(resultSet.getString(1));
+
+      assertEquals("tax-1", sample.getTaxNumber());
+    }
+  }
+
+  /**
+   * Tests that legacy text values of a column with a blind index are rejected.
+   * 
+   * @throws Exception Thrown when the legacy value cannot be written.
+   */
+  @Test(expected = KeyRotationException.class)
+  public void rejectsLegacyValuesWithBlindIndexes() throws Exception {
+    this.writeLegacyTaxNumber(1);
+
+    this.createRotation().run(this.connection);
+  }
+
+  /**
+   * Replaces the tax number of a row with a value written by the legacy encryption tool.
+   * 
+   * @param id The key of the row.
+   * 
+   * @throws Exception Thrown when the value cannot be written.
+   */
+  private void writeLegacyTaxNumber(int id) throws Exception {
+    AesTool aesTool = new AesToolImpl();
+
+    try (PreparedStatement statement = this.connection.prepareStatement(
+        "UPDATE sample SET taxNumberSecured = ? WHERE id = ?")) {
+      statement.setString(1, aesTool.encodeObject(aesTool.encrypt(
+          BinarySerializer.serializeObject("tax-" + id),
+          OLD_PASSPHRASE_PROVIDER.getPassphrase())));
+      statement.setLong(2, id);
+      statement.executeUpdate();
+    }
+  }
+
+  /**
+   * Creates a rotation of the sample table from the old passphrase to the new one.
+   * 
+   * @return The rotation.
+   */
+  private KeyRotation createRotation() {
+    List<RotatedColumn> columns = new ArrayList<RotatedColumn>(
+        KeyRotation.describeColumns(SearchableSampleSecured.metadata()));
+    columns.add(new RotatedColumn("document", Format.STREAM));
+
+    return new KeyRotation(
+        "sample",
+        "id",
+        columns,
+        SearchableSampleSecured.metadata().getEngine(),
+        OLD_PASSPHRASE_PROVIDER,
+        NEW_PASSPHRASE_PROVIDER);
+  }
+
+  /**
+   * Asserts that a row decrypts with the new passphrase and holds blind indexes keyed with it.
+   * 
+   * @param id The key of the row.
+   * 
+   * @throws Exception Thrown when the row cannot be read or decrypted.
+   */
+  private void assertRotated(int id) throws Exception {
+    try (PreparedStatement statement = this.connection.prepareStatement(
+        "SELECT * FROM sample WHERE id = ?")) {
+      statement.setLong(1, id);
+
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+
+        SearchableSampleSecured sample = new SearchableSampleSecured();
+        sample.setPassphraseProvider(NEW_PASSPHRASE_PROVIDER);
+        sample.setSsnSecured(resultSet.getString("ssnSecured"));
+        sample.setTaxNumberSecured(resultSet.getString("taxNumberSecured"));
+        sample.setContactSecured(resultSet.getString("contactSecured"));
+
+        assertEquals(ssn(id), sample.getSsn());
+        assertEquals(id % 2 == 0 ? null : "tax-" + id, sample.getTaxNumber());
+        assertEquals(email(id), sample.getEmail());
+        assertEquals("555-000" + id, sample.getPhone());
+
+        assertEquals(
+            SearchableSampleSecured.computeSsnIndex(ssn(id), NEW_PASSPHRASE_PROVIDER),
+            resultSet.getString("ssnIndex"));
+        assertEquals(
+            SearchableSampleSecured.computeEmailIndex(email(id), NEW_PASSPHRASE_PROVIDER),
+            resultSet.getString("emailIndex"));
+
+        try (InputStream document = StreamingEncryption.decrypt(
+            resultSet.getBlob("document").getBinaryStream(),
+            DerivedKeyCache.getDefault().getKey(NEW_PASSPHRASE_PROVIDER))) {
+          assertArrayEquals(document(id), readFully(document));
+        }
+      }
+    }
+  }
+
+  /**
+   * @param id The key of a row.
+   * 
+   * @return The social security number of the row.
+   */
+  private static String ssn(int id) {
+    return "123-45-000" + id;
+  }
+
+  /**
+   * @param id The key of a row.
+   * 
+   * @return The email address of the row.
+   */
+  private static String email(int id) {
+    return "user" + id + "@example.com";
+  }
+
+  /**
+   * @param id The key of a row.
+   * 
+   * @return The streamed document of the row, spanning several chunks.
+   */
+  private static byte[] document(int id) {
+    byte[] document = new byte[200 + id];
+
+    for (int i = 0; i < document.length; i++) {
+      document[i] = (byte) (i * id);
+    }
+
+    return document;
+  }
+
+  /**
+   * Reads a stream to its end, and closes it.
+   * 
+   * @param stream The stream.
+   * 
+   * @return The bytes read.
+   * 
+   * @throws IOException Thrown when the stream cannot be read.
+   */
+  private static byte[] readFully(InputStream stream) throws IOException {
+    try (InputStream input = stream) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      byte[] buffer = new byte[1024];
+      int count;
+
+      while ((count = input.read(buffer)) >= 0) {
+        output.write(buffer, 0, count);
+      }
+
+      return output.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package net.craswell.security.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import net.craswell.common.BinarySerializerException;
+
+/**
+ * Tests the ValueCodecs class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class ValueCodecsTest {
+  /**
+   * Tests that variable length values and nulls round trip.
+   * 
+   * @throws Exception Thrown when a value cannot be decoded.
+   */
+  @Test
+  public void variableLengthValuesRoundTrip() throws Exception {
+    assertEquals("value", ValueCodecs.decodeString(ValueCodecs.encodeString("value")));
+    assertEquals("", ValueCodecs.decodeString(ValueCodecs.encodeString("")));
+    assertNull(ValueCodecs.decodeString(ValueCodecs.encodeString(null)));
+    assertArrayEquals(
+        new byte[] {0, 1, 2},
+        ValueCodecs.decodeBytes(ValueCodecs.encodeBytes(new byte[] {0, 1, 2})));
+    assertNull(ValueCodecs.decodeBytes(ValueCodecs.encodeBytes(null)));
+    assertEquals(
+        new BigDecimal("-12.345"),
+        ValueCodecs.decodeBigDecimal(ValueCodecs.encodeBigDecimal(new BigDecimal("-12.345"))));
+    assertNull(ValueCodecs.decodeBigDecimal(ValueCodecs.encodeBigDecimal(null)));
+  }
+
+  /**
+   * Tests that a String starting with an unknown marker is rejected.
+   * 
+   * @throws Exception Thrown when the value is rejected.
+   */
+  @Test(expected = BinarySerializerException.class)
+  public void decodeStringRejectsUnknownMarker() throws Exception {
+    ValueCodecs.decodeString(new byte[] {0x7F, 'a', 'b'});
+  }
+
+  /**
+   * Tests that a null marker followed by further bytes is rejected rather than decoded as null.
+   * 
+   * @throws Exception Thrown when the value is rejected.
+   */
+  @Test(expected = BinarySerializerException.class)
+  public void decodeStringRejectsTrailingBytesAfterNull() throws Exception {
+    ValueCodecs.decodeString(new byte[] {0x00, 'a', 'b'});
+  }
+
+  /**
+   * Tests that a byte array starting with an unknown marker is rejected.
+   * 
+   * @throws Exception Thrown when the value is rejected.
+   */
+  @Test(expected = BinarySerializerException.class)
+  public void decodeBytesRejectsUnknownMarker() throws Exception {
+    ValueCodecs.decodeBytes(new byte[] {0x10, 1, 2});
+  }
+
+  /**
+   * Tests that an empty value is rejected.
+   * 
+   * @throws Exception Thrown when the value is rejected.
+   */
+  @Test(expected = BinarySerializerException.class)
+  public void decodeBytesRejectsEmptyValue() throws Exception {
+    ValueCodecs.decodeBytes(new byte[0]);
+  }
+
+  /**
+   * Tests that a BigDecimal starting with an unknown marker is rejected.
+   * 
+   * @throws Exception Thrown when the value is rejected.
+   */
+  @Test(expected = BinarySerializerException.class)
+  public void decodeBigDecimalRejectsUnknownMarker() throws Exception {
+    ValueCodecs.decodeBigDecimal(new byte[] {(byte) 0x80, 0, 0, 0, 2, 1});
+  }
+
+  /**
+   * Tests that fixed length values of the wrong length are rejected.
+   * 
+   * @throws Exception Thrown when the value is rejected.
+   */
+  @Test(expected = BinarySerializerException.class)
+  public void decodeLongRejectsWrongLength() throws Exception {
+    ValueCodecs.decodeLong(new byte[] {0x01, 1, 2, 3});
+  }
+}
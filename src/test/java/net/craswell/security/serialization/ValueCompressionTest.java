@@ -0,0 +1,92 @@
+package net.craswell.security.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests the ValueCompression class.
+ * 
+ * @author scraswell@gmail.com
+ *
+ */
+public class ValueCompressionTest {
+  /**
+   * Tests that a compressible value at least as long as the threshold is compressed and restored.
+   */
+  @Test
+  public void compressedValuesRoundTrip() {
+    byte[] encoded = ValueCodecs.encodeString(repeat("confidential ", 100));
+    byte[] compressed = ValueCompression.compress(encoded.clone(), 512);
+
+    assertTrue(ValueCompression.isCompressed(compressed));
+    assertTrue(compressed.length < encoded.length);
+    assertArrayEquals(encoded, ValueCompression.decompress(compressed));
+  }
+
+  /**
+   * Tests that values shorter than the threshold are left uncompressed.
+   */
+  @Test
+  public void shortValuesAreNotCompressed() {
+    byte[] encoded = ValueCodecs.encodeString(repeat("a", 100));
+
+    assertSame(encoded, ValueCompression.compress(encoded, 512));
+  }
+
+  /**
+   * Tests that uncompressed values, including Java serialized ones, are returned as they are.
+   */
+  @Test
+  public void decompressPassesUncompressedValuesThrough() {
+    byte[][] values = new byte[][] {
+        ValueCodecs.encodeNull(),
+        ValueCodecs.encodeString("value"),
+        ValueCodecs.encodeLong(42L),
+        new byte[] {(byte) 0xac, (byte) 0xed, 0x00, 0x05, 0x70},
+        new byte[0],
+    };
+
+    for (byte[] value : values) {
+      assertFalse(ValueCompression.isCompressed(value));
+      assertSame(value, ValueCompression.decompress(value));
+    }
+  }
+
+  /**
+   * Tests that a truncated compressed value is rejected.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void decompressRejectsMalformedValues() {
+    byte[] compressed = ValueCompression.compress(
+        ValueCodecs.encodeString(repeat("confidential ", 100)),
+        0);
+
+    ValueCompression.decompress(Arrays.copyOf(compressed, 8));
+  }
+
+  /**
+   * Repeats a text.
+   * 
+   * @param text The text.
+   * @param count The number of repetitions.
+   * 
+   * @return The repeated text.
+   */
+  private static String repeat(
+      String text,
+      int count) {
+    StringBuilder builder = new StringBuilder();
+
+    for (int i = 0; i < count; i++) {
+      builder.append(text);
+    }
+
+    return builder.toString();
+  }
+}